@@ -0,0 +1,183 @@
+package com.millicast.android_app;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log messages to logcat on a background thread, so that callers
+ * (including the main thread) do not wait for logcat.
+ * Messages are added to a bounded lock-free queue with preallocated slots,
+ * so adding a message does not lock or allocate.
+ * If the queue is full, messages are dropped and counted rather than blocking the caller.
+ * The writer thread parks while the queue is empty, and is only unparked by a caller
+ * adding a message while it is parked, so it does not wake up when there is nothing to write.
+ * Messages longer than {@link Utils#maxLogLen} are split into several lines when written.
+ */
+public class LogWriter {
+
+    /**
+     * Number of slots in the queue. Must be a power of 2.
+     */
+    public static final int CAPACITY = 4096;
+    private static final LogWriter SINGLE_INSTANCE = new LogWriter();
+
+    private final int mask = CAPACITY - 1;
+    // The slot sequence indicates if a slot is free to be written (== position)
+    // or ready to be read (== position + 1).
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final int[] priorities = new int[CAPACITY];
+    private final String[] tags = new String[CAPACITY];
+    private final String[] logTags = new String[CAPACITY];
+    private final String[] messages = new String[CAPACITY];
+    private final AtomicLong writePos = new AtomicLong();
+    // Only read and written by the thread that drains the queue.
+    private long readPos = 0;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object drainLock = new Object();
+    private final Thread thread;
+    // True while the writer thread is parked, or about to park, on an empty queue.
+    private volatile boolean parked = false;
+
+    private LogWriter() {
+        for (int i = 0; i < CAPACITY; ++i) {
+            sequences.set(i, i);
+        }
+        thread = new Thread(this::run, "MC-Log");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public static LogWriter getSingleInstance() {
+        return SINGLE_INSTANCE;
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Add a message to be written to logcat.
+     *
+     * @param priority The log priority, for e.g. {@link Log#DEBUG}.
+     * @param tag
+     * @param logTag   An additional tag to include in front of each written line.
+     * @param message
+     * @return True if added, false if dropped as the queue is full.
+     */
+    public boolean add(int priority, String tag, String logTag, String message) {
+        long pos;
+        int index;
+        while (true) {
+            pos = writePos.get();
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (writePos.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                // The slot has not been read yet, so the queue is full.
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        priorities[index] = priority;
+        tags[index] = tag;
+        logTags[index] = logTag;
+        messages[index] = message;
+        // Publish the slot to the writer thread.
+        // A volatile write, so that the writer either sees the slot or is seen as parked.
+        sequences.set(index, pos + 1);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Write all messages in the queue on the calling thread,
+     * for e.g. before the App is stopped.
+     */
+    public void flush() {
+        drain();
+    }
+
+    /**
+     * The number of messages dropped as the queue was full.
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private void run() {
+        while (true) {
+            if (drain() == 0) {
+                parked = true;
+                // Check again once parked is set, so that a message added meanwhile is not missed.
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        synchronized (drainLock) {
+            return sequences.get((int) readPos & mask) != readPos + 1;
+        }
+    }
+
+    /**
+     * Write messages until the queue is empty.
+     *
+     * @return The number of messages written.
+     */
+    private int drain() {
+        int count = 0;
+        synchronized (drainLock) {
+            while (true) {
+                int index = (int) readPos & mask;
+                if (sequences.get(index) != readPos + 1) {
+                    break;
+                }
+                int priority = priorities[index];
+                String tag = tags[index];
+                String logTag = logTags[index];
+                String message = messages[index];
+                tags[index] = null;
+                logTags[index] = null;
+                messages[index] = null;
+                // Free the slot for the next round of the ring.
+                sequences.lazySet(index, readPos + CAPACITY);
+                ++readPos;
+                write(priority, tag, logTag, message);
+                ++count;
+            }
+            long drops = dropped.getAndSet(0);
+            if (drops > 0) {
+                Log.println(Log.WARN, Utils.TAG, "[Log] Dropped " + drops +
+                        " messages as the queue was full.");
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write a message to logcat, split into lines of up to {@link Utils#maxLogLen}.
+     */
+    private static void write(int priority, String tag, String logTag, String message) {
+        CoreUtils.splitLines(logTag, message, Utils.maxLogLen,
+                line -> Log.println(priority, tag, line));
+    }
+}
@@ -24,12 +24,7 @@ public class MCStates {
         /**
          * Media source(s) currently being refreshed. Not allowed to start media capture.
          */
-        REFRESH_SOURCE;
-
-        // Indicates if audio sources are currently being refreshed.
-        public static boolean refreshAudio = false;
-        // Indicates if video sources are currently being refreshed.
-        public static boolean refreshVideo = false;
+        REFRESH_SOURCE
     }
 
     /**
@@ -51,4 +46,51 @@ public class MCStates {
         CONNECTED,
         SUBSCRIBING
     }
+
+    /**
+     * Create the state machine of the {@link CaptureState}, with its allowed transitions.
+     *
+     * @return
+     */
+    static StateMachine<CaptureState> createCaptureStateMachine() {
+        return new StateMachine<>("CapState", CaptureState.class, CaptureState.NOT_CAPTURED)
+                .allow(CaptureState.NOT_CAPTURED,
+                        CaptureState.TRY_CAPTURE, CaptureState.REFRESH_SOURCE)
+                .allow(CaptureState.TRY_CAPTURE,
+                        CaptureState.IS_CAPTURED, CaptureState.NOT_CAPTURED)
+                .allow(CaptureState.IS_CAPTURED, CaptureState.NOT_CAPTURED)
+                .allow(CaptureState.REFRESH_SOURCE, CaptureState.NOT_CAPTURED);
+    }
+
+    /**
+     * Create the state machine of the {@link PublisherState}, with its allowed transitions.
+     * The connection may be lost in any state.
+     *
+     * @return
+     */
+    static StateMachine<PublisherState> createPublisherStateMachine() {
+        return new StateMachine<>("PubState", PublisherState.class, PublisherState.DISCONNECTED)
+                .allow(PublisherState.DISCONNECTED, PublisherState.CONNECTING)
+                .allow(PublisherState.CONNECTING,
+                        PublisherState.CONNECTED, PublisherState.DISCONNECTED)
+                .allow(PublisherState.CONNECTED,
+                        PublisherState.PUBLISHING, PublisherState.DISCONNECTED)
+                .allow(PublisherState.PUBLISHING, PublisherState.DISCONNECTED);
+    }
+
+    /**
+     * Create the state machine of the {@link SubscriberState}, with its allowed transitions.
+     * The connection may be lost in any state.
+     *
+     * @return
+     */
+    static StateMachine<SubscriberState> createSubscriberStateMachine() {
+        return new StateMachine<>("SubState", SubscriberState.class, SubscriberState.DISCONNECTED)
+                .allow(SubscriberState.DISCONNECTED, SubscriberState.CONNECTING)
+                .allow(SubscriberState.CONNECTING,
+                        SubscriberState.CONNECTED, SubscriberState.DISCONNECTED)
+                .allow(SubscriberState.CONNECTED,
+                        SubscriberState.SUBSCRIBING, SubscriberState.DISCONNECTED)
+                .allow(SubscriberState.SUBSCRIBING, SubscriberState.DISCONNECTED);
+    }
 }
@@ -138,6 +138,8 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 mcManager.release();
             } else {
                 mcManager.flagCameraRestore();
+                // The App may be killed while in the background, so write any unsaved settings.
+                Utils.flushSaved();
                 Log.d(TAG, "[onStop] MainActivity not finishing. Will not release Millicast objects.Changing orientation.");
             }
         }
@@ -0,0 +1,261 @@
+package com.millicast.android_app;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Range;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.millicast.android_app.Utils.logD;
+
+/**
+ * Probes the video encoders of the device with {@link MediaCodecList},
+ * for each codec supported by the Millicast SDK, into a {@link CodecProbe}.
+ * The resolution and fps ceilings are read from the encoder capabilities,
+ * and the encode cost is measured by encoding a few moving frames at the target size.
+ * Probing takes up to a few seconds, so it must be run in a background thread,
+ * and its results cached.
+ */
+public class MediaCodecProber {
+    public static final String TAG = "MediaCodecProber";
+
+    /**
+     * Version of the measurement, to be changed when how the encode cost is measured changes,
+     * so that results saved by an earlier version are probed again.
+     */
+    public static final int VERSION = 2;
+    // Number of frames encoded before, and while, measuring the encode cost.
+    private static final int COST_FRAMES_WARMUP = 10;
+    private static final int COST_FRAMES = 30;
+    private static final int COST_FPS = 30;
+    private static final long COST_TIMEOUT_MS = 3000;
+    // Rows and columns the frame content moves by per frame.
+    private static final int COST_MOTION_PX = 2;
+    private static final long DEQUEUE_TIMEOUT_US = 1000;
+
+    /**
+     * Get the MIME type of a codec named by the Millicast SDK.
+     *
+     * @param codec
+     * @return The MIME type, or null if not known.
+     */
+    public static String getMimeType(String codec) {
+        switch (codec.toUpperCase()) {
+            case "VP8":
+                return MediaFormat.MIMETYPE_VIDEO_VP8;
+            case "VP9":
+                return MediaFormat.MIMETYPE_VIDEO_VP9;
+            case "H264":
+                return MediaFormat.MIMETYPE_VIDEO_AVC;
+            case "H265":
+                return MediaFormat.MIMETYPE_VIDEO_HEVC;
+            case "AV1":
+                return "video/av01";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Probe the encoders of the given codecs.
+     *
+     * @param codecs The codecs, as named by the Millicast SDK.
+     * @param width  The target width, at which the max fps is read.
+     * @param height The target height.
+     * @return
+     */
+    public CodecProbe probe(List<String> codecs, int width, int height) {
+        String logTag = "[Codec][Probe] ";
+        List<CodecProbe.Encoder> encoders = new ArrayList<>();
+        MediaCodecInfo[] infos = new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+        for (String codec : codecs) {
+            String mime = getMimeType(codec);
+            if (mime == null) {
+                logD(TAG, logTag + "Skipping unknown codec " + codec + ".");
+                continue;
+            }
+            for (MediaCodecInfo info : infos) {
+                if (!info.isEncoder() || !supportsType(info, mime)) {
+                    continue;
+                }
+                CodecProbe.Encoder encoder = probeEncoder(codec, mime, info, width, height);
+                if (encoder != null) {
+                    logD(TAG, logTag + encoder + ".");
+                    encoders.add(encoder);
+                }
+            }
+        }
+        return new CodecProbe(encoders);
+    }
+
+    private static boolean supportsType(MediaCodecInfo info, String mime) {
+        for (String type : info.getSupportedTypes()) {
+            if (type.equalsIgnoreCase(mime)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CodecProbe.Encoder probeEncoder(String codec, String mime, MediaCodecInfo info,
+                                            int width, int height) {
+        MediaCodecInfo.VideoCapabilities caps;
+        try {
+            caps = info.getCapabilitiesForType(mime).getVideoCapabilities();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (caps == null) {
+            return null;
+        }
+        int maxWidth = caps.getSupportedWidths().getUpper();
+        int maxHeight = caps.getSupportedHeights().getUpper();
+        int maxFps = 0;
+        try {
+            Range<Double> rates = caps.getSupportedFrameRatesFor(width, height);
+            maxFps = rates.getUpper().intValue();
+        } catch (IllegalArgumentException e) {
+            // The target size is not supported.
+        }
+        double costMs = -1;
+        if (caps.isSizeSupported(width, height)) {
+            costMs = measureCost(info.getName(), mime, width, height);
+        }
+        return new CodecProbe.Encoder(codec, info.getName(), isHardware(info), maxWidth, maxHeight,
+                maxFps, costMs);
+    }
+
+    private static boolean isHardware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isHardwareAccelerated();
+        }
+        // Before Q, the software encoders are the ones provided by Android itself.
+        String name = info.getName().toLowerCase();
+        return !(name.startsWith("omx.google.") || name.startsWith("c2.android.") ||
+                name.startsWith("c2.google."));
+    }
+
+    /**
+     * Measure the encode cost of an encoder at the given size.
+     * {@link #COST_FRAMES_WARMUP} frames are encoded first and not measured.
+     * Frames are then queued as fast as the encoder accepts them, and the cost is the
+     * average interval between the outputs of the next {@link #COST_FRAMES} frames,
+     * which is the encoder's throughput, excluding its pipeline latency.
+     * The frames are a noisy gradient moving diagonally, so that they are not trivial to encode.
+     *
+     * @param name
+     * @param mime
+     * @param width
+     * @param height
+     * @return The time taken, in ms per frame, or -1 if it could not be measured.
+     */
+    private double measureCost(String name, String mime, int width, int height) {
+        String logTag = "[Codec][Probe][Cost] ";
+        MediaCodec codec = null;
+        try {
+            codec = MediaCodec.createByCodecName(name);
+            MediaFormat format = MediaFormat.createVideoFormat(mime, width, height);
+            format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, width * height * COST_FPS / 10);
+            format.setInteger(MediaFormat.KEY_FRAME_RATE, COST_FPS);
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 1);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+
+            int frameSize = width * height * 3 / 2;
+            int frameStep = COST_MOTION_PX * (width + 1);
+            int total = COST_FRAMES_WARMUP + COST_FRAMES;
+            byte[] content = makeContent(width, frameSize + frameStep * total);
+            long[] inputNs = new long[total];
+            MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+            int queued = 0;
+            int encoded = 0;
+            int measured = 0;
+            long firstNs = 0;
+            long lastNs = 0;
+            long latencyNs = 0;
+            long startNs = System.nanoTime();
+            long timeoutNs = COST_TIMEOUT_MS * 1_000_000;
+            while (encoded < total && System.nanoTime() - startNs < timeoutNs) {
+                if (queued < total) {
+                    int index = codec.dequeueInputBuffer(0);
+                    if (index >= 0) {
+                        ByteBuffer buffer = codec.getInputBuffer(index);
+                        buffer.clear();
+                        int size = Math.min(frameSize, buffer.remaining());
+                        buffer.put(content, queued * frameStep, size);
+                        inputNs[queued] = System.nanoTime();
+                        codec.queueInputBuffer(index, 0, size, queued * 1_000_000L / COST_FPS, 0);
+                        ++queued;
+                    }
+                }
+                int index = codec.dequeueOutputBuffer(bufferInfo, DEQUEUE_TIMEOUT_US);
+                if (index >= 0) {
+                    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                        long nowNs = System.nanoTime();
+                        int frame = (int) Math.round(
+                                bufferInfo.presentationTimeUs * COST_FPS / 1e6);
+                        if (frame >= COST_FRAMES_WARMUP && frame < queued) {
+                            if (measured == 0) {
+                                firstNs = nowNs;
+                                latencyNs = nowNs - inputNs[frame];
+                            }
+                            lastNs = nowNs;
+                            ++measured;
+                        }
+                        ++encoded;
+                    }
+                    codec.releaseOutputBuffer(index, false);
+                }
+            }
+            if (measured < 2) {
+                logD(TAG, logTag + name + " Failed! Only " + measured + " frames measured.");
+                return -1;
+            }
+            double costMs = (lastNs - firstNs) / 1e6 / (measured - 1);
+            logD(TAG, logTag + name + " " + width + "x" + height + ": " +
+                    String.format("%.1f", costMs) + "ms per frame over " + measured +
+                    " frames, latency:" + latencyNs / 1_000_000 + "ms.");
+            return costMs;
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            logD(TAG, logTag + name + " Failed! " + e.getMessage());
+            return -1;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // Not started.
+                }
+                codec.release();
+            }
+        }
+    }
+
+    /**
+     * Make the content from which the frames are taken, at an offset that increases per frame.
+     * It is a diagonal gradient with noise, so that each frame has both detail and motion.
+     *
+     * @param width
+     * @param length
+     * @return
+     */
+    private static byte[] makeContent(int width, int length) {
+        byte[] content = new byte[length];
+        Random random = new Random(width);
+        for (int i = 0; i < length; ++i) {
+            int x = i % width;
+            int y = i / width;
+            content[i] = (byte) (x + y + random.nextInt(32));
+        }
+        return content;
+    }
+}
@@ -1,15 +1,22 @@
 package com.millicast.android_app;
 
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 import static android.os.Process.THREAD_PRIORITY_URGENT_AUDIO;
 import static android.os.Process.THREAD_PRIORITY_VIDEO;
 
 import android.app.Activity;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.hardware.Camera;
+import android.hardware.usb.UsbManager;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 
 import com.millicast.AudioPlayback;
@@ -33,11 +40,16 @@ import com.millicast.android_app.MCTypes.Source;
 import org.webrtc.Camera1Enumerator;
 import org.webrtc.Camera2Enumerator;
 import org.webrtc.CameraEnumerator;
+import org.webrtc.RTCStatsReport;
 import org.webrtc.RendererCommon.ScalingType;
+import org.webrtc.VideoSink;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.millicast.Source.Type.NDI;
 import static com.millicast.android_app.Constants.ACCOUNT_ID;
@@ -82,11 +94,31 @@ public class MillicastManager {
     // Handler for running video processes in a background thread.
     private Handler handlerVideo;
     private HandlerThread threadVideo;
+    // Handler shared by all Subscriber sessions and publish destinations,
+    // for handling their events in a background thread.
+    private Handler handlerSessions;
+    private HandlerThread threadSessions;
+    // Handler for probing the video encoders in a low priority background thread.
+    private Handler handlerProbe;
+    private HandlerThread threadProbe;
+    // Coalesces the UI updates requested by listeners into one pass per frame.
+    private UiDispatcher uiDispatcher;
+    /**
+     * Stages of the initialization run in the background.
+     */
+    public static final String INIT_SDK = "sdk";
+    public static final String INIT_MEDIA = "media";
+    public static final String INIT_SOURCES = "sources";
+    public static final String INIT_CODECS = "codecs";
+    private StageGraph initStages;
 
     // States: Millicast
-    private CaptureState capState = CaptureState.NOT_CAPTURED;
-    private PublisherState pubState = PublisherState.DISCONNECTED;
-    private SubscriberState subState = SubscriberState.DISCONNECTED;
+    // Changed atomically from any thread, only via allowed transitions.
+    private final StateMachine<CaptureState> capState = createCaptureStateMachine();
+    private final StateMachine<PublisherState> pubState = createPublisherStateMachine();
+    private final StateMachine<SubscriberState> subState = createSubscriberStateMachine();
+    // Number of audio and video source list refreshes still ongoing.
+    private final AtomicInteger refreshPending = new AtomicInteger();
     // Set the AudioOnly state to true if not capturing video.
     private boolean audioOnly = false;
 
@@ -151,10 +183,70 @@ public class MillicastManager {
     private VideoSource videoSourceSwitched;
 
     private ArrayList<VideoCapabilities> capabilityList;
+    /**
+     * The age after which the video devices are enumerated again,
+     * as NDI sources come and go without notice.
+     */
+    public static final long DEVICE_CATALOG_MAX_AGE_MS = 30_000;
+    // Catalogs of the audio and video devices, with the capabilities of each video device.
+    private DeviceCatalog<AudioSource, Void> audioCatalog;
+    private DeviceCatalog<VideoSource, VideoCapabilities> videoCatalog;
+    // Invalidates the catalogs when a USB device is plugged in or out.
+    private BroadcastReceiver receiverHotPlug;
     private String capabilityIndexKey = "CAPABILITY_INDEX";
-    private int capabilityIndexDefault = 0;
     private int capabilityIndex;
     private VideoCapabilities capability;
+    // Prefix of the key of the capability chosen for each videoSource, by device id.
+    private String capabilityChoiceKey = "CAPABILITY_CHOICE_";
+    /**
+     * The capture format aimed for when no capability has been chosen for a videoSource.
+     */
+    public static final int CAPABILITY_TARGET_WIDTH = 1280;
+    public static final int CAPABILITY_TARGET_HEIGHT = 720;
+    public static final int CAPABILITY_TARGET_FPS = 30;
+    // Picks the capability of each videoSource, for the device and the network.
+    private final CapabilityRanker capabilityRanker = new CapabilityRanker(
+            CAPABILITY_TARGET_WIDTH, CAPABILITY_TARGET_HEIGHT, CAPABILITY_TARGET_FPS,
+            "YUV_420_888", "NV21");
+    /**
+     * Whether the capture format is lowered from the chosen capability when the uplink is low.
+     */
+    private boolean capabilityAdaptive = false;
+    /**
+     * Time from the first Publisher stats of a publish, in ms, during which the uplink estimate
+     * is still ramping up, and the capabilities are not ranked for the network.
+     */
+    public static final long CAPABILITY_RAMP_MS = 15_000;
+    /**
+     * Duration over which the uplink estimate must be sustained, in ms,
+     * as its median over this window is used to rank the capabilities.
+     */
+    public static final long CAPABILITY_UPLINK_WINDOW_MS = 20_000;
+    // Time of the first Publisher stats of the current publish, in ms, or NA if none yet.
+    private volatile long capabilityRankStartMs = (long) StatsRecord.NA;
+    private static final CapabilityRanker.Spec<VideoCapabilities> CAPABILITY_SPEC =
+            new CapabilityRanker.Spec<VideoCapabilities>() {
+                @Override
+                public int getWidth(VideoCapabilities cap) {
+                    return cap.width;
+                }
+
+                @Override
+                public int getHeight(VideoCapabilities cap) {
+                    return cap.height;
+                }
+
+                @Override
+                public int getFps(VideoCapabilities cap) {
+                    // Note: FPS given in frames per 1000 seconds (FPKS).
+                    return cap.fps / 1000;
+                }
+
+                @Override
+                public String getFormat(VideoCapabilities cap) {
+                    return cap.format;
+                }
+            };
 
     private ArrayList<String> audioCodecList;
     private String audioCodecIndexKey = "AUDIO_CODEC_INDEX";
@@ -167,6 +259,15 @@ public class MillicastManager {
     private int videoCodecIndexDefault = 0;
     private int videoCodecIndex;
     private String videoCodec;
+    // If true, the videoCodec is picked from the codecProbe rather than chosen by the user.
+    // Defaults to true only if no videoCodec index was saved before.
+    private String codecAutoKey = "CODEC_AUTO";
+    private volatile boolean codecAuto;
+    // The video encoders probed on this device, cached with the Build fingerprint.
+    private String codecProbeKey = "CODEC_PROBE";
+    private CodecProbe codecProbe;
+    // Guards the codecProbe, without blocking other calls while probing.
+    private final Object codecProbeLock = new Object();
 
     /**
      * The list of {@link AudioPlayback} devices available for us to play subscribed audio.
@@ -181,14 +282,17 @@ public class MillicastManager {
 
     // SDK Media objects
     private Media media;
-    private AudioTrack audioTrackPub;
+    private volatile AudioTrack audioTrackPub;
     private AudioTrack audioTrackSub;
-    private VideoTrack videoTrackPub;
+    private volatile VideoTrack videoTrackPub;
     private VideoTrack videoTrackSub;
 
     // Display
     private VideoRenderer rendererPub;
     private VideoRenderer rendererSub;
+    // Frame level stats of the renderers, reset each time a renderer is created.
+    private final RenderStats renderStatsPub = new RenderStats();
+    private final RenderStats renderStatsSub = new RenderStats();
     // Whether Publisher's local video view is mirrored.
     private boolean mirroredPub = false;
     private ScalingType scalingPub = SCALE_ASPECT_FIT;
@@ -203,9 +307,22 @@ public class MillicastManager {
 
     // View objects
     private SwitchHdl switchHdl;
+    // Times camera switches while capturing, which are hot swaps on the existing track.
+    private final SwitchTimer switchTimer = new SwitchTimer();
+    /**
+     * Limits for setting the Ricoh Theta camera params once the camera is ready.
+     */
+    public static final long RICOH_PARAMS_DEADLINE_MS = 5000;
+    public static final int RICOH_PARAMS_ATTEMPTS_MAX = 8;
+    public static final long RICOH_PARAMS_RETRY_BASE_MS = 100;
+    public static final long RICOH_PARAMS_RETRY_MAX_MS = 1000;
+    private final ParamApplier paramApplierRicoh = new ParamApplier(RICOH_PARAMS_DEADLINE_MS,
+            RICOH_PARAMS_ATTEMPTS_MAX,
+            new Backoff(RICOH_PARAMS_RETRY_BASE_MS, RICOH_PARAMS_RETRY_MAX_MS));
     private VideoSourceEvtHdl videoSourceEvtHdl;
-    private PubListener listenerPub;
-    private SubListener listenerSub;
+    // The listeners of the current Publisher and Subscriber, a new one for each instance.
+    private volatile PubListener listenerPub;
+    private volatile SubListener listenerSub;
     private PublishFragment fragmentPub;
     private SubscribeFragment fragmentSub;
     private SettingsMediaFragment fragmentSetMedia;
@@ -215,14 +332,126 @@ public class MillicastManager {
     private String midAudio;
     private String midVideo;
     /**
-     * Map of SourceId : {@link SourceInfo} of received and currently active sources.
+     * The number of latest source changes kept for views to apply.
      */
-    private HashMap<String, SourceInfo> sourceMap;
+    public static final int SOURCE_DELTAS_MAX = 128;
+    /**
+     * Registry of SourceId : {@link SourceInfo} of received and currently active sources.
+     */
+    private final SourceRegistry<SourceInfo> sourceMap = new SourceRegistry<>(SOURCE_DELTAS_MAX);
     // SourceId being subscribed to for Audio.
     private String sourceIdAudioSub = null;
     // SourceId being subscribed to for Video.
     private String sourceIdVideoSub = null;
 
+    // Stats
+    private final StatsParser statsParserPub = new StatsParser(true);
+    private final StatsParser statsParserSub = new StatsParser(false);
+    /**
+     * Listeners that receive the {@link StatsRecord} parsed from each Publisher/Subscriber stats report.
+     */
+    private final CopyOnWriteArrayList<StatsParser.Listener> statsListeners =
+            new CopyOnWriteArrayList<>();
+    // Whether to log the whole WebRTC stats report as a String.
+    private boolean statsLogEnabled = false;
+    /**
+     * Interval between stats reports, in ms, and the shorter interval used while the bitrate
+     * (for the Publisher) or the layer (for the Subscriber) is adapted to network conditions.
+     */
+    public static final int STATS_INTERVAL_MS = 10_000;
+    public static final int STATS_INTERVAL_ADAPTIVE_MS = 2_000;
+    /**
+     * Duration of stats kept in the history of each track, in ms.
+     */
+    public static final long STATS_HISTORY_MS = 30 * 60 * 1000;
+    /**
+     * Number of stats samples kept in the history of each track, sized for the shorter
+     * {@link #STATS_INTERVAL_ADAPTIVE_MS}, so that at least {@link #STATS_HISTORY_MS} is kept
+     * at either interval.
+     */
+    public static final int STATS_HISTORY_SIZE =
+            (int) (STATS_HISTORY_MS / STATS_INTERVAL_ADAPTIVE_MS);
+    private final StatsHistory statsHistoryPubAudio = new StatsHistory(STATS_HISTORY_SIZE);
+    private final StatsHistory statsHistoryPubVideo = new StatsHistory(STATS_HISTORY_SIZE);
+    private final StatsHistory statsHistorySubAudio = new StatsHistory(STATS_HISTORY_SIZE);
+    private final StatsHistory statsHistorySubVideo = new StatsHistory(STATS_HISTORY_SIZE);
+    /**
+     * Duration of samples kept in the playout latency of the subscribed video, in ms.
+     */
+    public static final long LATENCY_HISTORY_MS = 10 * 60 * 1000;
+    /**
+     * Number of stats samples kept in the playout latency of the subscribed video, sized for the
+     * shorter {@link #STATS_INTERVAL_ADAPTIVE_MS}, so that at least {@link #LATENCY_HISTORY_MS}
+     * is kept at either interval.
+     */
+    public static final int LATENCY_HISTORY_SIZE =
+            (int) (LATENCY_HISTORY_MS / STATS_INTERVAL_ADAPTIVE_MS);
+    private final PlayoutLatency playoutLatency = new PlayoutLatency(LATENCY_HISTORY_SIZE);
+    // Times the frames of the subscribed video reaching the renderer, for the playoutLatency.
+    // The timestamp of a received frame is the time it is scheduled to be rendered.
+    private final VideoSink latencySink =
+            frame -> playoutLatency.onFrameRendered(System.nanoTime() - frame.getTimestampNs());
+
+    // Adaptive bitrate
+    private final BitrateController bitrateController = new BitrateController();
+    /**
+     * The max bitrate set for each publish, in kbps,
+     * which is also the highest value of the reconnect bitrate ceiling.
+     */
+    public static final int BITRATE_MAX_DEFAULT_KBPS = 2500;
+    /**
+     * Whether a bitrate ceiling is tracked from network conditions while publishing,
+     * to publish again at that ceiling after the connection is lost.
+     * This is not an ABR: the bitrate of the current publish is never changed.
+     * Off by default, as it needs Publisher stats every {@link #STATS_INTERVAL_ADAPTIVE_MS}.
+     */
+    private boolean bitrateReconnectCeiling = false;
+
+    /**
+     * The maximum number of publish destinations, in addition to the main Publisher.
+     */
+    public static final int PUB_DESTINATIONS_MAX = 4;
+    // Publish destinations, only accessed on the main thread.
+    private final ArrayList<PubDestination> pubDestinations = new ArrayList<>();
+    private int pubDestinationIdNext = 0;
+    // If true, the destinations are already due to restart with the tracks captured.
+    private boolean pubDestinationsRestartPending = false;
+
+    // Subscriber layer ABR
+    /**
+     * The maximum number of Subscriber sessions, in addition to the main Subscriber.
+     */
+    public static final int SUB_SESSIONS_MAX = 16;
+    // Subscriber sessions, only accessed on the main thread.
+    private final ArrayList<SubSession> subSessions = new ArrayList<>();
+    private int subSessionIdNext = 0;
+    // Whether the audio playback device has been started for the sessions.
+    private boolean audioPlaybackSessions = false;
+
+    private final LayerAbr layerAbr = new LayerAbr();
+    private final LayerAbr.Sample layerAbrSample = new LayerAbr.Sample();
+    /**
+     * Whether the Subscriber's layer is selected automatically by the {@link LayerAbr}.
+     */
+    private boolean layerAbrEnabled = true;
+    /**
+     * Whether the {@link LayerAbr} is paused because the user selected a specific layer.
+     * It resumes when the user selects the automatic layer ("").
+     */
+    private volatile boolean layerAbrPaused = false;
+    /**
+     * The layerIds (ordered by quality) of the projected video source used by the {@link LayerAbr}.
+     */
+    private volatile String[] layerAbrIds = new String[0];
+
+    // Reconnect
+    private Reconnector reconnectorPub;
+    private Reconnector reconnectorSub;
+    // Projected sourceIds and selected layerId to restore after the Subscriber reconnects.
+    private String sourceIdAudioRestore = null;
+    private String sourceIdVideoRestore = null;
+    private String layerIdRestore = null;
+
     private MillicastManager() {
     }
 
@@ -232,46 +461,46 @@ public class MillicastManager {
      * @param context The {@link android.content.Context ApplicationContext}.
      */
     public void init(Context context) {
+        String logTag = "[McMan][Init] ";
+        long startNs = System.nanoTime();
+        Trace.beginSection("Init:core");
         this.context = context;
 
         // Initialize handlers.
         handlerMain = new Handler(Looper.getMainLooper());
+        uiDispatcher = new UiDispatcher(handlerMain, this::updateUi);
         threadAudio = new HandlerThread("MC-Background-Audio", THREAD_PRIORITY_URGENT_AUDIO);
         threadAudio.start();
         handlerAudio = new Handler(threadAudio.getLooper());
         threadVideo = new HandlerThread("MC-Background-Video", THREAD_PRIORITY_VIDEO);
         threadVideo.start();
         handlerVideo = new Handler(threadVideo.getLooper());
-
-        Client.initMillicastSdk(this.context);
-        // Set Logger
-        Logger.setLoggerListener((String msg, LogLevel level) -> {
-            String logTag = "[SDK][Log][L:" + level + "] ";
-            LogLevel minLevel = LogLevel.MC_LOG;
-            if(level.ordinal() > minLevel.ordinal()){
-                return;
-            }
-            logD(TAG, logTag + msg);
-        });
-        // Prepare Media
-        getMedia();
-
-        // Get the media sources in the background to avoid blocking the main thread.
-        // Subsequently, get media indices from stored values if present, else from default values.
-        // Views will be reloaded if possible after media sources are obtained.
-        refreshMediaSourceLists();
-
-        // Set other media values using indices.
-        setAudioPlaybackIndex(
-                Utils.getSaved(audioPlaybackIndexKey, audioPlaybackIndexDefault, context));
-        setCodecIndex(Utils.getSaved(audioCodecIndexKey, audioCodecIndexDefault, context), true);
-        setCodecIndex(Utils.getSaved(videoCodecIndexKey, videoCodecIndexDefault, context), false);
+        threadSessions = new HandlerThread("MC-Background-Sessions");
+        threadSessions.start();
+        handlerSessions = new Handler(threadSessions.getLooper());
+        threadProbe = new HandlerThread("MC-Background-Probe", THREAD_PRIORITY_BACKGROUND);
+        threadProbe.start();
+        handlerProbe = new Handler(threadProbe.getLooper());
+
+        // Log the state transitions, and any rejected ones.
+        capState.addListener(new StateLogger<>());
+        pubState.addListener(new StateLogger<>());
+        subState.addListener(new StateLogger<>());
+
+        // Reconnect supervisors, that run reconnects on the main thread.
+        reconnectorPub = new Reconnector("[Pub]", handlerMain, this::connectPubTry);
+        reconnectorSub = new Reconnector("[Sub]", handlerMain, this::connectSubTry);
 
         // Create Publisher and Subscriber Options
         optionPub = new Publisher.Option();
         optionPub.stereo = true;
         optionSub = new Subscriber.Option();
-        sourceMap = new HashMap<>();
+
+        // The catalogs only enumerate devices when first read, on the media threads.
+        createDeviceCatalogs();
+
+        // The audio playback devices are only enumerated when first needed.
+        audioPlaybackIndex = Utils.getSaved(audioPlaybackIndexKey, audioPlaybackIndexDefault, context);
 
         // Set credentials from stored values if present, else from Constants file values.
         setAccountId(Utils.getSaved(keyAccountId, ACCOUNT_ID, context), false);
@@ -284,8 +513,107 @@ public class MillicastManager {
         setUrlPub(Utils.getSaved(keyUrlPub, URL_PUB, context), false);
         setUrlSub(Utils.getSaved(keyUrlSub, URL_SUB, context), false);
         setRicohTheta(Utils.getSaved(keyRicohTheta, false, context), false);
+        Trace.endSection();
 
-        logD(TAG, "[McMan][Init] OK.");
+        startInitStages();
+        logD(TAG, logTag + "OK in " + (System.nanoTime() - startNs) / 1000 / 1000.0 +
+                " ms on the main thread. Other stages running in the background.");
+    }
+
+    /**
+     * Start the stages of the initialization that can run in the background, in parallel where
+     * they do not depend on each other:
+     * {@link #INIT_SDK} on the sessions thread, then {@link #INIT_MEDIA} on the video thread,
+     * then {@link #INIT_SOURCES} (which enumerates on the audio and video threads, and is done once
+     * both source lists are refreshed) and {@link #INIT_CODECS} on the audio thread.
+     * If the videoCodec is {@link #isCodecAuto auto}, {@link #INIT_CODECS} sets the saved one,
+     * and the one picked from the {@link #getCodecProbe codec probe} is set when probing is done,
+     * as probing runs on its own low priority thread and can take a few seconds.
+     * Each stage is a trace section, and is timed.
+     */
+    private void startInitStages() {
+        Executor executorSessions = handlerSessions::post;
+        Executor executorAudio = handlerAudio::post;
+        Executor executorVideo = handlerVideo::post;
+        initStages = new StageGraph("Init", new StageGraph.Tracer() {
+            @Override
+            public void begin(String name) {
+                Trace.beginSection(name);
+            }
+
+            @Override
+            public void end() {
+                Trace.endSection();
+            }
+        });
+        initStages.add(INIT_SDK, executorSessions, () -> {
+            Client.initMillicastSdk(this.context);
+            // Set Logger
+            Logger.setLoggerListener((String msg, LogLevel level) -> {
+                LogLevel minLevel = LogLevel.MC_LOG;
+                if (level.ordinal() > minLevel.ordinal() || !Utils.isLogD()) {
+                    return;
+                }
+                String logTag = "[SDK][Log][L:" + level + "] ";
+                logD(TAG, msg, logTag);
+            });
+        });
+        // Prepare Media
+        initStages.add(INIT_MEDIA, executorVideo, this::getMedia, INIT_SDK);
+        // Get the media sources in the background to avoid blocking the main thread.
+        // Subsequently, get media indices from stored values if present, else from default values.
+        // Views will be reloaded if possible after media sources are obtained.
+        // The stage is done once both the audio and video source lists are refreshed.
+        initStages.addAsync(INIT_SOURCES, executorVideo, done -> {
+            if (!refreshMediaSourceLists(false, done)) {
+                done.run();
+            }
+        }, INIT_MEDIA);
+        // Set codecs using indices.
+        initStages.add(INIT_CODECS, executorAudio, () -> {
+            setCodecIndex(Utils.getSaved(audioCodecIndexKey, audioCodecIndexDefault, context), true);
+            int index = Utils.getSaved(videoCodecIndexKey, -1, context);
+            codecAuto = Utils.getSaved(codecAutoKey, index < 0, context);
+            // Remember the default, as setting the videoCodec index saves it.
+            Utils.setSaved(codecAutoKey, codecAuto, context);
+            setCodecIndex(index < 0 ? videoCodecIndexDefault : index, false);
+            if (codecAuto) {
+                ArrayList<String> codecs = getCodecList(false);
+                handlerProbe.post(() -> {
+                    int picked = getCodecProbe(codecs).pick(codecs, CAPABILITY_TARGET_WIDTH,
+                            CAPABILITY_TARGET_HEIGHT, CAPABILITY_TARGET_FPS);
+                    handlerAudio.post(() -> setCodecIndexAuto(picked));
+                });
+            }
+        }, INIT_MEDIA);
+        initStages.start();
+        initStages.whenDone(INIT_SOURCES, executorSessions, () ->
+                initStages.whenDone(INIT_CODECS, executorSessions, () ->
+                        logD(TAG, "[McMan][Init][Stages] " + initStages + ".")));
+    }
+
+    /**
+     * Get the stages of the initialization, with their times.
+     *
+     * @return
+     */
+    public StageGraph getInitStages() {
+        return initStages;
+    }
+
+    /**
+     * Check if a stage of the initialization is done, without waiting for it,
+     * for e.g. that the Millicast SDK is initialized before using it.
+     *
+     * @param stage
+     * @return True if done.
+     */
+    boolean isInitStageDone(String stage) {
+        if (initStages == null || initStages.isDone(stage)) {
+            return true;
+        }
+        logD(TAG, "[McMan][Init][" + stage + "] Not done yet.");
+        return false;
     }
 
     //**********************************************************************************************
@@ -326,8 +654,8 @@ public class MillicastManager {
      */
     public boolean setAccountId(String newValue, boolean save) {
         String logTag = "[Account][Index][Set] ";
-        if (subState != SubscriberState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState + ".");
+        if (subState.get() != SubscriberState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState.get() + ".");
             return false;
         }
         if (save) {
@@ -352,8 +680,8 @@ public class MillicastManager {
      */
     public boolean setStreamNamePub(String newValue, boolean save) {
         String logTag = "[StreamNamePub][Set] ";
-        if (pubState != PublisherState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState + ".");
+        if (pubState.get() != PublisherState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState.get() + ".");
             return false;
         }
         if (save) {
@@ -378,8 +706,8 @@ public class MillicastManager {
      */
     public boolean setStreamNameSub(String newValue, boolean save) {
         String logTag = "[StreamNameSub][Set] ";
-        if (subState != SubscriberState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState + ".");
+        if (subState.get() != SubscriberState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState.get() + ".");
             return false;
         }
         if (save) {
@@ -427,8 +755,8 @@ public class MillicastManager {
      */
     public boolean setSourceIdPub(String newValue, boolean save) {
         String logTag = "[Source][Id][Pub][Set] ";
-        if (pubState != PublisherState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState + ".");
+        if (pubState.get() != PublisherState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState.get() + ".");
             return false;
         }
         if (save) {
@@ -459,8 +787,8 @@ public class MillicastManager {
      */
     public boolean setSourceIdPubEnabled(boolean newValue, boolean save) {
         String logTag = "[Src][Id][Pub][Enabled][Set] ";
-        if (pubState != PublisherState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState + ".");
+        if (pubState.get() != PublisherState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState.get() + ".");
             return false;
         }
         if (save) {
@@ -485,8 +813,8 @@ public class MillicastManager {
      */
     public boolean setTokenPub(String newValue, boolean save) {
         String logTag = "[Token][Pub][Set] ";
-        if (pubState != PublisherState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState + ".");
+        if (pubState.get() != PublisherState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState.get() + ".");
             return false;
         }
         if (save) {
@@ -511,8 +839,8 @@ public class MillicastManager {
      */
     public boolean setTokenSub(String newValue, boolean save) {
         String logTag = "[Token][Sub][Set] ";
-        if (subState != SubscriberState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState + ".");
+        if (subState.get() != SubscriberState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState.get() + ".");
             return false;
         }
         if (save) {
@@ -537,8 +865,8 @@ public class MillicastManager {
      */
     public boolean setUrlPub(String newValue, boolean save) {
         String logTag = "[Url][Pub][Set] ";
-        if (pubState != PublisherState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState + ".");
+        if (pubState.get() != PublisherState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when pubState is " + pubState.get() + ".");
             return false;
         }
         if (save) {
@@ -563,8 +891,8 @@ public class MillicastManager {
      */
     public boolean setUrlSub(String newValue, boolean save) {
         String logTag = "[Url][Sub][Set] ";
-        if (subState != SubscriberState.DISCONNECTED) {
-            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState + ".");
+        if (subState.get() != SubscriberState.DISCONNECTED) {
+            logD(TAG, logTag + "Failed! Cannot set when subState is " + subState.get() + ".");
             return false;
         }
         if (save) {
@@ -589,8 +917,8 @@ public class MillicastManager {
      */
     public boolean setRicohTheta(boolean newValue, boolean save) {
         String logTag = "[RicohTheta][Set] ";
-        if (capState != CaptureState.NOT_CAPTURED) {
-            logD(TAG, logTag + "Failed! Cannot set when capState is " + capState + ".");
+        if (capState.get() != CaptureState.NOT_CAPTURED) {
+            logD(TAG, logTag + "Failed! Cannot set when capState is " + capState.get() + ".");
             return false;
         }
         if (save) {
@@ -601,33 +929,87 @@ public class MillicastManager {
     }
 
     public CaptureState getCapState() {
-        Log.d(TAG, "getCapState: " + capState);
-        return capState;
+        return capState.get();
     }
 
-    public void setCapState(CaptureState capState) {
-        this.capState = capState;
-        Log.d(TAG, "setCapState: " + capState);
+    /**
+     * Set the capture state, if the transition from the current state is allowed.
+     *
+     * @param capState
+     * @return True if the state is now the given one, false if the transition was rejected.
+     */
+    public boolean setCapState(CaptureState capState) {
+        return this.capState.moveTo(capState);
+    }
+
+    /**
+     * Set the capture state only if it is currently the expected one,
+     * for e.g. for only one of several concurrent requests to proceed.
+     *
+     * @param expected
+     * @param capState
+     * @return True if changed, false otherwise.
+     */
+    public boolean compareAndSetCapState(CaptureState expected, CaptureState capState) {
+        return this.capState.compareAndSet(expected, capState);
     }
 
     public PublisherState getPubState() {
-        Log.d(TAG, "getPubState: " + pubState);
-        return pubState;
+        return pubState.get();
     }
 
-    public void setPubState(PublisherState pubState) {
-        this.pubState = pubState;
-        Log.d(TAG, "setPubState: " + pubState);
+    /**
+     * Set the publishing state, if the transition from the current state is allowed.
+     *
+     * @param pubState
+     * @return True if the state is now the given one, false if the transition was rejected.
+     */
+    public boolean setPubState(PublisherState pubState) {
+        if (!this.pubState.moveTo(pubState)) {
+            return false;
+        }
+        if (pubState == PublisherState.PUBLISHING) {
+            reconnectorPub.onRecovered();
+        }
+        return true;
     }
 
     public SubscriberState getSubState() {
-        Log.d(TAG, "getSubState: " + subState);
-        return subState;
+        return subState.get();
     }
 
-    public void setSubState(SubscriberState subState) {
-        this.subState = subState;
-        Log.d(TAG, "setSubState: " + subState);
+    /**
+     * Set the subscribing state, if the transition from the current state is allowed.
+     *
+     * @param subState
+     * @return True if the state is now the given one, false if the transition was rejected.
+     */
+    public boolean setSubState(SubscriberState subState) {
+        if (!this.subState.moveTo(subState)) {
+            return false;
+        }
+        if (subState == SubscriberState.SUBSCRIBING) {
+            reconnectorSub.onRecovered();
+        }
+        return true;
+    }
+
+    /**
+     * Get the state machines of the capture, publishing and subscribing states,
+     * for e.g. to add a {@link StateMachine.Listener} of their transitions.
+     *
+     * @return
+     */
+    public StateMachine<CaptureState> getCapStateMachine() {
+        return capState;
+    }
+
+    public StateMachine<PublisherState> getPubStateMachine() {
+        return pubState;
+    }
+
+    public StateMachine<SubscriberState> getSubStateMachine() {
+        return subState;
     }
 
     //**********************************************************************************************
@@ -639,17 +1021,51 @@ public class MillicastManager {
      * Media indices will be read from stored values if present, else from default values.
      * Affected views (i.e., Publish and Media Settings) will be reloaded if possible after media sources are obtained.
      * This can be useful when the lists changed, for e.g. when an NDI source is added or removed.
-     * If an action is required after the source list is refreshed, provide it as a Runnable.
+     * Sources are answered from the device catalogs while they are valid,
+     * and only enumerated again once a device is plugged in or out, or the video catalog is too old.
+     *
+     * @return True if able to proceed to refresh media sources, false otherwise.
+     */
+    public boolean refreshMediaSourceLists() {
+        return refreshMediaSourceLists(false);
+    }
+
+    /**
+     * Refresh the currently available lists of audio and video sources,
+     * as in {@link #refreshMediaSourceLists()}.
+     *
+     * @param enumerate If true, the device catalogs are invalidated first, so that the sources are
+     *                  enumerated again, for e.g. when the user explicitly asks for a refresh.
+     * @return True if able to proceed to refresh media sources, false otherwise.
+     */
+    public boolean refreshMediaSourceLists(boolean enumerate) {
+        // The lists are first refreshed by the INIT_SOURCES stage, once the Media is ready.
+        if (!isInitStageDone(INIT_MEDIA)) {
+            logD(TAG, "[Source][List][Refresh] Failed! Media is not ready yet.");
+            return false;
+        }
+        return refreshMediaSourceLists(enumerate, null);
+    }
+
+    /**
+     * Refresh the currently available lists of audio and video sources,
+     * as in {@link #refreshMediaSourceLists(boolean)}.
      *
+     * @param enumerate
+     * @param onDone    Run once both lists are refreshed, if able to proceed. Null if not needed.
      * @return True if able to proceed to refresh media sources, false otherwise.
      */
-    public synchronized boolean refreshMediaSourceLists() {
+    private boolean refreshMediaSourceLists(boolean enumerate, Runnable onDone) {
         String logTag = "[Source][List][Refresh] ";
-        if (CaptureState.NOT_CAPTURED != capState) {
-            logD(TAG, logTag + "Failed! CapState is " + capState + ".");
+        if (!capState.compareAndSet(CaptureState.NOT_CAPTURED, CaptureState.REFRESH_SOURCE)) {
+            logD(TAG, logTag + "Failed! CapState is " + capState.get() + ".");
             return false;
         }
-        setCapState(CaptureState.REFRESH_SOURCE);
+        if (enumerate) {
+            audioCatalog.invalidate();
+            videoCatalog.invalidate();
+        }
+        refreshPending.set(2);
 
         Runnable callbackReloadView = new Runnable() {
             @Override
@@ -658,8 +1074,8 @@ public class MillicastManager {
                 loadViewSetMedia();
             }
         };
-        refreshAudioSourceList(callbackReloadView);
-        refreshVideoSourceList(callbackReloadView);
+        refreshAudioSourceList(callbackReloadView, onDone);
+        refreshVideoSourceList(callbackReloadView, onDone);
         logD(TAG, logTag + "OK. Refreshing...");
         return true;
     }
@@ -806,6 +1222,29 @@ public class MillicastManager {
         return capabilityIndex;
     }
 
+    /**
+     * Set the capability index chosen by the user, as in {@link #setCapabilityIndex},
+     * and remember this capability for the active videoSource, by its device id,
+     * so that it is picked again whenever this videoSource is selected.
+     *
+     * @param newValue The new value to be set.
+     */
+    public void selectCapabilityIndex(int newValue) {
+        String logTag = "[Capability][Index][Select] ";
+        VideoSource vs = getVideoSource(true);
+        if (vs != null && capabilityList != null && newValue >= 0 &&
+                newValue < capabilityList.size()) {
+            VideoCapabilities cap = capabilityList.get(newValue);
+            String deviceId = getDeviceId(vs);
+            capabilityRanker.setChoice(deviceId, cap.width, cap.height, cap.fps / 1000);
+            String choice = cap.width + "x" + cap.height + "@" + cap.fps / 1000;
+            Utils.saveValue(capabilityChoiceKey + deviceId,
+                    Utils.getSaved(capabilityChoiceKey + deviceId, "", context), choice, logTag, context);
+            logD(TAG, logTag + "Remembered " + choice + " for " + deviceId + ".");
+        }
+        setCapabilityIndex(newValue);
+    }
+
     /**
      * Set the selected capability index to the specified value and save to device memory.
      * A new capability will be set using this value.
@@ -929,6 +1368,10 @@ public class MillicastManager {
             return error;
         }
 
+        if (isVideoCaptured()) {
+            switchTimer.start(System.nanoTime());
+        }
+
         // Set new videoSource
         logD(TAG, logTag + "Setting videoSource index to:"
                 + newValue + " and updating Capability for new VideoSource.");
@@ -938,6 +1381,41 @@ public class MillicastManager {
         return null;
     }
 
+    /**
+     * Get the latencies of camera switches while capturing.
+     *
+     * @return
+     */
+    public SwitchTimer getSwitchTimer() {
+        return switchTimer;
+    }
+
+    /**
+     * Record that the camera is done switching, as reported by the {@link SwitchHdl}.
+     *
+     * @param success
+     */
+    void onCameraSwitched(boolean success) {
+        long ms = switchTimer.onSwitched(System.nanoTime(), success);
+        logD(TAG, "[Source][Video][Switch][Done] " + (success ? "OK" : "Failed!") +
+                " in " + ms + " ms.");
+    }
+
+    /**
+     * Record the first frame of a camera, as reported by the {@link VideoSourceEvtHdl}.
+     *
+     * @return The latency from the camera switch request to this frame in ms,
+     * or -1 if this frame is not from a camera switch.
+     */
+    long onVideoFirstFrame() {
+        long ms = switchTimer.onFirstFrame(System.nanoTime());
+        if (ms >= 0) {
+            logD(TAG, "[Source][Video][Switch][Frame] First frame " + ms + " ms after switch. " +
+                    switchTimer + ".");
+        }
+        return ms;
+    }
+
     /**
      * Stop capturing with current capability and capture using the next available capability.
      * If not currently capturing, this will set the capability to be used when capturing starts.
@@ -958,7 +1436,7 @@ public class MillicastManager {
 
         logD(TAG, "[Capability][Switch] Setting capability index to:"
                 + newValue + ".");
-        setCapabilityIndex(newValue);
+        selectCapabilityIndex(newValue);
 
         logD(TAG, "[Capability][Switch] OK. VideoSource: " +
                 getVideoSourceName() +
@@ -992,16 +1470,15 @@ public class MillicastManager {
      *
      * @return True if able to proceed to start audio video capture, false otherwise.
      */
-    public synchronized boolean startAudioVideoCapture() {
+    public boolean startAudioVideoCapture() {
         String logTag = "[Capture][Audio][Video][Start] ";
 
-        if (CaptureState.NOT_CAPTURED != capState) {
-            logD(TAG, logTag + "Failed! CapState is " + capState + ".");
+        if (!capState.compareAndSet(CaptureState.NOT_CAPTURED, CaptureState.TRY_CAPTURE)) {
+            logD(TAG, logTag + "Failed! CapState is " + capState.get() + ".");
             return false;
         }
 
         logD(TAG, logTag + "Starting Capture...");
-        setCapState(CaptureState.TRY_CAPTURE);
 
         startCaptureVideo();
         startCaptureAudio();
@@ -1084,7 +1561,12 @@ public class MillicastManager {
 
     public ArrayList<AudioPlayback> getAudioPlaybackList() {
         if (audioPlaybackList == null) {
-            audioPlaybackList = getMedia().getAudioPlayback();
+            Media media = getMedia();
+            if (media == null) {
+                Log.d(TAG, "[getAudioPlaybackList] Media is not ready yet. Using empty list.");
+                return new ArrayList<>();
+            }
+            audioPlaybackList = media.getAudioPlayback();
         }
         String log = "[getAudioPlaybackList] AudioPlaybackList is: " + audioPlaybackList;
         Log.d(TAG, log);
@@ -1142,7 +1624,7 @@ public class MillicastManager {
         String logTag = "[Video][Render][er][Pub] ";
         // If it's not available, create it with application context.
         if (rendererPub == null) {
-            rendererPub = new VideoRenderer(context);
+            rendererPub = new StatsVideoRenderer(context, renderStatsPub);
             rendererPub.setScalingType(scalingPub);
 
             logD(TAG, logTag + "Created renderer with application context.");
@@ -1166,7 +1648,7 @@ public class MillicastManager {
         String logTag = "[Video][Render][er][Sub] ";
         // If it's not available, create it with application context.
         if (rendererSub == null) {
-            rendererSub = new VideoRenderer(context);
+            rendererSub = new StatsVideoRenderer(context, renderStatsSub);
             rendererSub.setScalingType(scalingSub);
             logD(TAG, logTag + "Created renderer with application context.");
         } else {
@@ -1175,6 +1657,18 @@ public class MillicastManager {
         return rendererSub;
     }
 
+    /**
+     * Get the frame level {@link RenderStats} of the Publisher or Subscriber renderer,
+     * for e.g. to triage stutters.
+     * The stats are reset each time the renderer is created.
+     *
+     * @param forPub
+     * @return
+     */
+    public RenderStats getRenderStats(boolean forPub) {
+        return forPub ? renderStatsPub : renderStatsSub;
+    }
+
     /**
      * Renders the subscribed video.
      * Executes on UI thread.
@@ -1469,6 +1963,64 @@ public class MillicastManager {
         logD(TAG, logTag + bitrate + "kbps.");
     }
 
+    public boolean isBitrateReconnectCeiling() {
+        return bitrateReconnectCeiling;
+    }
+
+    /**
+     * Set whether a reconnect bitrate ceiling is tracked while publishing.
+     * If so, the max bitrate set via {@link #setBitrate} becomes the highest ceiling,
+     * which is lowered on packet loss or rising RTT, and raised back as conditions improve.
+     * This is not an ABR: as the SDK only applies bitrate settings when publishing starts,
+     * the ceiling never changes the current publish. It is only applied when the Publisher
+     * publishes again after its connection was lost, so that it does not restart at a bitrate
+     * the network could not carry, and can otherwise be read with {@link #getBitrateCeiling}.
+     * The max bitrate set via {@link #setBitrate} is never changed by the ceiling.
+     * If set, Publisher stats are collected every {@link #STATS_INTERVAL_ADAPTIVE_MS}
+     * rather than {@link #STATS_INTERVAL_MS}.
+     * Off by default. Setting this affects the next publish.
+     *
+     * @param enabled
+     */
+    public void setBitrateReconnectCeiling(boolean enabled) {
+        String logTag = "[Bitrate][Ceiling][Set] ";
+        bitrateReconnectCeiling = enabled;
+        logD(TAG, logTag + "OK. Enabled:" + enabled + ".");
+    }
+
+    /**
+     * The current reconnect bitrate ceiling set by the bitrate controller, in kbps.
+     *
+     * @return
+     */
+    public int getBitrateCeiling() {
+        return bitrateController.getCeilingKbps();
+    }
+
+    public boolean isCapabilityAdaptive() {
+        return capabilityAdaptive;
+    }
+
+    /**
+     * Set whether the capture format is adapted to the uplink while publishing.
+     * If so, once the uplink estimate has ramped up after publishing starts,
+     * a lower capability is picked when the estimate sustained over
+     * {@link #CAPABILITY_UPLINK_WINDOW_MS} cannot carry the current one,
+     * and the capability is raised back as the estimate recovers.
+     * A capability above the one chosen by the user is never picked.
+     * This is off by default, so that the capability chosen is always used.
+     *
+     * @param adaptive
+     */
+    public void setCapabilityAdaptive(boolean adaptive) {
+        String logTag = "[Capability][Adaptive][Set] ";
+        capabilityAdaptive = adaptive;
+        if (!adaptive) {
+            capabilityRanker.clearUplink();
+        }
+        logD(TAG, logTag + "OK. Adaptive:" + adaptive + ".");
+    }
+
     /**
      * Get or generate (if null) the current list of Video Codec supported.
      *
@@ -1479,10 +2031,15 @@ public class MillicastManager {
         String logTag = "[Codec][List] ";
         String log;
         ArrayList<String> codecList;
+        Media media = getMedia();
+        if (media == null) {
+            logD(TAG, logTag + "Failed! Media is not ready yet. Using empty list.");
+            return new ArrayList<>();
+        }
         if (forAudio) {
             logTag = "[Audio]" + logTag;
             if (audioCodecList == null) {
-                audioCodecList = getMedia().getSupportedAudioCodecs();
+                audioCodecList = media.getSupportedAudioCodecs();
                 log = logTag + "Getting new ones.";
             } else {
                 log = logTag + "Using existing.";
@@ -1491,7 +2048,7 @@ public class MillicastManager {
         } else {
             logTag = "[Video]" + logTag;
             if (videoCodecList == null) {
-                videoCodecList = getMedia().getSupportedVideoCodecs();
+                videoCodecList = media.getSupportedVideoCodecs();
                 log = logTag + "Getting new ones.";
             } else {
                 log = logTag + "Using existing.";
@@ -1553,6 +2110,90 @@ public class MillicastManager {
         return true;
     }
 
+    /**
+     * Set the videoCodec index chosen by the user, as in {@link #setCodecIndex},
+     * and stop picking the videoCodec from the {@link #getCodecProbe codec probe}.
+     *
+     * @param newValue The new value to be set.
+     * @return true if new index set, false otherwise.
+     */
+    public boolean selectVideoCodecIndex(int newValue) {
+        if (!setCodecIndex(newValue, false)) {
+            return false;
+        }
+        setCodecAuto(false);
+        return true;
+    }
+
+    /**
+     * If true, the videoCodec is picked at start up as the cheapest codec on this device that
+     * meets the capture target ({@link #CAPABILITY_TARGET_WIDTH} x
+     * {@link #CAPABILITY_TARGET_HEIGHT} @ {@link #CAPABILITY_TARGET_FPS}).
+     *
+     * @return
+     */
+    public boolean isCodecAuto() {
+        return codecAuto;
+    }
+
+    public void setCodecAuto(boolean newValue) {
+        String logTag = "[Codec][Auto][Set] ";
+        Utils.saveValue(codecAutoKey, codecAuto, newValue, logTag, context);
+        codecAuto = newValue;
+    }
+
+    /**
+     * Set the videoCodec index picked from the codec probe, if the videoCodec is still auto,
+     * i.e. the user did not choose one while probing.
+     *
+     * @param picked The index picked, or -1 if none.
+     */
+    private void setCodecIndexAuto(int picked) {
+        String logTag = "[Codec][Auto] ";
+        if (!codecAuto || picked < 0 || picked == videoCodecIndex) {
+            logD(TAG, logTag + "Keeping index:" + videoCodecIndex + " Picked:" + picked +
+                    " Auto:" + codecAuto + ".");
+            return;
+        }
+        setCodecIndex(picked, false);
+    }
+
+    /**
+     * Get the video encoders of this device, probing them if not yet done.
+     * Probing encodes a few frames with each encoder, which takes up to a few seconds,
+     * so the results are saved and only probed again if the Build fingerprint changes,
+     * for e.g. after a system update, or if {@link MediaCodecProber#VERSION} changes.
+     * Must not be called on the main thread, nor on the audio or video threads.
+     *
+     * @param codecs The video codecs to probe, as listed by {@link #getCodecList},
+     *               which must be fetched on the audio thread by the caller.
+     * @return
+     */
+    public CodecProbe getCodecProbe(List<String> codecs) {
+        synchronized (codecProbeLock) {
+            if (codecProbe != null) {
+                return codecProbe;
+            }
+            String logTag = "[Codec][Probe] ";
+            String prefix = Build.FINGERPRINT + "#" + MediaCodecProber.VERSION + "#";
+            String saved = Utils.getSaved(codecProbeKey, "", context);
+            if (saved.startsWith(prefix)) {
+                codecProbe = CodecProbe.parse(saved.substring(prefix.length()));
+            }
+            if (codecProbe == null) {
+                long start = SystemClock.elapsedRealtime();
+                codecProbe = new MediaCodecProber().probe(codecs,
+                        CAPABILITY_TARGET_WIDTH, CAPABILITY_TARGET_HEIGHT);
+                Utils.setSaved(codecProbeKey, prefix + codecProbe.serialize(), context);
+                logD(TAG, logTag + "Probed in " + (SystemClock.elapsedRealtime() - start) +
+                        "ms: " + codecProbe + ".");
+            } else {
+                logD(TAG, logTag + "Using saved: " + codecProbe + ".");
+            }
+            return codecProbe;
+        }
+    }
+
     /**
      * Set the codec for publishing / subscribing to the next available codec.
      * This can only be done when not publishing / subscribing.
@@ -1591,8 +2232,134 @@ public class MillicastManager {
      * Connect to Millicast for publishing.
      * Publishing credentials required.
      * Credentials are specified in Constants file, but can also be modified on Settings UI.
+     * If the connection is lost before {@link #stopPub}, it will be reconnected automatically
+     * unless {@link #setReconnectEnabled disabled}.
      */
     public void connectPub() {
+        reconnectorPub.arm();
+        connectPubTry();
+    }
+
+    /**
+     * Connect to Millicast for subscribing.
+     * Subscribing credentials required.
+     * Credentials are specified in Constants file, but can also be modified on Settings UI.
+     * If the connection is lost before {@link #stopSub}, it will be reconnected automatically
+     * unless {@link #setReconnectEnabled disabled}.
+     * On reconnecting, the projected sources and selected layer will be restored if available.
+     */
+    public void connectSub() {
+        reconnectorSub.arm();
+        connectSubTry();
+    }
+
+    public boolean isReconnectEnabled() {
+        return reconnectorPub.isEnabled();
+    }
+
+    /**
+     * Set whether lost Publisher and Subscriber connections are reconnected automatically,
+     * with exponential backoff between attempts.
+     *
+     * @param enabled
+     */
+    public void setReconnectEnabled(boolean enabled) {
+        String logTag = "[Reconnect][Set] ";
+        reconnectorPub.setEnabled(enabled);
+        reconnectorSub.setEnabled(enabled);
+        logD(TAG, logTag + "OK. Enabled:" + enabled + ".");
+    }
+
+    /**
+     * Get the supervisor that reconnects the Publisher or Subscriber,
+     * for e.g. to get its time to recover metrics.
+     *
+     * @param forPub
+     * @return
+     */
+    public Reconnector getReconnector(boolean forPub) {
+        return forPub ? reconnectorPub : reconnectorSub;
+    }
+
+    /**
+     * Handle the loss of the Publisher's connection, or a failure to connect.
+     * If the connection is supervised, the lost Publisher is released
+     * and a reconnect with a new Publisher is scheduled.
+     * Losses reported by the listener of an already released Publisher are ignored.
+     * When the new Publisher connects, publishing restarts with the captured tracks.
+     */
+    public void onConnectionLostPub(PubListener listener) {
+        handlerMain.post(() -> {
+            String logTag = "[Pub][Con][Lost] ";
+            if (!isListenerPub(listener)) {
+                logD(TAG, logTag + "Ignored, as from an already released Publisher.");
+                return;
+            }
+            if (!reconnectorPub.isArmed()) {
+                logD(TAG, logTag + "Not reconnecting as the connection is not supervised.");
+                return;
+            }
+            if (publisher != null) {
+                publisher.release();
+                publisher = null;
+                logD(TAG, logTag + "Lost Publisher released.");
+            }
+            setPubState(PublisherState.DISCONNECTED);
+            loadViewPub();
+            reconnectorPub.onLost();
+        });
+    }
+
+    /**
+     * Handle the loss of the Subscriber's connection, or a failure to connect.
+     * If the connection is supervised, the lost Subscriber is released
+     * and a reconnect with a new Subscriber is scheduled.
+     * Losses reported by the listener of an already released Subscriber are ignored.
+     * The projected sources and selected layer are kept, to be restored once the
+     * sources are active again. The video renderer is kept for the new video track.
+     */
+    public void onConnectionLostSub(SubListener listener) {
+        handlerMain.post(() -> {
+            String logTag = "[Sub][Con][Lost] ";
+            if (!isListenerSub(listener)) {
+                logD(TAG, logTag + "Ignored, as from an already released Subscriber.");
+                return;
+            }
+            if (!reconnectorSub.isArmed()) {
+                logD(TAG, logTag + "Not reconnecting as the connection is not supervised.");
+                return;
+            }
+            if (subscriber != null) {
+                // Keep what to restore, unless already kept by an earlier loss.
+                if (sourceIdAudioSub != null || sourceIdVideoSub != null) {
+                    sourceIdAudioRestore = sourceIdAudioSub;
+                    sourceIdVideoRestore = sourceIdVideoSub;
+                    String layerId = getLayerActiveId();
+                    layerIdRestore = "".equals(layerId) ? null : layerId;
+                }
+                subscriber.release();
+                subscriber = null;
+                logD(TAG, logTag + "Lost Subscriber released. To restore sources A:" +
+                        sourceIdAudioRestore + " V:" + sourceIdVideoRestore +
+                        " layer:" + layerIdRestore + ".");
+            }
+            sourceMap.clear();
+            sourceIdAudioSub = null;
+            sourceIdVideoSub = null;
+            audioTrackSub = null;
+            videoTrackSub = null;
+            setSubState(SubscriberState.DISCONNECTED);
+            if (fragmentSub != null) {
+                fragmentSub.setUI();
+            }
+            reconnectorSub.onLost();
+        });
+    }
+
+    /**
+     * Connect the Publisher, for a user request or a reconnect.
+     */
+    private void connectPubTry() {
         String logTag = "[Pub][Con] ";
 
         // Create Publisher if not present
@@ -1617,15 +2384,17 @@ public class MillicastManager {
         } else {
             setPubState(PublisherState.DISCONNECTED);
             logD(TAG, logTag + "Failed! Connection requirements not fulfilled. Check inputs (e.g. credentials) and any Millicast error message.");
+            // Keep trying if reconnecting, else leave it to the user.
+            if (reconnectorPub.isReconnecting()) {
+                reconnectorPub.onLost();
+            }
         }
     }
 
     /**
-     * Connect to Millicast for subscribing.
-     * Subscribing credentials required.
-     * Credentials are specified in Constants file, but can also be modified on Settings UI.
+     * Connect the Subscriber, for a user request or a reconnect.
      */
-    public void connectSub() {
+    private void connectSubTry() {
         String logTag = "[Sub][Con] ";
 
         // Create Subscriber if not present
@@ -1652,6 +2421,10 @@ public class MillicastManager {
         } else {
             setSubState(SubscriberState.DISCONNECTED);
             logD(TAG, logTag + "Failed! Connection requirements not fulfilled. Check inputs (e.g. credentials) and any Millicast error message.");
+            // Keep trying if reconnecting, else leave it to the user.
+            if (reconnectorSub.isReconnecting()) {
+                reconnectorSub.onLost();
+            }
         }
     }
 
@@ -1671,12 +2444,12 @@ public class MillicastManager {
         }
 
         if (!publisher.isConnected()) {
-            if (pubState == PublisherState.CONNECTED) {
+            if (pubState.get() == PublisherState.CONNECTED) {
                 logD(TAG, logTag + "Client.isConnected FALSE!!! " +
-                        "Continuing as pubState is " + pubState + ".");
+                        "Continuing as pubState is " + pubState.get() + ".");
             } else {
                 logD(TAG, logTag + "Failed! Publisher not connected!" +
-                        " pubState is " + pubState + ".");
+                        " pubState is " + pubState.get() + ".");
                 return;
             }
         }
@@ -1702,8 +2475,20 @@ public class MillicastManager {
             return;
         }
 
-        // Get Publisher stats every 10 seconds.
-        int sec = 10;
+        // Start adapting the bitrate ceiling from the max bitrate set for this publish,
+        // or keep adapting it if publishing again after the connection was lost.
+        if (!reconnectorPub.isReconnecting()) {
+            BitrateSettings settings = optionPub.bitrateSettings;
+            bitrateController.reset(settings.minBitrateKbps.orElse(0),
+                    settings.maxBitrateKbps.orElse(BITRATE_MAX_DEFAULT_KBPS));
+        }
+        // The uplink estimate ramps up again on each publish.
+        capabilityRankStartMs = (long) StatsRecord.NA;
+        capabilityRanker.clearUplink();
+
+        // Get Publisher stats every STATS_INTERVAL_MS,
+        // or more often if the reconnect bitrate ceiling is tracked.
+        int sec = (bitrateReconnectCeiling ? STATS_INTERVAL_ADAPTIVE_MS : STATS_INTERVAL_MS) / 1000;
         enableStatsPub(sec * 1000);
         logD(TAG, logTag + "Stats started. Collecting every " + sec + ".");
         logD(TAG, logTag + "OK.");
@@ -1715,6 +2500,7 @@ public class MillicastManager {
      */
     public void stopPub() {
         String logTag = "[Pub][Stop] ";
+        reconnectorPub.disarm();
         if (!isPublishing()) {
             logD(TAG, logTag + "Not doing as we're not publishing!");
             return;
@@ -1782,12 +2568,12 @@ public class MillicastManager {
         }
 
         if (!subscriber.isConnected()) {
-            if (subState == SubscriberState.CONNECTED) {
+            if (subState.get() == SubscriberState.CONNECTED) {
                 logD(TAG, logTag + "Client.isConnected FALSE!!! " +
-                        "Continuing as subState is " + subState + ".");
+                        "Continuing as subState is " + subState.get() + ".");
             } else {
                 logD(TAG, logTag + "Failed! Subscriber not connected!" +
-                        " subState is " + subState + ".");
+                        " subState is " + subState.get() + ".");
                 return;
             }
         }
@@ -1808,8 +2594,9 @@ public class MillicastManager {
             return;
         }
 
-        // Get Subscriber stats every 10 seconds.
-        int sec = 10;
+        // Get Subscriber stats every STATS_INTERVAL_MS,
+        // or more often if the layer is selected by the ABR.
+        int sec = (layerAbrEnabled ? STATS_INTERVAL_ADAPTIVE_MS : STATS_INTERVAL_MS) / 1000;
         enableStatsSub(sec * 1000);
         logD(TAG, logTag + "Stats started. Collecting every " + sec + ".");
         logD(TAG, logTag + "OK.");
@@ -1821,6 +2608,11 @@ public class MillicastManager {
      */
     public void stopSub() {
         String logTag = "[Sub][Stop] ";
+        reconnectorSub.disarm();
+        sourceIdAudioRestore = null;
+        sourceIdVideoRestore = null;
+        layerIdRestore = null;
+        setLayerAbrPaused(false);
         if (!isSubscribing()) {
             logD(TAG, logTag + "Not doing as we're not subscribing!");
             return;
@@ -1845,7 +2637,7 @@ public class MillicastManager {
         subscriber = null;
         logD(TAG, logTag + "Subscriber removed.");
 
-        sourceMap = null;
+        sourceMap.clear();
         sourceIdAudioSub = null;
         sourceIdVideoSub = null;
         logD(TAG, logTag + "Subscribe sourceMap and sourceIds removed.");
@@ -1872,6 +2664,176 @@ public class MillicastManager {
         logD(TAG, logTag + "OK.");
     }
 
+    //**********************************************************************************************
+    // Publish - Destinations
+    //**********************************************************************************************
+
+    /**
+     * Add a publish destination, to publish the captured tracks to a stream in addition to
+     * the main Publisher and any other destination, for e.g. to a backup cluster.
+     * Call {@link PubDestination#start} to start publishing.
+     * Must be called on the main thread.
+     *
+     * @param streamName
+     * @param token
+     * @param apiUrl
+     * @return The destination, or null if there are already {@link #PUB_DESTINATIONS_MAX} destinations.
+     */
+    public PubDestination addPubDestination(String streamName, String token, String apiUrl) {
+        String logTag = "[Pub][Dst][Add] ";
+        if (pubDestinations.size() >= PUB_DESTINATIONS_MAX) {
+            logD(TAG, logTag + "Failed! There are already " + pubDestinations.size() +
+                    " destinations.");
+            return null;
+        }
+        PubDestination destination = new PubDestination(pubDestinationIdNext++, streamName,
+                token, apiUrl, this, handlerSessions, handlerMain);
+        pubDestinations.add(destination);
+        logD(TAG, logTag + "OK. " + destination + ".");
+        return destination;
+    }
+
+    /**
+     * Get the publish destinations, in the order added.
+     * Must be called on the main thread.
+     *
+     * @return
+     */
+    public ArrayList<PubDestination> getPubDestinations() {
+        return new ArrayList<>(pubDestinations);
+    }
+
+    /**
+     * Stop and release a publish destination.
+     * Must be called on the main thread.
+     *
+     * @param destination
+     */
+    public void removePubDestination(PubDestination destination) {
+        String logTag = "[Pub][Dst][Remove] ";
+        if (!pubDestinations.remove(destination)) {
+            logD(TAG, logTag + "Failed! The destination does not exist.");
+            return;
+        }
+        destination.release();
+        logD(TAG, logTag + "OK. " + destination + ".");
+    }
+
+    /**
+     * Restart the started publish destinations, to publish the tracks now captured,
+     * as the tracks of a Publisher cannot be changed while publishing.
+     * Called when capture starts or stops, from any thread.
+     * Restarts requested before the main thread runs are done once.
+     */
+    private void restartPubDestinations() {
+        handlerMain.post(() -> {
+            if (pubDestinationsRestartPending) {
+                return;
+            }
+            pubDestinationsRestartPending = true;
+            handlerMain.post(() -> {
+                pubDestinationsRestartPending = false;
+                for (PubDestination destination : pubDestinations) {
+                    destination.restart();
+                }
+            });
+        });
+    }
+
+    /**
+     * Get a copy of the current {@link Publisher.Option}, for a publish destination.
+     * The max bitrate copied is the one configured, not the adaptive ceiling of the main
+     * Publisher, which is estimated on the main Publisher's own connection.
+     * Must be called on the main thread.
+     *
+     * @param sourceId The sourceId to set, or null to keep that of the main Publisher.
+     * @return
+     */
+    Publisher.Option copyOptionPub(String sourceId) {
+        setCodecs();
+        Publisher.Option option = new Publisher.Option();
+        option.stereo = optionPub.stereo;
+        option.simulcast = optionPub.simulcast;
+        option.audioCodec = optionPub.audioCodec;
+        option.videoCodec = optionPub.videoCodec;
+        option.sourceId = sourceId != null ? Optional.of(sourceId) : getOptSourceIdPub(CURRENT);
+        option.bitrateSettings.startBitrateKbps = optionPub.bitrateSettings.startBitrateKbps;
+        option.bitrateSettings.minBitrateKbps = optionPub.bitrateSettings.minBitrateKbps;
+        option.bitrateSettings.maxBitrateKbps = optionPub.bitrateSettings.maxBitrateKbps;
+        option.bitrateSettings.disableBWE = optionPub.bitrateSettings.disableBWE;
+        return option;
+    }
+
+    //**********************************************************************************************
+    // Subscribe - Sessions
+    //**********************************************************************************************
+
+    /**
+     * Create a Subscriber session, to subscribe to a stream in addition to the main Subscriber
+     * and any other session, for e.g. to view several streams at once.
+     * Call {@link SubSession#start} to start subscribing.
+     * Must be called on the main thread.
+     *
+     * @param streamName
+     * @param accountId
+     * @param token      The Subscribe Token, or null if not required.
+     * @param apiUrl
+     * @return The session, or null if there are already {@link #SUB_SESSIONS_MAX} sessions.
+     */
+    public SubSession createSubSession(String streamName, String accountId, String token,
+                                       String apiUrl) {
+        String logTag = "[Sub][Ses][Create] ";
+        if (subSessions.size() >= SUB_SESSIONS_MAX) {
+            logD(TAG, logTag + "Failed! There are already " + subSessions.size() + " sessions.");
+            return null;
+        }
+        SubSession session = new SubSession(subSessionIdNext++, streamName, accountId, token,
+                apiUrl, this, handlerSessions, handlerMain);
+        subSessions.add(session);
+        logD(TAG, logTag + "OK. " + session + ".");
+        return session;
+    }
+
+    /**
+     * Get the Subscriber sessions, in the order created.
+     * Must be called on the main thread.
+     *
+     * @return
+     */
+    public ArrayList<SubSession> getSubSessions() {
+        return new ArrayList<>(subSessions);
+    }
+
+    /**
+     * Stop and release a Subscriber session.
+     * Must be called on the main thread.
+     *
+     * @param session
+     */
+    public void releaseSubSession(SubSession session) {
+        String logTag = "[Sub][Ses][Release] ";
+        if (!subSessions.remove(session)) {
+            logD(TAG, logTag + "Failed! The session does not exist.");
+            return;
+        }
+        session.release();
+        logD(TAG, logTag + "OK. " + session + ".");
+    }
+
+    /**
+     * Start the audio playback device, which is shared by all sessions,
+     * if not already started for them.
+     */
+    void startSessionAudioPlayback() {
+        handlerMain.post(() -> {
+            if (audioPlaybackSessions) {
+                return;
+            }
+            audioPlaybackStart();
+            audioPlaybackSessions = true;
+        });
+    }
+
     //**********************************************************************************************
     // Subscribe - Sources and Layers
     //**********************************************************************************************
@@ -1884,18 +2846,21 @@ public class MillicastManager {
      */
     public ArrayList<String> getSourceList() {
         String logTag = "[Source][Id][List] ";
-        ArrayList<String> list;
-        if (sourceMap == null || sourceMap.size() == 0) {
-            list = new ArrayList<>();
-            logD(TAG, logTag + "Empty list as there are no active sources.");
-            return list;
-        }
-
-        list = new ArrayList<>(sourceMap.keySet());
-        logD(TAG, logTag + getArrayStr(list, ", ", null));
+        ArrayList<String> list = new ArrayList<>(sourceMap.getIds());
+        logD(TAG, () -> logTag + getArrayStr(list, ", ", null));
         return list;
     }
 
+    /**
+     * Get the registry of the currently active sources,
+     * for e.g. for a view to apply the changes since it was last loaded.
+     *
+     * @return
+     */
+    public SourceRegistry<SourceInfo> getSourceRegistry() {
+        return sourceMap;
+    }
+
     public String getSourceIdAudioSub() {
         return sourceIdAudioSub;
     }
@@ -1919,6 +2884,7 @@ public class MillicastManager {
         } else {
             logTag += "[Audio] ";
         }
+        String logTagFinal = logTag;
 
         if (sourceId == null) {
             logD(TAG, logTag + "None. There is no projected source.");
@@ -1930,7 +2896,7 @@ public class MillicastManager {
             logD(TAG, logTag + "None. The projected source cannot be found!");
             return null;
         }
-        logD(TAG, logTag + source + ".");
+        logD(TAG, () -> logTagFinal + source + ".");
         return source;
     }
 
@@ -1950,6 +2916,7 @@ public class MillicastManager {
         } else {
             logTag += "V ";
         }
+        String logTagFinal = logTag;
         String log;
 
         if (sourceId == "") {
@@ -1958,21 +2925,14 @@ public class MillicastManager {
         }
 
         // Get MediaInfo of the source we want.
-        if (sourceMap == null) {
-            log = "Failed! sourceMap is not available.";
-            logD(TAG, logTag + log);
-            return false;
-        }
         SourceInfo sourceInfo = sourceMap.get(sourceId);
         if (sourceInfo == null) {
-            log = "Failed! sourceId is not available! " +
-                    "sourceMap: " + sourceMap + ".";
-            logD(TAG, logTag + log);
+            logD(TAG, () -> logTagFinal + "Failed! sourceId is not available! " +
+                    "sourceMap: " + sourceMap + ".");
             return false;
         }
 
-        log = "Source: " + sourceInfo + ".";
-        logD(TAG, logTag + log);
+        logD(TAG, () -> logTagFinal + "Source: " + sourceInfo + ".");
 
         // Get the mid of our track on which to receive the source.
         String mid = getMidAudio();
@@ -1984,9 +2944,8 @@ public class MillicastManager {
         ArrayList<Subscriber.ProjectionData> projectionData =
                 sourceInfo.getProjectionData(mid, isAudio);
         if (projectionData == null) {
-            log = "Failed! ProjectData is not available for sourceInfo! " +
-                    "sourceMap: " + sourceMap + ".";
-            logD(TAG, logTag + log);
+            logD(TAG, () -> logTagFinal + "Failed! ProjectData is not available for sourceInfo! " +
+                    "sourceMap: " + sourceMap + ".");
             return false;
         }
 
@@ -2028,19 +2987,25 @@ public class MillicastManager {
         String logTag = "[Source][Id][Add]:" + sourceId + " ";
         String log;
         if (sourceId == null || sourceInfo == null) {
-            log = "Failed! sourceMap: " + sourceMap + ", sourceInfo: " + sourceInfo + ".";
-            logD(TAG, logTag + log);
+            logD(TAG, () -> logTag + "Failed! sourceMap: " + sourceMap +
+                    ", sourceInfo: " + sourceInfo + ".");
             return;
         }
-        if (sourceMap == null) {
-            sourceMap = new HashMap<>();
-            log = "Created new sourceMap: " + sourceMap + ", sourceInfo: " + sourceInfo + ".";
-            logD(TAG, logTag + log);
-        }
-
         sourceMap.put(sourceId, sourceInfo);
-        log = "OK. Added source (" + sourceInfo + ") to our list of active sources: " + sourceMap + ".";
-        logD(TAG, logTag + log);
+        logD(TAG, () -> logTag + "OK. Added source (" + sourceInfo +
+                ") to our list of active sources: " + sourceMap + ".");
+
+        // Restore the projections from before a reconnect.
+        if (sourceId.equals(sourceIdAudioRestore) && sourceInfo.hasAudio()) {
+            sourceIdAudioRestore = null;
+            logD(TAG, logTag + "Restoring audio projection...");
+            projectSource(sourceId, true);
+        }
+        if (sourceId.equals(sourceIdVideoRestore) && sourceInfo.hasVideo()) {
+            sourceIdVideoRestore = null;
+            logD(TAG, logTag + "Restoring video projection...");
+            projectSource(sourceId, false);
+        }
     }
 
     /**
@@ -2055,15 +3020,14 @@ public class MillicastManager {
     public SourceInfo removeSource(String sourceId) {
         String logTag = "[Source][Id][Remove]:" + sourceId + " ";
         String log;
-        if (sourceId == null || sourceMap == null) {
-            log = "Failed! sourceMap: " + sourceMap + ".";
-            logD(TAG, logTag + log);
+        if (sourceId == null) {
+            logD(TAG, () -> logTag + "Failed! sourceMap: " + sourceMap + ".");
             return null;
         }
         SourceInfo sourceInfo = sourceMap.remove(sourceId);
         if (sourceInfo == null) {
-            log = "Failed! sourceId is not available! sourceMap: " + sourceMap + ".";
-            logD(TAG, logTag + log);
+            logD(TAG, () -> logTag + "Failed! sourceId is not available! sourceMap: " +
+                    sourceMap + ".");
             return null;
         }
 
@@ -2075,7 +3039,7 @@ public class MillicastManager {
                 log += " No remaining audio source to project.";
                 logD(TAG, logTag + log);
             } else {
-                newSid = (String) (sourceMap.keySet().toArray())[0];
+                newSid = sourceMap.getFirstId();
                 log += " Trying to project another audio source: " + newSid + "...";
                 logD(TAG, logTag + log);
                 projectSource(newSid, true);
@@ -2091,32 +3055,50 @@ public class MillicastManager {
                 // Reload layer view.
                 loadViewSubLayer();
             } else {
-                newSid = (String) (sourceMap.keySet().toArray())[0];
+                newSid = sourceMap.getFirstId();
                 log += " Trying to project another video source: " + newSid + "...";
                 logD(TAG, logTag + log);
                 projectSource(newSid, false);
             }
         }
 
-        log = "OK. Source (" + sourceInfo + ") removed from our list of active sources: " + sourceMap + ".";
-        logD(TAG, logTag + log);
+        logD(TAG, () -> logTag + "OK. Source (" + sourceInfo +
+                ") removed from our list of active sources: " + sourceMap + ".");
         return sourceInfo;
     }
 
     /**
      * Load the Source UI in the view when the list of active sources change.
+     * The view is loaded in the next frame, together with any other loads requested until then.
      *
      * @param isAudio Set to null if both audio and video sources are to be loaded.
      * @param changed True if the source List has changed, false otherwise.
      */
     public void loadViewSource(Boolean isAudio, boolean changed) {
+        int flags = changed ? UiDispatcher.SOURCE_CHANGED : 0;
+        if (isAudio == null || isAudio) {
+            flags |= UiDispatcher.VIEW_SOURCE_AUDIO;
+        }
+        if (isAudio == null || !isAudio) {
+            flags |= UiDispatcher.VIEW_SOURCE_VIDEO;
+        }
+        uiDispatcher.markDirty(flags);
+    }
+
+    /**
+     * Load the Source UI in the view now.
+     * Must be called on the main thread.
+     *
+     * @param isAudio Set to null if both audio and video sources are to be loaded.
+     * @param changed True if the source List has changed, false otherwise.
+     */
+    private void loadViewSourceNow(Boolean isAudio, boolean changed) {
         String logTag = "[View][Source][Load] ";
         if (fragmentSub == null) {
             logD(TAG, logTag + "Failed! The SubscribeFragment does not exist.");
             return;
         }
 
-        ArrayList<String> spinnerList = getSourceList();
         Utils.GetSelectedIndex lambdaAudio = new Utils.GetSelectedIndex() {
             public int getSelectedIndex(ArrayList list) {
                 String selection = MillicastManager.this.getSourceIdAudioSub();
@@ -2130,28 +3112,18 @@ public class MillicastManager {
             public int getSelectedIndex(ArrayList list) {
                 String selection = MillicastManager.this.getSourceIdVideoSub();
                 if (list == null || selection == null) {
-                    return -1;
-                }
-                return list.indexOf(selection);
-            }
-        };
-
-        getMainActivity().runOnUiThread(() -> {
-            if (fragmentSub == null) {
-                return;
-            }
-            if (isAudio == null) {
-                fragmentSub.loadSourceSpinner(spinnerList, lambdaAudio, true, changed);
-                fragmentSub.loadSourceSpinner(spinnerList, lambdaVideo, false, changed);
-                return;
+                    return -1;
+                }
+                return list.indexOf(selection);
             }
-            if (isAudio) {
-                fragmentSub.loadSourceSpinner(spinnerList, lambdaAudio, isAudio, changed);
-            } else {
-                fragmentSub.loadSourceSpinner(spinnerList, lambdaVideo, isAudio, changed);
+        };
 
-            }
-        });
+        if (isAudio == null || isAudio) {
+            fragmentSub.loadSourceSpinner(sourceMap, lambdaAudio, true, changed);
+        }
+        if (isAudio == null || !isAudio) {
+            fragmentSub.loadSourceSpinner(sourceMap, lambdaVideo, false, changed);
+        }
         logD(TAG, logTag + "OK.");
     }
 
@@ -2171,6 +3143,19 @@ public class MillicastManager {
         }
         if (source.setLayerActiveList(layerActiveList)) {
             logD(TAG, logTag + "OK.");
+            // Restart the ABR with the new layers.
+            String[] layerIds = source.getLayerIdsByQuality();
+            synchronized (layerAbr) {
+                layerAbr.reset(layerIds.length);
+                layerAbrIds = layerIds;
+            }
+            // Restore the selected layer from before a reconnect.
+            String layerId = layerIdRestore;
+            if (layerId != null && source.getLayerActiveIdList().contains(layerId)) {
+                layerIdRestore = null;
+                logD(TAG, logTag + "Restoring layer:" + layerId + "...");
+                handlerMain.post(() -> selectLayer(layerId, false));
+            }
             // Reset the Layers UI in the view.
             loadViewSubLayer();
             return true;
@@ -2246,11 +3231,24 @@ public class MillicastManager {
     /**
      * Select a layer of the current video source based on its {@link SourceInfo#layerActiveId}.
      * Will not perform selection if the layer has already been selected.
+     * Selecting a specific layer pauses the {@link LayerAbr}, selecting "" resumes it.
      *
      * @param layerId
      * @return True if the Layer of the layerId was (or already) selected, false otherwise.
      */
     public boolean selectLayer(String layerId) {
+        return selectLayer(layerId, true);
+    }
+
+    /**
+     * Select the layer of the projected video source.
+     *
+     * @param layerId
+     * @param byUser  If true, the {@link LayerAbr} is paused for a specific layer,
+     *                and resumed for the automatic layer ("").
+     * @return True if the Layer of the layerId was (or already) selected, false otherwise.
+     */
+    private boolean selectLayer(String layerId, boolean byUser) {
         String logTag = "[Layer][Select]:" + layerId + " ";
         String log;
 
@@ -2288,6 +3286,9 @@ public class MillicastManager {
             } else {
                 logD(TAG, logTag + "Error! Failed to set new layer active layerId!");
             }
+            if (byUser) {
+                setLayerAbrPaused(!layerId.isEmpty());
+            }
             return true;
         } else {
             logD(TAG, logTag + "Failed! Could not select layer!");
@@ -2295,40 +3296,128 @@ public class MillicastManager {
         }
     }
 
+    public boolean isLayerAbrEnabled() {
+        return layerAbrEnabled;
+    }
+
+    /**
+     * Set whether the layer of the projected video source is selected automatically by the
+     * client side {@link LayerAbr}, based on the Subscriber's stats.
+     * While enabled, the ABR is paused when a specific layer is selected via {@link #selectLayer},
+     * and resumed when the automatic layer ("") is selected.
+     * At the highest level, the ABR selects the layer automatically selected by Millicast ("").
+     * Setting this affects the stats interval from the next subscribe.
+     *
+     * @param enabled
+     */
+    public void setLayerAbrEnabled(boolean enabled) {
+        String logTag = "[Layer][Abr][Set] ";
+        layerAbrEnabled = enabled;
+        logD(TAG, logTag + "OK. Enabled:" + enabled + ".");
+    }
+
+    /**
+     * Pause or resume the {@link LayerAbr}.
+     * On resuming, the ABR restarts from the highest level, the automatic layer ("").
+     *
+     * @param paused
+     */
+    private void setLayerAbrPaused(boolean paused) {
+        String logTag = "[Layer][Abr][Pause] ";
+        if (layerAbrPaused == paused) {
+            return;
+        }
+        if (!paused) {
+            synchronized (layerAbr) {
+                layerAbr.reset(layerAbrIds.length);
+            }
+        }
+        layerAbrPaused = paused;
+        logD(TAG, logTag + "OK. Paused:" + paused + ".");
+    }
+
     /**
      * Load the UI on the main thread in the Publish view if the view exists.
+     * The view is loaded in the next frame, together with any other loads requested until then.
      */
     public void loadViewPub() {
-        handlerMain.post(() -> {
-            String logTag = "[View][Load][Pub] ";
-            if (fragmentPub == null) {
-                logD(TAG, logTag + "Failed! The PublishFragment does not exist.");
-                return;
-            }
-            fragmentPub.setUI();
-            logD(TAG, logTag + "OK.");
-        });
+        uiDispatcher.markDirty(UiDispatcher.VIEW_PUB);
     }
 
     /**
      * Load the UI on the main thread in the SettingsMediaFragment view if the view exists.
+     * The view is loaded in the next frame, together with any other loads requested until then.
      */
     public void loadViewSetMedia() {
-        handlerMain.post(() -> {
-            String logTag = "[View][Load][SetMedia] ";
-            if (fragmentSetMedia == null) {
-                logD(TAG, logTag + "Failed! The SettingsMediaFragment does not exist.");
-                return;
-            }
-            fragmentSetMedia.setUI();
-            logD(TAG, logTag + "OK.");
-        });
+        uiDispatcher.markDirty(UiDispatcher.VIEW_SET_MEDIA);
+    }
+
+    /**
+     * Load the UI on the main thread in the Subscribe view if the view exists.
+     * The view is loaded in the next frame, together with any other loads requested until then.
+     */
+    public void loadViewSub() {
+        uiDispatcher.markDirty(UiDispatcher.VIEW_SUB);
     }
 
     /**
      * Load the Layer UI in the Subscribe view when the list of active remote sources change.
+     * The view is loaded in the next frame, together with any other loads requested until then.
      */
     public void loadViewSubLayer() {
+        uiDispatcher.markDirty(UiDispatcher.VIEW_SUB_LAYER);
+    }
+
+    public UiDispatcher getUiDispatcher() {
+        return uiDispatcher;
+    }
+
+    /**
+     * Load the views marked as dirty in the {@link UiDispatcher}, once per frame.
+     * Runs on the main thread.
+     *
+     * @param flags
+     */
+    private void updateUi(int flags) {
+        String logTag = "[View][Load] ";
+        if ((flags & UiDispatcher.VIEW_PUB) != 0) {
+            if (fragmentPub != null) {
+                fragmentPub.setUI();
+            } else {
+                logD(TAG, logTag + "[Pub] Failed! The PublishFragment does not exist.");
+            }
+        }
+        if ((flags & UiDispatcher.VIEW_SET_MEDIA) != 0) {
+            if (fragmentSetMedia != null) {
+                fragmentSetMedia.setUI();
+            } else {
+                logD(TAG, logTag + "[SetMedia] Failed! The SettingsMediaFragment does not exist.");
+            }
+        }
+        if ((flags & UiDispatcher.VIEW_SUB) != 0 && fragmentSub != null) {
+            fragmentSub.setUI();
+        }
+        boolean audio = (flags & UiDispatcher.VIEW_SOURCE_AUDIO) != 0;
+        boolean video = (flags & UiDispatcher.VIEW_SOURCE_VIDEO) != 0;
+        if (audio || video) {
+            loadViewSourceNow(audio == video ? null : audio,
+                    (flags & UiDispatcher.SOURCE_CHANGED) != 0);
+        }
+        if ((flags & UiDispatcher.VIEW_SUB_LAYER) != 0) {
+            loadViewSubLayerNow();
+        }
+        if ((flags & UiDispatcher.VIEW_SUB_LATENCY) != 0 && fragmentSub != null) {
+            fragmentSub.setLatencyUI(playoutLatency);
+        }
+        logD(TAG, () -> logTag + "OK. Flags:" + Integer.toBinaryString(flags) +
+                " " + uiDispatcher + ".");
+    }
+
+    /**
+     * Load the Layer UI in the Subscribe view now.
+     * Must be called on the main thread.
+     */
+    private void loadViewSubLayerNow() {
         String logTag = "[View][Load][Sub][Layer] ";
         if (fragmentSub == null) {
             logD(TAG, logTag + "Failed! The SubscribeFragment does not exist.");
@@ -2344,11 +3433,7 @@ public class MillicastManager {
                 return list.indexOf(selection);
             }
         };
-        getMainActivity().runOnUiThread(() -> {
-            if (fragmentSub != null) {
-                fragmentSub.loadLayerSpinner(layerList, lambda);
-            }
-        });
+        fragmentSub.loadLayerSpinner(layerList, lambda);
         logD(TAG, logTag + "OK.");
     }
 
@@ -2500,6 +3585,9 @@ public class MillicastManager {
         if (publisher != null) {
             String logTag = "[Pub][Stats][Enable] ";
             if (enable > 0) {
+                statsParserPub.reset();
+                statsHistoryPubAudio.clear();
+                statsHistoryPubVideo.clear();
                 publisher.getStats(enable);
                 logD(TAG, logTag + "YES. Interval: " + enable + "ms.");
             } else {
@@ -2520,6 +3608,11 @@ public class MillicastManager {
         if (subscriber != null) {
             String logTag = "[Sub][Stats][Enable] ";
             if (enable > 0) {
+                statsParserSub.reset();
+                statsHistorySubAudio.clear();
+                statsHistorySubVideo.clear();
+                playoutLatency.reset();
+                layerAbrSample.reset();
                 subscriber.getStats(enable);
                 logD(TAG, logTag + "YES. Interval: " + enable + "ms.");
             } else {
@@ -2529,6 +3622,94 @@ public class MillicastManager {
         }
     }
 
+    /**
+     * Parse a WebRTC stats report of the Publisher or Subscriber into a {@link StatsRecord},
+     * add it to the {@link #getStatsHistory stats history},
+     * and pass it to the {@link #addStatsListener added listeners}.
+     * The report is logged as a String only if {@link #setStatsLogEnabled enabled}.
+     *
+     * @param report
+     * @param forPub True for the Publisher's report, false for the Subscriber's.
+     */
+    public void processStats(RTCStatsReport report, boolean forPub) {
+        if (statsLogEnabled) {
+            String logTag = (forPub ? "[Pub]" : "[Sub]") + "[Stats][Report] ";
+            logD(TAG, report.toString(), logTag);
+        }
+        StatsParser parser = forPub ? statsParserPub : statsParserSub;
+        StatsRecord record = parser.parse(report);
+        getStatsHistory(forPub, true).add(record, record.audio);
+        getStatsHistory(forPub, false).add(record, record.video);
+        if (forPub) {
+            adaptBitrate(record);
+            rankCapability(record);
+        } else {
+            adaptLayer(record);
+            if (playoutLatency.onStats(record)) {
+                uiDispatcher.markDirty(UiDispatcher.VIEW_SUB_LATENCY);
+            }
+        }
+        for (StatsParser.Listener listener : statsListeners) {
+            listener.onStats(record);
+        }
+    }
+
+    /**
+     * Get the rolling {@link StatsHistory} of the stats of a Publisher or Subscriber track.
+     * The history is cleared each time stats are enabled.
+     *
+     * @param forPub   True for the Publisher's track, false for the Subscriber's.
+     * @param forAudio True for the audio track, false for the video track.
+     * @return
+     */
+    public StatsHistory getStatsHistory(boolean forPub, boolean forAudio) {
+        if (forPub) {
+            return forAudio ? statsHistoryPubAudio : statsHistoryPubVideo;
+        }
+        return forAudio ? statsHistorySubAudio : statsHistorySubVideo;
+    }
+
+    /**
+     * Get the rolling {@link PlayoutLatency} of the subscribed video,
+     * for e.g. to {@link PlayoutLatency#export export} it.
+     * The latency is cleared each time Subscriber stats are enabled.
+     *
+     * @return
+     */
+    public PlayoutLatency getPlayoutLatency() {
+        return playoutLatency;
+    }
+
+    /**
+     * Add a listener to receive the {@link StatsRecord} of each Publisher and Subscriber stats report.
+     * The listener is called on the thread that delivered the report.
+     *
+     * @param listener
+     */
+    public void addStatsListener(StatsParser.Listener listener) {
+        statsListeners.addIfAbsent(listener);
+    }
+
+    public void removeStatsListener(StatsParser.Listener listener) {
+        statsListeners.remove(listener);
+    }
+
+    public boolean isStatsLogEnabled() {
+        return statsLogEnabled;
+    }
+
+    /**
+     * Set whether each WebRTC stats report is also logged as a String.
+     * This is disabled by default as converting a whole report into a String is costly.
+     *
+     * @param enabled
+     */
+    public void setStatsLogEnabled(boolean enabled) {
+        String logTag = "[Stats][Log][Set] ";
+        statsLogEnabled = enabled;
+        logD(TAG, logTag + "OK. Enabled:" + enabled + ".");
+    }
+
     /**
      * For Ricoh Theta cameras only.
      * Set the camera status to locked (so that SA can use it),
@@ -2581,6 +3762,16 @@ public class MillicastManager {
         return switchHdl;
     }
 
+    /**
+     * Get the applier of the Ricoh Theta camera params, which records the time taken
+     * to the first configured frame of the latest capture.
+     *
+     * @return
+     */
+    public ParamApplier getParamApplierRicoh() {
+        return paramApplierRicoh;
+    }
+
     public boolean setCameraParams(String shootMode) {
         boolean result = true;
         try {
@@ -2626,6 +3817,8 @@ public class MillicastManager {
 
     public void release() {
         String logTag = TAG + "[Release]";
+        reconnectorPub.disarm();
+        reconnectorSub.disarm();
         media = null;
         Log.d(logTag, "Media removed.");
 
@@ -2649,7 +3842,7 @@ public class MillicastManager {
             audioTrackSub = null;
             audioEnabledSub = false;
             videoEnabledSub = false;
-            sourceMap = null;
+            sourceMap.clear();
             Log.d(logTag, "Subscriber Video and Audio tracks released.");
         }
 
@@ -2666,11 +3859,23 @@ public class MillicastManager {
 
         videoSourceList = null;
         Log.d(logTag, "VideoSources removed.");
+        if (receiverHotPlug != null) {
+            context.unregisterReceiver(receiverHotPlug);
+            receiverHotPlug = null;
+        }
+        Log.d(logTag, "Device catalogs " + audioCatalog + ", " + videoCatalog + ".");
 
+        releasePubDestinations();
+        releaseSubSessions();
         threadAudio.quitSafely();
         threadVideo.quitSafely();
+        threadSessions.quitSafely();
+        threadProbe.quitSafely();
         Log.d(logTag, "Threads Loopers quitted.");
 
+        // Write out any unsaved settings and queued logs before the app goes away.
+        Utils.flushSaved();
+        LogWriter.getSingleInstance().flush();
         Log.d(logTag, "All released.");
     }
 
@@ -2694,13 +3899,79 @@ public class MillicastManager {
     // Query/Select videoSource, capability.
     //**********************************************************************************************
 
-    private Media getMedia() {
+    /**
+     * Get the SDK Media, creating it if needed.
+     *
+     * @return The Media, or null if the SDK is not initialized yet.
+     */
+    private synchronized Media getMedia() {
         if (media == null) {
+            if (!isInitStageDone(INIT_SDK)) {
+                return null;
+            }
             media = Media.getInstance(context);
         }
         return media;
     }
 
+    /**
+     * Create the catalogs of audio and video devices,
+     * and invalidate them whenever a USB device (for e.g. a UVC camera or USB microphone)
+     * is plugged in or out, refreshing the media source lists if possible.
+     */
+    private void createDeviceCatalogs() {
+        String logTag = "[Source][Catalog][Create] ";
+        audioCatalog = new DeviceCatalog<>(new DeviceCatalog.Loader<AudioSource, Void>() {
+            @Override
+            public List<AudioSource> loadDevices() {
+                return getMedia().getAudioSources();
+            }
+
+            @Override
+            public String getId(AudioSource device) {
+                return device.getId();
+            }
+
+            @Override
+            public List<Void> loadCapabilities(AudioSource device) {
+                return null;
+            }
+        }, 0);
+        videoCatalog = new DeviceCatalog<>(new DeviceCatalog.Loader<VideoSource, VideoCapabilities>() {
+            @Override
+            public List<VideoSource> loadDevices() {
+                return getMedia().getVideoSources();
+            }
+
+            @Override
+            public String getId(VideoSource device) {
+                return getDeviceId(device);
+            }
+
+            @Override
+            public List<VideoCapabilities> loadCapabilities(VideoSource device) {
+                return device.getCapabilities();
+            }
+        }, DEVICE_CATALOG_MAX_AGE_MS);
+
+        receiverHotPlug = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String logTag = "[Source][Catalog][HotPlug] ";
+                audioCatalog.invalidate();
+                videoCatalog.invalidate();
+                logD(TAG, logTag + intent.getAction() + ", catalogs invalidated.");
+                // If capturing, the sources will be enumerated again on the next refresh.
+                refreshMediaSourceLists();
+            }
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(UsbManager.ACTION_USB_DEVICE_ATTACHED);
+        filter.addAction(UsbManager.ACTION_USB_DEVICE_DETACHED);
+        context.registerReceiver(receiverHotPlug, filter);
+        logD(TAG, logTag + "OK.");
+    }
+
     /**
      * Refresh the current list of AudioSources available in a background thread.
      * If none is available, return an empty ArrayList.
@@ -2709,18 +3980,20 @@ public class MillicastManager {
      *
      * @param callback Runnable for action required after source list is refreshed.
      *                 Null if none is required.
+     * @param onDone   Runnable for action required after both source lists are refreshed.
+     *                 Null if none is required.
      * @return
      */
-    private void refreshAudioSourceList(Runnable callback) {
+    private void refreshAudioSourceList(Runnable callback, Runnable onDone) {
         Runnable task = new Runnable() {
             @Override
             public void run() {
-                CaptureState.refreshAudio = true;
                 String logTag = "[Source][List][Refresh][Audio] ";
 
                 logD(TAG, logTag + "Getting new audioSources.");
-                // Get new audioSources.
-                audioSourceList = getMedia().getAudioSources();
+                // Get audioSources, enumerated again only if the catalog is no longer valid.
+                audioSourceList = audioCatalog.getDevices(SystemClock.elapsedRealtime());
+                logD(TAG, logTag + "Catalog " + audioCatalog + ".");
 
                 // Print out list of audioSources.
                 logD(TAG, logTag + "Checking for audioSources...");
@@ -2749,13 +4022,15 @@ public class MillicastManager {
                 logD(TAG, "Running provided callback...");
                 callback.run();
 
-                // Reset CapState if possible.
-                CaptureState.refreshAudio = false;
-                if (CaptureState.refreshVideo) {
+                // Reset CapState if the other refresh is also done.
+                if (refreshPending.decrementAndGet() > 0) {
                     logD(TAG, logTag + "Unable to reset CapState as video sources are still being refreshed.");
                 } else {
-                    setCapState(CaptureState.NOT_CAPTURED);
+                    capState.compareAndSet(CaptureState.REFRESH_SOURCE, CaptureState.NOT_CAPTURED);
                     logD(TAG, logTag + "CapState reset to NOT_CAPTURED.");
+                    if (onDone != null) {
+                        onDone.run();
+                    }
                 }
                 logD(TAG, "OK.");
             }
@@ -2839,18 +4114,20 @@ public class MillicastManager {
      *
      * @param callback Runnable for action required after source list is refreshed.
      *                 Null if none is required.
+     * @param onDone   Runnable for action required after both source lists are refreshed.
+     *                 Null if none is required.
      * @return
      */
-    private void refreshVideoSourceList(Runnable callback) {
+    private void refreshVideoSourceList(Runnable callback, Runnable onDone) {
         Runnable task = new Runnable() {
             @Override
             public void run() {
-                CaptureState.refreshVideo = true;
                 String logTag = "[Source][List][Refresh][Video] ";
 
                 logD(TAG, logTag + "Getting new videoSources.");
-                // Get new videoSources.
-                videoSourceList = getMedia().getVideoSources();
+                // Get videoSources, enumerated again only if the catalog is no longer valid.
+                videoSourceList = videoCatalog.getDevices(SystemClock.elapsedRealtime());
+                logD(TAG, logTag + "Catalog " + videoCatalog + ".");
 
                 // Print out list of videoSources.
                 logD(TAG, logTag + "Checking for videoSources...");
@@ -2866,9 +4143,9 @@ public class MillicastManager {
 
                     // Set currently selected source.
                     logD(TAG, logTag + "Setting currently selected source and capability.");
+                    // The capability is picked for the videoSource by the capabilityRanker.
                     setVideoSourceIndex(
-                            Utils.getSaved(videoSourceIndexKey, videoSourceIndexDefault, context), false);
-                    setCapabilityIndex(Utils.getSaved(capabilityIndexKey, capabilityIndexDefault, context));
+                            Utils.getSaved(videoSourceIndexKey, videoSourceIndexDefault, context), true);
                 }
 
                 // Run callback, if any.
@@ -2879,13 +4156,15 @@ public class MillicastManager {
                 logD(TAG, "Running provided callback...");
                 callback.run();
 
-                // Reset CapState if possible.
-                CaptureState.refreshVideo = false;
-                if (CaptureState.refreshAudio) {
+                // Reset CapState if the other refresh is also done.
+                if (refreshPending.decrementAndGet() > 0) {
                     logD(TAG, logTag + "Unable to reset CapState as Audio sources are still being refreshed.");
                 } else {
-                    setCapState(CaptureState.NOT_CAPTURED);
+                    capState.compareAndSet(CaptureState.REFRESH_SOURCE, CaptureState.NOT_CAPTURED);
                     logD(TAG, logTag + "CapState reset to NOT_CAPTURED.");
+                    if (onDone != null) {
+                        onDone.run();
+                    }
                 }
                 logD(TAG, "OK.");
             }
@@ -3027,7 +4306,8 @@ public class MillicastManager {
             return;
         }
 
-        capabilityList = vs.getCapabilities();
+        // Get the capabilities from the catalog, loaded when the videoSources were enumerated.
+        capabilityList = videoCatalog.getCapabilities(vs);
         logD(TAG, log);
 
         int size = 0;
@@ -3048,6 +4328,91 @@ public class MillicastManager {
             log += "[" + index + "]:" + getCapabilityStr(cap) + " ";
         }
         logD(TAG, log + ".");
+
+        // Pick the capability for this videoSource, rather than keeping the index of the last one.
+        capabilityIndex = pickCapabilityIndex(vs, capabilityList);
+        logD(TAG, logTag + "Picked index:" + capabilityIndex + " " + capabilityRanker + ".");
+    }
+
+    /**
+     * Get the id of a videoSource, which stays the same across enumerations.
+     *
+     * @param vs
+     * @return
+     */
+    private String getDeviceId(VideoSource vs) {
+        return vs.getType() + "/" + vs.getId();
+    }
+
+    /**
+     * Pick the best capability of a videoSource with the {@link #capabilityRanker},
+     * using the capability remembered for it, if any.
+     *
+     * @param vs
+     * @param caps
+     * @return The index, or 0 if there is no capability.
+     */
+    private int pickCapabilityIndex(VideoSource vs, ArrayList<VideoCapabilities> caps) {
+        String deviceId = getDeviceId(vs);
+        if (!capabilityRanker.hasChoice(deviceId)) {
+            // Load the remembered choice, for e.g. "1280x720@30".
+            String choice = Utils.getSaved(capabilityChoiceKey + deviceId, "", context);
+            int x = choice.indexOf('x');
+            int at = choice.indexOf('@');
+            if (x > 0 && at > x) {
+                try {
+                    capabilityRanker.setChoice(deviceId, Integer.parseInt(choice.substring(0, x)),
+                            Integer.parseInt(choice.substring(x + 1, at)),
+                            Integer.parseInt(choice.substring(at + 1)));
+                } catch (NumberFormatException e) {
+                    logD(TAG, "[Capability][Choice] Ignoring invalid choice: " + choice + ".");
+                }
+            }
+        }
+        return Math.max(0, capabilityRanker.pick(deviceId, caps, CAPABILITY_SPEC));
+    }
+
+    /**
+     * If {@link #capabilityAdaptive}, update the uplink estimate of the {@link #capabilityRanker}
+     * with the median available outgoing bitrate over {@link #CAPABILITY_UPLINK_WINDOW_MS},
+     * once {@link #CAPABILITY_RAMP_MS} have passed since the first stats of the publish,
+     * and if it moved enough, pick the capability again and change to it if capturing.
+     *
+     * @param record
+     */
+    private void rankCapability(StatsRecord record) {
+        if (!capabilityAdaptive || pubState.get() != PublisherState.PUBLISHING ||
+                record.timestampUs == StatsRecord.NA) {
+            return;
+        }
+        long nowMs = (long) (record.timestampUs / 1000);
+        if (capabilityRankStartMs == StatsRecord.NA) {
+            capabilityRankStartMs = nowMs;
+        }
+        if (nowMs - capabilityRankStartMs < CAPABILITY_RAMP_MS) {
+            return;
+        }
+        double uplink = statsHistoryPubVideo.getPercentile(StatsHistory.Metric.AVAILABLE_BITRATE,
+                CAPABILITY_UPLINK_WINDOW_MS, 50);
+        if (uplink == StatsRecord.NA || !capabilityRanker.setUplinkKbps((int) (uplink / 1000))) {
+            return;
+        }
+        // Capture formats are changed on the video thread, as for switching videoSources.
+        handlerVideo.post(() -> {
+            String logTag = "[Capability][Rank][Network] ";
+            VideoSource vs = getVideoSource(true);
+            if (vs == null || capabilityList == null || capabilityList.isEmpty()) {
+                return;
+            }
+            int index = pickCapabilityIndex(vs, capabilityList);
+            if (index == capabilityIndex) {
+                logD(TAG, logTag + "Keeping index:" + index + " " + capabilityRanker + ".");
+                return;
+            }
+            logD(TAG, logTag + "Index:" + capabilityIndex + " -> " + index + " " +
+                    capabilityRanker + ".");
+            setCapabilityIndex(index);
+        });
     }
 
     /**
@@ -3270,6 +4635,9 @@ public class MillicastManager {
             return;
         }
         if (audioSource == null) {
+            if (videoSource == null || audioOnly) {
+                capState.compareAndSet(CaptureState.TRY_CAPTURE, CaptureState.NOT_CAPTURED);
+            }
             logD(TAG, logTag + "Failed! Source does not exists.");
             return;
         }
@@ -3277,11 +4645,12 @@ public class MillicastManager {
         // Capture AudioTrack for publishing.
         AudioTrack track = (AudioTrack) audioSource.startCapture();
         renderAudioPub(track);
+        restartPubDestinations();
 
         // Set capState if video is not captured.
         if (videoSource == null || audioOnly) {
             setCapState(CaptureState.IS_CAPTURED);
-            logD(TAG, logTag + "Set CapState to " + capState + " as video is not captured.");
+            logD(TAG, logTag + "Set CapState to " + capState.get() + " as video is not captured.");
         }
         logD(TAG, logTag + "OK");
     }
@@ -3305,11 +4674,12 @@ public class MillicastManager {
             audioTrackPub = null;
             logD(TAG, logTag + "Track removed.");
         }
+        restartPubDestinations();
 
         // Set capState if video is not captured.
         if (videoSource == null || audioOnly) {
             setCapState(CaptureState.NOT_CAPTURED);
-            logD(TAG, logTag + "Set CapState to " + capState + " as video is not captured.");
+            logD(TAG, logTag + "Set CapState to " + capState.get() + " as video is not captured.");
         }
         logD(TAG, logTag + "OK");
     }
@@ -3349,12 +4719,12 @@ public class MillicastManager {
 
         if (isVideoCaptured()) {
             String log = logTag + "Source is already capturing!";
-            logD(TAG, log + " NOT continuing as capState is " + capState + ".");
+            logD(TAG, log + " NOT continuing as capState is " + capState.get() + ".");
             return;
         }
 
         if (videoSource == null) {
-            setCapState(CaptureState.NOT_CAPTURED);
+            // The CapState is set by the audio capture, which then captures on its own.
             logD(TAG, logTag + "Failed as unable to get valid videoSource!");
             return;
         }
@@ -3373,12 +4743,13 @@ public class MillicastManager {
 
         if (videoSource.getType() == NDI) {
             setCapState(CaptureState.IS_CAPTURED);
-            logD(TAG, logTag + "Set CapState to " + capState + " as video is NDI.");
+            logD(TAG, logTag + "Set CapState to " + capState.get() + " as video is NDI.");
         } else {
             mirrorFrontCamera();
         }
 
         setRenderVideoTrackPub(videoTrack);
+        restartPubDestinations();
         logD(TAG, logTag + "OK");
     }
 
@@ -3395,6 +4766,7 @@ public class MillicastManager {
         removeVideoSource();
         logD(TAG, logTag + "Video captured stopped.");
         if (rendererPub != null) {
+            logD(TAG, logTag + "Render stats: " + renderStatsPub + ".");
             rendererPub.release();
             rendererPub = null;
         }
@@ -3402,8 +4774,9 @@ public class MillicastManager {
         Log.d(TAG, logTag + "Publisher renderer removed.");
         setVideoEnabledPub(false);
         videoTrackPub = null;
+        restartPubDestinations();
         setCapState(CaptureState.NOT_CAPTURED);
-        logD(TAG, logTag + "Set CapState to " + capState + ".");
+        logD(TAG, logTag + "Set CapState to " + capState.get() + ".");
         logD(TAG, logTag + "OK");
     }
 
@@ -3482,7 +4855,7 @@ public class MillicastManager {
             log += " non-NDI";
         }
         log += " videoSource.isCapturing: " + videoSource.isCapturing() +
-                ". capState is " + capState + ".";
+                ". capState is " + capState.get() + ".";
         logD(TAG, log);
         return result;
     }
@@ -3553,7 +4926,8 @@ public class MillicastManager {
         String logTag = "[Playback][Audio][Start] ";
         if (audioPlayback == null) {
             logD(TAG, logTag + "Creating new audioPlayback...");
-            audioPlayback = getAudioPlaybackList().get(audioPlaybackIndex);
+            // Enumerated only now, on first use.
+            setAudioPlayback();
             if (audioPlayback == null) {
                 logD(TAG, logTag + "Failed! Unable to create audioPlayback.");
             }
@@ -3617,6 +4991,7 @@ public class MillicastManager {
             logD(TAG, "[setRenderSubVideoTrack] videoTrack is null, so not rendering it...");
             return;
         }
+        videoTrack.addSink(latencySink);
         enableNdiOutput(isNdiOutputEnabled(false), false, null);
 
         setVideoEnabledSub(true);
@@ -3636,6 +5011,27 @@ public class MillicastManager {
         logD(TAG, "[renderSubVideo] Set renderer in video track.");
     }
 
+    /**
+     * Release all publish destinations.
+     */
+    private void releasePubDestinations() {
+        for (PubDestination destination : pubDestinations) {
+            destination.release();
+        }
+        pubDestinations.clear();
+    }
+
+    /**
+     * Release all Subscriber sessions.
+     */
+    private void releaseSubSessions() {
+        for (SubSession session : subSessions) {
+            session.release();
+        }
+        subSessions.clear();
+        audioPlaybackSessions = false;
+    }
+
     /**
      * Stop rendering, release and remove subscribe audio and video objects and reset their states to default values.
      */
@@ -3654,12 +5050,16 @@ public class MillicastManager {
         enableNdiOutput(false, false, null);
         setVideoEnabledSub(false);
         if (rendererSub != null) {
+            logD(TAG, logTag + "Render stats: " + renderStatsSub + ".");
             rendererSub.release();
             rendererSub = null;
             logD(TAG, logTag + "Renderer removed.");
         } else {
             logD(TAG, logTag + "Not removing renderer as it did not exist.");
         }
+        if (videoTrackSub != null) {
+            videoTrackSub.removeSink(latencySink);
+        }
         videoTrackSub = null;
         logD(TAG, logTag + "Video removed.");
         logD(TAG, logTag + "OK.");
@@ -3904,21 +5304,26 @@ public class MillicastManager {
     //**********************************************************************************************
 
     /**
-     * Get the Publisher's listener.
-     * If none exist, create and return a new one.
+     * Create a new listener for a new Publisher, replacing that of any previous Publisher,
+     * so that events of a released Publisher can be told apart and ignored.
      */
-    private PubListener getListenerPub() {
+    private PubListener createListenerPub() {
         String logTag = "[Pub][Ltn] ";
-        if (listenerPub == null) {
-            logD(TAG, logTag + "PubListener does not exist...");
-            listenerPub = new PubListener();
-            logD(TAG, logTag + "Created a new PubListener.");
-        } else {
-            logD(TAG, logTag + "Returning existing one.");
-        }
+        listenerPub = new PubListener();
+        logD(TAG, logTag + "Created a new PubListener.");
         return listenerPub;
     }
 
+    /**
+     * Check if the listener is that of the current Publisher.
+     *
+     * @param listener
+     * @return False if the listener's Publisher has since been released or replaced.
+     */
+    public boolean isListenerPub(PubListener listener) {
+        return listener != null && listener == listenerPub;
+    }
+
     /**
      * Get the Publisher.
      * If none exist, create and return a new one.
@@ -3932,7 +5337,11 @@ public class MillicastManager {
         }
 
         logD(TAG, "[getPublisher] Trying to create one...");
-        publisher = Publisher.createPublisher(getListenerPub());
+        if (!isInitStageDone(INIT_SDK)) {
+            logD(TAG, "[getPublisher] Failed! SDK is not initialized yet.");
+            return null;
+        }
+        publisher = Publisher.createPublisher(createListenerPub());
 
         logD(TAG, "[getPublisher] Created and returning a new Publisher.");
         return publisher;
@@ -3972,10 +5381,19 @@ public class MillicastManager {
 
         setBitrate(300, MCTypes.Bitrate.START);
         setBitrate(0, MCTypes.Bitrate.MIN);
-        setBitrate(2500, MCTypes.Bitrate.MAX);
+        setBitrate(BITRATE_MAX_DEFAULT_KBPS, MCTypes.Bitrate.MAX);
         logD(TAG, logTag + "Preferred bitrates set in Option.");
 
-        publisher.setOptions(optionPub);
+        Publisher.Option option = optionPub;
+        if (bitrateReconnectCeiling && reconnectorPub.isReconnecting()) {
+            // Publish again at the ceiling reached before the connection was lost,
+            // without changing the max bitrate set.
+            option = copyOptionPub(null);
+            option.bitrateSettings.maxBitrateKbps = Optional.of(bitrateController.getCeilingKbps());
+            logD(TAG, logTag + "Max bitrate set to the adaptive ceiling of " +
+                    bitrateController.getCeilingKbps() + "kbps.");
+        }
+        publisher.setOptions(option);
         logD(TAG, logTag + "Options set in Publisher.");
 
         // Publish to Millicast
@@ -4004,6 +5422,76 @@ public class MillicastManager {
         return success;
     }
 
+    /**
+     * Update the reconnect bitrate ceiling with the Publisher's latest stats.
+     * The new ceiling is only applied when publishing again after the connection was lost,
+     * as the SDK does not apply bitrate settings to the current publish.
+     *
+     * @param record
+     */
+    private void adaptBitrate(StatsRecord record) {
+        if (!bitrateReconnectCeiling || pubState.get() != PublisherState.PUBLISHING) {
+            return;
+        }
+        StatsRecord.Rtp rtp = record.video.present ? record.video : record.audio;
+        double rtt = rtp.rttMs != StatsRecord.NA ? rtp.rttMs : record.rttMs;
+        int ceilingPrev = bitrateController.getCeilingKbps();
+        int ceiling = bitrateController.update((long) (record.timestampUs / 1000), rtt,
+                rtp.fractionLost, record.availableOutgoingBitrate);
+        if (ceiling == ceilingPrev) {
+            return;
+        }
+
+        String logTag = "[Bitrate][Ceiling][" + bitrateController.getAction() + "] ";
+        logD(TAG, logTag + "OK. Ceiling: " + ceilingPrev + " -> " + ceiling +
+                "kbps. RTT:" + rtt + "ms lost:" + rtp.fractionLost +
+                " available:" + record.availableOutgoingBitrate + "bps.");
+    }
+
+    /**
+     * Update the {@link LayerAbr} with the Subscriber's latest stats
+     * and select any new layer for the projected video source.
+     *
+     * @param record
+     */
+    private void adaptLayer(StatsRecord record) {
+        if (!layerAbrSample.set(record.video, record.availableIncomingBitrate)) {
+            return;
+        }
+        if (!layerAbrEnabled || layerAbrPaused ||
+                subState.get() != SubscriberState.SUBSCRIBING) {
+            return;
+        }
+        String layerId;
+        int levelPrev;
+        int level;
+        synchronized (layerAbr) {
+            String[] layerIds = layerAbrIds;
+            if (layerIds.length < 2) {
+                return;
+            }
+            levelPrev = layerAbr.getLevel();
+            level = layerAbr.update((long) (record.timestampUs / 1000), layerAbrSample);
+            if (level == levelPrev) {
+                return;
+            }
+            // At the highest level, let Millicast select the layer.
+            layerId = level == layerIds.length - 1 ? "" : layerIds[level];
+        }
+
+        String logTag = "[Layer][Abr]:" + levelPrev + "->" + level + " ";
+        logD(TAG, logTag + "Selecting layer:" + layerId + ". JitterBuffer:" +
+                layerAbrSample.jitterBufferMs + "ms drop:" + layerAbrSample.dropRatio +
+                " decode:" + layerAbrSample.decodeMs + "ms frozen:" + layerAbrSample.frozen +
+                " bitrate:" + layerAbrSample.bitrateBps + "bps bandwidth:" +
+                layerAbrSample.bandwidthBps + "bps.");
+        handlerMain.post(() -> {
+            if (selectLayer(layerId, false)) {
+                loadViewSubLayer();
+            }
+        });
+    }
+
     /**
      * Check if we are currently publishing.
      */
@@ -4022,21 +5510,26 @@ public class MillicastManager {
     //**********************************************************************************************
 
     /**
-     * Get the Subscriber's listener.
-     * If none exist, create and return a new one.
+     * Create a new listener for a new Subscriber, replacing that of any previous Subscriber,
+     * so that events of a released Subscriber can be told apart and ignored.
      */
-    private SubListener getListenerSub() {
+    private SubListener createListenerSub() {
         String logTag = "[Sub][Ltn] ";
-        if (listenerSub == null) {
-            logD(TAG, logTag + "SubListener does not exist...");
-            listenerSub = new SubListener();
-            logD(TAG, logTag + "Created a new SubListener.");
-        } else {
-            logD(TAG, logTag + "Returning existing one.");
-        }
+        listenerSub = new SubListener();
+        logD(TAG, logTag + "Created a new SubListener.");
         return listenerSub;
     }
 
+    /**
+     * Check if the listener is that of the current Subscriber.
+     *
+     * @param listener
+     * @return False if the listener's Subscriber has since been released or replaced.
+     */
+    public boolean isListenerSub(SubListener listener) {
+        return listener != null && listener == listenerSub;
+    }
+
     /**
      * Get the Subscriber.
      * If none exist, create and return a new one.
@@ -4050,7 +5543,11 @@ public class MillicastManager {
         }
 
         logD(TAG, "[getSubscriber] Trying to create one...");
-        subscriber = Subscriber.createSubscriber(getListenerSub());
+        if (!isInitStageDone(INIT_SDK)) {
+            logD(TAG, "[getSubscriber] Failed! SDK is not initialized yet.");
+            return null;
+        }
+        subscriber = Subscriber.createSubscriber(createListenerSub());
         logD(TAG, "[getSubscriber] Created and returning a new Subscriber.");
         return subscriber;
     }
@@ -4159,4 +5656,19 @@ public class MillicastManager {
         return name;
     }
 
+    /**
+     * Logs the transitions of a state machine, and any rejected transitions.
+     */
+    private static class StateLogger<S extends Enum<S>> implements StateMachine.Listener<S> {
+        @Override
+        public void onTransition(StateMachine<S> machine, S from, S to) {
+            logD(TAG, () -> "[State][" + machine.getName() + "] " + from + " -> " + to + ".");
+        }
+
+        @Override
+        public void onRejected(StateMachine<S> machine, S from, S to) {
+            logD(TAG, "[State][" + machine.getName() + "] Rejected! " + from + " -> " + to +
+                    ". Rejected so far: " + machine.getRejectedCount() + ".");
+        }
+    }
 }
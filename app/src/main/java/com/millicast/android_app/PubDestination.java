@@ -0,0 +1,407 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.Utils.logD;
+
+import android.os.Handler;
+
+import com.millicast.android_app.MCStates.PublisherState;
+import com.millicast.AudioTrack;
+import com.millicast.Publisher;
+import com.millicast.VideoTrack;
+
+import org.webrtc.RTCStatsReport;
+
+/**
+ * A publish destination, that publishes the captured audio and video tracks to one stream,
+ * in addition to the main Publisher and any other destination,
+ * for e.g. to publish to a primary and a backup cluster at once.
+ * Each destination has its own SDK Publisher, listener, stats and reconnection,
+ * so that the failure of one destination does not affect the others.
+ * Destinations share the capture of the {@link MillicastManager}: the same tracks are added to
+ * every Publisher, so the camera and microphone are only captured once.
+ * As the SDK encodes per Publisher, each destination encodes the tracks on its own.
+ * As the tracks of a Publisher cannot be changed while publishing, a started destination is
+ * {@link #restart restarted} whenever capture starts or stops, to publish the tracks captured.
+ * Destinations are created and released via {@link MillicastManager#addPubDestination} and
+ * {@link MillicastManager#removePubDestination}.
+ */
+public class PubDestination {
+    public static final String TAG = "PubDestination";
+
+    /**
+     * Receives the changes of a destination, on the main thread, for e.g. to update its view.
+     */
+    public interface Listener {
+        void onStateChanged(PubDestination destination, PublisherState state);
+    }
+
+    private final int id;
+    private final String streamName;
+    private final String token;
+    private final String apiUrl;
+    private final String logTag;
+
+    private final MillicastManager mcMan;
+    // Handler shared by all destinations, on which the state of each destination is changed.
+    private final Handler handler;
+    private final Handler handlerMain;
+    private final Reconnector reconnector;
+    private volatile Listener listener = null;
+
+    private Publisher publisher = null;
+    // Incremented for each Publisher created, to ignore events of released ones.
+    private int publisherGeneration = 0;
+    // Options copied from the main Publisher's when started.
+    private Publisher.Option option = null;
+    private volatile PublisherState state = PublisherState.DISCONNECTED;
+    private int statsInterval = 0;
+    private final StatsParser statsParser = new StatsParser(true);
+    private final StatsHistory statsHistoryAudio =
+            new StatsHistory(MillicastManager.STATS_HISTORY_SIZE);
+    private final StatsHistory statsHistoryVideo =
+            new StatsHistory(MillicastManager.STATS_HISTORY_SIZE);
+
+    PubDestination(int id, String streamName, String token, String apiUrl,
+                   MillicastManager mcMan, Handler handler, Handler handlerMain) {
+        this.id = id;
+        this.streamName = streamName;
+        this.token = token;
+        this.apiUrl = apiUrl;
+        this.mcMan = mcMan;
+        this.handler = handler;
+        this.handlerMain = handlerMain;
+        logTag = "[Pub][Dst:" + id + "]";
+        reconnector = new Reconnector(logTag, handler, this::connectTry);
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    public int getId() {
+        return id;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    public PublisherState getState() {
+        return state;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Reconnector getReconnector() {
+        return reconnector;
+    }
+
+    /**
+     * Connect and publish the captured tracks to the stream.
+     * The connection is supervised and reconnected if lost, until {@link #stop} is called.
+     * Must be called on the main thread, after capture has started.
+     *
+     * @param sourceId The sourceId to publish with, or null to use that of the main Publisher.
+     */
+    public void start(String sourceId) {
+        Publisher.Option option = mcMan.copyOptionPub(sourceId);
+        handler.post(() -> {
+            this.option = option;
+            reconnector.arm();
+            connectTry();
+        });
+    }
+
+    /**
+     * Stop publishing and disconnect.
+     */
+    public void stop() {
+        handler.post(() -> {
+            String logTag = this.logTag + "[Stop] ";
+            reconnector.disarm();
+            releasePublisher();
+            setState(PublisherState.DISCONNECTED);
+            logD(TAG, logTag + "OK.");
+        });
+    }
+
+    /**
+     * Enable or disable the WebRTC stats of this destination.
+     * The interval is kept across reconnects.
+     *
+     * @param interval The interval in ms between stats reports.
+     *                 Set to 0 to disable stats.
+     */
+    public void enableStats(int interval) {
+        handler.post(() -> {
+            statsInterval = interval;
+            if (interval > 0) {
+                statsParser.reset();
+                statsHistoryAudio.clear();
+                statsHistoryVideo.clear();
+            }
+            if (publisher != null && publisher.isConnected()) {
+                publisher.getStats(interval);
+            }
+        });
+    }
+
+    /**
+     * Get the latest {@link StatsRecord} of this destination.
+     *
+     * @return
+     */
+    public StatsRecord getStatsRecord() {
+        return statsParser.getRecord();
+    }
+
+    /**
+     * Get the rolling {@link StatsHistory} of the stats of a track of this destination.
+     *
+     * @param forAudio True for the audio track, false for the video track.
+     * @return
+     */
+    public StatsHistory getStatsHistory(boolean forAudio) {
+        return forAudio ? statsHistoryAudio : statsHistoryVideo;
+    }
+
+    @Override
+    public String toString() {
+        return "Destination:" + id + " Stream:" + streamName + " State:" + state;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    /**
+     * If started, publish again with the tracks now captured,
+     * or wait for capture to start if no track is captured.
+     */
+    void restart() {
+        handler.post(() -> {
+            String logTag = this.logTag + "[Restart] ";
+            if (!reconnector.isArmed()) {
+                logD(TAG, logTag + "Not restarting as not started.");
+                return;
+            }
+            releasePublisher();
+            setState(PublisherState.DISCONNECTED);
+            if (mcMan.getAudioTrackPub() == null && mcMan.getVideoTrackPub() == null) {
+                logD(TAG, logTag + "Waiting for capture to start.");
+                return;
+            }
+            connectTry();
+            logD(TAG, logTag + "OK.");
+        });
+    }
+
+    /**
+     * Release all resources of this destination.
+     */
+    void release() {
+        handler.post(() -> {
+            reconnector.disarm();
+            releasePublisher();
+            setState(PublisherState.DISCONNECTED);
+        });
+        listener = null;
+    }
+
+    /**
+     * Connect, for the user request or a reconnect.
+     * Runs on the destination handler.
+     */
+    private void connectTry() {
+        String logTag = this.logTag + "[Con] ";
+        if (publisher == null) {
+            if (!mcMan.isInitStageDone(MillicastManager.INIT_SDK)) {
+                setState(PublisherState.DISCONNECTED);
+                logD(TAG, logTag + "Failed! SDK is not initialized yet.");
+                return;
+            }
+            publisher = Publisher.createPublisher(new DestinationListener(++publisherGeneration));
+        }
+        if (publisher.isConnected()) {
+            logD(TAG, logTag + "Not doing as we're already connected!");
+            return;
+        }
+        Publisher.Credential creds = publisher.getCredentials();
+        creds.streamName = streamName;
+        creds.token = token;
+        creds.apiUrl = apiUrl;
+        publisher.setCredentials(creds);
+
+        setState(PublisherState.CONNECTING);
+        boolean success = false;
+        try {
+            success = publisher.connect();
+        } catch (Exception e) {
+            logD(TAG, logTag + "Error: " + e.getLocalizedMessage());
+        }
+        if (success) {
+            logD(TAG, logTag + "OK. Connecting to Millicast.");
+        } else {
+            setState(PublisherState.DISCONNECTED);
+            logD(TAG, logTag + "Failed!");
+            if (reconnector.isReconnecting()) {
+                reconnector.onLost();
+            }
+        }
+    }
+
+    /**
+     * Add the captured tracks to the Publisher and publish them.
+     * Runs on the destination handler.
+     */
+    private void publish() {
+        String logTag = this.logTag + "[Start] ";
+        if (publisher == null) {
+            return;
+        }
+        AudioTrack audioTrack = mcMan.getAudioTrackPub();
+        VideoTrack videoTrack = mcMan.getVideoTrackPub();
+        if (audioTrack == null && videoTrack == null) {
+            logD(TAG, logTag + "Failed! No track is captured.");
+            return;
+        }
+        if (audioTrack != null) {
+            publisher.addTrack(audioTrack);
+        }
+        if (videoTrack != null) {
+            publisher.addTrack(videoTrack);
+        }
+        if (option != null) {
+            publisher.setOptions(option);
+        }
+        if (publisher.publish()) {
+            logD(TAG, logTag + "OK. Starting publish to Millicast.");
+        } else {
+            logD(TAG, logTag + "Failed!");
+        }
+    }
+
+    /**
+     * Handle the loss of the connection.
+     */
+    private void onLost() {
+        String logTag = this.logTag + "[Con][Lost] ";
+        if (!reconnector.isArmed()) {
+            logD(TAG, logTag + "Not reconnecting as the connection is not supervised.");
+            return;
+        }
+        releasePublisher();
+        setState(PublisherState.DISCONNECTED);
+        reconnector.onLost();
+    }
+
+    private void releasePublisher() {
+        if (publisher != null) {
+            publisher.release();
+            publisher = null;
+        }
+    }
+
+    private void setState(PublisherState state) {
+        this.state = state;
+        if (state == PublisherState.PUBLISHING) {
+            reconnector.onRecovered();
+        }
+        handlerMain.post(() -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onStateChanged(this, state);
+            }
+        });
+    }
+
+    /**
+     * Listener of one SDK Publisher of this destination,
+     * that handles each event on the destination handler while that Publisher is current.
+     */
+    private class DestinationListener implements Publisher.Listener {
+
+        private final int generation;
+
+        DestinationListener(int generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Run the event on the destination handler,
+         * unless its Publisher has since been released or replaced.
+         */
+        private void post(Runnable event) {
+            handler.post(() -> {
+                if (publisher == null || generation != publisherGeneration) {
+                    logD(TAG, logTag + "[Stale] Ignoring event of a released Publisher.");
+                    return;
+                }
+                event.run();
+            });
+        }
+
+        @Override
+        public void onPublishing() {
+            post(() -> setState(PublisherState.PUBLISHING));
+        }
+
+        @Override
+        public void onPublishingError(String s) {
+            logD(TAG, logTag + "[Error] Publish Error:" + s);
+        }
+
+        @Override
+        public void onConnected() {
+            post(() -> {
+                setState(PublisherState.CONNECTED);
+                if (publisher != null && statsInterval > 0) {
+                    publisher.getStats(statsInterval);
+                }
+                publish();
+            });
+        }
+
+        @Override
+        public void onDisconnected() {
+            post(PubDestination.this::onLost);
+        }
+
+        @Override
+        public void onConnectionError(int status, String reason) {
+            logD(TAG, logTag + "[Con][Error] " + status + " " + reason);
+            post(PubDestination.this::onLost);
+        }
+
+        @Override
+        public void onSignalingError(String s) {
+            logD(TAG, logTag + "[Sig][Error] " + s);
+        }
+
+        @Override
+        public void onStatsReport(RTCStatsReport statsReport) {
+            post(() -> {
+                StatsRecord record = statsParser.parse(statsReport);
+                statsHistoryAudio.add(record, record.audio);
+                statsHistoryVideo.add(record, record.video);
+            });
+        }
+
+        @Override
+        public void onViewerCount(int count) {
+            logD(TAG, () -> logTag + "[Viewers] " + count);
+        }
+
+        @Override
+        public void onActive() {
+            // Not used by destinations.
+        }
+
+        @Override
+        public void onInactive() {
+            // Not used by destinations.
+        }
+    }
+}
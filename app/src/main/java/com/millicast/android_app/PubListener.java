@@ -26,6 +26,9 @@ public class PubListener implements Publisher.Listener {
 
     @Override
     public void onPublishing() {
+        if (isStale()) {
+            return;
+        }
         mcMan.setPubState(PUBLISHING);
         setUI();
         String logTag = logTagClass + "[On] ";
@@ -40,6 +43,9 @@ public class PubListener implements Publisher.Listener {
 
     @Override
     public void onConnected() {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][On] ";
         mcMan.setPubState(CONNECTED);
         setUI();
@@ -49,16 +55,24 @@ public class PubListener implements Publisher.Listener {
 
     @Override
     public void onDisconnected() {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][On][X] ";
         makeSnackbar(logTag, "Disconnected", mcMan.getFragmentPub());
+        mcMan.onConnectionLostPub(this);
     }
 
     @Override
     public void onConnectionError(int status, String reason) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][Error] ";
         mcMan.setPubState(DISCONNECTED);
         setUI();
         makeSnackbar(logTag, "Connection FAILED! " + reason, mcMan.getFragmentPub());
+        mcMan.onConnectionLostPub(this);
     }
 
     @Override
@@ -69,9 +83,10 @@ public class PubListener implements Publisher.Listener {
 
     @Override
     public void onStatsReport(RTCStatsReport statsReport) {
-        String logTag = logTagClass + "[Stat] ";
-        String log = statsReport.toString();
-        logD(TAG, log, logTag);
+        if (isStale()) {
+            return;
+        }
+        mcMan.processStats(statsReport, true);
     }
 
     @Override
@@ -92,16 +107,23 @@ public class PubListener implements Publisher.Listener {
         logD(TAG, logTag + "No viewers are currently subscribed to our stream.");
     }
 
+    /**
+     * Check if this listener's Publisher has since been released or replaced,
+     * in which case its events are ignored.
+     */
+    private boolean isStale() {
+        if (mcMan.isListenerPub(this)) {
+            return false;
+        }
+        logD(TAG, logTagClass + "[Stale] Ignoring event of a released Publisher.");
+        return true;
+    }
+
     /**
      * Set UI states if containing view is available.
      */
     private void setUI() {
-        mcMan.getMainActivity().runOnUiThread(() -> {
-            PublishFragment publishFragment = mcMan.getFragmentPub();
-            if (publishFragment != null) {
-                publishFragment.setUI();
-            }
-        });
+        mcMan.loadViewPub();
     }
 
 }
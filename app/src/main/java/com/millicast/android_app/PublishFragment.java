@@ -291,7 +291,7 @@ public class PublishFragment extends Fragment {
 
     private void refreshMediaSources(View view) {
         // Reload the Publish view if possible after media sources are obtained.
-        mcMan.refreshMediaSourceLists();
+        mcMan.refreshMediaSourceLists(true);
         setUI();
     }
 
@@ -0,0 +1,225 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.Utils.logD;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Supervises the connection of a Publisher or Subscriber, and reconnects it when lost.
+ * Once {@link #arm armed} by a user request to connect, each {@link #onLost loss} of the
+ * connection schedules a reconnect after a {@link Backoff} delay, until the connection is
+ * {@link #onRecovered recovered} or the supervisor is {@link #disarm disarmed}
+ * by a user request to stop.
+ * Also measures the time to recover, from the loss until the connection is recovered.
+ */
+public class Reconnector {
+    public static final String TAG = "Reconnector";
+
+    /**
+     * The delay before the first reconnect attempt, before jitter.
+     */
+    public static final long DELAY_BASE_MS = 1000;
+    /**
+     * The max delay before any reconnect attempt, before jitter.
+     */
+    public static final long DELAY_MAX_MS = 30000;
+
+    private final String logTag;
+    private final Handler handler;
+    private final Runnable connect;
+    private final Backoff backoff = new Backoff(DELAY_BASE_MS, DELAY_MAX_MS);
+    private final Runnable attempt = this::attempt;
+
+    private boolean enabled = true;
+    // Whether the connection is wanted by the user.
+    private boolean armed = false;
+    private boolean pending = false;
+    // Time when the connection was lost, or -1 if not lost.
+    private long lostTimeMs = -1;
+
+    // Time to recover metrics, in ms.
+    private long recoverMsLast = -1;
+    private long recoverMsMax = -1;
+    private long recoverMsTotal = 0;
+    private int recoverCount = 0;
+
+    /**
+     * @param logTag  For e.g. "[Pub]".
+     * @param handler The handler on which reconnect attempts are run.
+     * @param connect Connects again, with any state to rebuild.
+     */
+    public Reconnector(String logTag, Handler handler, Runnable connect) {
+        this.logTag = logTag + "[Reconnect]";
+        this.handler = handler;
+        this.connect = connect;
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Start supervising, when the user requests to connect.
+     * Any pending reconnect is cancelled, as the user is connecting now.
+     */
+    public synchronized void arm() {
+        armed = true;
+        cancel();
+        backoff.reset();
+        lostTimeMs = -1;
+        logD(TAG, logTag + "[Arm] OK.");
+    }
+
+    /**
+     * Stop supervising and cancel any pending reconnect, when the user requests to stop.
+     */
+    public synchronized void disarm() {
+        armed = false;
+        cancel();
+        lostTimeMs = -1;
+        logD(TAG, logTag + "[Disarm] OK.");
+    }
+
+    /**
+     * Whether the connection should be recovered if lost.
+     *
+     * @return
+     */
+    public synchronized boolean isArmed() {
+        return armed && enabled;
+    }
+
+    /**
+     * Report that the connection was lost, or that an attempt to connect failed.
+     * If armed, a reconnect is scheduled after the backoff delay.
+     *
+     * @return True if a reconnect was scheduled, false otherwise.
+     */
+    public synchronized boolean onLost() {
+        String tag = logTag + "[Lost] ";
+        if (!isArmed()) {
+            logD(TAG, tag + "Not reconnecting as not armed.");
+            return false;
+        }
+        if (lostTimeMs < 0) {
+            lostTimeMs = SystemClock.elapsedRealtime();
+        }
+        if (pending) {
+            logD(TAG, tag + "Reconnect already scheduled.");
+            return true;
+        }
+        long delay = backoff.nextDelayMs();
+        pending = true;
+        handler.postDelayed(attempt, delay);
+        logD(TAG, tag + "OK. Attempt " + backoff.getAttempt() + " in " + delay + "ms.");
+        return true;
+    }
+
+    /**
+     * Report that the connection is up again (for e.g. publishing or subscribing).
+     * Records the time to recover if the connection had been lost.
+     */
+    public synchronized void onRecovered() {
+        String tag = logTag + "[Recovered] ";
+        cancel();
+        backoff.reset();
+        if (lostTimeMs < 0) {
+            return;
+        }
+        recoverMsLast = SystemClock.elapsedRealtime() - lostTimeMs;
+        recoverMsMax = Math.max(recoverMsMax, recoverMsLast);
+        recoverMsTotal += recoverMsLast;
+        ++recoverCount;
+        lostTimeMs = -1;
+        logD(TAG, tag + "OK. Time to recover: " + recoverMsLast + "ms.");
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether lost connections are reconnected automatically.
+     *
+     * @param enabled
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancel();
+        }
+    }
+
+    /**
+     * Whether the connection was lost and has not yet recovered.
+     *
+     * @return
+     */
+    public synchronized boolean isReconnecting() {
+        return lostTimeMs >= 0;
+    }
+
+    /**
+     * The number of reconnect attempts since the connection was last lost.
+     *
+     * @return
+     */
+    public synchronized int getAttempt() {
+        return backoff.getAttempt();
+    }
+
+    /**
+     * The time to recover of the latest recovery, in ms.
+     *
+     * @return The time, or -1 if there has been no recovery.
+     */
+    public synchronized long getTimeToRecoverMs() {
+        return recoverMsLast;
+    }
+
+    /**
+     * The longest time to recover, in ms.
+     *
+     * @return The time, or -1 if there has been no recovery.
+     */
+    public synchronized long getTimeToRecoverMaxMs() {
+        return recoverMsMax;
+    }
+
+    /**
+     * The average time to recover, in ms.
+     *
+     * @return The time, or -1 if there has been no recovery.
+     */
+    public synchronized long getTimeToRecoverAvgMs() {
+        if (recoverCount == 0) {
+            return -1;
+        }
+        return recoverMsTotal / recoverCount;
+    }
+
+    public synchronized int getRecoverCount() {
+        return recoverCount;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private void cancel() {
+        handler.removeCallbacks(attempt);
+        pending = false;
+    }
+
+    private void attempt() {
+        synchronized (this) {
+            pending = false;
+            if (!isArmed()) {
+                return;
+            }
+            logD(TAG, logTag + "[Attempt] " + backoff.getAttempt() + "...");
+        }
+        connect.run();
+    }
+}
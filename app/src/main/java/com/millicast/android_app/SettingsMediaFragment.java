@@ -161,8 +161,11 @@ public class SettingsMediaFragment extends Fragment {
                         logD(TAG, logTag + "Not setting as sources are refreshing.");
                         return;
                     }
+                    if (position == mcMan.getCapabilityIndex()) {
+                        return;
+                    }
                     logD(TAG, logTag + "Setting at position:" + position + ".");
-                    mcMan.setCapabilityIndex(position);
+                    mcMan.selectCapabilityIndex(position);
                 });
 
         // Populate Audio Codec Spinner.
@@ -197,7 +200,7 @@ public class SettingsMediaFragment extends Fragment {
                         return;
                     }
                     logD(TAG, logTag + "Setting at position:" + position + "...");
-                    if (!mcMan.setCodecIndex(position, false)) {
+                    if (!mcMan.selectVideoCodecIndex(position)) {
                         if (index >= size) {
                             logD(TAG, logTag + "Unable to set index as it is beyond the list!");
                         } else {
@@ -305,7 +308,7 @@ public class SettingsMediaFragment extends Fragment {
      */
     private void refreshMedia(View view) {
         String logTag = "[Refresh][Reload][Media] ";
-        if (!mcMan.refreshMediaSourceLists()) {
+        if (!mcMan.refreshMediaSourceLists(true)) {
             Utils.makeSnackbar(logTag, "Audio and video sources cannot be refreshed now!", this);
             return;
         }
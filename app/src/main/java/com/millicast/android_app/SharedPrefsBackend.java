@@ -0,0 +1,48 @@
+package com.millicast.android_app;
+
+import android.content.SharedPreferences;
+
+import java.util.Map;
+
+/**
+ * {@link ConfigStore.Backend} that stores values in SharedPreferences.
+ */
+public class SharedPrefsBackend implements ConfigStore.Backend {
+
+    private final SharedPreferences sharedPreferences;
+
+    public SharedPrefsBackend(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    @Override
+    public Map<String, ?> loadAll() {
+        return sharedPreferences.getAll();
+    }
+
+    /**
+     * Write all values with a single commit.
+     * As this is called on the flush Executor, the commit does not block the UI thread.
+     *
+     * @param values
+     * @return
+     */
+    @Override
+    public boolean save(Map<String, Object> values) {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else {
+                editor.remove(key);
+            }
+        }
+        return editor.commit();
+    }
+}
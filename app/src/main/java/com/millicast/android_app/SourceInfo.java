@@ -9,7 +9,9 @@ import com.millicast.LayerData;
 import com.millicast.Subscriber;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -19,7 +21,26 @@ import java.util.Optional;
 public class SourceInfo {
 
     public static final String TAG = "SourceInfo";
-    private static final String LAYER_SEPARATOR = ", ";
+    /**
+     * The {@link MCLayer.Content} of {@link LayerData}, to compare lists of them.
+     */
+    private static final MCLayer.Content<LayerData> LAYER_CONTENT = new MCLayer.Content<LayerData>() {
+        @Override
+        public int getLayerHash(LayerData ld) {
+            return MCLayer.getLayerHash(ld.encodingId, ld.spatialLayerId, ld.temporalLayerId,
+                    ld.maxSpatialLayerId.orElse(-1), ld.maxTemporalLayerId.orElse(-1));
+        }
+
+        @Override
+        public boolean isSameLayer(LayerData ld1, LayerData ld2) {
+            return ld1.spatialLayerId == ld2.spatialLayerId &&
+                    ld1.temporalLayerId == ld2.temporalLayerId &&
+                    Objects.equals(ld1.encodingId, ld2.encodingId) &&
+                    Objects.equals(ld1.maxSpatialLayerId, ld2.maxSpatialLayerId) &&
+                    Objects.equals(ld1.maxTemporalLayerId, ld2.maxTemporalLayerId);
+        }
+    };
+
     private String sourceId;
     private String[] trackIdAudioList;
     private String[] trackIdVideoList;
@@ -29,14 +50,19 @@ public class SourceInfo {
      */
     private HashMap<String, LayerData> layerActiveMap = null;
     /**
-     * An array of currently active {@link LayerData} for this Source.
+     * An array of currently active {@link LayerData} for this Source, in a canonical order:
+     * from lowest to highest quality as given by {@link #compareLayers}.
+     */
+    private LayerData[] layerActiveList = new LayerData[0];
+    /**
+     * A hash of the content of the {@link #layerActiveList} (via {@link #getLayerListHash}),
+     * that is compared first when trying to set a new {@link #layerActiveList}.
      */
-    private LayerData[] layerActiveList = null;
+    private int layerListHash = 0;
     /**
-     * A defined String representation (via {@link #getLayerListStr}) of the current {@link #layerActiveList},
-     * that can be quickly used for comparison when trying to set a new {@link #layerActiveList}.
+     * The layerIds of the {@link #layerActiveList}, in the same order.
      */
-    private String layerListStr = "";
+    private String[] layerIdsByQuality = new String[0];
 
     /**
      * The layerId {from @link #getLayerId} of the selected Layer.
@@ -124,31 +150,33 @@ public class SourceInfo {
      */
     public boolean setLayerActiveList(LayerData[] layerActiveList) {
         String logTag = "[Layer][List][Set] ";
-        this.layerActiveList = layerActiveList;
-        String newStr = getLayerListStr(layerActiveList);
-        // Check if this is a new list of Layers.
-        if (layerListStr.equals(newStr)) {
+        if (layerActiveList == null) {
+            layerActiveList = new LayerData[0];
+        }
+        // Check if this is a new list of Layers, by hash first and only then by content.
+        int hash = getLayerListHash(layerActiveList);
+        if (MCLayer.isSameLayerList(layerActiveList, hash, this.layerActiveList, layerListHash,
+                LAYER_CONTENT)) {
             // If it is the same existing list, do nothing.
-            logD(TAG, logTag + "NOT setting list as it already exists: " +
-                    layerListStr + ".");
+            logD(TAG, () -> logTag + "NOT setting list as it already exists: " +
+                    getLayerListStr(this.layerActiveList) + ".");
             return false;
         }
 
         // If this is a new list of Layers, set all associated items.
-        // Set the new layerListStr.
-        layerListStr = newStr;
-        this.layerActiveList = layerActiveList;
+        layerListHash = hash;
         // Reset the selected layer.
         layerActiveId = "";
         // Set the layerMap.
         setLayerActiveMap(layerActiveList);
-        logD(TAG, logTag + "OK. Layers:\n" + layerListStr + ".\nlayerMap:" + layerActiveMap +
-                ", selected layerId:" + layerActiveId + ".");
+        logD(TAG, () -> logTag + "OK. Layers:\n" + getLayerListStr(this.layerActiveList) +
+                ".\nlayerMap:" + layerActiveMap + ", selected layerId:" + layerActiveId + ".");
         return true;
     }
 
     /**
-     * Get the layerId (from {@link SourceInfo#getLayerId}) list of the current active layers.
+     * Get the layerId (from {@link SourceInfo#getLayerId}) list of the current active layers,
+     * ordered from lowest to highest quality.
      * If there is at least one layer, include an empty String ("") at index 0
      * as the layer automatically selected by Millicast.
      * If there are no active layers, list returned will have size 0.
@@ -156,17 +184,27 @@ public class SourceInfo {
      * @return
      */
     public ArrayList<String> getLayerActiveIdList() {
-        ArrayList<String> list;
-        if (layerActiveMap == null || layerActiveMap.size() == 0) {
-            list = new ArrayList<>();
+        ArrayList<String> list = new ArrayList<>(layerIdsByQuality.length + 1);
+        if (layerIdsByQuality.length == 0) {
             return list;
         }
 
-        list = new ArrayList<>(layerActiveMap.keySet());
-        list.add(0, "");
+        list.add("");
+        list.addAll(Arrays.asList(layerIdsByQuality));
         return list;
     }
 
+    /**
+     * Get the layerIds of the current active layers, ordered from lowest to highest quality
+     * as given by {@link #compareLayers}.
+     * If there are no active layers, the array returned will have length 0.
+     *
+     * @return
+     */
+    public String[] getLayerIdsByQuality() {
+        return layerIdsByQuality;
+    }
+
     /**
      * The layerId {@link #layerActiveId} of the currently selected Layer.
      * An empty String ("") indicates that the layer is automatically selected by Millicast.
@@ -261,7 +299,7 @@ public class SourceInfo {
         result += "] V:[";
         result += getArrayStr(trackIdVideoList, ",", null);
         result += "] Layer:[";
-        result += layerListStr + "]";
+        result += getLayerListStr(layerActiveList) + "]";
         return result;
     }
 
@@ -274,7 +312,7 @@ public class SourceInfo {
      */
     @NonNull
     public static String getLayerListStr(LayerData[] layerList) {
-        return Utils.getArrayStr(layerList, LAYER_SEPARATOR, lambdaLayerToString);
+        return MCLayer.getLayerListStr(layerList, lambdaLayerToString::toString);
     }
 
     /**
@@ -342,29 +380,80 @@ public class SourceInfo {
      * @return
      */
     public static String getLayerStr(LayerData ld, boolean longForm) {
-        String name = "";
         if (ld == null) {
-            name += "N.A.";
-            return name;
+            return "N.A.";
+        }
+        return MCLayer.getLayerStr(ld.encodingId, ld.temporalLayerId, ld.spatialLayerId,
+                ld.maxTemporalLayerId.orElse(null), ld.maxSpatialLayerId.orElse(null), longForm);
+    }
+
+    /**
+     * Get a hash of the content of an array of {@link LayerData},
+     * that does not depend on the order of the layers.
+     *
+     * @param layerList
+     * @return
+     */
+    public static int getLayerListHash(LayerData[] layerList) {
+        return MCLayer.getLayerListHash(layerList, LAYER_CONTENT);
+    }
+
+    /**
+     * Compare the quality of two layers, so that an array of layers can be ordered from
+     * lowest to highest quality.
+     * Layers are ordered by encodingId (simulcast), then by spatialLayerId and temporalLayerId (SVC).
+     * EncodingIds are ordered by the rank given by {@link #getEncodingRank}, or else as Strings.
+     *
+     * @param ld1
+     * @param ld2
+     * @return A negative integer, zero, or a positive integer as the first layer
+     * is lower, equal or higher in quality than the second.
+     */
+    public static int compareLayers(LayerData ld1, LayerData ld2) {
+        String enc1 = ld1.encodingId == null ? "" : ld1.encodingId;
+        String enc2 = ld2.encodingId == null ? "" : ld2.encodingId;
+        int result = Integer.compare(getEncodingRank(enc1), getEncodingRank(enc2));
+        if (result == 0) {
+            result = enc1.compareTo(enc2);
+        }
+        if (result == 0) {
+            result = Integer.compare(ld1.spatialLayerId, ld2.spatialLayerId);
+        }
+        if (result == 0) {
+            result = Integer.compare(ld1.temporalLayerId, ld2.temporalLayerId);
         }
+        return result;
+    }
 
-        name += ld.encodingId;
-        String temStr = "" + ld.temporalLayerId;
-        String spaStr = "" + ld.spatialLayerId;
-        if (longForm) {
-            String maxTemLayer = "-";
-            if (ld.maxTemporalLayerId.isPresent()) {
-                maxTemLayer = "" + ld.maxTemporalLayerId.get();
-            }
-            String maxSpaLayer = "-";
-            if (ld.maxSpatialLayerId.isPresent()) {
-                maxSpaLayer = "" + ld.maxSpatialLayerId.get();
-            }
-            temStr += "/" + maxTemLayer;
-            spaStr += "/" + maxSpaLayer;
+    /**
+     * Get the quality rank of a simulcast encodingId.
+     * Numeric ids rank by value, while common names rank as low (l, low, q),
+     * medium (m, mid, medium) and high (h, high, f, full).
+     *
+     * @param encodingId
+     * @return The rank, or {@link Integer#MAX_VALUE} if the encodingId is not known.
+     */
+    public static int getEncodingRank(String encodingId) {
+        switch (encodingId.toLowerCase()) {
+            case "l":
+            case "low":
+            case "q":
+                return 0;
+            case "m":
+            case "mid":
+            case "medium":
+                return 1;
+            case "h":
+            case "high":
+            case "f":
+            case "full":
+                return 2;
+        }
+        try {
+            return Integer.parseInt(encodingId);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
         }
-        name += " (T:" + temStr + " S:" + spaStr + ")";
-        return name;
     }
 
     //**********************************************************************************************
@@ -372,19 +461,25 @@ public class SourceInfo {
     //**********************************************************************************************
 
     /**
-     * Populate the {@link #layerActiveMap} using the given layerList.
+     * Set the {@link #layerActiveList} in its canonical order, and populate the
+     * {@link #layerActiveMap} and {@link #layerIdsByQuality} using the given layerList.
+     * Each layerId is only built here, once per list.
      *
      * @param layerList
      */
     private void setLayerActiveMap(LayerData[] layerList) {
+        // Order the layers by quality.
+        LayerData[] sorted = layerList.clone();
+        Arrays.sort(sorted, SourceInfo::compareLayers);
+        layerActiveList = sorted;
+
         // Create a new layerMap.
         layerActiveMap = new HashMap<>();
-        if (layerList == null || layerList.length == 0) {
-            return;
-        }
-        for (LayerData ld : layerList) {
-            String layerId = getLayerId(ld);
-            layerActiveMap.put(layerId, ld);
+        layerIdsByQuality = new String[sorted.length];
+        for (int i = 0; i < sorted.length; ++i) {
+            String layerId = getLayerId(sorted[i]);
+            layerIdsByQuality[i] = layerId;
+            layerActiveMap.put(layerId, sorted[i]);
         }
     }
 }
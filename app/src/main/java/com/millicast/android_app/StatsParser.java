@@ -0,0 +1,315 @@
+package com.millicast.android_app;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Map;
+
+import static com.millicast.android_app.StatsRecord.NA;
+
+/**
+ * Parses WebRTC {@link RTCStatsReport}s of a Publisher or Subscriber into a {@link StatsRecord}.
+ * The outbound-rtp, remote-inbound-rtp, inbound-rtp, candidate-pair and codec stats are parsed.
+ * The same {@link StatsRecord} is reused for every report, so no record is allocated per report.
+ */
+public class StatsParser {
+
+    public static final String TAG = "StatsParser";
+
+    /**
+     * Receives the {@link StatsRecord} parsed from each stats report.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread that delivered the stats report, each time a report is parsed.
+         * The record is reused for the next report and should not be kept beyond this call.
+         *
+         * @param record
+         */
+        void onStats(StatsRecord record);
+    }
+
+    private final StatsRecord record;
+
+    public StatsParser(boolean forPub) {
+        record = new StatsRecord(forPub);
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * The {@link StatsRecord} into which reports are parsed.
+     *
+     * @return
+     */
+    public StatsRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Reset the {@link StatsRecord}, for e.g. when a new Publisher/Subscriber is started,
+     * so that rates are not computed across different connections.
+     */
+    public void reset() {
+        record.reset();
+    }
+
+    /**
+     * Parse the given report into the {@link StatsRecord}.
+     *
+     * @param report
+     * @return The {@link StatsRecord} with the values of this report.
+     */
+    public StatsRecord parse(RTCStatsReport report) {
+        Map<String, RTCStats> statsMap = report.getStatsMap();
+        record.timestampUs = report.getTimestampUs();
+        record.count++;
+        record.audio.clear();
+        record.video.clear();
+        record.clearPair();
+
+        String pairId = null;
+        for (RTCStats stats : statsMap.values()) {
+            Map<String, Object> members = stats.getMembers();
+            switch (stats.getType()) {
+                case "outbound-rtp":
+                    if (record.forPub) {
+                        parseOutbound(members, statsMap);
+                    }
+                    break;
+                case "remote-inbound-rtp":
+                    if (record.forPub) {
+                        parseRemoteInbound(members);
+                    }
+                    break;
+                case "inbound-rtp":
+                    if (!record.forPub) {
+                        parseInbound(members, statsMap);
+                    }
+                    break;
+                case "transport":
+                    pairId = getString(members, "selectedCandidatePairId");
+                    break;
+            }
+        }
+
+        // Use the candidate-pair selected by the transport if available,
+        // otherwise the nominated candidate-pair that succeeded.
+        RTCStats pair = pairId == null ? null : statsMap.get(pairId);
+        if (pair == null) {
+            for (RTCStats stats : statsMap.values()) {
+                if (!"candidate-pair".equals(stats.getType())) {
+                    continue;
+                }
+                Map<String, Object> members = stats.getMembers();
+                if (Boolean.TRUE.equals(members.get("nominated")) &&
+                        "succeeded".equals(members.get("state"))) {
+                    pair = stats;
+                    break;
+                }
+            }
+        }
+        if (pair != null) {
+            Map<String, Object> members = pair.getMembers();
+            record.rttMs = toMs(getDouble(members, "currentRoundTripTime"));
+            record.availableOutgoingBitrate = getDouble(members, "availableOutgoingBitrate");
+            record.availableIncomingBitrate = getDouble(members, "availableIncomingBitrate");
+        }
+
+        setBitrate(record.audio);
+        setBitrate(record.video);
+        return record;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    /**
+     * Get the {@link StatsRecord.Rtp} of the kind of the given RTP stats.
+     *
+     * @param members
+     * @return The Rtp, or null if the kind is not known.
+     */
+    private StatsRecord.Rtp getRtp(Map<String, Object> members) {
+        Object kind = members.get("kind");
+        if (kind == null) {
+            kind = members.get("mediaType");
+        }
+        if ("audio".equals(kind)) {
+            return record.audio;
+        }
+        if ("video".equals(kind)) {
+            return record.video;
+        }
+        return null;
+    }
+
+    private void parseOutbound(Map<String, Object> members,
+                               Map<String, RTCStats> statsMap) {
+        StatsRecord.Rtp rtp = getRtp(members);
+        if (rtp == null) {
+            return;
+        }
+        rtp.present = true;
+        rtp.bytes = add(rtp.bytes, getLong(members, "bytesSent"));
+        rtp.packets = add(rtp.packets, getLong(members, "packetsSent"));
+        rtp.nackCount = add(rtp.nackCount, getLong(members, "nackCount"));
+        rtp.framesEncoded = add(rtp.framesEncoded, getLong(members, "framesEncoded"));
+        rtp.totalCodecTime = add(rtp.totalCodecTime, getDouble(members, "totalEncodeTime"));
+        rtp.targetBitrate = add(rtp.targetBitrate, getDouble(members, "targetBitrate"));
+        rtp.fps = Math.max(rtp.fps, getDouble(members, "framesPerSecond"));
+        int width = (int) getLong(members, "frameWidth");
+        if (width > rtp.width) {
+            rtp.width = width;
+            rtp.height = (int) getLong(members, "frameHeight");
+        }
+        String reason = getString(members, "qualityLimitationReason");
+        if (reason != null && (rtp.qualityLimitationReason == null ||
+                "none".equals(rtp.qualityLimitationReason))) {
+            rtp.qualityLimitationReason = reason;
+        }
+        setCodec(rtp, members, statsMap);
+    }
+
+    private void parseRemoteInbound(Map<String, Object> members) {
+        StatsRecord.Rtp rtp = getRtp(members);
+        if (rtp == null) {
+            return;
+        }
+        rtp.packetsLost = add(rtp.packetsLost, getLong(members, "packetsLost"));
+        rtp.jitterMs = Math.max(rtp.jitterMs, toMs(getDouble(members, "jitter")));
+        rtp.rttMs = Math.max(rtp.rttMs, toMs(getDouble(members, "roundTripTime")));
+        rtp.fractionLost = Math.max(rtp.fractionLost, getDouble(members, "fractionLost"));
+    }
+
+    private void parseInbound(Map<String, Object> members,
+                              Map<String, RTCStats> statsMap) {
+        StatsRecord.Rtp rtp = getRtp(members);
+        if (rtp == null) {
+            return;
+        }
+        rtp.present = true;
+        rtp.bytes = add(rtp.bytes, getLong(members, "bytesReceived"));
+        rtp.packets = add(rtp.packets, getLong(members, "packetsReceived"));
+        rtp.packetsLost = add(rtp.packetsLost, getLong(members, "packetsLost"));
+        rtp.nackCount = add(rtp.nackCount, getLong(members, "nackCount"));
+        rtp.framesDecoded = add(rtp.framesDecoded, getLong(members, "framesDecoded"));
+        rtp.framesReceived = add(rtp.framesReceived, getLong(members, "framesReceived"));
+        rtp.framesDropped = add(rtp.framesDropped, getLong(members, "framesDropped"));
+        rtp.totalCodecTime = add(rtp.totalCodecTime, getDouble(members, "totalDecodeTime"));
+        rtp.jitterBufferDelay = add(rtp.jitterBufferDelay,
+                getDouble(members, "jitterBufferDelay"));
+        rtp.jitterBufferEmittedCount = add(rtp.jitterBufferEmittedCount,
+                getLong(members, "jitterBufferEmittedCount"));
+        rtp.estimatedPlayoutTimestamp = Math.max(rtp.estimatedPlayoutTimestamp,
+                getDouble(members, "estimatedPlayoutTimestamp"));
+        rtp.jitterMs = Math.max(rtp.jitterMs, toMs(getDouble(members, "jitter")));
+        rtp.fps = Math.max(rtp.fps, getDouble(members, "framesPerSecond"));
+        int width = (int) getLong(members, "frameWidth");
+        if (width > rtp.width) {
+            rtp.width = width;
+            rtp.height = (int) getLong(members, "frameHeight");
+        }
+        setCodec(rtp, members, statsMap);
+    }
+
+    /**
+     * Set the codec mime type of the RTP, using the codec stats referred to by the RTP stats.
+     */
+    private void setCodec(StatsRecord.Rtp rtp, Map<String, Object> members,
+                          Map<String, RTCStats> statsMap) {
+        if (rtp.codec != null) {
+            return;
+        }
+        String codecId = getString(members, "codecId");
+        if (codecId == null) {
+            return;
+        }
+        RTCStats codec = statsMap.get(codecId);
+        if (codec != null) {
+            rtp.codec = getString(codec.getMembers(), "mimeType");
+        }
+    }
+
+    /**
+     * Compute the bitrate of the RTP from the bytes since the previous report.
+     */
+    private void setBitrate(StatsRecord.Rtp rtp) {
+        if (!rtp.present || rtp.bytes == NA) {
+            return;
+        }
+        double durationUs = record.timestampUs - rtp.timestampUsPrev;
+        if (rtp.timestampUsPrev != NA && durationUs > 0 && rtp.bytes >= rtp.bytesPrev) {
+            rtp.bitrate = (rtp.bytes - rtp.bytesPrev) * 8 * 1000000.0 / durationUs;
+        }
+        rtp.bytesPrev = rtp.bytes;
+        rtp.timestampUsPrev = record.timestampUs;
+    }
+
+    //**********************************************************************************************
+    // Utils
+    //**********************************************************************************************
+
+    /**
+     * Add a value to a total, where either could be {@link StatsRecord#NA}.
+     */
+    private static long add(long total, long value) {
+        if (value == NA) {
+            return total;
+        }
+        if (total == NA) {
+            return value;
+        }
+        return total + value;
+    }
+
+    /**
+     * Add a value to a total, where either could be {@link StatsRecord#NA}.
+     */
+    private static double add(double total, double value) {
+        if (value == NA) {
+            return total;
+        }
+        if (total == NA) {
+            return value;
+        }
+        return total + value;
+    }
+
+    /**
+     * Convert a value in s to ms, where the value could be {@link StatsRecord#NA}.
+     */
+    private static double toMs(double seconds) {
+        if (seconds == NA) {
+            return NA;
+        }
+        return seconds * 1000;
+    }
+
+    static long getLong(Map<String, Object> members, String name) {
+        Object value = members.get(name);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return NA;
+    }
+
+    static double getDouble(Map<String, Object> members, String name) {
+        Object value = members.get(name);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return NA;
+    }
+
+    static String getString(Map<String, Object> members, String name) {
+        Object value = members.get(name);
+        if (value instanceof String) {
+            return (String) value;
+        }
+        return null;
+    }
+}
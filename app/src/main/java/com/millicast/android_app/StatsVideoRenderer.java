@@ -0,0 +1,61 @@
+package com.millicast.android_app;
+
+import android.content.Context;
+import android.view.SurfaceHolder;
+
+import com.millicast.VideoRenderer;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * {@link VideoRenderer} that records each frame delivered to it in a {@link RenderStats}.
+ * A frame is counted as dropped if it is delivered while the renderer has no surface,
+ * for e.g. when its view is not displayed, and as handed off otherwise.
+ * The handoff time is the time taken by the renderer to queue the frame to its render thread.
+ * Frames later dropped by the render thread, and the time to draw them, are not exposed by
+ * the renderer, so are not recorded.
+ */
+public class StatsVideoRenderer extends VideoRenderer {
+
+    private final RenderStats stats;
+    private volatile boolean hasSurface = false;
+
+    /**
+     * @param context
+     * @param stats   Records the frames delivered. Reset when this renderer is created.
+     */
+    public StatsVideoRenderer(Context context, RenderStats stats) {
+        super(context);
+        this.stats = stats;
+        stats.reset();
+    }
+
+    public RenderStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        long start = System.nanoTime();
+        stats.onDelivered(start);
+        if (!hasSurface) {
+            stats.onDropped();
+            super.onFrame(frame);
+            return;
+        }
+        super.onFrame(frame);
+        stats.onHandedOff(start, System.nanoTime());
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        super.surfaceCreated(holder);
+        hasSurface = true;
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        hasSurface = false;
+        super.surfaceDestroyed(holder);
+    }
+}
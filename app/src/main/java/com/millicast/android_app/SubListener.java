@@ -7,7 +7,6 @@ import com.millicast.VideoTrack;
 
 import org.webrtc.RTCStatsReport;
 
-import java.util.ArrayList;
 import java.util.Optional;
 
 import static com.millicast.android_app.MCStates.SubscriberState.CONNECTED;
@@ -24,6 +23,7 @@ public class SubListener implements Subscriber.Listener {
 
     private final MillicastManager mcMan;
     private String logTagClass = "[Sub][Ltn]";
+    private final TrackParser trackParser = new TrackParser();
 
     public SubListener() {
         mcMan = MillicastManager.getSingleInstance();
@@ -31,6 +31,9 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onSubscribed() {
+        if (isStale()) {
+            return;
+        }
         mcMan.setSubState(SUBSCRIBING);
         setUI();
         String logTag = logTagClass + "[On] ";
@@ -45,6 +48,9 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onConnected() {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][On] ";
         mcMan.setSubState(CONNECTED);
         makeSnackbar(logTag, "Connected", mcMan.getFragmentSub());
@@ -53,16 +59,24 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onDisconnected() {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][On][X] ";
         makeSnackbar(logTag, "Disconnected", mcMan.getFragmentSub());
+        mcMan.onConnectionLostSub(this);
     }
 
     @Override
     public void onConnectionError(int status, String reason) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Con][Error] ";
         mcMan.setSubState(MCStates.SubscriberState.DISCONNECTED);
         setUI();
         makeSnackbar(logTag, "Connection FAILED! " + reason, mcMan.getFragmentSub());
+        mcMan.onConnectionLostSub(this);
     }
 
     @Override
@@ -79,13 +93,17 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onStatsReport(RTCStatsReport statsReport) {
-        String logTag = logTagClass + "[Stat] ";
-        String log = statsReport.toString();
-        logD(TAG, log, logTag);
+        if (isStale()) {
+            return;
+        }
+        mcMan.processStats(statsReport, false);
     }
 
     @Override
     public void onTrack(VideoTrack videoTrack, Optional<String> mid) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Track][Video] ";
         String trackId = videoTrack.getName();
         mcMan.setMidVideo(mid.get());
@@ -98,6 +116,9 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onTrack(AudioTrack audioTrack, Optional<String> mid) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Track][Audio] ";
         String trackId = audioTrack.getName();
         mcMan.setMidAudio(mid.get());
@@ -110,6 +131,9 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onActive(String streamId, String[] tracks, Optional<String> sourceId) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Active][Source][Id]";
         String source = "";
         if (sourceId.isPresent()) {
@@ -127,25 +151,14 @@ public class SubListener implements Subscriber.Listener {
             logD(TAG, logTag + "This source has no sourceId and so represents the default/main source.");
         }
 
-        ArrayList<String> audioTrackIdList = new ArrayList<>();
-        ArrayList<String> videoTrackIdList = new ArrayList<>();
-        for (String track : tracks) {
-            String[] split = track.split("/");
-            if (split[0].equals("audio")) {
-                audioTrackIdList.add(split[1]);
-            } else if (split[0].equals("video")) {
-                videoTrackIdList.add(split[1]);
-            } else {
-                logD(TAG, logTag + "Error! Not adding this track with kind: " + split[0] +
-                        ", trackId: " + split[1] + ".");
-            }
+        TrackParser.Result result = trackParser.parse(tracks);
+        for (TrackParser.Error error : result.errors) {
+            logD(TAG, logTag + "Error! Not adding this track: " + error + ".");
         }
 
         // Add to sourceList:
         SourceInfo sourceInfo = new SourceInfo(
-                source, audioTrackIdList.toArray(new String[audioTrackIdList.size()]),
-                videoTrackIdList.toArray(new String[videoTrackIdList.size()])
-        );
+                source, result.audioTrackIds, result.videoTrackIds);
 
         logD(TAG, logTag + "Adding active source...");
         mcMan.addSource(source, sourceInfo);
@@ -159,6 +172,9 @@ public class SubListener implements Subscriber.Listener {
 
     @Override
     public void onInactive(String streamId, Optional<String> sourceId) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Active][In][Source][Id]";
         String source = "";
         if (sourceId.isPresent()) {
@@ -192,13 +208,14 @@ public class SubListener implements Subscriber.Listener {
      */
     @Override
     public void onLayers(String mid, LayerData[] activeLayers, LayerData[] inactiveLayers) {
+        if (isStale()) {
+            return;
+        }
         String logTag = logTagClass + "[Layer] ";
-        String log = "mid:" + mid + " Active(" + activeLayers.length + "):[" +
+        logD(TAG, () -> logTag + "mid:" + mid + " Active(" + activeLayers.length + "):[" +
                 SourceInfo.getLayerListStr(activeLayers) + "]," +
                 " Inactive(" + inactiveLayers.length + "):[" +
-                SourceInfo.getLayerListStr(inactiveLayers) + "].";
-
-        logD(TAG, logTag + log);
+                SourceInfo.getLayerListStr(inactiveLayers) + "].");
         mcMan.setLayerActiveList(activeLayers);
     }
 
@@ -233,15 +250,22 @@ public class SubListener implements Subscriber.Listener {
         logD(TAG, logTag + "Count: " + count + ".");
     }
 
+    /**
+     * Check if this listener's Subscriber has since been released or replaced,
+     * in which case its events are ignored.
+     */
+    private boolean isStale() {
+        if (mcMan.isListenerSub(this)) {
+            return false;
+        }
+        logD(TAG, logTagClass + "[Stale] Ignoring event of a released Subscriber.");
+        return true;
+    }
+
     /**
      * Set UI states if containing view is available.
      */
     private void setUI() {
-        mcMan.getMainActivity().runOnUiThread(() -> {
-            SubscribeFragment subscribeFragment = mcMan.getFragmentSub();
-            if (subscribeFragment != null) {
-                subscribeFragment.setUI();
-            }
-        });
+        mcMan.loadViewSub();
     }
 }
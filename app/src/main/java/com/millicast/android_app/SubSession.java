@@ -0,0 +1,544 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.Utils.logD;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.millicast.android_app.MCStates.SubscriberState;
+import com.millicast.AudioTrack;
+import com.millicast.LayerData;
+import com.millicast.Subscriber;
+import com.millicast.VideoRenderer;
+import com.millicast.VideoTrack;
+
+import org.webrtc.RTCStatsReport;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * A Subscriber session, that subscribes to one stream independently of other sessions,
+ * so that several streams can be viewed at once, for e.g. on a monitoring wall.
+ * Each session has its own SDK Subscriber, listener, source map, projections and renderer.
+ * Sessions share the SDK resources and threads of the {@link MillicastManager}:
+ * the audio playback device, the main thread for rendering, and a single background
+ * thread on which the events of all sessions are handled.
+ * Sessions are created and released via {@link MillicastManager#createSubSession} and
+ * {@link MillicastManager#releaseSubSession}.
+ */
+public class SubSession {
+    public static final String TAG = "SubSession";
+
+    /**
+     * Receives the changes of a session, on the main thread, for e.g. to update its view.
+     */
+    public interface Listener {
+        void onStateChanged(SubSession session, SubscriberState state);
+
+        /**
+         * A source of the stream has become active or inactive.
+         *
+         * @param session
+         */
+        void onSourcesChanged(SubSession session);
+    }
+
+    private final int id;
+    private final String streamName;
+    private final String accountId;
+    private final String token;
+    private final String apiUrl;
+    private final String logTag;
+
+    private final MillicastManager mcMan;
+    // Handler shared by all sessions, on which the state of each session is changed.
+    private final Handler handler;
+    private final Handler handlerMain;
+    private final Reconnector reconnector;
+    private volatile Listener listener = null;
+
+    private Subscriber subscriber = null;
+    // Incremented for each Subscriber created, to ignore events of released ones.
+    private int subscriberGeneration = 0;
+    private volatile SubscriberState state = SubscriberState.DISCONNECTED;
+    private final SourceRegistry<SourceInfo> sourceMap =
+            new SourceRegistry<>(MillicastManager.SOURCE_DELTAS_MAX);
+    private String midAudio = null;
+    private String midVideo = null;
+    private volatile String sourceIdAudio = null;
+    private volatile String sourceIdVideo = null;
+    private final TrackParser trackParser = new TrackParser();
+    private AudioTrack audioTrack = null;
+    private volatile VideoTrack videoTrack = null;
+    private boolean audioEnabled = false;
+    // Only accessed on the main thread.
+    private VideoRenderer renderer = null;
+    private final RenderStats renderStats = new RenderStats();
+
+    SubSession(int id, String streamName, String accountId, String token, String apiUrl,
+               MillicastManager mcMan, Handler handler, Handler handlerMain) {
+        this.id = id;
+        this.streamName = streamName;
+        this.accountId = accountId;
+        this.token = token;
+        this.apiUrl = apiUrl;
+        this.mcMan = mcMan;
+        this.handler = handler;
+        this.handlerMain = handlerMain;
+        logTag = "[Sub][Ses:" + id + "]";
+        reconnector = new Reconnector(logTag, handler, this::connectTry);
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    public int getId() {
+        return id;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    public SubscriberState getState() {
+        return state;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Reconnector getReconnector() {
+        return reconnector;
+    }
+
+    /**
+     * Connect and subscribe to the stream.
+     * The connection is supervised and reconnected if lost, until {@link #stop} is called.
+     */
+    public void start() {
+        handler.post(() -> {
+            reconnector.arm();
+            connectTry();
+        });
+    }
+
+    /**
+     * Stop subscribing and disconnect.
+     * Unlike a lost connection, the projections are not kept.
+     */
+    public void stop() {
+        handler.post(() -> {
+            String logTag = this.logTag + "[Stop] ";
+            reconnector.disarm();
+            releaseSubscriber();
+            sourceIdAudio = null;
+            sourceIdVideo = null;
+            setState(SubscriberState.DISCONNECTED);
+            logD(TAG, logTag + "OK.");
+        });
+    }
+
+    /**
+     * Get the registry of the active sources of this session,
+     * for e.g. for a view to apply the changes since it was last loaded.
+     *
+     * @return
+     */
+    public SourceRegistry<SourceInfo> getSourceRegistry() {
+        return sourceMap;
+    }
+
+    /**
+     * Get the sourceIds of the active sources of this session.
+     *
+     * @return
+     */
+    public ArrayList<String> getSourceList() {
+        return new ArrayList<>(sourceMap.getIds());
+    }
+
+    public String getSourceIdProjected(boolean isAudio) {
+        return isAudio ? sourceIdAudio : sourceIdVideo;
+    }
+
+    /**
+     * Request a source of this session to be projected onto its audio or video track.
+     * To project the main source, provide the sourceId as an empty String ("").
+     *
+     * @param sourceId
+     * @param isAudio
+     */
+    public void projectSource(String sourceId, boolean isAudio) {
+        handler.post(() -> project(sourceId, isAudio));
+    }
+
+    /**
+     * Select a layer of the projected video source.
+     *
+     * @param layerId The layerId (from {@link SourceInfo#getLayerId}),
+     *                or an empty String ("") for the layer to be selected by Millicast.
+     */
+    public void selectLayer(String layerId) {
+        handler.post(() -> {
+            String logTag = this.logTag + "[Layer][Select]:" + layerId + " ";
+            SourceInfo source = getSource(sourceIdVideo);
+            if (subscriber == null || source == null) {
+                logD(TAG, logTag + "Failed! No video source is projected.");
+                return;
+            }
+            Optional<LayerData> layerData = source.getLayerData(layerId);
+            if (layerData == null || !subscriber.select(layerData)) {
+                logD(TAG, logTag + "Failed!");
+                return;
+            }
+            source.setLayerActiveId(layerId);
+            logD(TAG, logTag + "OK.");
+        });
+    }
+
+    /**
+     * Set whether the audio of this session is heard,
+     * for e.g. to only hear one session of a monitoring wall.
+     *
+     * @param enabled
+     */
+    public void setAudioEnabled(boolean enabled) {
+        handler.post(() -> {
+            audioEnabled = enabled;
+            if (audioTrack != null) {
+                audioTrack.setEnabled(enabled);
+            }
+        });
+    }
+
+    /**
+     * Get the {@link VideoRenderer} of this session, creating it if needed.
+     * Must be called on the main thread.
+     *
+     * @param context
+     * @return
+     */
+    public VideoRenderer getRenderer(Context context) {
+        if (renderer == null) {
+            renderer = new StatsVideoRenderer(context, renderStats);
+            if (videoTrack != null) {
+                videoTrack.setRenderer(renderer);
+            }
+        }
+        return renderer;
+    }
+
+    /**
+     * Get the frame level {@link RenderStats} of the renderer of this session.
+     *
+     * @return
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+
+    @Override
+    public String toString() {
+        return "Session:" + id + " Stream:" + streamName + " State:" + state +
+                " A:" + sourceIdAudio + " V:" + sourceIdVideo;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    /**
+     * Release all resources of this session.
+     * Must be called on the main thread, as the renderer is only accessed there.
+     * The renderer is detached from the videoTrack and the Subscriber released first,
+     * on the session handler, so that no frame reaches the renderer once it is released.
+     */
+    void release() {
+        VideoRenderer renderer = this.renderer;
+        this.renderer = null;
+        listener = null;
+        handler.post(() -> {
+            reconnector.disarm();
+            if (videoTrack != null && renderer != null) {
+                videoTrack.removeSink(renderer);
+            }
+            releaseSubscriber();
+            setState(SubscriberState.DISCONNECTED);
+            if (renderer != null) {
+                handlerMain.post(renderer::release);
+            }
+        });
+    }
+
+    /**
+     * Connect, for the user request or a reconnect.
+     * Runs on the session handler.
+     */
+    private void connectTry() {
+        String logTag = this.logTag + "[Con] ";
+        if (subscriber == null) {
+            subscriber = Subscriber.createSubscriber(new SessionListener(++subscriberGeneration));
+        }
+        if (subscriber.isConnected()) {
+            logD(TAG, logTag + "Not doing as we're already connected!");
+            return;
+        }
+        Subscriber.Credential creds = subscriber.getCredentials();
+        creds.accountId = accountId;
+        creds.streamName = streamName;
+        creds.apiUrl = apiUrl;
+        if (token != null && !token.isEmpty()) {
+            creds.token = Optional.of(token);
+        }
+        subscriber.setCredentials(creds);
+
+        setState(SubscriberState.CONNECTING);
+        boolean success = false;
+        try {
+            success = subscriber.connect();
+        } catch (Exception e) {
+            logD(TAG, logTag + "Error: " + e.getLocalizedMessage());
+        }
+        if (success) {
+            mcMan.startSessionAudioPlayback();
+            logD(TAG, logTag + "OK. Connecting to Millicast.");
+        } else {
+            setState(SubscriberState.DISCONNECTED);
+            logD(TAG, logTag + "Failed!");
+            if (reconnector.isReconnecting()) {
+                reconnector.onLost();
+            }
+        }
+    }
+
+    /**
+     * Handle the loss of the connection.
+     * The projections are kept, to be restored when the sources are active again.
+     */
+    private void onLost() {
+        String logTag = this.logTag + "[Con][Lost] ";
+        if (!reconnector.isArmed()) {
+            logD(TAG, logTag + "Not reconnecting as the connection is not supervised.");
+            return;
+        }
+        releaseSubscriber();
+        setState(SubscriberState.DISCONNECTED);
+        reconnector.onLost();
+    }
+
+    /**
+     * Release the SDK Subscriber and clear the sources, but keep the projections.
+     */
+    private void releaseSubscriber() {
+        if (subscriber != null) {
+            subscriber.release();
+            subscriber = null;
+        }
+        sourceMap.clear();
+        midAudio = null;
+        midVideo = null;
+        audioTrack = null;
+        videoTrack = null;
+        notifySourcesChanged();
+    }
+
+    private void project(String sourceId, boolean isAudio) {
+        String logTag = this.logTag + "[Source][Project]:" + sourceId + (isAudio ? " A " : " V ");
+        SourceInfo source = getSource(sourceId);
+        String mid = isAudio ? midAudio : midVideo;
+        if (subscriber == null || source == null || mid == null) {
+            logD(TAG, logTag + "Failed! The source or track is not available.");
+            return;
+        }
+        ArrayList<Subscriber.ProjectionData> projectionData =
+                source.getProjectionData(mid, isAudio);
+        if (projectionData == null || !subscriber.project(sourceId, projectionData)) {
+            logD(TAG, logTag + "Failed!");
+            return;
+        }
+        if (isAudio) {
+            sourceIdAudio = sourceId;
+        } else {
+            sourceIdVideo = sourceId;
+        }
+        logD(TAG, logTag + "OK.");
+    }
+
+    private SourceInfo getSource(String sourceId) {
+        if (sourceId == null) {
+            return null;
+        }
+        return sourceMap.get(sourceId);
+    }
+
+    private void setState(SubscriberState state) {
+        this.state = state;
+        if (state == SubscriberState.SUBSCRIBING) {
+            reconnector.onRecovered();
+        }
+        handlerMain.post(() -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onStateChanged(this, state);
+            }
+        });
+    }
+
+    private void notifySourcesChanged() {
+        handlerMain.post(() -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onSourcesChanged(this);
+            }
+        });
+    }
+
+    /**
+     * Listener of one SDK Subscriber of this session,
+     * that handles each event on the session handler while that Subscriber is current.
+     */
+    private class SessionListener implements Subscriber.Listener {
+
+        private final int generation;
+
+        SessionListener(int generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Run the event on the session handler,
+         * unless its Subscriber has since been released or replaced.
+         */
+        private void post(Runnable event) {
+            handler.post(() -> {
+                if (subscriber == null || generation != subscriberGeneration) {
+                    logD(TAG, logTag + "[Stale] Ignoring event of a released Subscriber.");
+                    return;
+                }
+                event.run();
+            });
+        }
+
+        @Override
+        public void onSubscribed() {
+            post(() -> setState(SubscriberState.SUBSCRIBING));
+        }
+
+        @Override
+        public void onSubscribedError(String s) {
+            logD(TAG, logTag + "[Error] Subscribe Error:" + s);
+        }
+
+        @Override
+        public void onConnected() {
+            post(() -> {
+                setState(SubscriberState.CONNECTED);
+                if (subscriber != null && !subscriber.subscribe()) {
+                    logD(TAG, logTag + "[Start] Failed!");
+                }
+            });
+        }
+
+        @Override
+        public void onDisconnected() {
+            post(SubSession.this::onLost);
+        }
+
+        @Override
+        public void onConnectionError(int status, String reason) {
+            logD(TAG, logTag + "[Con][Error] " + status + " " + reason);
+            post(SubSession.this::onLost);
+        }
+
+        @Override
+        public void onStopped() {
+            logD(TAG, logTag + "[Stop] OK.");
+        }
+
+        @Override
+        public void onSignalingError(String s) {
+            logD(TAG, logTag + "[Sig][Error] " + s);
+        }
+
+        @Override
+        public void onStatsReport(RTCStatsReport statsReport) {
+            // Stats are not requested for sessions.
+        }
+
+        @Override
+        public void onTrack(VideoTrack track, Optional<String> mid) {
+            post(() -> {
+                videoTrack = track;
+                midVideo = mid.orElse(null);
+                handlerMain.post(() -> {
+                    if (renderer != null) {
+                        track.setRenderer(renderer);
+                    }
+                });
+            });
+        }
+
+        @Override
+        public void onTrack(AudioTrack track, Optional<String> mid) {
+            post(() -> {
+                audioTrack = track;
+                midAudio = mid.orElse(null);
+                track.setEnabled(audioEnabled);
+            });
+        }
+
+        @Override
+        public void onActive(String streamId, String[] tracks, Optional<String> sourceId) {
+            String source = sourceId.orElse("");
+            TrackParser.Result result = trackParser.parse(tracks);
+            for (TrackParser.Error error : result.errors) {
+                logD(TAG, logTag + "[Active] Error! Not adding this track: " + error + ".");
+            }
+            SourceInfo sourceInfo = new SourceInfo(source,
+                    result.audioTrackIds, result.videoTrackIds);
+            post(() -> {
+                sourceMap.put(source, sourceInfo);
+                // Restore the projections from before a reconnect.
+                if (source.equals(sourceIdAudio) && sourceInfo.hasAudio()) {
+                    project(source, true);
+                }
+                if (source.equals(sourceIdVideo) && sourceInfo.hasVideo()) {
+                    project(source, false);
+                }
+                notifySourcesChanged();
+            });
+        }
+
+        @Override
+        public void onInactive(String streamId, Optional<String> sourceId) {
+            String source = sourceId.orElse("");
+            post(() -> {
+                sourceMap.remove(source);
+                notifySourcesChanged();
+            });
+        }
+
+        @Override
+        public void onLayers(String mid, LayerData[] activeLayers, LayerData[] inactiveLayers) {
+            post(() -> {
+                SourceInfo source = getSource(sourceIdVideo != null ? sourceIdVideo : "");
+                if (source != null) {
+                    source.setLayerActiveList(activeLayers);
+                }
+            });
+        }
+
+        @Override
+        public void onVad(String mid, Optional<String> sourceId) {
+            // Not used by sessions.
+        }
+
+        @Override
+        public void onViewerCount(int count) {
+            // Not used by sessions.
+        }
+    }
+}
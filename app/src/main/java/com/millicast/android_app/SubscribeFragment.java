@@ -8,6 +8,7 @@ import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CompoundButton;
 import android.widget.LinearLayout;
@@ -45,6 +46,7 @@ public class SubscribeFragment extends Fragment {
     private LinearLayout linearLayoutVideo;
     private LinearLayout linearLayoutCon;
     private TextView textViewStream;
+    private TextView textViewLatency;
     private Switch switchDirection;
     private Button buttonSubscribe;
     private Button buttonAudio;
@@ -59,6 +61,18 @@ public class SubscribeFragment extends Fragment {
     private boolean ascending = true;
     private boolean conVisible = true;
 
+    // Sources shown in the source spinners, and the SourceRegistry versions they show.
+    private ArrayList<String> sourceListAudio = null;
+    private ArrayList<String> sourceListVideo = null;
+    private long sourceVersionAudio = -1;
+    private long sourceVersionVideo = -1;
+    private final ArrayList<SourceRegistry.Delta> sourceDeltas = new ArrayList<>();
+
+    // Rolling histogram of the glass to glass latency, reused for each update.
+    private static final int LATENCY_BAR_MAX = 20;
+    private final int[] latencyCounts = new int[PlayoutLatency.BUCKETS_MS.length + 1];
+    private final StringBuilder latencyText = new StringBuilder();
+
     public SubscribeFragment() {
         this.mcMan = MillicastManager.getSingleInstance();
 
@@ -84,6 +98,7 @@ public class SubscribeFragment extends Fragment {
         linearLayoutVideo = view.findViewById(R.id.linear_layout_video_sub);
         linearLayoutCon = view.findViewById(R.id.linear_layout_con_sub);
         textViewStream = view.findViewById(R.id.text_view_stream);
+        textViewLatency = view.findViewById(R.id.text_view_latency);
 
         textViewSourceAudio = view.findViewById(R.id.text_view_source_audio);
         textViewSourceVideo = view.findViewById(R.id.text_view_source_video);
@@ -287,16 +302,18 @@ public class SubscribeFragment extends Fragment {
 
     /**
      * Load {@link #spinnerSourceAudio} or {@link #spinnerSourceVideo} with current sources.
+     * Only the changes since the spinner was last loaded are applied to it, if still available
+     * in the registry. Otherwise, the spinner is loaded again with all the sources.
      * Set selection to the current selected source, if possible.
      * The default/main source (the latest one published without a sourceId) if present,
      * would be represented by a blank selection.
      *
-     * @param spinnerList
+     * @param registry
      * @param lambda
      * @param isAudio
      * @param changed
      */
-    void loadSourceSpinner(ArrayList<String> spinnerList, Utils.GetSelectedIndex lambda, boolean isAudio, boolean changed) {
+    void loadSourceSpinner(SourceRegistry<SourceInfo> registry, Utils.GetSelectedIndex lambda, boolean isAudio, boolean changed) {
         String logTagLoad = "[View][Source][Id][Spinner][Load]";
         String logLoad;
         String currentSource;
@@ -341,6 +358,36 @@ public class SubscribeFragment extends Fragment {
             }
         });
 
+        // Apply only the changes if possible.
+        ArrayList<String> sourceList = isAudio ? sourceListAudio : sourceListVideo;
+        long version = isAudio ? sourceVersionAudio : sourceVersionVideo;
+        sourceDeltas.clear();
+        if (sourceList != null && spinner.getAdapter() != null &&
+                registry.getDeltasSince(version, sourceDeltas)) {
+            if (!sourceDeltas.isEmpty()) {
+                version = applySourceDeltas(sourceList, sourceDeltas);
+                ((ArrayAdapter<?>) spinner.getAdapter()).notifyDataSetChanged();
+            }
+            int index = lambda.getSelectedIndex(sourceList);
+            if (index >= 0 && index != spinner.getSelectedItemPosition()) {
+                spinner.setSelection(index);
+            }
+            setSourceVersion(isAudio, version);
+            logD(TAG, logTagLoad + "Applied " + sourceDeltas.size() + " changes. Version:" +
+                    version + ".");
+            return;
+        }
+
+        // Otherwise load all the sources.
+        // The version is read first, as any later change is applied again harmlessly.
+        version = registry.getVersion();
+        ArrayList<String> spinnerList = new ArrayList<>(registry.getIds());
+        if (isAudio) {
+            sourceListAudio = spinnerList;
+        } else {
+            sourceListVideo = spinnerList;
+        }
+        setSourceVersion(isAudio, version);
         populateSpinner(spinnerList, spinner, lambda, mcMan.getContext(), (int position) -> {
             String logTagSet = "[View][Source][Id][Spinner][Set]";
             String logSet;
@@ -391,6 +438,43 @@ public class SubscribeFragment extends Fragment {
         });
     }
 
+    /**
+     * Apply the changes of the sources to a list of sourceIds shown in a spinner.
+     * A change already in the list (for e.g. a source added again) is ignored.
+     *
+     * @param sourceList
+     * @param deltas
+     * @return The version of the last change applied.
+     */
+    private long applySourceDeltas(ArrayList<String> sourceList,
+                                   ArrayList<SourceRegistry.Delta> deltas) {
+        long version = -1;
+        for (SourceRegistry.Delta delta : deltas) {
+            switch (delta.type) {
+                case ADDED:
+                    if (!sourceList.contains(delta.sourceId)) {
+                        sourceList.add(delta.sourceId);
+                    }
+                    break;
+                case REMOVED:
+                    sourceList.remove(delta.sourceId);
+                    break;
+                case CHANGED:
+                    break;
+            }
+            version = delta.version;
+        }
+        return version;
+    }
+
+    private void setSourceVersion(boolean isAudio, long version) {
+        if (isAudio) {
+            sourceVersionAudio = version;
+        } else {
+            sourceVersionVideo = version;
+        }
+    }
+
     /**
      * Load {@link #spinnerLayer} with the current video source's layers.
      * Set initial selection to the current selected layerId, if possible.
@@ -455,6 +539,46 @@ public class SubscribeFragment extends Fragment {
     }
 
 
+    /**
+     * Show the playout latency of the subscribed video, with a rolling histogram of the
+     * estimated glass to glass latency.
+     * Must be run on UI thread.
+     *
+     * @param latency
+     */
+    void setLatencyUI(PlayoutLatency latency) {
+        if (this.getView() == null) {
+            return;
+        }
+        int total = latency.getHistogram(PlayoutLatency.Metric.GLASS_TO_GLASS, latencyCounts);
+        if (total == 0) {
+            textViewLatency.setText(R.string.latency_none);
+            return;
+        }
+        boolean endToEnd = latency.getLatest(PlayoutLatency.Metric.END_TO_END) != StatsRecord.NA;
+        latencyText.setLength(0);
+        latencyText.append(endToEnd ? "E2E " : "Est. ").append(latency)
+                .append(" p95:").append((long) latency.getPercentile(
+                        PlayoutLatency.Metric.GLASS_TO_GLASS, 95)).append("ms");
+        int lower = 0;
+        for (int i = 0; i < latencyCounts.length; ++i) {
+            latencyText.append('\n');
+            if (i < PlayoutLatency.BUCKETS_MS.length) {
+                int upper = PlayoutLatency.BUCKETS_MS[i];
+                latencyText.append(String.format("<%4d", upper)).append("ms ");
+                lower = upper;
+            } else {
+                latencyText.append(String.format(">%4d", lower)).append("ms ");
+            }
+            int bar = (latencyCounts[i] * LATENCY_BAR_MAX + total - 1) / total;
+            for (int j = 0; j < bar; ++j) {
+                latencyText.append('#');
+            }
+            latencyText.append(' ').append(latencyCounts[i]);
+        }
+        textViewLatency.setText(latencyText);
+    }
+
     /**
      * Set the state of UIs, including subscribe button,
      * based on current subscribe state.
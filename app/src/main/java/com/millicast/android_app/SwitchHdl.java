@@ -6,19 +6,28 @@ import static com.millicast.android_app.Utils.logD;
 
 /**
  * Implementation of VideoSource's camera switch listener.
- * This handles camera switch events that allows us to know the outcome and details of camera switching.
+ * This handles camera switch events that allows us to know the outcome and details of camera switching,
+ * and reports them to the {@link MillicastManager} to time the switch.
  */
 class SwitchHdl implements VideoSource.SwitchCameraHandler {
     public static final String TAG = "SwitchHdl";
     private String logTag = "[Video][Source][Cam][Switch][Hdl] ";
 
+    private MillicastManager mcMan;
+
+    public SwitchHdl() {
+        mcMan = MillicastManager.getSingleInstance();
+    }
+
     @Override
     public void onCameraSwitchDone(boolean b) {
         logD(TAG, logTag + "Done: " + b);
+        mcMan.onCameraSwitched(true);
     }
 
     @Override
     public void onCameraSwitchError(String s) {
         logD(TAG, logTag + "Error: " + s);
+        mcMan.onCameraSwitched(false);
     }
 }
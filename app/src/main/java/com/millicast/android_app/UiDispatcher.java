@@ -0,0 +1,120 @@
+package com.millicast.android_app;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces UI updates requested from any thread, so that each view is updated
+ * at most once per frame.
+ * A request only marks its views as dirty. The first request after a frame schedules
+ * a Choreographer frame callback, in which all views marked since are updated in a single pass.
+ * Requests made while an update is pending are coalesced into it,
+ * for e.g. when the sources of a multisource stream become active in a burst.
+ */
+public class UiDispatcher implements Choreographer.FrameCallback {
+    public static final String TAG = "UiDispatcher";
+
+    // Views that can be marked as dirty.
+    public static final int VIEW_PUB = 1;
+    public static final int VIEW_SET_MEDIA = 1 << 1;
+    public static final int VIEW_SUB = 1 << 2;
+    public static final int VIEW_SUB_LAYER = 1 << 3;
+    public static final int VIEW_SOURCE_AUDIO = 1 << 4;
+    public static final int VIEW_SOURCE_VIDEO = 1 << 5;
+    /**
+     * Marked with {@link #VIEW_SOURCE_AUDIO} and/or {@link #VIEW_SOURCE_VIDEO}
+     * when the list of sources has changed.
+     */
+    public static final int SOURCE_CHANGED = 1 << 6;
+    public static final int VIEW_SUB_LATENCY = 1 << 7;
+
+    /**
+     * Updates the dirty views, on the main thread.
+     */
+    public interface Target {
+        /**
+         * @param flags The views marked as dirty since the last update.
+         */
+        void onUpdateUi(int flags);
+    }
+
+    private final Handler handlerMain;
+    private final Target target;
+    private final AtomicInteger dirty = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+
+    public UiDispatcher(Handler handlerMain, Target target) {
+        this.handlerMain = handlerMain;
+        this.target = target;
+    }
+
+    /**
+     * Mark views as dirty, to be updated in the next frame.
+     * May be called on any thread.
+     *
+     * @param flags
+     */
+    public void markDirty(int flags) {
+        requestCount.incrementAndGet();
+        int old;
+        do {
+            old = dirty.get();
+        } while (!dirty.compareAndSet(old, old | flags));
+
+        if (old == 0) {
+            // Choreographer is per thread, so it has to be called on the main thread.
+            handlerMain.post(() -> Choreographer.getInstance().postFrameCallback(this));
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        int flags = dirty.getAndSet(0);
+        if (flags == 0) {
+            return;
+        }
+        frameCount.incrementAndGet();
+        target.onUpdateUi(flags);
+    }
+
+    /**
+     * Get the number of update requests so far.
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Get the number of update requests that were coalesced into an already pending update,
+     * and so did not cause a frame of their own.
+     *
+     * @return
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Get the number of frames in which views were updated.
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Requests:" + requestCount.get() + " Coalesced:" + coalescedCount.get() +
+                " Frames:" + frameCount.get();
+    }
+}
@@ -1,7 +1,10 @@
 package com.millicast.android_app;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.Gravity;
@@ -22,8 +25,11 @@ import com.millicast.VideoRenderer;
 
 import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Utility methods used in the SA.
@@ -31,8 +37,26 @@ import java.util.List;
 public class Utils {
 
     public static final String TAG = "Utils";
-    static SharedPreferences sharedPreferences;
+    static ConfigStore configStore;
+    /**
+     * Delay (in ms) before writing values set, so that values set together are written at once.
+     */
+    static final long CONFIG_FLUSH_DELAY_MS = 500;
     static int maxLogLen = 4000;
+    private static volatile int logLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+    /**
+     * Minimum interval (in ms) between two Snackbars, and maximum number of distinct messages in one.
+     */
+    static final long SNACKBAR_INTERVAL_MS = 1500;
+    static final int SNACKBAR_LINES_MAX = 8;
+    // The messages batched for each Fragment, dropped with the Fragment.
+    private static final Map<Fragment, NoticeBatcher> snackbarBatchers = new WeakHashMap<>();
+    private static volatile Handler handlerSnackbar = null;
+    // The Snackbar reused for messages, and the view it was made for.
+    // Held weakly so as not to keep a destroyed view (and its Fragment) alive.
+    // Only accessed on the main thread.
+    private static WeakReference<Snackbar> snackbarRef = new WeakReference<>(null);
+    private static WeakReference<View> snackbarViewRef = new WeakReference<>(null);
 
     //**********************************************************************************************
     // Data structure
@@ -51,34 +75,11 @@ public class Utils {
      * @return
      */
     public static Integer indexNext(int size, int now, boolean ascending, String logTag) {
-        Integer next = null;
-        if (size < 1) {
-            logD(TAG, logTag + "Failed. List size was less than 1. Next: " + next + " Now: " + now);
-            return null;
-        }
-        if (ascending) {
-            if (now >= (size - 1)) {
-                next = 0;
-                logD(TAG, logTag + next + " (Cycling back to start)");
-            } else {
-                next = now + 1;
-                logD(TAG, logTag + next + " Incrementing index.");
-            }
-        } else {
-            if (now <= 0) {
-                next = size - 1;
-                logD(TAG, logTag + next + " (Cycling back to end)");
-            } else {
-                next = now - 1;
-                logD(TAG, logTag + next + " Decrementing index.");
-            }
-        }
-
-        if (next < 0) {
-            logD(TAG, logTag + "Failed. Next is invalid. Next: " + next + " Now: " + now);
+        Integer next = CoreUtils.indexNext(size, now, ascending);
+        if (next == null) {
+            logD(TAG, logTag + "Failed. No next index for list size: " + size + " Now: " + now);
             return null;
         }
-
         logD(TAG, logTag + "Next: " + next + " Now: " + now);
         return next;
     }
@@ -88,19 +89,58 @@ public class Utils {
     //**********************************************************************************************
 
     /**
-     * logcat truncates strings longer than a certain length.
-     * This method breaks the input string into smaller chunks of maxLogSize and print them all.
+     * Lambda interface that builds a log message only when it is to be logged,
+     * so that building it is skipped entirely when debug logging is off.
+     */
+    public interface LogMsg {
+        String get();
+    }
+
+    /**
+     * The minimum priority (for e.g. {@link Log#DEBUG}) of messages that are logged.
+     * Debug logging is on for debug builds and off for release builds.
+     *
+     * @return
+     */
+    public static int getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Set the minimum priority of messages that are logged, for e.g. to turn on debug logging
+     * ({@link Log#DEBUG}) in a release build while investigating an issue.
+     *
+     * @param level
+     */
+    public static void setLogLevel(int level) {
+        logLevel = level;
+    }
+
+    /**
+     * Checks if debug messages are logged.
+     * Callers may check this before building an expensive log message.
+     *
+     * @return
+     */
+    public static boolean isLogD() {
+        return logLevel <= Log.DEBUG;
+    }
+
+    /**
+     * Log a debug message if debug logging is on.
+     * The message is written to logcat on a background thread by the {@link LogWriter}.
+     * logcat truncates strings longer than a certain length,
+     * so messages longer than {@link #maxLogLen} are broken into smaller chunks when written.
      *
      * @param TAG
      * @param longString
      * @param logTag     An additional tag to include in front of each printed line.
      */
     public static void logD(String TAG, String longString, String logTag) {
-        for (int i = 0; i < longString.length(); i += maxLogLen) {
-            int end = i + maxLogLen;
-            end = end > longString.length() ? longString.length() : end;
-            Log.d(TAG, logTag + longString.substring(i, end));
+        if (logLevel > Log.DEBUG) {
+            return;
         }
+        LogWriter.getSingleInstance().add(Log.DEBUG, TAG, logTag, longString);
     }
 
     /**
@@ -113,19 +153,68 @@ public class Utils {
         logD(TAG, longString, "");
     }
 
+    /**
+     * The same as {@link #logD} except the message is only built if debug logging is on.
+     *
+     * @param TAG
+     * @param msg
+     */
+    public static void logD(String TAG, LogMsg msg) {
+        if (logLevel > Log.DEBUG) {
+            return;
+        }
+        LogWriter.getSingleInstance().add(Log.DEBUG, TAG, "", msg.get());
+    }
+
     //**********************************************************************************************
     // SharedPreferences
     //**********************************************************************************************
 
-    private static SharedPreferences getPref(Context context) {
-        if (sharedPreferences == null) {
-            sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    /**
+     * Get the {@link ConfigStore} of the App, creating it if needed.
+     * When created, all values are read at once from the default SharedPreferences,
+     * and values set are written back on a background thread.
+     *
+     * @param context
+     * @return
+     */
+    public static synchronized ConfigStore getConfig(Context context) {
+        if (configStore == null) {
+            HandlerThread thread = new HandlerThread("MC-Config");
+            thread.start();
+            Handler handler = new Handler(thread.getLooper());
+            configStore = new ConfigStore(
+                    new SharedPrefsBackend(PreferenceManager.getDefaultSharedPreferences(context)),
+                    runnable -> handler.postDelayed(runnable, CONFIG_FLUSH_DELAY_MS));
+        }
+        return configStore;
+    }
+
+    /**
+     * Set the {@link ConfigStore} of the App, for e.g. one with a
+     * {@link ConfigStore.MemoryBackend} for tests.
+     *
+     * @param store
+     */
+    public static synchronized void setConfig(ConfigStore store) {
+        configStore = store;
+    }
+
+    /**
+     * Write any values set that have not yet been written, on the calling thread.
+     */
+    public static void flushSaved() {
+        ConfigStore store;
+        synchronized (Utils.class) {
+            store = configStore;
+        }
+        if (store != null) {
+            store.flush();
         }
-        return sharedPreferences;
     }
 
     /**
-     * Get a String value from the default SharedPreferences, if available.
+     * Get a String value from the App's ConfigStore, if available.
      * If not, return the specified defaultValue.
      *
      * @param key
@@ -134,14 +223,13 @@ public class Utils {
      * @return
      */
     public static String getSaved(String key, String defaultValue, Context context) {
-        String value = getPref(context).getString(key, defaultValue);
-        String log = "[Utils][String][Get] " + key + ": " + value + ".";
-        logD(TAG, log);
+        String value = getConfig(context).getString(key, defaultValue);
+        logD(TAG, () -> "[Utils][String][Get] " + key + ": " + value + ".");
         return value;
     }
 
     /**
-     * Get a boolean value from the default SharedPreferences, if available.
+     * Get a boolean value from the App's ConfigStore, if available.
      * If not, return the specified defaultValue.
      *
      * @param key
@@ -150,14 +238,13 @@ public class Utils {
      * @return
      */
     public static boolean getSaved(String key, boolean defaultValue, Context context) {
-        boolean value = getPref(context).getBoolean(key, defaultValue);
-        String log = "[Utils][Boolean][Get] " + key + ": " + value + ".";
-        logD(TAG, log);
+        boolean value = getConfig(context).getBoolean(key, defaultValue);
+        logD(TAG, () -> "[Utils][Boolean][Get] " + key + ": " + value + ".");
         return value;
     }
 
     /**
-     * Get an integer value from the default SharedPreferences, if available.
+     * Get an integer value from the App's ConfigStore, if available.
      * If not, return the specified defaultValue.
      *
      * @param key
@@ -166,55 +253,48 @@ public class Utils {
      * @return
      */
     public static int getSaved(String key, int defaultValue, Context context) {
-        int value = getPref(context).getInt(key, defaultValue);
-        String log = "[Utils][Int][Get] " + key + ": " + value + ".";
-        logD(TAG, log);
+        int value = getConfig(context).getInt(key, defaultValue);
+        logD(TAG, () -> "[Utils][Int][Get] " + key + ": " + value + ".");
         return value;
     }
 
     /**
-     * Set a String value into the default SharedPreferences, using the specified key.
+     * Set a String value into the App's ConfigStore, using the specified key.
+     * The value is written to SharedPreferences later, on a background thread.
      *
      * @param key
      * @param value
      * @param context
      */
     public static void setSaved(String key, String value, Context context) {
-        SharedPreferences.Editor editor = getPref(context).edit();
-        editor.putString(key, value);
-        editor.commit();
-        String log = "[Utils][String][Set] " + key + ": " + value + ".";
-        logD(TAG, log);
+        getConfig(context).putString(key, value);
+        logD(TAG, () -> "[Utils][String][Set] " + key + ": " + value + ".");
     }
 
     /**
-     * Set a boolean value into the default SharedPreferences, using the specified key.
+     * Set a boolean value into the App's ConfigStore, using the specified key.
+     * The value is written to SharedPreferences later, on a background thread.
      *
      * @param key
      * @param value
      * @param context
      */
     public static void setSaved(String key, boolean value, Context context) {
-        SharedPreferences.Editor editor = getPref(context).edit();
-        editor.putBoolean(key, value);
-        editor.commit();
-        String log = "[Utils][Boolean][Set] " + key + ": " + value + ".";
-        logD(TAG, log);
+        getConfig(context).putBoolean(key, value);
+        logD(TAG, () -> "[Utils][Boolean][Set] " + key + ": " + value + ".");
     }
 
     /**
-     * Set an integer value into the default SharedPreferences, using the specified key.
+     * Set an integer value into the App's ConfigStore, using the specified key.
+     * The value is written to SharedPreferences later, on a background thread.
      *
      * @param key
      * @param value
      * @param context
      */
     public static void setSaved(String key, int value, Context context) {
-        SharedPreferences.Editor editor = getPref(context).edit();
-        editor.putInt(key, value);
-        editor.commit();
-        String log = "[Utils][Int][Set] " + key + ": " + value + ".";
-        logD(TAG, log);
+        getConfig(context).putInt(key, value);
+        logD(TAG, () -> "[Utils][Int][Set] " + key + ": " + value + ".");
     }
 
     /**
@@ -359,21 +439,10 @@ public class Utils {
      * @return The representative string or an empty string if the array was null or empty.
      */
     public static <T> String getArrayStr(T[] itemList, String separator, LambdaToString lambda) {
-        String result = "";
-        if (itemList == null || itemList.length == 0) {
-            return result;
+        if (lambda == null) {
+            return CoreUtils.getArrayStr(itemList, separator, null);
         }
-        for (T item : itemList) {
-            if (lambda != null) {
-                result += lambda.toString(item);
-            } else {
-                result += item.toString();
-            }
-            result += separator;
-        }
-        // Remove the last separator if any had been added.
-        result = result.substring(0, result.length() - separator.length());
-        return result;
+        return CoreUtils.getArrayStr(itemList, separator, lambda::toString);
     }
 
     public interface LambdaToString {
@@ -406,32 +475,86 @@ public class Utils {
         Log.d(tag, "[stopDisplayVideo] Video no longer on UI.");
     }
 
+    /**
+     * Show a message in a Snackbar at the top of the Fragment's view, and log it.
+     * Messages are batched per Fragment, so that at most one Snackbar is shown per
+     * {@link #SNACKBAR_INTERVAL_MS} on a Fragment, with all its messages since the last one.
+     * Identical messages are shown once with their count.
+     * A single Snackbar is reused while the view remains the same.
+     *
+     * @param logTag
+     * @param msg
+     * @param fragment
+     */
     public static void makeSnackbar(String logTag, String msg, Fragment fragment) {
-        MillicastManager.getSingleInstance().getMainActivity().runOnUiThread(() -> {
-            logD(TAG, logTag + msg);
-            if (fragment == null) {
-                logD(TAG, "[Utils][Snackbar] Failed! Fragment not available. " +
-                        "Only logging.");
-                return;
-            }
-            View view = fragment.getView();
-            if (view != null && view.getParent() != null) {
-                Snackbar snackbar = Snackbar.make(view, msg, Snackbar.LENGTH_SHORT);
-                View snackbarView = snackbar.getView();
-                CoordinatorLayout.LayoutParams params = (CoordinatorLayout.LayoutParams) snackbarView.getLayoutParams();
-                params.gravity = Gravity.TOP;
-                params.width = WRAP_CONTENT;
-                snackbarView.setLayoutParams(params);
-                TextView tv = snackbarView.findViewById(com.google.android.material.R.id.snackbar_text);
-                tv.setGravity(Gravity.CENTER_HORIZONTAL);
-                tv.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
-                tv.setMaxLines(10);
-                snackbar.setAction("Action", null).show();
-            } else {
-                logD(TAG, "[Utils][Snackbar] Failed! View or parent not available. " +
-                        "Only logging.");
+        logD(TAG, logTag + msg);
+        if (fragment == null) {
+            logD(TAG, "[Utils][Snackbar] Failed! Fragment not available. " +
+                    "Only logging.");
+            return;
+        }
+        NoticeBatcher batcher;
+        synchronized (snackbarBatchers) {
+            batcher = snackbarBatchers.get(fragment);
+            if (batcher == null) {
+                batcher = new NoticeBatcher(SNACKBAR_INTERVAL_MS, SNACKBAR_LINES_MAX);
+                snackbarBatchers.put(fragment, batcher);
             }
-        });
+        }
+        if (batcher.add(msg)) {
+            long delay = batcher.getDelayMs(SystemClock.elapsedRealtime());
+            NoticeBatcher batched = batcher;
+            getHandlerSnackbar().postDelayed(() -> showSnackbar(fragment, batched), delay);
+        }
+    }
+
+    /**
+     * Show the messages batched for the Fragment since its last Snackbar.
+     * Runs on the main thread.
+     *
+     * @param fragment
+     * @param batcher  The batcher of the fragment.
+     */
+    private static void showSnackbar(Fragment fragment, NoticeBatcher batcher) {
+        String text = batcher.poll(SystemClock.elapsedRealtime());
+        if (text == null) {
+            return;
+        }
+        View view = fragment.getView();
+        if (view == null || view.getParent() == null) {
+            logD(TAG, "[Utils][Snackbar] Failed! View or parent not available. " +
+                    "Only logging.");
+            return;
+        }
+        Snackbar snackbar = snackbarRef.get();
+        if (snackbar != null && snackbarViewRef.get() == view) {
+            snackbar.setText(text);
+            snackbar.show();
+            return;
+        }
+        if (snackbar != null) {
+            snackbar.dismiss();
+        }
+        snackbar = Snackbar.make(view, text, Snackbar.LENGTH_SHORT);
+        snackbarRef = new WeakReference<>(snackbar);
+        snackbarViewRef = new WeakReference<>(view);
+        View barView = snackbar.getView();
+        CoordinatorLayout.LayoutParams params = (CoordinatorLayout.LayoutParams) barView.getLayoutParams();
+        params.gravity = Gravity.TOP;
+        params.width = WRAP_CONTENT;
+        barView.setLayoutParams(params);
+        TextView tv = barView.findViewById(com.google.android.material.R.id.snackbar_text);
+        tv.setGravity(Gravity.CENTER_HORIZONTAL);
+        tv.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
+        tv.setMaxLines(SNACKBAR_LINES_MAX + 1);
+        snackbar.setAction("Action", null).show();
+    }
+
+    private static Handler getHandlerSnackbar() {
+        if (handlerSnackbar == null) {
+            handlerSnackbar = new Handler(Looper.getMainLooper());
+        }
+        return handlerSnackbar;
     }
 
     //**********************************************************************************************
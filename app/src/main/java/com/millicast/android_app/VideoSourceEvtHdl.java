@@ -1,6 +1,8 @@
 package com.millicast.android_app;
 
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import com.millicast.VideoSource;
 
@@ -19,6 +21,17 @@ class VideoSourceEvtHdl implements VideoSource.EventsHandler {
     private MillicastManager mcMan;
     private String logTag = "[Video][Source][Evt][Hdl][Cam] ";
 
+    // Camera events may arrive on any thread, so the camera params are set on the main thread.
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable runApplyParams = this::applyParams;
+    private final Runnable runDeadline = () -> {
+        ParamApplier applier = mcMan.getParamApplierRicoh();
+        if (applier.expire(SystemClock.elapsedRealtime())) {
+            handler.removeCallbacks(runApplyParams);
+            onParamsDone(applier);
+        }
+    };
+
     public VideoSourceEvtHdl() {
         mcMan = MillicastManager.getSingleInstance();
     }
@@ -42,43 +55,21 @@ class VideoSourceEvtHdl implements VideoSource.EventsHandler {
     public void onCameraOpening(String s) {
         makeSnackbar(logTag, "Camera opening... " + s, mcMan.getFragmentPub());
 
-        // Ricoh Theta specific processing to set CameraParams.
-        final boolean[] paramPreviewSet = new boolean[1];
-        Handler handler = new Handler();
-        final double[] delaySec = {0};
-
-        Runnable runRicohTheta = new Runnable() {
-            @Override
-            public void run() {
-                paramPreviewSet[0] = mcMan.setCameraParams("RicMoviePreview3840");
-                if (!paramPreviewSet[0]) {
-                    delaySec[0] = delaySec[0] + 0.5;
-                    handler.postDelayed(this, 500);
-                } else {
-                    mcMan = MillicastManager.getSingleInstance();
-                    // If this is a camera switch, current state would already be IS_CAPTURED.
-                    // Do not change states in this case.
-                    if (CaptureState.IS_CAPTURED != mcMan.getCapState()) {
-                        mcMan.setCapState(CaptureState.IS_CAPTURED);
-                    }
-                    setButtons();
-                    makeSnackbar(logTag, "RT Camera opening... Set camera params success at " +
-                            delaySec[0] + " s.", mcMan.getFragmentPub());
-                }
-            }
-        };
-
+        handler.removeCallbacks(runApplyParams);
+        handler.removeCallbacks(runDeadline);
         if (mcMan.isRicohTheta(CURRENT)) {
-            // NOTE: If the setCameraParams were called directly
-            // (instead of with a postDelayed of 0 ms), the call usually fails with error:
+            // Ricoh Theta specific processing to set CameraParams.
+            // NOTE: Setting the params while the camera is opening usually fails with error:
             // org.webrtc.Camera1Session.getParameters()' on a null object reference
-            handler.postDelayed(runRicohTheta, 0);
+            // so they are set once the camera is opened, or on its first frame.
+            ParamApplier applier = mcMan.getParamApplierRicoh();
+            applier.start(SystemClock.elapsedRealtime());
+            handler.postDelayed(runDeadline, MillicastManager.RICOH_PARAMS_DEADLINE_MS);
         } else {
+            mcMan.getParamApplierRicoh().stop();
             // If this is a camera switch, current state would already be IS_CAPTURED.
             // Do not change states in this case.
-            if (CaptureState.IS_CAPTURED != mcMan.getCapState()) {
-                mcMan.setCapState(CaptureState.IS_CAPTURED);
-            }
+            mcMan.compareAndSetCapState(CaptureState.TRY_CAPTURE, CaptureState.IS_CAPTURED);
             setButtons();
         }
     }
@@ -86,11 +77,24 @@ class VideoSourceEvtHdl implements VideoSource.EventsHandler {
     @Override
     public void onCameraOpened() {
         makeSnackbar(logTag, "Camera opened", mcMan.getFragmentPub());
+        if (mcMan.getParamApplierRicoh().onReady(SystemClock.elapsedRealtime())) {
+            handler.post(runApplyParams);
+        }
     }
 
     @Override
     public void onFirstFrameAvailable() {
-        makeSnackbar(logTag, "First Frame available", mcMan.getFragmentPub());
+        long switchMs = mcMan.onVideoFirstFrame();
+        String msg = "First Frame available";
+        if (switchMs >= 0) {
+            msg += " " + switchMs + " ms after camera switch";
+        }
+        makeSnackbar(logTag, msg, mcMan.getFragmentPub());
+        ParamApplier applier = mcMan.getParamApplierRicoh();
+        if (applier.onFirstFrame(SystemClock.elapsedRealtime())) {
+            handler.post(runApplyParams);
+        }
+        logConfigured(applier);
     }
 
     @Override
@@ -98,15 +102,57 @@ class VideoSourceEvtHdl implements VideoSource.EventsHandler {
         makeSnackbar(logTag, "Camera closed", mcMan.getFragmentPub());
     }
 
+    /**
+     * Attempt to set the Ricoh Theta camera params, on the main thread,
+     * and schedule a retry if it failed and the {@link ParamApplier} allows it.
+     */
+    private void applyParams() {
+        ParamApplier applier = mcMan.getParamApplierRicoh();
+        if (!applier.isActive()) {
+            return;
+        }
+        boolean success = mcMan.setCameraParams("RicMoviePreview3840");
+        long delay = applier.onAttempt(SystemClock.elapsedRealtime(), success);
+        if (delay >= 0) {
+            handler.postDelayed(runApplyParams, delay);
+            return;
+        }
+        handler.removeCallbacks(runDeadline);
+        onParamsDone(applier);
+    }
+
+    /**
+     * Complete the capture once setting the camera params has succeeded or failed.
+     * If failed, capture goes on, but without the params.
+     *
+     * @param applier
+     */
+    private void onParamsDone(ParamApplier applier) {
+        // If this is a camera switch, current state would already be IS_CAPTURED.
+        // Do not change states in this case.
+        mcMan.compareAndSetCapState(CaptureState.TRY_CAPTURE, CaptureState.IS_CAPTURED);
+        setButtons();
+        if (applier.getPhase() == ParamApplier.Phase.APPLIED) {
+            makeSnackbar(logTag, "RT Camera opening... Set camera params success at " +
+                    applier.getAppliedMs() + " ms after " + applier.getAttempts() + " attempt(s).",
+                    mcMan.getFragmentPub());
+        } else {
+            makeSnackbar(logTag, "RT Camera opening... Failed to set camera params! " + applier,
+                    mcMan.getFragmentPub());
+        }
+        logConfigured(applier);
+    }
+
+    private void logConfigured(ParamApplier applier) {
+        if (applier.getPhase() == ParamApplier.Phase.APPLIED) {
+            logD(TAG, logTag + "Camera params: " + applier + ".");
+        }
+    }
+
     /**
      * Set button states if containing view is available.
      */
     private void setButtons() {
-        mcMan.getMainActivity().runOnUiThread(() -> {
-            PublishFragment publishFragment = mcMan.getFragmentPub();
-            if (publishFragment != null) {
-                publishFragment.setUI();
-            }
-        });
+        mcMan.loadViewPub();
     }
 }
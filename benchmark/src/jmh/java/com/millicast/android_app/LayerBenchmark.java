@@ -0,0 +1,87 @@
+package com.millicast.android_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecting if a list of layers received in a layers event is the same as the previous one.
+ * SourceInfo.setLayerActiveList used to compare the String of the lists (from
+ * {@link MCLayer#getLayerListStr}), and now compares them via {@link MCLayer#isSameLayerList}:
+ * by hash, and only if equal, by content.
+ * For the latter, the previous list has the same layers as new instances in reverse order,
+ * so that the unchanged case goes through the content check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LayerBenchmark {
+
+    /**
+     * Number of simulcast encodings, each with 3 temporal layers.
+     */
+    @Param({"1", "3"})
+    public int encodingCount;
+
+    private MCLayer[] layers;
+    private MCLayer[] layersPrev;
+    private MCLayer[] layersChanged;
+    private String layerListStrPrev;
+    private int layerListHashPrev;
+
+    @Setup
+    public void setup() {
+        String[] encodingIds = {"h", "m", "l"};
+        int count = encodingCount * 3;
+        layers = new MCLayer[count];
+        layersPrev = new MCLayer[count];
+        layersChanged = new MCLayer[count];
+        for (int e = 0; e < encodingCount; ++e) {
+            for (int t = 0; t < 3; ++t) {
+                int i = e * 3 + t;
+                layers[i] = new MCLayer(encodingIds[e], 0, t, null, 2);
+                layersPrev[count - 1 - i] = new MCLayer(encodingIds[e], 0, t, null, 2);
+                layersChanged[i] = new MCLayer(encodingIds[e], 0, t, null, t == 2 ? 1 : 2);
+            }
+        }
+        layerListStrPrev = getLayerListStr(layers);
+        layerListHashPrev = MCLayer.getLayerListHash(layersPrev, MCLayer.CONTENT);
+    }
+
+    @Benchmark
+    public String layerListStr() {
+        return getLayerListStr(layers);
+    }
+
+    @Benchmark
+    public boolean layerListUnchangedStr() {
+        return layerListStrPrev.equals(getLayerListStr(layers));
+    }
+
+    @Benchmark
+    public boolean layerListUnchanged() {
+        return isSameAsPrev(layers);
+    }
+
+    @Benchmark
+    public boolean layerListChanged() {
+        return isSameAsPrev(layersChanged);
+    }
+
+    private boolean isSameAsPrev(MCLayer[] layerList) {
+        int hash = MCLayer.getLayerListHash(layerList, MCLayer.CONTENT);
+        return MCLayer.isSameLayerList(layerList, hash, layersPrev, layerListHashPrev,
+                MCLayer.CONTENT);
+    }
+
+    private static String getLayerListStr(MCLayer[] layerList) {
+        return MCLayer.getLayerListStr(layerList, layer -> layer.getLayerStr(true));
+    }
+}
@@ -0,0 +1,73 @@
+package com.millicast.android_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the tracks of a source when it becomes active (SubListener.onActive),
+ * compared with the former split based parsing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackParserBenchmark {
+
+    /**
+     * Number of tracks of the source, half audio and half video.
+     */
+    @Param({"2", "8", "32", "128", "512"})
+    public int trackCount;
+
+    private String[] tracks;
+    private TrackParser parser;
+
+    @Setup
+    public void setup() {
+        tracks = new String[trackCount];
+        for (int i = 0; i < trackCount; ++i) {
+            String kind = i % 2 == 0 ? "audio" : "video";
+            tracks[i] = kind + "/" + kind + "TrackId" + i;
+        }
+        // The same tracks are listed each time the source becomes active again.
+        parser = new TrackParser();
+        parser.parse(tracks);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        blackhole.consume(parser.parse(tracks));
+    }
+
+    /**
+     * The former parsing, that split each track and copied the trackIds from lists into arrays.
+     */
+    @Benchmark
+    public void parseSplit(Blackhole blackhole) {
+        ArrayList<String> audio = new ArrayList<>();
+        ArrayList<String> video = new ArrayList<>();
+        ArrayList<String> rejected = new ArrayList<>();
+        for (String track : tracks) {
+            String[] split = track.split("/");
+            if (split[0].equals("audio")) {
+                audio.add(split[1]);
+            } else if (split[0].equals("video")) {
+                video.add(split[1]);
+            } else {
+                rejected.add(track);
+            }
+        }
+        blackhole.consume(audio.toArray(new String[audio.size()]));
+        blackhole.consume(video.toArray(new String[video.size()]));
+        blackhole.consume(rejected);
+    }
+}
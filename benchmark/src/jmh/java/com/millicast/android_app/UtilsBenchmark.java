@@ -0,0 +1,69 @@
+package com.millicast.android_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Utils methods used on callbacks: getArrayStr, indexNext and the splitting of
+ * long log messages into lines done by logD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilsBenchmark {
+
+    /**
+     * Same as Utils.maxLogLen.
+     */
+    private static final int MAX_LOG_LEN = 4000;
+
+    /**
+     * Number of items in the array, and number of characters (in thousands)
+     * of the log message.
+     */
+    @Param({"4", "16"})
+    public int size;
+
+    private String[] items;
+    private String message;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        items = new String[size];
+        for (int i = 0; i < size; ++i) {
+            items[i] = "trackId" + i;
+        }
+        StringBuilder builder = new StringBuilder(size * 1000);
+        while (builder.length() < size * 1000) {
+            builder.append("[Sub][Stats] rtt:42ms bitrate:1500000bps ");
+        }
+        message = builder.toString();
+    }
+
+    @Benchmark
+    public String getArrayStr() {
+        return CoreUtils.getArrayStr(items, ",", null);
+    }
+
+    @Benchmark
+    public Integer indexNext() {
+        Integer next = CoreUtils.indexNext(size, index, true);
+        index = next;
+        return next;
+    }
+
+    @Benchmark
+    public int splitLines(Blackhole blackhole) {
+        return CoreUtils.splitLines("[Tag] ", message, MAX_LOG_LEN, blackhole::consume);
+    }
+}
@@ -0,0 +1,68 @@
+package com.millicast.android_app;
+
+import java.util.Random;
+
+/**
+ * Bounded exponential backoff with jitter, for the delays between retries of an operation.
+ * The delay before each retry doubles from the base delay up to the max delay.
+ * Jitter picks each actual delay at random between half and all of this delay,
+ * so that many clients that failed at the same time do not retry at the same time.
+ */
+public class Backoff {
+
+    private final long baseMs;
+    private final long maxMs;
+    private final Random random;
+    private int attempt = 0;
+
+    /**
+     * @param baseMs The delay before the first retry, before jitter.
+     * @param maxMs  The max delay before any retry, before jitter.
+     * @param random The source of jitter.
+     */
+    public Backoff(long baseMs, long maxMs, Random random) {
+        if (baseMs <= 0 || maxMs < baseMs) {
+            throw new IllegalArgumentException("Invalid base (" + baseMs + ") or max (" +
+                    maxMs + ") delay!");
+        }
+        this.baseMs = baseMs;
+        this.maxMs = maxMs;
+        this.random = random;
+    }
+
+    public Backoff(long baseMs, long maxMs) {
+        this(baseMs, maxMs, new Random());
+    }
+
+    /**
+     * Get the delay before the next retry, and count it as an attempt.
+     *
+     * @return The delay, in ms.
+     */
+    public long nextDelayMs() {
+        long delay = maxMs;
+        // Avoid overflow by not shifting beyond the max.
+        if (attempt < 62 && (baseMs << attempt) >> attempt == baseMs) {
+            delay = Math.min(maxMs, baseMs << attempt);
+        }
+        ++attempt;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half + 1));
+    }
+
+    /**
+     * The number of delays given since the last {@link #reset}.
+     *
+     * @return
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Start again from the base delay, for e.g. after the operation has succeeded.
+     */
+    public void reset() {
+        attempt = 0;
+    }
+}
@@ -0,0 +1,172 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.StatsRecord.NA;
+
+/**
+ * Closed loop controller of the Publisher's bitrate ceiling.
+ * On each stats update, the ceiling is:
+ * - Decreased when packet loss is high or RTT rises well above its baseline,
+ * down to the available outgoing bitrate estimated if that is lower.
+ * - Increased gradually when loss is low and RTT is near its baseline,
+ * but only after a hold period since the last decrease.
+ * - Otherwise held.
+ * The ceiling stays within the min and max given on {@link #reset}.
+ * Does not depend on Android or the SDK, so that it can be driven by synthetic stats traces.
+ */
+public class BitrateController {
+
+    /**
+     * The action taken by the latest {@link #update}.
+     */
+    public enum Action {
+        HOLD,
+        INCREASE,
+        DECREASE;
+    }
+
+    /**
+     * Ceilings below this are never set, even if the min given is lower.
+     */
+    public static final int MIN_FLOOR_KBPS = 100;
+    /**
+     * Fraction lost above which the ceiling is decreased.
+     */
+    public static final double LOSS_HIGH = 0.1;
+    /**
+     * Fraction lost below which the ceiling may be increased.
+     */
+    public static final double LOSS_LOW = 0.02;
+    /**
+     * RTT above the baseline by this amount (in ms) and by {@link #RTT_RISE_FACTOR} is congestion.
+     */
+    public static final double RTT_RISE_MS = 100;
+    public static final double RTT_RISE_FACTOR = 2;
+    /**
+     * Factor applied to the ceiling on congestion indicated by RTT.
+     */
+    public static final double DECREASE_FACTOR = 0.85;
+    /**
+     * Factor and step (in kbps) applied to the ceiling on increase.
+     */
+    public static final double INCREASE_FACTOR = 1.08;
+    public static final int INCREASE_STEP_KBPS = 10;
+    /**
+     * Time (in ms) after a decrease before the ceiling may be increased.
+     */
+    public static final long HOLD_MS = 8000;
+    /**
+     * On congestion, the ceiling is lowered to the available outgoing bitrate if the latter
+     * is below this fraction of the ceiling.
+     */
+    public static final double AVAILABLE_LOW = 0.85;
+
+    private int minKbps = MIN_FLOOR_KBPS;
+    private int maxKbps = MIN_FLOOR_KBPS;
+    private double ceilingKbps = MIN_FLOOR_KBPS;
+    // The lowest recent RTT, in ms.
+    private double rttBaseMs = NA;
+    private long decreaseTimeMs = NA;
+    private Action action = Action.HOLD;
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Reset the controller for a new publish, with the ceiling at the max.
+     *
+     * @param minKbps The lowest ceiling, raised to {@link #MIN_FLOOR_KBPS} if lower.
+     * @param maxKbps The highest ceiling.
+     */
+    public void reset(int minKbps, int maxKbps) {
+        this.minKbps = Math.max(MIN_FLOOR_KBPS, minKbps);
+        this.maxKbps = Math.max(this.minKbps, maxKbps);
+        ceilingKbps = this.maxKbps;
+        rttBaseMs = NA;
+        decreaseTimeMs = NA;
+        action = Action.HOLD;
+    }
+
+    /**
+     * Update the ceiling with the latest stats.
+     * Any value may be {@link StatsRecord#NA} if not available.
+     *
+     * @param timeMs             Time of the stats, in ms.
+     * @param rttMs              Round trip time, in ms.
+     * @param fractionLost       Fraction of packets lost, from 0 to 1.
+     * @param availableBitrateBps Available outgoing bitrate estimated, in bps.
+     * @return The new ceiling, in kbps.
+     */
+    public int update(long timeMs, double rttMs, double fractionLost, double availableBitrateBps) {
+        boolean rttHigh = false;
+        if (rttMs != NA) {
+            if (rttBaseMs == NA || rttMs < rttBaseMs) {
+                rttBaseMs = rttMs;
+            } else {
+                // Let the baseline follow slowly, in case the route has changed.
+                rttBaseMs += (rttMs - rttBaseMs) * 0.02;
+            }
+            rttHigh = rttMs > rttBaseMs * RTT_RISE_FACTOR && rttMs - rttBaseMs > RTT_RISE_MS;
+        }
+        double availableKbps = availableBitrateBps == NA ? NA : availableBitrateBps / 1000;
+
+        double previous = ceilingKbps;
+        double ceiling = previous;
+        boolean congested = false;
+        if (fractionLost != NA && fractionLost > LOSS_HIGH) {
+            ceiling *= 1 - 0.5 * fractionLost;
+            congested = true;
+        } else if (rttHigh) {
+            ceiling *= DECREASE_FACTOR;
+            congested = true;
+        }
+        // When congested, do not stay above what the network is estimated to carry.
+        // This is not done otherwise, as the estimate is itself limited by the ceiling.
+        if (congested && availableKbps != NA && availableKbps < ceiling * AVAILABLE_LOW) {
+            ceiling = availableKbps;
+        }
+
+        if (congested) {
+            decreaseTimeMs = timeMs;
+        } else if (fractionLost != NA && fractionLost < LOSS_LOW && !rttHigh &&
+                (decreaseTimeMs == NA || timeMs - decreaseTimeMs >= HOLD_MS)) {
+            ceiling = ceiling * INCREASE_FACTOR + INCREASE_STEP_KBPS;
+        }
+
+        ceilingKbps = Math.max(minKbps, Math.min(maxKbps, ceiling));
+        if (ceilingKbps < previous) {
+            action = Action.DECREASE;
+        } else if (ceilingKbps > previous) {
+            action = Action.INCREASE;
+        } else {
+            action = Action.HOLD;
+        }
+        return getCeilingKbps();
+    }
+
+    /**
+     * The current ceiling, in kbps.
+     *
+     * @return
+     */
+    public int getCeilingKbps() {
+        return (int) Math.round(ceilingKbps);
+    }
+
+    public int getMinKbps() {
+        return minKbps;
+    }
+
+    public int getMaxKbps() {
+        return maxKbps;
+    }
+
+    /**
+     * The action taken by the latest {@link #update}.
+     *
+     * @return
+     */
+    public Action getAction() {
+        return action;
+    }
+}
@@ -0,0 +1,235 @@
+package com.millicast.android_app;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ranks the capture capabilities (resolution, fps and pixel format) of a video device,
+ * to pick the best one for the device and the network.
+ * Each capability is scored by how close it is to the target resolution and fps,
+ * whether its pixel format is preferred, and whether its estimated bitrate fits within
+ * the current uplink estimate.
+ * A capability chosen by the user is remembered by device id rather than by list index,
+ * and becomes the target for that device, so that it is picked again whatever the order
+ * of the capabilities, and even after devices are swapped.
+ * A capability with more pixels or a higher fps than the one chosen is never picked,
+ * so that the network can only lower the capture format from the user's choice.
+ * The uplink estimate only changes the ranking when it moves by more than {@link #UPLINK_CHANGE},
+ * so that the capture format is not changed on every small network fluctuation.
+ * All methods are thread safe.
+ */
+public class CapabilityRanker {
+
+    /**
+     * Extracts the values of a capability of type C.
+     */
+    public interface Spec<C> {
+        int getWidth(C cap);
+
+        int getHeight(C cap);
+
+        /**
+         * @param cap
+         * @return The frame rate, in frames per second.
+         */
+        int getFps(C cap);
+
+        /**
+         * @param cap
+         * @return The pixel format, or null if not known.
+         */
+        String getFormat(C cap);
+    }
+
+    /**
+     * Bits per pixel used to estimate the bitrate needed to encode a capability.
+     */
+    public static final double BITS_PER_PIXEL = 0.1;
+    /**
+     * Fraction of the uplink estimate that the video is expected to use.
+     */
+    public static final double UPLINK_HEADROOM = 0.85;
+    /**
+     * Relative change of the uplink estimate from which the capabilities are ranked again.
+     */
+    public static final double UPLINK_CHANGE = 0.25;
+
+    // Weights of the parts of the score.
+    private static final double WEIGHT_RESOLUTION = 1.0;
+    private static final double WEIGHT_FPS = 0.5;
+    private static final double WEIGHT_ABOVE_TARGET = 0.1;
+    private static final double WEIGHT_FORMAT = 0.2;
+    private static final double WEIGHT_NETWORK = 2.0;
+
+    private final int targetWidth;
+    private final int targetHeight;
+    private final int targetFps;
+    private final List<String> formats;
+    // Chosen {width, height, fps} by device id.
+    private final HashMap<String, int[]> choices = new HashMap<>();
+    // The uplink estimate used for ranking, in kbps, or 0 if not known.
+    private int uplinkKbps = 0;
+
+    /**
+     * @param targetWidth
+     * @param targetHeight
+     * @param targetFps
+     * @param formats      The preferred pixel formats, most preferred first.
+     */
+    public CapabilityRanker(int targetWidth, int targetHeight, int targetFps, String... formats) {
+        this.targetWidth = Math.max(1, targetWidth);
+        this.targetHeight = Math.max(1, targetHeight);
+        this.targetFps = Math.max(1, targetFps);
+        this.formats = Arrays.asList(formats);
+    }
+
+    /**
+     * Remember the capability chosen for a device, which becomes the target for that device.
+     *
+     * @param deviceId
+     * @param width
+     * @param height
+     * @param fps
+     */
+    public synchronized void setChoice(String deviceId, int width, int height, int fps) {
+        choices.put(deviceId, new int[]{width, height, fps});
+    }
+
+    public synchronized boolean hasChoice(String deviceId) {
+        return choices.containsKey(deviceId);
+    }
+
+    public synchronized void clearChoice(String deviceId) {
+        choices.remove(deviceId);
+    }
+
+    /**
+     * Update the uplink estimate.
+     *
+     * @param kbps The estimate, in kbps. Ignored if not positive.
+     * @return True if the estimate moved enough for the capabilities to be ranked again.
+     */
+    public synchronized boolean setUplinkKbps(int kbps) {
+        if (kbps <= 0) {
+            return false;
+        }
+        if (uplinkKbps > 0 && Math.abs(kbps - uplinkKbps) < uplinkKbps * UPLINK_CHANGE) {
+            return false;
+        }
+        uplinkKbps = kbps;
+        return true;
+    }
+
+    /**
+     * Forget the uplink estimate, for e.g. when a new publish starts.
+     */
+    public synchronized void clearUplink() {
+        uplinkKbps = 0;
+    }
+
+    /**
+     * Get the uplink estimate used for ranking.
+     *
+     * @return The estimate in kbps, or 0 if not known.
+     */
+    public synchronized int getUplinkKbps() {
+        return uplinkKbps;
+    }
+
+    /**
+     * Get the index of the best capability of a device,
+     * that is not above the capability chosen for the device if any.
+     *
+     * @param deviceId
+     * @param caps
+     * @param spec
+     * @return The index, or -1 if there is no capability.
+     */
+    public synchronized <C> int pick(String deviceId, List<C> caps, Spec<C> spec) {
+        int[] choice = choices.get(deviceId);
+        int best = pick(deviceId, caps, spec, choice);
+        // If all capabilities are above the choice, pick among all.
+        return best < 0 && choice != null ? pick(deviceId, caps, spec, null) : best;
+    }
+
+    /**
+     * Score a capability of a device. Higher is better, and 0 is an exact match of the target
+     * with a preferred format and a fitting bitrate.
+     *
+     * @param deviceId
+     * @param cap
+     * @param spec
+     * @return
+     */
+    public synchronized <C> double score(String deviceId, C cap, Spec<C> spec) {
+        int width = spec.getWidth(cap);
+        int height = spec.getHeight(cap);
+        int fps = spec.getFps(cap);
+        if (width <= 0 || height <= 0 || fps <= 0) {
+            return -Double.MAX_VALUE;
+        }
+        int[] choice = choices.get(deviceId);
+        double pixels = (double) width * height;
+        double targetPixels = choice == null ?
+                (double) targetWidth * targetHeight : (double) choice[0] * choice[1];
+        int fpsTarget = choice == null ? targetFps : Math.max(1, choice[2]);
+
+        double score = -WEIGHT_RESOLUTION * Math.abs(Math.log(pixels / targetPixels));
+        score -= WEIGHT_FPS * Math.abs(fps - fpsTarget) / (double) fpsTarget;
+        if (pixels > targetPixels) {
+            score -= WEIGHT_ABOVE_TARGET;
+        }
+        int formatIndex = formats.indexOf(spec.getFormat(cap));
+        if (formatIndex < 0) {
+            score -= WEIGHT_FORMAT;
+        } else {
+            score -= WEIGHT_FORMAT * formatIndex / formats.size();
+        }
+        if (uplinkKbps > 0) {
+            double budgetKbps = uplinkKbps * UPLINK_HEADROOM;
+            double requiredKbps = getRequiredKbps(width, height, fps);
+            if (requiredKbps > budgetKbps) {
+                // Any capability that fits beats one that does not, unless far from the target.
+                score -= WEIGHT_NETWORK * (1 + Math.log(requiredKbps / budgetKbps));
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Estimate the bitrate needed to encode a capability.
+     *
+     * @param width
+     * @param height
+     * @param fps
+     * @return The bitrate, in kbps.
+     */
+    public static double getRequiredKbps(int width, int height, int fps) {
+        return (double) width * height * fps * BITS_PER_PIXEL / 1000;
+    }
+
+    private <C> int pick(String deviceId, List<C> caps, Spec<C> spec, int[] limit) {
+        int best = -1;
+        double bestScore = 0;
+        for (int i = 0; i < caps.size(); ++i) {
+            C cap = caps.get(i);
+            if (limit != null && ((long) spec.getWidth(cap) * spec.getHeight(cap) >
+                    (long) limit[0] * limit[1] || spec.getFps(cap) > limit[2])) {
+                continue;
+            }
+            double score = score(deviceId, cap, spec);
+            if (best < 0 || score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Target:" + targetWidth + "x" + targetHeight + "@" + targetFps +
+                " Formats:" + formats + " Uplink:" + uplinkKbps + "kbps Choices:" + choices.size();
+    }
+}
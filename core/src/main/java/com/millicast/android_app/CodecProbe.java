@@ -0,0 +1,219 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The video encoders found on the device by a probe, with their support and cost,
+ * and the choice of the cheapest codec that meets a target quality.
+ * For each codec (for e.g. "VP8", "VP9", "H264", "AV1"), an {@link Encoder} records whether it
+ * is hardware accelerated, its resolution and fps ceilings, and its measured encode cost.
+ * Results can be {@link #serialize serialized} so that the probe is only run once per device.
+ * Does not depend on Android, so that the choice can be tested with synthetic probes.
+ */
+public class CodecProbe {
+
+    /**
+     * Factor applied to the encode cost of software encoders, as they also load the CPU
+     * (and heat the device) for the whole encode time, unlike hardware encoders.
+     */
+    public static final double SOFTWARE_FACTOR = 2;
+    /**
+     * Encode cost assumed, in ms per frame, when it could not be measured.
+     */
+    public static final double COST_UNKNOWN_HW_MS = 5;
+    public static final double COST_UNKNOWN_SW_MS = 20;
+
+    private static final String SEPARATOR_ENCODER = ";";
+    private static final String SEPARATOR_FIELD = "|";
+
+    /**
+     * An encoder of a codec.
+     */
+    public static class Encoder {
+        /**
+         * The codec, as named by the Millicast SDK, for e.g. "VP9".
+         */
+        public final String codec;
+        /**
+         * The name of the encoder component, for e.g. "c2.android.vp9.encoder".
+         */
+        public final String name;
+        public final boolean hardware;
+        public final int maxWidth;
+        public final int maxHeight;
+        /**
+         * The max fps at the target resolution of the probe, or 0 if not supported.
+         */
+        public final int maxFps;
+        /**
+         * The measured encode time, in ms per frame, or -1 if not measured.
+         */
+        public final double costMs;
+
+        public Encoder(String codec, String name, boolean hardware, int maxWidth, int maxHeight,
+                       int maxFps, double costMs) {
+            this.codec = codec;
+            this.name = name;
+            this.hardware = hardware;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.maxFps = maxFps;
+            this.costMs = costMs;
+        }
+
+        /**
+         * Check if this encoder can encode the target resolution at the target fps,
+         * in either orientation.
+         *
+         * @param width
+         * @param height
+         * @param fps
+         * @return
+         */
+        public boolean meets(int width, int height, int fps) {
+            boolean size = (maxWidth >= width && maxHeight >= height) ||
+                    (maxWidth >= height && maxHeight >= width);
+            return size && maxFps >= fps;
+        }
+
+        /**
+         * Get the cost of encoding with this encoder, used to compare encoders.
+         *
+         * @return
+         */
+        public double getCost() {
+            double cost = costMs >= 0 ? costMs : (hardware ? COST_UNKNOWN_HW_MS : COST_UNKNOWN_SW_MS);
+            return hardware ? cost : cost * SOFTWARE_FACTOR;
+        }
+
+        @Override
+        public String toString() {
+            return codec + "(" + name + (hardware ? " HW " : " SW ") + maxWidth + "x" + maxHeight +
+                    "@" + maxFps + " " + String.format("%.1f", costMs) + "ms)";
+        }
+    }
+
+    private final List<Encoder> encoders;
+
+    public CodecProbe(List<Encoder> encoders) {
+        this.encoders = Collections.unmodifiableList(new ArrayList<>(encoders));
+    }
+
+    public List<Encoder> getEncoders() {
+        return encoders;
+    }
+
+    /**
+     * Get the best encoder of a codec for a target: the cheapest one that meets the target,
+     * or if none does, the one with the highest ceiling.
+     *
+     * @param codec
+     * @param width
+     * @param height
+     * @param fps
+     * @return The encoder, or null if the codec has none.
+     */
+    public Encoder getEncoder(String codec, int width, int height, int fps) {
+        Encoder best = null;
+        for (Encoder encoder : encoders) {
+            if (!encoder.codec.equalsIgnoreCase(codec)) {
+                continue;
+            }
+            if (best == null || isBetter(encoder, best, width, height, fps)) {
+                best = encoder;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Pick the cheapest codec that meets the target, or if none does,
+     * the codec whose encoder has the highest ceiling.
+     *
+     * @param codecs The codecs to pick from, for e.g. as supported by the Millicast SDK.
+     * @param width
+     * @param height
+     * @param fps
+     * @return The index of the codec in codecs, or -1 if no codec has an encoder.
+     */
+    public int pick(List<String> codecs, int width, int height, int fps) {
+        int bestIndex = -1;
+        Encoder best = null;
+        for (int i = 0; i < codecs.size(); ++i) {
+            Encoder encoder = getEncoder(codecs.get(i), width, height, fps);
+            if (encoder != null && (best == null || isBetter(encoder, best, width, height, fps))) {
+                best = encoder;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * Write the results as a String, that can be read with {@link #parse}.
+     *
+     * @return
+     */
+    public String serialize() {
+        StringBuilder sb = new StringBuilder();
+        for (Encoder e : encoders) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR_ENCODER);
+            }
+            sb.append(e.codec).append(SEPARATOR_FIELD).append(e.name).append(SEPARATOR_FIELD)
+                    .append(e.hardware).append(SEPARATOR_FIELD).append(e.maxWidth)
+                    .append(SEPARATOR_FIELD).append(e.maxHeight).append(SEPARATOR_FIELD)
+                    .append(e.maxFps).append(SEPARATOR_FIELD).append(e.costMs);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read results written by {@link #serialize}.
+     *
+     * @param str
+     * @return The results, or null if str is not valid.
+     */
+    public static CodecProbe parse(String str) {
+        if (str == null || str.isEmpty()) {
+            return null;
+        }
+        List<Encoder> list = new ArrayList<>();
+        try {
+            for (String item : str.split(SEPARATOR_ENCODER)) {
+                String[] f = item.split("\\" + SEPARATOR_FIELD);
+                if (f.length != 7) {
+                    return null;
+                }
+                list.add(new Encoder(f[0], f[1], Boolean.parseBoolean(f[2]), Integer.parseInt(f[3]),
+                        Integer.parseInt(f[4]), Integer.parseInt(f[5]), Double.parseDouble(f[6])));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new CodecProbe(list);
+    }
+
+    @Override
+    public String toString() {
+        return encoders.toString();
+    }
+
+    private static boolean isBetter(Encoder a, Encoder b, int width, int height, int fps) {
+        boolean aMeets = a.meets(width, height, fps);
+        boolean bMeets = b.meets(width, height, fps);
+        if (aMeets != bMeets) {
+            return aMeets;
+        }
+        if (!aMeets) {
+            long aCeiling = (long) a.maxWidth * a.maxHeight * a.maxFps;
+            long bCeiling = (long) b.maxWidth * b.maxHeight * b.maxFps;
+            if (aCeiling != bCeiling) {
+                return aCeiling > bCeiling;
+            }
+        }
+        return a.getCost() < b.getCost();
+    }
+}
@@ -0,0 +1,233 @@
+package com.millicast.android_app;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Typed key-value store of the App's settings, kept in memory and persisted by a {@link Backend}.
+ * All values are loaded from the backend with a single read when the store is created,
+ * so getting a value never reads from disk.
+ * Setting a value updates memory immediately and marks the key as dirty.
+ * Dirty keys are written to the backend in a single batch by a flush that runs on the
+ * {@link Executor} given, so that several values set together (for e.g. on Apply & Save)
+ * are written at once, and never on the calling thread.
+ * If writing fails, another flush is given to the executor, up to {@link #FLUSH_RETRIES_MAX}
+ * times in a row, after which the values are only written on the next value set or flush.
+ * Does not depend on Android, so that a {@link MemoryBackend} can be used in tests.
+ */
+public class ConfigStore {
+
+    public static final String TAG = "ConfigStore";
+    /**
+     * Number of flushes given to the executor in a row after a failed write.
+     */
+    public static final int FLUSH_RETRIES_MAX = 5;
+
+    /**
+     * Storage of the values of a {@link ConfigStore}.
+     */
+    public interface Backend {
+        /**
+         * Read all values stored.
+         *
+         * @return A map of each key to its String, Boolean or Integer value.
+         */
+        Map<String, ?> loadAll();
+
+        /**
+         * Write the given values, which are String, Boolean or Integer.
+         * Called on the flush {@link Executor}.
+         *
+         * @param values
+         * @return True if written successfully.
+         */
+        boolean save(Map<String, Object> values);
+    }
+
+    /**
+     * A {@link Backend} that only keeps values in memory, for e.g. for tests.
+     */
+    public static class MemoryBackend implements Backend {
+        private final Map<String, Object> values = new HashMap<>();
+        private int saveCount = 0;
+
+        @Override
+        public synchronized Map<String, ?> loadAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public synchronized boolean save(Map<String, Object> values) {
+            this.values.putAll(values);
+            ++saveCount;
+            return true;
+        }
+
+        /**
+         * The number of times values were saved.
+         *
+         * @return
+         */
+        public synchronized int getSaveCount() {
+            return saveCount;
+        }
+    }
+
+    private final Backend backend;
+    private final Executor executor;
+    private final Map<String, Object> values = new HashMap<>();
+    // Values set since the last flush.
+    private Map<String, Object> dirty = new HashMap<>();
+    // True if a flush has been given to the executor but has not run yet.
+    private boolean flushScheduled = false;
+    // Number of writes that failed in a row.
+    private int failures = 0;
+    private final Object flushLock = new Object();
+
+    /**
+     * @param backend
+     * @param executor Executor on which flushes run, for e.g. a background Handler with a delay,
+     *                 so that values set in a burst are written together.
+     */
+    public ConfigStore(Backend backend, Executor executor) {
+        this.backend = backend;
+        this.executor = executor;
+        values.putAll(backend.loadAll());
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Get a String value, if available.
+     * If not, or if the value stored is not a String, return the specified defaultValue.
+     *
+     * @param key
+     * @param defaultValue
+     * @return
+     */
+    public String getString(String key, String defaultValue) {
+        Object value = get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    /**
+     * Get a boolean value, if available.
+     * If not, or if the value stored is not a boolean, return the specified defaultValue.
+     *
+     * @param key
+     * @param defaultValue
+     * @return
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Get an integer value, if available.
+     * If not, or if the value stored is not an integer, return the specified defaultValue.
+     *
+     * @param key
+     * @param defaultValue
+     * @return
+     */
+    public int getInt(String key, int defaultValue) {
+        Object value = get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public void putString(String key, String value) {
+        put(key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    /**
+     * Checks if there are values set that have not been written to the backend.
+     *
+     * @return
+     */
+    public synchronized boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Write all dirty values to the backend on the calling thread,
+     * for e.g. before the App is stopped.
+     * If writing fails, the values remain dirty, and another flush is given to the executor
+     * unless {@link #FLUSH_RETRIES_MAX} flushes already failed in a row.
+     *
+     * @return True if there was nothing to write or if all values were written.
+     */
+    public boolean flush() {
+        // Only one flush writes at a time, so that batches are written in order.
+        synchronized (flushLock) {
+            Map<String, Object> batch;
+            synchronized (this) {
+                flushScheduled = false;
+                if (dirty.isEmpty()) {
+                    return true;
+                }
+                batch = dirty;
+                dirty = new HashMap<>();
+            }
+            if (backend.save(batch)) {
+                synchronized (this) {
+                    failures = 0;
+                }
+                return true;
+            }
+            synchronized (this) {
+                // Keep any newer values set while writing.
+                for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                    if (!dirty.containsKey(entry.getKey())) {
+                        dirty.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (++failures > FLUSH_RETRIES_MAX || flushScheduled) {
+                    return false;
+                }
+                flushScheduled = true;
+            }
+            executor.execute(this::flush);
+            return false;
+        }
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private synchronized Object get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Set the value in memory and schedule a flush if one is not already scheduled.
+     * A null value removes the key, as with SharedPreferences.
+     */
+    private void put(String key, Object value) {
+        synchronized (this) {
+            if (Objects.equals(value, values.get(key))) {
+                return;
+            }
+            values.put(key, value);
+            dirty.put(key, value);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        executor.execute(this::flush);
+    }
+}
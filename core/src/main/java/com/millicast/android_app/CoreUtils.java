@@ -0,0 +1,111 @@
+package com.millicast.android_app;
+
+/**
+ * Utility methods of the SA that do not depend on Android,
+ * used by the App's {@code Utils} and benchmarked on the JVM.
+ */
+public class CoreUtils {
+
+    /**
+     * Generates the String representation of an element.
+     */
+    public interface ToStr<T> {
+        String get(T item);
+    }
+
+    /**
+     * Receives each line of a message split by {@link #splitLines}.
+     */
+    public interface LineSink {
+        void line(String line);
+    }
+
+    //**********************************************************************************************
+    // Data structure
+    //**********************************************************************************************
+
+    /**
+     * Given a list of specified size and the current index, gets the next index.
+     * If at end of list, cycle to start of the other end.
+     *
+     * @param size      Size of the list.
+     * @param now       Current index of the list.
+     * @param ascending If true, cycle in the direction of increasing index,
+     *                  otherwise cycle in opposite direction.
+     * @return The next index, or null if none available.
+     */
+    public static Integer indexNext(int size, int now, boolean ascending) {
+        if (size < 1) {
+            return null;
+        }
+        int next;
+        if (ascending) {
+            next = now >= (size - 1) ? 0 : now + 1;
+        } else {
+            next = now <= 0 ? size - 1 : now - 1;
+        }
+        if (next < 0) {
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Get a string representing all element(s) of an array, separated by the given separator.
+     *
+     * @param itemList
+     * @param separator
+     * @param toStr     Generates the string representation of an element in the output.
+     *                  If null, the {@link #toString()} method of the element is used.
+     * @param <T>
+     * @return The representative string or an empty string if the array was null or empty.
+     */
+    public static <T> String getArrayStr(T[] itemList, String separator, ToStr<T> toStr) {
+        String result = "";
+        if (itemList == null || itemList.length == 0) {
+            return result;
+        }
+        for (T item : itemList) {
+            if (toStr != null) {
+                result += toStr.get(item);
+            } else {
+                result += item.toString();
+            }
+            result += separator;
+        }
+        // Remove the last separator if any had been added.
+        result = result.substring(0, result.length() - separator.length());
+        return result;
+    }
+
+    //**********************************************************************************************
+    // Logging
+    //**********************************************************************************************
+
+    /**
+     * Split a message into lines of up to maxLen characters, as logcat truncates long lines,
+     * and give each line, prefixed with the logTag, to the sink.
+     *
+     * @param logTag  An additional tag to include in front of each line.
+     * @param message
+     * @param maxLen
+     * @param sink
+     * @return The number of lines.
+     */
+    public static int splitLines(String logTag, String message, int maxLen, LineSink sink) {
+        if (message == null) {
+            message = "null";
+        }
+        if (message.length() <= maxLen) {
+            sink.line(logTag + message);
+            return 1;
+        }
+        int count = 0;
+        for (int i = 0; i < message.length(); i += maxLen) {
+            int end = Math.min(i + maxLen, message.length());
+            sink.line(logTag + message.substring(i, end));
+            ++count;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,167 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A cache of the media devices (audio or video sources) available, with the capabilities of each.
+ * Enumerating devices, and their capabilities, can be slow, for e.g. with USB/UVC cameras
+ * or NDI discovery. The catalog enumerates the devices and their capabilities once,
+ * and answers later requests from the cache until it is {@link #invalidate invalidated},
+ * for e.g. when a device is plugged in or out, or until it is older than its maximum age,
+ * for devices such as NDI sources that come and go without notice.
+ * All methods are thread safe. Loading is done on the calling thread,
+ * which is expected to be a background thread. Times are provided by the caller, in ms.
+ *
+ * @param <S> The type of device.
+ * @param <C> The type of capability of a device.
+ */
+public class DeviceCatalog<S, C> {
+
+    /**
+     * Enumerates the devices and their capabilities.
+     */
+    public interface Loader<S, C> {
+        /**
+         * @return The devices available, or null if none.
+         */
+        List<S> loadDevices();
+
+        /**
+         * @param device
+         * @return The id of the device, which stays the same across enumerations.
+         */
+        String getId(S device);
+
+        /**
+         * @param device
+         * @return The capabilities of the device, or null if none.
+         */
+        List<C> loadCapabilities(S device);
+    }
+
+    private final Loader<S, C> loader;
+    private final long maxAgeMs;
+
+    // Null when the catalog is not valid.
+    private ArrayList<S> devices = null;
+    private final HashMap<String, ArrayList<C>> capabilities = new HashMap<>();
+    private long loadedMs = 0;
+
+    private long loadCount = 0;
+    private long hitCount = 0;
+    private long invalidateCount = 0;
+
+    /**
+     * @param loader
+     * @param maxAgeMs The age after which the catalog is enumerated again, or 0 for no maximum.
+     */
+    public DeviceCatalog(Loader<S, C> loader, long maxAgeMs) {
+        this.loader = loader;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Get the devices available, enumerating them and their capabilities
+     * only if the catalog is not valid.
+     *
+     * @param nowMs
+     * @return A new list, which is empty if no device is available.
+     */
+    public synchronized ArrayList<S> getDevices(long nowMs) {
+        if (isValid(nowMs)) {
+            ++hitCount;
+        } else {
+            load(nowMs);
+        }
+        return new ArrayList<>(devices);
+    }
+
+    /**
+     * Get the capabilities of a device, from the catalog if it has them,
+     * or else by loading them into the catalog.
+     *
+     * @param device
+     * @return A new list, which is empty if the device has no capability.
+     */
+    public synchronized ArrayList<C> getCapabilities(S device) {
+        if (device == null) {
+            return new ArrayList<>();
+        }
+        String id = loader.getId(device);
+        ArrayList<C> list = capabilities.get(id);
+        if (list != null) {
+            ++hitCount;
+        } else {
+            list = toList(loader.loadCapabilities(device));
+            capabilities.put(id, list);
+        }
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * Mark the catalog as not valid, so that the devices are enumerated again on the next request.
+     */
+    public synchronized void invalidate() {
+        if (devices == null) {
+            return;
+        }
+        devices = null;
+        capabilities.clear();
+        ++invalidateCount;
+    }
+
+    /**
+     * Check if the devices can be answered from the catalog.
+     *
+     * @param nowMs
+     * @return
+     */
+    public synchronized boolean isValid(long nowMs) {
+        return devices != null && (maxAgeMs <= 0 || nowMs - loadedMs < maxAgeMs);
+    }
+
+    /**
+     * Get the number of times the devices were enumerated.
+     *
+     * @return
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Get the number of requests answered from the catalog.
+     *
+     * @return
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getInvalidateCount() {
+        return invalidateCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Loads:" + loadCount + " Hits:" + hitCount + " Invalidated:" + invalidateCount +
+                " Devices:" + (devices == null ? "-" : String.valueOf(devices.size()));
+    }
+
+    private void load(long nowMs) {
+        ArrayList<S> list = toList(loader.loadDevices());
+        capabilities.clear();
+        for (S device : list) {
+            capabilities.put(loader.getId(device), toList(loader.loadCapabilities(device)));
+        }
+        devices = list;
+        loadedMs = nowMs;
+        ++loadCount;
+    }
+
+    private static <T> ArrayList<T> toList(List<T> list) {
+        return list == null ? new ArrayList<>() : new ArrayList<>(list);
+    }
+}
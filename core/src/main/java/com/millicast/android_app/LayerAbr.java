@@ -0,0 +1,271 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.StatsRecord.NA;
+
+/**
+ * Client side adaptive bitrate (ABR) engine that chooses a Subscriber's simulcast/SVC layer
+ * from its inbound-rtp stats.
+ * Layers are referred to by level, from 0 (lowest quality) to levelCount - 1 (highest quality).
+ * Each {@link Sample} is judged as:
+ * - Bad: the jitter buffer delay, frame drop ratio or decode time is high, video is frozen,
+ * or the current bitrate is above the bandwidth estimated.
+ * - Good: all of these are comfortably low, with bandwidth to spare for a higher layer.
+ * To avoid flapping, the level is lowered only after {@link #DOWN_COUNT} bad samples in a row,
+ * and raised only after {@link #UP_COUNT} good samples in a row and a hold time since the
+ * last switch. The hold time before raising to a level is doubled each time that level
+ * had to be left soon after being raised to.
+ * Does not depend on Android or the SDK, so that stats traces can be replayed on the JVM.
+ */
+public class LayerAbr {
+
+    public static final double JITTER_BUFFER_HIGH_MS = 400;
+    public static final double JITTER_BUFFER_LOW_MS = 150;
+    public static final double DROP_RATIO_HIGH = 0.05;
+    public static final double DROP_RATIO_LOW = 0.01;
+    public static final double DECODE_HIGH_MS = 40;
+    public static final double DECODE_LOW_MS = 20;
+    /**
+     * Bad if the bitrate is above this fraction of the bandwidth estimated.
+     */
+    public static final double BANDWIDTH_USE_HIGH = 0.9;
+    /**
+     * Good only if the bandwidth estimated is at least this multiple of the bitrate.
+     */
+    public static final double BANDWIDTH_HEADROOM = 1.5;
+    public static final int DOWN_COUNT = 2;
+    public static final int UP_COUNT = 5;
+    /**
+     * Minimum time (in ms) after any switch before lowering the level again.
+     */
+    public static final long DOWN_HOLD_MS = 2000;
+    /**
+     * Initial time (in ms) after any switch before raising the level.
+     */
+    public static final long UP_HOLD_MS = 10000;
+    public static final long UP_HOLD_MAX_MS = 120000;
+    /**
+     * A level left within this time (in ms) after being raised to has its up hold time doubled.
+     */
+    public static final long UNSTABLE_MS = 30000;
+
+    /**
+     * Values derived from inbound-rtp stats over one stats interval.
+     * A single instance can be reused, and set from each {@link StatsRecord} via {@link #set}.
+     */
+    public static class Sample {
+        /**
+         * Average jitter buffer delay of frames emitted in the interval, in ms.
+         */
+        public double jitterBufferMs = NA;
+        /**
+         * Fraction of frames received in the interval that were dropped.
+         */
+        public double dropRatio = NA;
+        /**
+         * Average decode time of frames decoded in the interval, in ms.
+         */
+        public double decodeMs = NA;
+        /**
+         * True if frames were received in the interval but none were decoded.
+         */
+        public boolean frozen = false;
+        /**
+         * Bandwidth estimated, in bps.
+         */
+        public double bandwidthBps = NA;
+        /**
+         * Bitrate received, in bps.
+         */
+        public double bitrateBps = NA;
+
+        // Totals of the previous record.
+        private long decodedPrev = NA;
+        private long receivedPrev = NA;
+        private long droppedPrev = NA;
+        private long emittedPrev = NA;
+        private double jitterBufferPrev = NA;
+        private double decodeTimePrev = NA;
+
+        /**
+         * Set the values of this sample, from the change in totals since the previous call.
+         *
+         * @param rtp          The video RTP values of a Subscriber's {@link StatsRecord}.
+         * @param bandwidthBps The bandwidth estimated, for e.g. the available incoming bitrate.
+         * @return True if the values were set, false if this is the first call
+         * since {@link #reset} or if the RTP is not present.
+         */
+        public boolean set(StatsRecord.Rtp rtp, double bandwidthBps) {
+            if (!rtp.present) {
+                return false;
+            }
+            boolean hasPrev = decodedPrev != NA;
+            if (hasPrev) {
+                long decoded = rtp.framesDecoded - decodedPrev;
+                long received = rtp.framesReceived - receivedPrev;
+                long dropped = rtp.framesDropped - droppedPrev;
+                long emitted = rtp.jitterBufferEmittedCount - emittedPrev;
+                jitterBufferMs = emitted > 0 && jitterBufferPrev != NA ?
+                        (rtp.jitterBufferDelay - jitterBufferPrev) * 1000 / emitted : NA;
+                dropRatio = received > 0 && droppedPrev != NA ? (double) dropped / received : NA;
+                decodeMs = decoded > 0 && decodeTimePrev != NA ?
+                        (rtp.totalCodecTime - decodeTimePrev) * 1000 / decoded : NA;
+                frozen = decoded <= 0 && received > 0;
+                this.bandwidthBps = bandwidthBps;
+                bitrateBps = rtp.bitrate;
+            }
+            decodedPrev = rtp.framesDecoded;
+            receivedPrev = rtp.framesReceived;
+            droppedPrev = rtp.framesDropped;
+            emittedPrev = rtp.jitterBufferEmittedCount;
+            jitterBufferPrev = rtp.jitterBufferDelay;
+            decodeTimePrev = rtp.totalCodecTime;
+            return hasPrev;
+        }
+
+        /**
+         * Clear all values, including the totals kept from the previous call to {@link #set}.
+         */
+        public void reset() {
+            jitterBufferMs = NA;
+            dropRatio = NA;
+            decodeMs = NA;
+            frozen = false;
+            bandwidthBps = NA;
+            bitrateBps = NA;
+            decodedPrev = NA;
+            receivedPrev = NA;
+            droppedPrev = NA;
+            emittedPrev = NA;
+            jitterBufferPrev = NA;
+            decodeTimePrev = NA;
+        }
+
+        /**
+         * Whether this sample shows that the current layer cannot be sustained.
+         *
+         * @return
+         */
+        public boolean isBad() {
+            return frozen ||
+                    jitterBufferMs > JITTER_BUFFER_HIGH_MS ||
+                    dropRatio > DROP_RATIO_HIGH ||
+                    decodeMs > DECODE_HIGH_MS ||
+                    (bandwidthBps != NA && bitrateBps != NA &&
+                            bitrateBps > bandwidthBps * BANDWIDTH_USE_HIGH);
+        }
+
+        /**
+         * Whether this sample shows room for a higher layer.
+         * Values that are not available do not prevent a sample from being good,
+         * but at least one of the delay, drop or decode values must be available.
+         *
+         * @return
+         */
+        public boolean isGood() {
+            if (jitterBufferMs == NA && dropRatio == NA && decodeMs == NA) {
+                return false;
+            }
+            return !frozen &&
+                    jitterBufferMs < JITTER_BUFFER_LOW_MS &&
+                    dropRatio < DROP_RATIO_LOW &&
+                    decodeMs < DECODE_LOW_MS &&
+                    (bandwidthBps == NA || bitrateBps == NA ||
+                            bandwidthBps >= bitrateBps * BANDWIDTH_HEADROOM);
+        }
+    }
+
+    private int levelCount = 0;
+    private int level = 0;
+    private int badCount = 0;
+    private int goodCount = 0;
+    private long switchTimeMs = NA;
+    // Time when each level was last raised to, and the hold time before raising to it.
+    private long[] raiseTimeMs = new long[0];
+    private long[] upHoldMs = new long[0];
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Reset the engine for a new set of layers, starting at the highest level.
+     *
+     * @param levelCount The number of layers available.
+     */
+    public void reset(int levelCount) {
+        this.levelCount = Math.max(0, levelCount);
+        level = Math.max(0, levelCount - 1);
+        badCount = 0;
+        goodCount = 0;
+        switchTimeMs = NA;
+        if (raiseTimeMs.length != this.levelCount) {
+            raiseTimeMs = new long[this.levelCount];
+            upHoldMs = new long[this.levelCount];
+        }
+        for (int i = 0; i < this.levelCount; ++i) {
+            raiseTimeMs[i] = NA;
+            upHoldMs[i] = UP_HOLD_MS;
+        }
+    }
+
+    /**
+     * Update the engine with the latest sample.
+     *
+     * @param timeMs Time of the sample, in ms.
+     * @param sample
+     * @return The level to use after this sample.
+     */
+    public int update(long timeMs, Sample sample) {
+        if (levelCount < 2) {
+            return level;
+        }
+        if (sample.isBad()) {
+            ++badCount;
+            goodCount = 0;
+        } else if (sample.isGood()) {
+            ++goodCount;
+            badCount = 0;
+        } else {
+            badCount = 0;
+            goodCount = 0;
+        }
+
+        long sinceSwitch = switchTimeMs == NA ? Long.MAX_VALUE : timeMs - switchTimeMs;
+        if (badCount >= DOWN_COUNT && level > 0 && sinceSwitch >= DOWN_HOLD_MS) {
+            // Back off from raising to this level again if it was raised to recently.
+            if (raiseTimeMs[level] != NA && timeMs - raiseTimeMs[level] < UNSTABLE_MS) {
+                upHoldMs[level] = Math.min(UP_HOLD_MAX_MS, upHoldMs[level] * 2);
+            }
+            setLevel(level - 1, timeMs);
+        } else if (goodCount >= UP_COUNT && level < levelCount - 1 &&
+                sinceSwitch >= upHoldMs[level + 1]) {
+            setLevel(level + 1, timeMs);
+            raiseTimeMs[level] = timeMs;
+        }
+        return level;
+    }
+
+    /**
+     * The level currently chosen.
+     *
+     * @return
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private void setLevel(int level, long timeMs) {
+        this.level = level;
+        switchTimeMs = timeMs;
+        badCount = 0;
+        goodCount = 0;
+    }
+}
@@ -0,0 +1,244 @@
+package com.millicast.android_app;
+
+import java.util.Objects;
+
+/**
+ * A simulcast/SVC layer of a video track received by a Millicast Subscriber.
+ * Also compares lists of layers of any type, such as the Millicast SDK's LayerData,
+ * via a {@link Content} of that type.
+ */
+public class MCLayer {
+
+    public static final String LAYER_SEPARATOR = ", ";
+
+    /**
+     * Gives the hash and compares the content of layers of type T,
+     * so that lists of layers of that type can be compared by {@link #isSameLayerList}.
+     */
+    public interface Content<T> {
+        /**
+         * @param layer
+         * @return The hash of the layer's content, as given by {@link MCLayer#getLayerHash}.
+         */
+        int getLayerHash(T layer);
+
+        /**
+         * @param layer1
+         * @param layer2
+         * @return True if both layers have the same content, including their maximum layer ids.
+         */
+        boolean isSameLayer(T layer1, T layer2);
+    }
+
+    /**
+     * The {@link Content} of {@link MCLayer}s.
+     */
+    public static final Content<MCLayer> CONTENT = new Content<MCLayer>() {
+        @Override
+        public int getLayerHash(MCLayer layer) {
+            return layer.getLayerHash();
+        }
+
+        @Override
+        public boolean isSameLayer(MCLayer layer1, MCLayer layer2) {
+            return layer1.equals(layer2) &&
+                    Objects.equals(layer1.maxSpatialLayerId, layer2.maxSpatialLayerId) &&
+                    Objects.equals(layer1.maxTemporalLayerId, layer2.maxTemporalLayerId);
+        }
+    };
+
+    public final String encodingId;
+    public final int spatialLayerId;
+    public final int temporalLayerId;
+    /**
+     * The maximum spatial and temporal layer ids, or null if not available.
+     */
+    public final Integer maxSpatialLayerId;
+    public final Integer maxTemporalLayerId;
+
+    public MCLayer(String encodingId, int spatialLayerId, int temporalLayerId) {
+        this(encodingId, spatialLayerId, temporalLayerId, null, null);
+    }
+
+    public MCLayer(String encodingId, int spatialLayerId, int temporalLayerId,
+                   Integer maxSpatialLayerId, Integer maxTemporalLayerId) {
+        this.encodingId = encodingId;
+        this.spatialLayerId = spatialLayerId;
+        this.temporalLayerId = temporalLayerId;
+        this.maxSpatialLayerId = maxSpatialLayerId;
+        this.maxTemporalLayerId = maxTemporalLayerId;
+    }
+
+    /**
+     * Get a String representation of a layer.
+     * The default representation is:<br></br>
+     * encodingId (T:temporalLayerId S:spatialLayerId)
+     * <br></br>
+     * Long form representation:<br></br>
+     * encodingId (T:temporalLayerId/maxTemporalLayerId S:spatialLayerId/maxSpatialLayerId)
+     *
+     * @param encodingId
+     * @param temporalLayerId
+     * @param spatialLayerId
+     * @param maxTemporalLayerId The value, or null if not available.
+     * @param maxSpatialLayerId  The value, or null if not available.
+     * @param longForm           true to use the long form, false otherwise.
+     * @return
+     */
+    public static String getLayerStr(String encodingId, int temporalLayerId, int spatialLayerId,
+                                     Integer maxTemporalLayerId, Integer maxSpatialLayerId,
+                                     boolean longForm) {
+        String name = "";
+        name += encodingId;
+        String temStr = "" + temporalLayerId;
+        String spaStr = "" + spatialLayerId;
+        if (longForm) {
+            String maxTemLayer = "-";
+            if (maxTemporalLayerId != null) {
+                maxTemLayer = "" + maxTemporalLayerId;
+            }
+            String maxSpaLayer = "-";
+            if (maxSpatialLayerId != null) {
+                maxSpaLayer = "" + maxSpatialLayerId;
+            }
+            temStr += "/" + maxTemLayer;
+            spaStr += "/" + maxSpaLayer;
+        }
+        name += " (T:" + temStr + " S:" + spaStr + ")";
+        return name;
+    }
+
+    /**
+     * Get a hash of the content of a layer, including its maximum layer ids.
+     * The hashes of the layers of a list can be added up into a hash of the list that does not
+     * depend on the order of the layers, so that lists of layers can be compared by hash first.
+     *
+     * @param encodingId
+     * @param spatialLayerId
+     * @param temporalLayerId
+     * @param maxSpatialLayerId  The value, or -1 if not available.
+     * @param maxTemporalLayerId The value, or -1 if not available.
+     * @return
+     */
+    public static int getLayerHash(String encodingId, int spatialLayerId, int temporalLayerId,
+                                   int maxSpatialLayerId, int maxTemporalLayerId) {
+        int hash = encodingId == null ? 0 : encodingId.hashCode();
+        hash = 31 * hash + spatialLayerId;
+        hash = 31 * hash + temporalLayerId;
+        hash = 31 * hash + maxSpatialLayerId;
+        hash = 31 * hash + maxTemporalLayerId;
+        // Spread the bits, so that the sum of the hashes of a list rarely collides.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Get a String representation of a list of layers.
+     *
+     * @param layerList
+     * @param toStr     Gives the String of a layer, for e.g. via {@link #getLayerStr}.
+     * @param <T>
+     * @return
+     */
+    public static <T> String getLayerListStr(T[] layerList, CoreUtils.ToStr<T> toStr) {
+        return CoreUtils.getArrayStr(layerList, LAYER_SEPARATOR, toStr);
+    }
+
+    /**
+     * Get a hash of the content of a list of layers, that does not depend on their order.
+     *
+     * @param layerList
+     * @param content
+     * @param <T>
+     * @return The sum of the {@link Content#getLayerHash hashes} of the layers.
+     */
+    public static <T> int getLayerListHash(T[] layerList, Content<T> content) {
+        int hash = 0;
+        for (T layer : layerList) {
+            hash += content.getLayerHash(layer);
+        }
+        return hash;
+    }
+
+    /**
+     * Check if two lists of layers have the same layers, in any order,
+     * by their hashes (from {@link #getLayerListHash}) first, and only if equal, by content.
+     * The layers of a list are expected to be distinct.
+     *
+     * @param list1
+     * @param hash1
+     * @param list2
+     * @param hash2
+     * @param content
+     * @param <T>
+     * @return
+     */
+    public static <T> boolean isSameLayerList(T[] list1, int hash1, T[] list2, int hash2,
+                                              Content<T> content) {
+        if (hash1 != hash2 || list1.length != list2.length) {
+            return false;
+        }
+        for (T layer1 : list1) {
+            boolean found = false;
+            for (T layer2 : list2) {
+                if (content.isSameLayer(layer1, layer2)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get a hash of the content of this layer, as given by {@link #getLayerHash}.
+     *
+     * @return
+     */
+    public int getLayerHash() {
+        return getLayerHash(encodingId, spatialLayerId, temporalLayerId,
+                maxSpatialLayerId == null ? -1 : maxSpatialLayerId,
+                maxTemporalLayerId == null ? -1 : maxTemporalLayerId);
+    }
+
+    /**
+     * Get a String representation of this layer, as given by {@link #getLayerStr}.
+     *
+     * @param longForm
+     * @return
+     */
+    public String getLayerStr(boolean longForm) {
+        return getLayerStr(encodingId, temporalLayerId, spatialLayerId,
+                maxTemporalLayerId, maxSpatialLayerId, longForm);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MCLayer)) {
+            return false;
+        }
+        MCLayer layer = (MCLayer) o;
+        return spatialLayerId == layer.spatialLayerId &&
+                temporalLayerId == layer.temporalLayerId &&
+                (encodingId == null ? layer.encodingId == null :
+                        encodingId.equals(layer.encodingId));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = encodingId == null ? 0 : encodingId.hashCode();
+        result = 31 * result + spatialLayerId;
+        return 31 * result + temporalLayerId;
+    }
+
+    @Override
+    public String toString() {
+        return encodingId + ":" + spatialLayerId + ":" + temporalLayerId;
+    }
+}
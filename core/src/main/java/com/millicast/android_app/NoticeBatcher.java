@@ -0,0 +1,119 @@
+package com.millicast.android_app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Batches user notices (for e.g. Snackbar messages) that may arrive faster than they can be read,
+ * into at most one notice per interval.
+ * Identical messages received before the next notice are merged and counted,
+ * so that a burst such as a reconnect storm shows as one line with a count,
+ * for e.g. "Source added (x5)".
+ * The number of distinct messages kept per notice is bounded, and any others are only counted,
+ * so that the size of a notice stays bounded however fast messages arrive.
+ * All methods are thread safe. Times are provided by the caller, in ms.
+ */
+public class NoticeBatcher {
+
+    private final long intervalMs;
+    private final int maxLines;
+
+    // Distinct pending messages, in the order first received, with their counts.
+    private final LinkedHashMap<String, Integer> pending = new LinkedHashMap<>();
+    private int pendingOthers = 0;
+    private long shownLastMs = Long.MIN_VALUE;
+
+    private long receivedCount = 0;
+    private long shownCount = 0;
+
+    /**
+     * @param intervalMs The minimum interval between two notices.
+     * @param maxLines   The maximum number of distinct messages in a notice.
+     */
+    public NoticeBatcher(long intervalMs, int maxLines) {
+        this.intervalMs = intervalMs;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Add a message to the next notice.
+     *
+     * @param msg
+     * @return True if this is the first message of the next notice,
+     * in which case the caller should schedule it to be shown after {@link #getDelayMs}.
+     */
+    public synchronized boolean add(String msg) {
+        ++receivedCount;
+        boolean first = pending.isEmpty() && pendingOthers == 0;
+        Integer count = pending.get(msg);
+        if (count != null) {
+            pending.put(msg, count + 1);
+        } else if (pending.size() < maxLines) {
+            pending.put(msg, 1);
+        } else {
+            ++pendingOthers;
+        }
+        return first;
+    }
+
+    /**
+     * Get the time to wait before the next notice may be shown.
+     *
+     * @param nowMs
+     * @return 0 if it can be shown now.
+     */
+    public synchronized long getDelayMs(long nowMs) {
+        if (shownLastMs == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.max(0, shownLastMs + intervalMs - nowMs);
+    }
+
+    /**
+     * Take the pending messages as the text of one notice, one line per distinct message.
+     *
+     * @param nowMs
+     * @return The text, or null if there is no pending message.
+     */
+    public synchronized String poll(long nowMs) {
+        if (pending.isEmpty() && pendingOthers == 0) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(entry.getKey());
+            if (entry.getValue() > 1) {
+                text.append(" (x").append(entry.getValue()).append(')');
+            }
+        }
+        if (pendingOthers > 0) {
+            text.append("\n+").append(pendingOthers).append(" more");
+        }
+        pending.clear();
+        pendingOthers = 0;
+        shownLastMs = nowMs;
+        ++shownCount;
+        return text.toString();
+    }
+
+    /**
+     * Get the number of messages received so far.
+     *
+     * @return
+     */
+    public synchronized long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Get the number of notices taken so far, each of which may include many messages.
+     *
+     * @return
+     */
+    public synchronized long getShownCount() {
+        return shownCount;
+    }
+}
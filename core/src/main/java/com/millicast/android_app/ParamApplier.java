@@ -0,0 +1,202 @@
+package com.millicast.android_app;
+
+/**
+ * Drives the setting of camera parameters that can only be set once the camera is ready,
+ * for e.g. the shooting mode of a Ricoh Theta camera, which fails if set while it is opening.
+ * Attempts are triggered by camera events (opened, first frame) rather than by polling,
+ * and failed attempts are retried with a {@link Backoff}, up to a max number of attempts
+ * and within a deadline from the start, after which setting the parameters has failed.
+ * Records the time from the start to the first configured frame, i.e. the later of the
+ * first frame and the parameters being set, as frames before that are not configured.
+ * The caller does the actual attempts and scheduling, so that this does not depend on Android.
+ * All methods are thread safe. Times are provided by the caller, in ms.
+ */
+public class ParamApplier {
+
+    public enum Phase {
+        IDLE,
+        /**
+         * Started, and waiting for a camera event to attempt.
+         */
+        WAITING,
+        /**
+         * Attempting, with a retry pending after a failed attempt.
+         */
+        RETRYING,
+        APPLIED,
+        FAILED
+    }
+
+    private static final long NONE = -1;
+
+    private final long deadlineMs;
+    private final int attemptsMax;
+    private final Backoff backoff;
+
+    private Phase phase = Phase.IDLE;
+    private long startMs = NONE;
+    private long appliedMs = NONE;
+    private long firstFrameMs = NONE;
+    private int attempts = 0;
+    private long configuredMs = NONE;
+
+    /**
+     * @param deadlineMs  The time from the start within which the parameters must be set.
+     * @param attemptsMax The max number of attempts.
+     * @param backoff     The delays between failed attempts.
+     */
+    public ParamApplier(long deadlineMs, int attemptsMax, Backoff backoff) {
+        this.deadlineMs = deadlineMs;
+        this.attemptsMax = attemptsMax;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Start, for e.g. when the camera is opening.
+     * Any previous run is abandoned.
+     *
+     * @param nowMs
+     */
+    public synchronized void start(long nowMs) {
+        phase = Phase.WAITING;
+        startMs = nowMs;
+        appliedMs = NONE;
+        firstFrameMs = NONE;
+        attempts = 0;
+        backoff.reset();
+    }
+
+    /**
+     * Stop any current run, for e.g. when another camera that needs no parameters is opening.
+     */
+    public synchronized void stop() {
+        phase = Phase.IDLE;
+    }
+
+    /**
+     * Record a camera event that the parameters may now be set, for e.g. camera opened.
+     *
+     * @param nowMs
+     * @return True if an attempt should be made now.
+     */
+    public synchronized boolean onReady(long nowMs) {
+        if (phase != Phase.WAITING) {
+            return false;
+        }
+        if (expire(nowMs)) {
+            return false;
+        }
+        phase = Phase.RETRYING;
+        return true;
+    }
+
+    /**
+     * Record the first frame of the camera.
+     *
+     * @param nowMs
+     * @return True if an attempt should be made now, as for {@link #onReady}.
+     */
+    public synchronized boolean onFirstFrame(long nowMs) {
+        if (phase == Phase.IDLE || firstFrameMs != NONE) {
+            return false;
+        }
+        firstFrameMs = nowMs;
+        updateConfigured();
+        return onReady(nowMs);
+    }
+
+    /**
+     * Record the result of an attempt to set the parameters.
+     *
+     * @param nowMs
+     * @param success
+     * @return The delay in ms before the next attempt,
+     * or -1 if there should be no other attempt, for e.g. if applied or failed.
+     */
+    public synchronized long onAttempt(long nowMs, boolean success) {
+        if (phase != Phase.RETRYING) {
+            return NONE;
+        }
+        ++attempts;
+        if (success) {
+            phase = Phase.APPLIED;
+            appliedMs = nowMs;
+            updateConfigured();
+            return NONE;
+        }
+        if (attempts >= attemptsMax || expire(nowMs)) {
+            phase = Phase.FAILED;
+            return NONE;
+        }
+        long delay = backoff.nextDelayMs();
+        // Retry once more at the deadline rather than after it.
+        return Math.min(delay, startMs + deadlineMs - nowMs);
+    }
+
+    /**
+     * Fail if the deadline has passed without the parameters being set.
+     *
+     * @param nowMs
+     * @return True if failed now.
+     */
+    public synchronized boolean expire(long nowMs) {
+        if ((phase == Phase.WAITING || phase == Phase.RETRYING) && nowMs - startMs >= deadlineMs) {
+            phase = Phase.FAILED;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Check if the parameters are still to be set, i.e. started and neither applied nor failed.
+     *
+     * @return
+     */
+    public synchronized boolean isActive() {
+        return phase == Phase.WAITING || phase == Phase.RETRYING;
+    }
+
+    /**
+     * Get the number of attempts of the current or latest run.
+     *
+     * @return
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Get the time from the start to the parameters being set, of the current or latest run.
+     *
+     * @return The time in ms, or -1 if not set.
+     */
+    public synchronized long getAppliedMs() {
+        return appliedMs == NONE ? NONE : appliedMs - startMs;
+    }
+
+    /**
+     * Get the time from the start to the first configured frame, of the latest run
+     * in which both the parameters were set and a frame was received.
+     *
+     * @return The time in ms, or -1 if none yet.
+     */
+    public synchronized long getConfiguredMs() {
+        return configuredMs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return phase + " Attempts:" + attempts + " Applied:" + getAppliedMs() +
+                "ms Configured:" + configuredMs + "ms";
+    }
+
+    private void updateConfigured() {
+        if (appliedMs != NONE && firstFrameMs != NONE) {
+            configuredMs = Math.max(appliedMs, firstFrameMs) - startMs;
+        }
+    }
+}
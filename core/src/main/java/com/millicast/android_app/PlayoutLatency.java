@@ -0,0 +1,367 @@
+package com.millicast.android_app;
+
+import java.util.Arrays;
+
+import static com.millicast.android_app.StatsRecord.NA;
+
+/**
+ * Rolling latency of the subscribed video, from the inbound-rtp stats of the Subscriber
+ * and the frames reaching the renderer.
+ * For each stats report, one sample of each {@link Metric} is kept, per frame over the
+ * interval since the previous report:
+ * the jitter buffer delay, the decode time, the render delay, half the round trip time,
+ * and, if the publisher sends RTCP sender reports that map its capture clock to NTP,
+ * the end to end latency from the estimated playout timestamp,
+ * and from these, an estimate of the glass to glass latency.
+ * Samples are kept in primitive ring buffers allocated on creation, like {@link StatsHistory},
+ * and can be read as a histogram over {@link #BUCKETS_MS}.
+ * Frames reaching the renderer are only summed, so {@link #onFrameRendered} does not allocate
+ * and can be called on the render thread.
+ * All methods are thread safe.
+ */
+public class PlayoutLatency {
+
+    public enum Metric {
+        /**
+         * Time spent in the jitter buffer, in ms per frame.
+         */
+        JITTER_BUFFER,
+        /**
+         * Time spent decoding, in ms per frame.
+         */
+        DECODE,
+        /**
+         * Delay from the time a frame was scheduled to be rendered, to it reaching the renderer,
+         * in ms per frame.
+         */
+        RENDER,
+        /**
+         * Half the round trip time, as an estimate of the one way network delay, in ms.
+         */
+        NETWORK,
+        /**
+         * Delay from the publisher capturing a frame to it being played out, in ms.
+         * Assumes the clocks of the publisher and this device are both synced to NTP.
+         */
+        END_TO_END,
+        /**
+         * Estimate of the glass to glass latency, in ms: the end to end latency if available,
+         * otherwise the sum of the other metrics available, which does not include
+         * the time to capture and encode on the publisher.
+         */
+        GLASS_TO_GLASS
+    }
+
+    /**
+     * Upper bounds (exclusive) of the histogram buckets, in ms.
+     * A last bucket holds the values from the last bound.
+     */
+    public static final int[] BUCKETS_MS = {25, 50, 100, 200, 400, 800, 1600};
+    /**
+     * Difference between the NTP epoch (1900) and the Unix epoch (1970), in ms.
+     */
+    public static final double NTP_UNIX_OFFSET_MS = 2208988800000.0;
+    /**
+     * End to end latencies above this, in ms, are assumed to come from unsynced clocks.
+     */
+    public static final double END_TO_END_MAX_MS = 10_000;
+    /**
+     * Render delays beyond this, in ms, are assumed not to be on the render time base.
+     */
+    public static final double RENDER_MAX_MS = 1_000;
+
+    private static final int METRIC_COUNT = Metric.values().length;
+
+    private final int capacity;
+    // Values of each sample, indexed by Metric ordinal and then by sample position.
+    private final double[][] values;
+    // Scratch buffer for percentile queries.
+    private final double[] scratch;
+    private int head = 0;
+    private int size = 0;
+
+    // Totals of the previous report, to compute the values per frame.
+    private double jitterBufferDelayPrev = NA;
+    private long jitterBufferEmittedPrev = NA;
+    private double decodeTimePrev = NA;
+    private long framesDecodedPrev = NA;
+
+    // Frames that reached the renderer since the previous report.
+    private double renderSumMs = 0;
+    private int renderCount = 0;
+    private long framesRendered = 0;
+
+    /**
+     * @param capacity The maximum number of samples kept, i.e. of stats reports.
+     */
+    public PlayoutLatency(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1!");
+        }
+        this.capacity = capacity;
+        values = new double[METRIC_COUNT][capacity];
+        scratch = new double[capacity];
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Record a frame reaching the renderer.
+     *
+     * @param delayNs The time from when the frame was scheduled to be rendered,
+     *                for e.g. System.nanoTime() - VideoFrame.getTimestampNs().
+     */
+    public synchronized void onFrameRendered(long delayNs) {
+        double delayMs = delayNs / 1e6;
+        if (Math.abs(delayMs) > RENDER_MAX_MS) {
+            return;
+        }
+        // Frames reaching the renderer early wait for their render time.
+        renderSumMs += Math.max(0, delayMs);
+        ++renderCount;
+        ++framesRendered;
+    }
+
+    /**
+     * Add a sample from the video of a Subscriber {@link StatsRecord}.
+     * Nothing is added if there is no video in the record.
+     *
+     * @param record
+     * @return True if a sample was added.
+     */
+    public synchronized boolean onStats(StatsRecord record) {
+        StatsRecord.Rtp rtp = record.video;
+        if (!rtp.present) {
+            return false;
+        }
+        set(Metric.JITTER_BUFFER, getPerFrameMs(rtp.jitterBufferDelay, jitterBufferDelayPrev,
+                rtp.jitterBufferEmittedCount, jitterBufferEmittedPrev));
+        set(Metric.DECODE, getPerFrameMs(rtp.totalCodecTime, decodeTimePrev,
+                rtp.framesDecoded, framesDecodedPrev));
+        set(Metric.RENDER, renderCount > 0 ? renderSumMs / renderCount : NA);
+        set(Metric.NETWORK, record.rttMs != NA ? record.rttMs / 2 : NA);
+        double endToEnd = NA;
+        if (rtp.estimatedPlayoutTimestamp > 0 && record.timestampUs != NA) {
+            endToEnd = record.timestampUs / 1000 -
+                    (rtp.estimatedPlayoutTimestamp - NTP_UNIX_OFFSET_MS);
+            if (endToEnd < 0 || endToEnd > END_TO_END_MAX_MS) {
+                endToEnd = NA;
+            }
+        }
+        set(Metric.END_TO_END, endToEnd);
+        double glassToGlass = endToEnd;
+        if (glassToGlass == NA) {
+            for (int i = 0; i < Metric.END_TO_END.ordinal(); ++i) {
+                double value = values[i][head];
+                if (value != NA) {
+                    glassToGlass = glassToGlass == NA ? value : glassToGlass + value;
+                }
+            }
+        }
+        set(Metric.GLASS_TO_GLASS, glassToGlass);
+
+        jitterBufferDelayPrev = rtp.jitterBufferDelay;
+        jitterBufferEmittedPrev = rtp.jitterBufferEmittedCount;
+        decodeTimePrev = rtp.totalCodecTime;
+        framesDecodedPrev = rtp.framesDecoded;
+        renderSumMs = 0;
+        renderCount = 0;
+
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            ++size;
+        }
+        return true;
+    }
+
+    /**
+     * Remove all samples and totals, for e.g. when a new Subscriber is started.
+     */
+    public synchronized void reset() {
+        head = 0;
+        size = 0;
+        jitterBufferDelayPrev = NA;
+        jitterBufferEmittedPrev = NA;
+        decodeTimePrev = NA;
+        framesDecodedPrev = NA;
+        renderSumMs = 0;
+        renderCount = 0;
+        framesRendered = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of frames that reached the renderer since the last {@link #reset}.
+     *
+     * @return
+     */
+    public synchronized long getFramesRendered() {
+        return framesRendered;
+    }
+
+    /**
+     * The value of the metric in the latest sample.
+     *
+     * @param metric
+     * @return The value, or {@link StatsRecord#NA} if not available.
+     */
+    public synchronized double getLatest(Metric metric) {
+        if (size == 0) {
+            return NA;
+        }
+        return values[metric.ordinal()][indexOf(size - 1)];
+    }
+
+    /**
+     * The mean value of the metric over the samples kept.
+     *
+     * @param metric
+     * @return The value, or {@link StatsRecord#NA} if there is no value.
+     */
+    public synchronized double getMean(Metric metric) {
+        double[] column = values[metric.ordinal()];
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA) {
+                sum += value;
+                ++count;
+            }
+        }
+        return count == 0 ? NA : sum / count;
+    }
+
+    /**
+     * The percentile (nearest rank) value of the metric over the samples kept.
+     *
+     * @param metric
+     * @param percentile From 0 to 100, for e.g. 95 for the p95.
+     * @return The value, or {@link StatsRecord#NA} if there is no value.
+     */
+    public synchronized double getPercentile(Metric metric, double percentile) {
+        int count = copyValues(metric);
+        if (count == 0) {
+            return NA;
+        }
+        Arrays.sort(scratch, 0, count);
+        int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+        return scratch[Math.max(0, Math.min(count - 1, rank))];
+    }
+
+    /**
+     * Count the values of the metric in each bucket of {@link #BUCKETS_MS}, over the samples kept.
+     *
+     * @param metric
+     * @param counts Filled with the count of each bucket.
+     *               Must have a length of at least BUCKETS_MS.length + 1.
+     * @return The number of values counted.
+     */
+    public synchronized int getHistogram(Metric metric, int[] counts) {
+        Arrays.fill(counts, 0, BUCKETS_MS.length + 1, 0);
+        double[] column = values[metric.ordinal()];
+        int total = 0;
+        for (int i = 0; i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value == NA) {
+                continue;
+            }
+            int bucket = 0;
+            while (bucket < BUCKETS_MS.length && value >= BUCKETS_MS[bucket]) {
+                ++bucket;
+            }
+            ++counts[bucket];
+            ++total;
+        }
+        return total;
+    }
+
+    /**
+     * Export a summary of each metric over the samples kept, as CSV, with a header line.
+     * The columns are the metric, the count, mean, p50, p95 and max of its values,
+     * and the count of each histogram bucket.
+     *
+     * @return
+     */
+    public synchronized String export() {
+        StringBuilder sb = new StringBuilder("metric,count,mean,p50,p95,max");
+        int lower = 0;
+        for (int bound : BUCKETS_MS) {
+            sb.append(',').append(lower).append('-').append(bound);
+            lower = bound;
+        }
+        sb.append(',').append(lower).append('+').append('\n');
+        int[] counts = new int[BUCKETS_MS.length + 1];
+        for (Metric metric : Metric.values()) {
+            int count = getHistogram(metric, counts);
+            sb.append(metric).append(',').append(count).append(',')
+                    .append(format(getMean(metric))).append(',')
+                    .append(format(getPercentile(metric, 50))).append(',')
+                    .append(format(getPercentile(metric, 95))).append(',')
+                    .append(format(getPercentile(metric, 100)));
+            for (int c : counts) {
+                sb.append(',').append(c);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "G2G:" + format(getLatest(Metric.GLASS_TO_GLASS)) + "ms JB:" +
+                format(getLatest(Metric.JITTER_BUFFER)) + "ms Dec:" +
+                format(getLatest(Metric.DECODE)) + "ms Render:" +
+                format(getLatest(Metric.RENDER)) + "ms Net:" +
+                format(getLatest(Metric.NETWORK)) + "ms Samples:" + size;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private void set(Metric metric, double value) {
+        values[metric.ordinal()][head] = value;
+    }
+
+    /**
+     * Get the time per frame, in ms, from totals in s and frame counts of two reports.
+     */
+    private static double getPerFrameMs(double total, double totalPrev, long frames,
+                                        long framesPrev) {
+        if (total == NA || totalPrev == NA || frames == NA || framesPrev == NA ||
+                frames <= framesPrev || total < totalPrev) {
+            return NA;
+        }
+        return (total - totalPrev) * 1000 / (frames - framesPrev);
+    }
+
+    private int copyValues(Metric metric) {
+        double[] column = values[metric.ordinal()];
+        int count = 0;
+        for (int i = 0; i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA) {
+                scratch[count++] = value;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the position in the ring buffers of the sample at the given age order,
+     * where 0 is the oldest sample.
+     */
+    private int indexOf(int order) {
+        return (head - size + order + capacity) % capacity;
+    }
+
+    private static String format(double value) {
+        return value == NA ? "NA" : String.format("%.1f", value);
+    }
+}
@@ -0,0 +1,170 @@
+package com.millicast.android_app;
+
+/**
+ * Frame level statistics of a video renderer: the frames delivered to it,
+ * and of these, the ones handed off to be drawn and the ones dropped for lack of a surface,
+ * the jitter of the interval between delivered frames, stalls, and the handoff time.
+ * A frame handed off is queued to the render thread, which may still drop it:
+ * such drops, and the time to draw, are not seen here.
+ * All values are kept in primitive counters, so that recording a frame does not allocate,
+ * and can be done on the thread delivering frames to the renderer.
+ * The caller does the timing, so that this does not depend on Android.
+ * All methods are thread safe. Times are provided by the caller, in ns.
+ */
+public class RenderStats {
+
+    /**
+     * An interval between delivered frames longer than this factor times the average interval
+     * is counted as a stall.
+     */
+    public static final double STALL_FACTOR = 2.5;
+    /**
+     * Gain of the smoothed average interval and jitter, as for the RTP interarrival jitter.
+     */
+    public static final double GAIN = 1.0 / 16;
+
+    private static final long NONE = -1;
+
+    private long delivered = 0;
+    private long handedOff = 0;
+    private long dropped = 0;
+    private long stalls = 0;
+
+    private long deliveredLastNs = NONE;
+    private long intervalLastNs = NONE;
+    private double intervalAvgNs = 0;
+    private double jitterNs = 0;
+    private long intervalMaxNs = 0;
+
+    private long handoffTotalNs = 0;
+    private long handoffMaxNs = 0;
+
+    /**
+     * Record a frame delivered to the renderer.
+     *
+     * @param nowNs
+     */
+    public synchronized void onDelivered(long nowNs) {
+        ++delivered;
+        if (deliveredLastNs != NONE) {
+            long interval = nowNs - deliveredLastNs;
+            if (intervalLastNs == NONE) {
+                intervalAvgNs = interval;
+            } else {
+                if (interval > intervalAvgNs * STALL_FACTOR) {
+                    ++stalls;
+                }
+                intervalAvgNs += (interval - intervalAvgNs) * GAIN;
+                jitterNs += (Math.abs(interval - intervalLastNs) - jitterNs) * GAIN;
+            }
+            intervalLastNs = interval;
+            intervalMaxNs = Math.max(intervalMaxNs, interval);
+        }
+        deliveredLastNs = nowNs;
+    }
+
+    /**
+     * Record a delivered frame being handed off to be drawn.
+     *
+     * @param startNs When the renderer was given the frame.
+     * @param endNs   When the renderer had queued the frame to its render thread.
+     */
+    public synchronized void onHandedOff(long startNs, long endNs) {
+        ++handedOff;
+        long time = endNs - startNs;
+        handoffTotalNs += time;
+        handoffMaxNs = Math.max(handoffMaxNs, time);
+    }
+
+    /**
+     * Record a delivered frame being dropped as the renderer has no surface.
+     */
+    public synchronized void onDropped() {
+        ++dropped;
+    }
+
+    /**
+     * Set all values back to 0, for e.g. when a new renderer is created.
+     */
+    public synchronized void reset() {
+        delivered = 0;
+        handedOff = 0;
+        dropped = 0;
+        stalls = 0;
+        deliveredLastNs = NONE;
+        intervalLastNs = NONE;
+        intervalAvgNs = 0;
+        jitterNs = 0;
+        intervalMaxNs = 0;
+        handoffTotalNs = 0;
+        handoffMaxNs = 0;
+    }
+
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    public synchronized long getHandedOff() {
+        return handedOff;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Get the number of intervals between delivered frames longer than
+     * {@link #STALL_FACTOR} times the average interval.
+     *
+     * @return
+     */
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Get the smoothed average interval between delivered frames.
+     *
+     * @return The interval in ms, or 0 if less than 2 frames were delivered.
+     */
+    public synchronized double getIntervalAvgMs() {
+        return intervalAvgNs / 1e6;
+    }
+
+    /**
+     * Get the smoothed jitter of the interval between delivered frames,
+     * i.e. of the difference between consecutive intervals.
+     *
+     * @return The jitter in ms.
+     */
+    public synchronized double getJitterMs() {
+        return jitterNs / 1e6;
+    }
+
+    public synchronized double getIntervalMaxMs() {
+        return intervalMaxNs / 1e6;
+    }
+
+    /**
+     * Get the average handoff time of the frames handed off.
+     *
+     * @return The time in ms, or 0 if no frame was handed off.
+     */
+    public synchronized double getHandoffAvgMs() {
+        return handedOff == 0 ? 0 : handoffTotalNs / 1e6 / handedOff;
+    }
+
+    public synchronized double getHandoffMaxMs() {
+        return handoffMaxNs / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Delivered:" + delivered + " HandedOff:" + handedOff + " Dropped:" + dropped +
+                " Stalls:" + stalls + " Interval:" + String.format("%.1f", getIntervalAvgMs()) +
+                "ms (max " + String.format("%.1f", getIntervalMaxMs()) + "ms) Jitter:" +
+                String.format("%.1f", getJitterMs()) + "ms Handoff:" +
+                String.format("%.2f", getHandoffAvgMs()) + "ms (max " +
+                String.format("%.2f", getHandoffMaxMs()) + "ms)";
+    }
+}
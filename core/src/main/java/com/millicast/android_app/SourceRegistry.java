@@ -0,0 +1,183 @@
+package com.millicast.android_app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A thread safe registry of the active sources of a stream, by sourceId,
+ * that records each change as a {@link Delta} with an increasing version.
+ * Views that show the sources keep the version they last showed,
+ * and apply only the deltas since then via {@link #getDeltasSince},
+ * instead of reloading the whole list on every change.
+ * Only the latest deltas are kept, so a view that is too far behind reloads the whole list.
+ * The list of sourceIds is only copied once per change, however often it is read.
+ *
+ * @param <V> The information kept for each source.
+ */
+public class SourceRegistry<V> {
+
+    /**
+     * A change of one source.
+     */
+    public static class Delta {
+        public enum Type {
+            ADDED,
+            REMOVED,
+            CHANGED
+        }
+
+        public final Type type;
+        public final String sourceId;
+        /**
+         * The version of the registry after this change.
+         */
+        public final long version;
+
+        Delta(Type type, String sourceId, long version) {
+            this.type = type;
+            this.sourceId = sourceId;
+            this.version = version;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + sourceId + "@" + version;
+        }
+    }
+
+    private final int deltasMax;
+    private final LinkedHashMap<String, V> sources = new LinkedHashMap<>();
+    private final ArrayDeque<Delta> deltas = new ArrayDeque<>();
+    private long version = 0;
+    // Cached list of the sourceIds, rebuilt only when read after a change.
+    private List<String> ids = Collections.emptyList();
+    private boolean idsStale = false;
+
+    /**
+     * @param deltasMax The number of latest deltas kept.
+     */
+    public SourceRegistry(int deltasMax) {
+        this.deltasMax = deltasMax;
+    }
+
+    /**
+     * Add a source, or replace the information of an existing one.
+     *
+     * @param sourceId
+     * @param value
+     * @return The information replaced, or null if the source was added.
+     */
+    public synchronized V put(String sourceId, V value) {
+        V old = sources.put(sourceId, value);
+        record(old == null ? Delta.Type.ADDED : Delta.Type.CHANGED, sourceId);
+        return old;
+    }
+
+    /**
+     * Remove a source.
+     *
+     * @param sourceId
+     * @return The information removed, or null if the source was not in the registry.
+     */
+    public synchronized V remove(String sourceId) {
+        V old = sources.remove(sourceId);
+        if (old != null) {
+            record(Delta.Type.REMOVED, sourceId);
+        }
+        return old;
+    }
+
+    /**
+     * Remove all sources.
+     */
+    public synchronized void clear() {
+        for (String sourceId : new ArrayList<>(sources.keySet())) {
+            remove(sourceId);
+        }
+    }
+
+    public synchronized V get(String sourceId) {
+        return sources.get(sourceId);
+    }
+
+    public synchronized int size() {
+        return sources.size();
+    }
+
+    /**
+     * Get the sourceIds, in the order the sources were added.
+     *
+     * @return An unmodifiable list, that is not changed by later changes of the registry.
+     */
+    public synchronized List<String> getIds() {
+        if (idsStale) {
+            ids = Collections.unmodifiableList(new ArrayList<>(sources.keySet()));
+            idsStale = false;
+        }
+        return ids;
+    }
+
+    /**
+     * Get the sourceId of the first source, if any.
+     *
+     * @return
+     */
+    public synchronized String getFirstId() {
+        for (String sourceId : sources.keySet()) {
+            return sourceId;
+        }
+        return null;
+    }
+
+    /**
+     * Get the current version, which is increased by each change.
+     *
+     * @return
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the deltas after a given version, in the order they were made.
+     *
+     * @param since The version last seen.
+     * @param out   The list to add the deltas to.
+     * @return False if some of these deltas are no longer kept,
+     * in which case the whole list of sources should be reloaded.
+     */
+    public synchronized boolean getDeltasSince(long since, List<Delta> out) {
+        if (since == version) {
+            return true;
+        }
+        Delta oldest = deltas.peekFirst();
+        if (since > version || oldest == null || oldest.version > since + 1) {
+            return false;
+        }
+        for (Delta delta : deltas) {
+            if (delta.version > since) {
+                out.add(delta);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "v" + version + " " + sources;
+    }
+
+    private void record(Delta.Type type, String sourceId) {
+        ++version;
+        if (type != Delta.Type.CHANGED) {
+            idsStale = true;
+        }
+        if (deltas.size() >= deltasMax) {
+            deltas.pollFirst();
+        }
+        deltas.addLast(new Delta(type, sourceId, version));
+    }
+}
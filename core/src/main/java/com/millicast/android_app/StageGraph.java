@@ -0,0 +1,311 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dependency graph of initialization stages, each run on its own {@link Executor}.
+ * A stage starts as soon as all the stages it depends on are done,
+ * so that independent stages run in parallel on different executors.
+ * Each stage is wrapped in a {@link Tracer} section and timed,
+ * and callers that need a stage can {@link #await} it, or be called back {@link #whenDone}.
+ * A stage that only starts work on other threads can be added with {@link #addAsync},
+ * and is done when it reports so, rather than when its task returns.
+ * A stage that throws is recorded as failed, and the stages that depend on it still run,
+ * so that one failed feature does not block the others.
+ * Stages must be added, in an order where dependencies come first, before {@link #start}.
+ */
+public class StageGraph {
+
+    /**
+     * Marks the sections of a trace, for e.g. with android.os.Trace.
+     * Both calls for a stage are made on the thread running it.
+     */
+    public interface Tracer {
+        void begin(String name);
+
+        void end();
+    }
+
+    /**
+     * The task of a stage added with {@link #addAsync}.
+     */
+    public interface AsyncTask {
+        /**
+         * Start the work of the stage.
+         *
+         * @param done To be run, on any thread, once the work is done.
+         */
+        void run(Runnable done);
+    }
+
+    private static class Stage {
+        final String name;
+        final Executor executor;
+        final AsyncTask task;
+        final AtomicInteger pending;
+        final List<Stage> dependents = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        // Run once done, guarded by the graph.
+        final List<Runnable> callbacks = new ArrayList<>();
+        volatile long runNs = -1;
+        volatile long durationNs = -1;
+        volatile Throwable error;
+
+        Stage(String name, Executor executor, AsyncTask task, int dependencies) {
+            this.name = name;
+            this.executor = executor;
+            this.task = task;
+            this.pending = new AtomicInteger(dependencies);
+        }
+    }
+
+    private final String name;
+    private final Tracer tracer;
+    private final LinkedHashMap<String, Stage> stages = new LinkedHashMap<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile long startNs = -1;
+    private volatile long totalNs = -1;
+
+    /**
+     * @param name   Prefix of the trace section of each stage.
+     * @param tracer
+     */
+    public StageGraph(String name, Tracer tracer) {
+        this.name = name;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Add a stage.
+     *
+     * @param name      A unique name.
+     * @param executor  The executor to run the stage on.
+     * @param task
+     * @param dependsOn The names of the stages, already added, that must be done first.
+     * @return This graph.
+     */
+    public StageGraph add(String name, Executor executor, Runnable task, String... dependsOn) {
+        return addAsync(name, executor, done -> {
+            task.run();
+            done.run();
+        }, dependsOn);
+    }
+
+    /**
+     * Add a stage that is done once its task reports so,
+     * for e.g. when the task posts its work to other threads.
+     * Its trace section only covers the task itself, while its time is up to it being done.
+     *
+     * @param name      A unique name.
+     * @param executor  The executor to run the task on.
+     * @param task
+     * @param dependsOn The names of the stages, already added, that must be done first.
+     * @return This graph.
+     */
+    public synchronized StageGraph addAsync(String name, Executor executor, AsyncTask task,
+                                            String... dependsOn) {
+        if (startNs >= 0) {
+            throw new IllegalStateException("Unable to add stage " + name + " once started!");
+        }
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Stage " + name + " already exists!");
+        }
+        Stage stage = new Stage(name, executor, task, dependsOn.length);
+        for (String dependency : dependsOn) {
+            Stage parent = stages.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException("Stage " + name +
+                        " depends on unknown stage " + dependency + "!");
+            }
+            parent.dependents.add(stage);
+        }
+        stages.put(name, stage);
+        remaining.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Start the stages that do not depend on others.
+     * The others start as their dependencies are done.
+     */
+    public void start() {
+        List<Stage> roots = new ArrayList<>();
+        synchronized (this) {
+            if (startNs >= 0) {
+                return;
+            }
+            startNs = System.nanoTime();
+            for (Stage stage : stages.values()) {
+                if (stage.pending.get() == 0) {
+                    roots.add(stage);
+                }
+            }
+        }
+        for (Stage stage : roots) {
+            submit(stage);
+        }
+    }
+
+    /**
+     * Wait for a stage to be done.
+     *
+     * @param name
+     * @param timeoutMs
+     * @return True if done, false if the wait timed out or was interrupted, or the stage is unknown.
+     */
+    public boolean await(String name, long timeoutMs) {
+        Stage stage;
+        synchronized (this) {
+            stage = stages.get(name);
+        }
+        if (stage == null) {
+            return false;
+        }
+        try {
+            return stage.done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Run a callback once a stage is done, without waiting for it.
+     * If the stage is already done, the callback is run right away on the executor.
+     *
+     * @param name
+     * @param executor The executor to run the callback on.
+     * @param callback
+     * @return False if the stage is unknown, true otherwise.
+     */
+    public boolean whenDone(String name, Executor executor, Runnable callback) {
+        synchronized (this) {
+            Stage stage = stages.get(name);
+            if (stage == null) {
+                return false;
+            }
+            if (stage.done.getCount() > 0) {
+                stage.callbacks.add(() -> executor.execute(callback));
+                return true;
+            }
+        }
+        executor.execute(callback);
+        return true;
+    }
+
+    public synchronized boolean isDone(String name) {
+        Stage stage = stages.get(name);
+        return stage != null && stage.done.getCount() == 0;
+    }
+
+    /**
+     * Check if all stages are done.
+     *
+     * @return
+     */
+    public boolean isDone() {
+        return remaining.get() == 0;
+    }
+
+    /**
+     * Get the time taken to run a stage.
+     *
+     * @param name
+     * @return The time in ms, or -1 if not done.
+     */
+    public synchronized double getDurationMs(String name) {
+        Stage stage = stages.get(name);
+        return stage == null || stage.durationNs < 0 ? -1 : stage.durationNs / 1e6;
+    }
+
+    /**
+     * Get the time from the start to all stages being done.
+     *
+     * @return The time in ms, or -1 if not done.
+     */
+    public double getTotalMs() {
+        return totalNs < 0 ? -1 : totalNs / 1e6;
+    }
+
+    /**
+     * Get the error thrown by a stage, if any.
+     *
+     * @param name
+     * @return
+     */
+    public synchronized Throwable getError(String name) {
+        Stage stage = stages.get(name);
+        return stage == null ? null : stage.error;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(name).append(" total:")
+                .append(String.format("%.1f", getTotalMs())).append("ms");
+        for (Stage stage : stages.values()) {
+            sb.append(' ').append(stage.name).append(':');
+            if (stage.durationNs < 0) {
+                sb.append('-');
+            } else {
+                sb.append(String.format("%.1f", stage.durationNs / 1e6)).append("ms");
+            }
+            if (stage.error != null) {
+                sb.append("(failed)");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void submit(Stage stage) {
+        stage.executor.execute(() -> run(stage));
+    }
+
+    private void run(Stage stage) {
+        stage.runNs = System.nanoTime();
+        tracer.begin(name + ":" + stage.name);
+        try {
+            stage.task.run(() -> complete(stage));
+        } catch (RuntimeException e) {
+            stage.error = e;
+            complete(stage);
+        } finally {
+            tracer.end();
+        }
+    }
+
+    /**
+     * Mark a stage as done, only the first time, and start the stages that depend on it.
+     */
+    private void complete(Stage stage) {
+        if (!stage.completed.compareAndSet(false, true)) {
+            return;
+        }
+        stage.durationNs = System.nanoTime() - stage.runNs;
+        // Counted before the stage is seen as done, so that waiters see all stages done.
+        if (remaining.decrementAndGet() == 0) {
+            totalNs = System.nanoTime() - startNs;
+        }
+        List<Runnable> callbacks;
+        synchronized (this) {
+            stage.done.countDown();
+            callbacks = new ArrayList<>(stage.callbacks);
+            stage.callbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+        for (Stage dependent : stage.dependents) {
+            if (dependent.pending.decrementAndGet() == 0) {
+                submit(dependent);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.millicast.android_app;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A state machine over the values of an enum, whose transitions are atomic and validated
+ * against a table of allowed transitions.
+ * The state may be changed from any thread without locks:
+ * {@link #compareAndSet} only changes the state if it is still the expected one,
+ * so that of several concurrent requests (for e.g. two starts, or a start and a refresh),
+ * only one succeeds.
+ * Transitions that are not allowed from the current state are rejected,
+ * counted and reported to the {@link Listener}s.
+ *
+ * @param <S> The enum of the states.
+ */
+public class StateMachine<S extends Enum<S>> {
+
+    /**
+     * Receives the transitions of a {@link StateMachine}.
+     * Called on the thread that made the transition, after the state has changed.
+     *
+     * @param <S>
+     */
+    public interface Listener<S extends Enum<S>> {
+        void onTransition(StateMachine<S> machine, S from, S to);
+
+        /**
+         * A transition was rejected as it is not allowed from the current state.
+         *
+         * @param machine
+         * @param from    The state when the transition was rejected.
+         * @param to      The rejected state.
+         */
+        void onRejected(StateMachine<S> machine, S from, S to);
+    }
+
+    private final String name;
+    private final AtomicReference<S> state;
+    private final EnumMap<S, EnumSet<S>> allowed;
+    private final Class<S> type;
+    private final CopyOnWriteArrayList<Listener<S>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Create a state machine without any allowed transitions.
+     * Add them with {@link #allow} before the machine is shared with other threads.
+     *
+     * @param name    The name used in logs, for e.g. "CapState".
+     * @param type
+     * @param initial
+     */
+    public StateMachine(String name, Class<S> type, S initial) {
+        this.name = name;
+        this.type = type;
+        this.state = new AtomicReference<>(initial);
+        this.allowed = new EnumMap<>(type);
+    }
+
+    /**
+     * Allow the transitions from a state to the given states.
+     *
+     * @param from
+     * @param to
+     * @return This machine, to chain calls.
+     */
+    @SafeVarargs
+    public final StateMachine<S> allow(S from, S... to) {
+        EnumSet<S> set = allowed.get(from);
+        if (set == null) {
+            set = EnumSet.noneOf(type);
+            allowed.put(from, set);
+        }
+        for (S state : to) {
+            set.add(state);
+        }
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public S get() {
+        return state.get();
+    }
+
+    public boolean isAllowed(S from, S to) {
+        EnumSet<S> set = allowed.get(from);
+        return set != null && set.contains(to);
+    }
+
+    /**
+     * Change the state to the given one only if it is currently the expected one.
+     *
+     * @param expected
+     * @param to
+     * @return True if changed, false if the state was not the expected one,
+     * or if the transition is not allowed (in which case it is reported as rejected).
+     */
+    public boolean compareAndSet(S expected, S to) {
+        if (!isAllowed(expected, to)) {
+            if (state.get() == expected) {
+                reject(expected, to);
+            }
+            return false;
+        }
+        if (!state.compareAndSet(expected, to)) {
+            return false;
+        }
+        for (Listener<S> listener : listeners) {
+            listener.onTransition(this, expected, to);
+        }
+        return true;
+    }
+
+    /**
+     * Change the state to the given one, from whatever the current state is,
+     * if that transition is allowed.
+     * Moving to the current state succeeds without a transition.
+     *
+     * @param to
+     * @return True if the state is now the given one, false if the transition was rejected.
+     */
+    public boolean moveTo(S to) {
+        while (true) {
+            S from = state.get();
+            if (from == to) {
+                return true;
+            }
+            if (!isAllowed(from, to)) {
+                reject(from, to);
+                return false;
+            }
+            if (compareAndSet(from, to)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get the number of transitions rejected so far.
+     *
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public void addListener(Listener<S> listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener<S> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + state.get();
+    }
+
+    private void reject(S from, S to) {
+        rejectedCount.incrementAndGet();
+        for (Listener<S> listener : listeners) {
+            listener.onRejected(this, from, to);
+        }
+    }
+}
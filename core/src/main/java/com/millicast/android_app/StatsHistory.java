@@ -0,0 +1,367 @@
+package com.millicast.android_app;
+
+import static com.millicast.android_app.StatsRecord.NA;
+
+/**
+ * Rolling history of the stats of one Publisher or Subscriber track (audio or video).
+ * Samples are kept in fixed-size primitive ring buffers allocated on creation,
+ * so that memory stays constant however long the stream runs,
+ * with the oldest samples overwritten once the history is full.
+ * Queries over the last N ms do not allocate.
+ * Values that were not available in a sample ({@link StatsRecord#NA}) are skipped by queries.
+ */
+public class StatsHistory {
+
+    /**
+     * The values kept for each sample.
+     */
+    public enum Metric {
+        /**
+         * Bitrate, in bps.
+         */
+        BITRATE,
+        /**
+         * Total packets lost.
+         */
+        PACKETS_LOST,
+        /**
+         * Fraction of packets lost (Publisher only), 0 to 1.
+         */
+        FRACTION_LOST,
+        /**
+         * Jitter, in ms.
+         */
+        JITTER,
+        /**
+         * Round trip time, in ms.
+         */
+        RTT,
+        FPS,
+        /**
+         * Total frames encoded (Publisher only).
+         */
+        FRAMES_ENCODED,
+        /**
+         * Total frames decoded (Subscriber only).
+         */
+        FRAMES_DECODED,
+        /**
+         * Total frames dropped (Subscriber only).
+         */
+        FRAMES_DROPPED,
+        /**
+         * Frame height, in pixels.
+         */
+        HEIGHT,
+        /**
+         * Available bitrate estimated for the selected candidate-pair, in bps:
+         * outgoing for the Publisher, incoming for the Subscriber.
+         */
+        AVAILABLE_BITRATE
+    }
+
+    private static final int METRIC_COUNT = Metric.values().length;
+
+    private final int capacity;
+    // Timestamp of each sample, in ms.
+    private final long[] times;
+    // Values of each sample, indexed by Metric ordinal and then by sample position.
+    private final double[][] values;
+    // Scratch buffer for percentile queries.
+    private final double[] scratch;
+    // Position where the next sample will be written.
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity The maximum number of samples kept.
+     */
+    public StatsHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1!");
+        }
+        this.capacity = capacity;
+        times = new long[capacity];
+        values = new double[METRIC_COUNT][capacity];
+        scratch = new double[capacity];
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    /**
+     * Add a sample from the given RTP values of a {@link StatsRecord}.
+     * Nothing is added if the RTP was not present in the record.
+     *
+     * @param record
+     * @param rtp    Either {@link StatsRecord#audio} or {@link StatsRecord#video} of the record.
+     */
+    public synchronized void add(StatsRecord record, StatsRecord.Rtp rtp) {
+        if (!rtp.present) {
+            return;
+        }
+        double rtt = rtp.rttMs != NA ? rtp.rttMs : record.rttMs;
+        times[head] = (long) (record.timestampUs / 1000);
+        values[Metric.BITRATE.ordinal()][head] = rtp.bitrate;
+        values[Metric.PACKETS_LOST.ordinal()][head] = rtp.packetsLost;
+        values[Metric.FRACTION_LOST.ordinal()][head] = rtp.fractionLost;
+        values[Metric.JITTER.ordinal()][head] = rtp.jitterMs;
+        values[Metric.RTT.ordinal()][head] = rtt;
+        values[Metric.FPS.ordinal()][head] = rtp.fps;
+        values[Metric.FRAMES_ENCODED.ordinal()][head] = rtp.framesEncoded;
+        values[Metric.FRAMES_DECODED.ordinal()][head] = rtp.framesDecoded;
+        values[Metric.FRAMES_DROPPED.ordinal()][head] = rtp.framesDropped;
+        values[Metric.HEIGHT.ordinal()][head] = rtp.height;
+        values[Metric.AVAILABLE_BITRATE.ordinal()][head] = record.forPub ?
+                record.availableOutgoingBitrate : record.availableIncomingBitrate;
+        advance();
+    }
+
+    /**
+     * Add a sample of a single metric, with all other metrics set to {@link StatsRecord#NA}.
+     *
+     * @param timeMs
+     * @param metric
+     * @param value
+     */
+    public synchronized void add(long timeMs, Metric metric, double value) {
+        times[head] = timeMs;
+        for (int i = 0; i < METRIC_COUNT; ++i) {
+            values[i][head] = NA;
+        }
+        values[metric.ordinal()][head] = value;
+        advance();
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The timestamp of the latest sample, in ms.
+     *
+     * @return The timestamp, or {@link StatsRecord#NA} if there is no sample.
+     */
+    public synchronized long getLatestTime() {
+        if (size == 0) {
+            return NA;
+        }
+        return times[indexOf(size - 1)];
+    }
+
+    /**
+     * The latest available value of the metric.
+     *
+     * @param metric
+     * @return The value, or {@link StatsRecord#NA} if not available.
+     */
+    public synchronized double getLatest(Metric metric) {
+        double[] column = values[metric.ordinal()];
+        for (int i = size - 1; i >= 0; --i) {
+            double value = column[indexOf(i)];
+            if (value != NA) {
+                return value;
+            }
+        }
+        return NA;
+    }
+
+    /**
+     * The minimum value of the metric over the given window.
+     *
+     * @param metric
+     * @param windowMs Only samples within this duration before the latest sample are used.
+     * @return The value, or {@link StatsRecord#NA} if there is no value in the window.
+     */
+    public synchronized double getMin(Metric metric, long windowMs) {
+        double[] column = values[metric.ordinal()];
+        double result = NA;
+        for (int i = getWindowStart(windowMs); i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA && (result == NA || value < result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The maximum value of the metric over the given window.
+     *
+     * @param metric
+     * @param windowMs Only samples within this duration before the latest sample are used.
+     * @return The value, or {@link StatsRecord#NA} if there is no value in the window.
+     */
+    public synchronized double getMax(Metric metric, long windowMs) {
+        double[] column = values[metric.ordinal()];
+        double result = NA;
+        for (int i = getWindowStart(windowMs); i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA && (result == NA || value > result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The mean value of the metric over the given window.
+     *
+     * @param metric
+     * @param windowMs Only samples within this duration before the latest sample are used.
+     * @return The value, or {@link StatsRecord#NA} if there is no value in the window.
+     */
+    public synchronized double getMean(Metric metric, long windowMs) {
+        double[] column = values[metric.ordinal()];
+        double sum = 0;
+        int count = 0;
+        for (int i = getWindowStart(windowMs); i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA) {
+                sum += value;
+                ++count;
+            }
+        }
+        if (count == 0) {
+            return NA;
+        }
+        return sum / count;
+    }
+
+    /**
+     * The change in value of the metric over the given window,
+     * for e.g. the number of packets lost in the window.
+     *
+     * @param metric   A metric that is a total, such as {@link Metric#PACKETS_LOST}.
+     * @param windowMs Only samples within this duration before the latest sample are used.
+     * @return The value, or {@link StatsRecord#NA} if there are less than 2 values in the window.
+     */
+    public synchronized double getDelta(Metric metric, long windowMs) {
+        double[] column = values[metric.ordinal()];
+        double first = NA;
+        double last = NA;
+        for (int i = getWindowStart(windowMs); i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value == NA) {
+                continue;
+            }
+            if (first == NA) {
+                first = value;
+            } else {
+                last = value;
+            }
+        }
+        if (last == NA) {
+            return NA;
+        }
+        return last - first;
+    }
+
+    /**
+     * The percentile (nearest rank) value of the metric over the given window.
+     *
+     * @param metric
+     * @param windowMs   Only samples within this duration before the latest sample are used.
+     * @param percentile From 0 to 100, for e.g. 95 for the p95.
+     * @return The value, or {@link StatsRecord#NA} if there is no value in the window.
+     */
+    public synchronized double getPercentile(Metric metric, long windowMs, double percentile) {
+        double[] column = values[metric.ordinal()];
+        int count = 0;
+        for (int i = getWindowStart(windowMs); i < size; ++i) {
+            double value = column[indexOf(i)];
+            if (value != NA) {
+                scratch[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return NA;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+        rank = Math.max(0, Math.min(count - 1, rank));
+        return select(scratch, count, rank);
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    private void advance() {
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            ++size;
+        }
+    }
+
+    /**
+     * Get the position in the ring buffers of the sample at the given age order,
+     * where 0 is the oldest sample.
+     */
+    private int indexOf(int order) {
+        return (head - size + order + capacity) % capacity;
+    }
+
+    /**
+     * Get the age order of the oldest sample within the window before the latest sample.
+     */
+    private int getWindowStart(long windowMs) {
+        if (size == 0) {
+            return 0;
+        }
+        long start = times[indexOf(size - 1)] - windowMs;
+        int order = size - 1;
+        while (order > 0 && times[indexOf(order - 1)] >= start) {
+            --order;
+        }
+        return order;
+    }
+
+    /**
+     * Get the k-th smallest value of the first count values of the array, partially reordering it.
+     */
+    private static double select(double[] array, int count, int k) {
+        int left = 0;
+        int right = count - 1;
+        while (left < right) {
+            double pivot = array[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (array[i] < pivot) {
+                    ++i;
+                }
+                while (array[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    double temp = array[i];
+                    array[i] = array[j];
+                    array[j] = temp;
+                    ++i;
+                    --j;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return array[k];
+    }
+}
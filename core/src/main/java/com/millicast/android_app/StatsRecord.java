@@ -0,0 +1,210 @@
+package com.millicast.android_app;
+
+/**
+ * Typed values extracted by the App's StatsParser from a WebRTC
+ * RTCStatsReport of either the Publisher or the Subscriber.
+ * A single instance is reused for every report of its Publisher/Subscriber,
+ * so values must be read (or copied) within the StatsParser.Listener#onStats callback.
+ * Numeric values that were not available in the latest report are set to {@link #NA}.
+ */
+public class StatsRecord {
+
+    /**
+     * Value of a numeric field that was not available in the latest report.
+     */
+    public static final int NA = -1;
+
+    /**
+     * True if this record is for the Publisher, false if it is for the Subscriber.
+     */
+    public final boolean forPub;
+    /**
+     * Timestamp of the report, in microseconds.
+     */
+    public double timestampUs = NA;
+    /**
+     * Number of reports parsed into this record since it was last reset.
+     */
+    public long count = 0;
+
+    /**
+     * Audio RTP values: outbound-rtp (and remote-inbound-rtp) for Publisher,
+     * inbound-rtp for Subscriber.
+     */
+    public final Rtp audio = new Rtp();
+    /**
+     * Video RTP values: outbound-rtp (and remote-inbound-rtp) for Publisher,
+     * inbound-rtp for Subscriber.
+     */
+    public final Rtp video = new Rtp();
+
+    // Selected candidate-pair.
+    /**
+     * Current round trip time of the selected candidate-pair, in ms.
+     */
+    public double rttMs = NA;
+    /**
+     * Available outgoing bitrate estimated for the selected candidate-pair, in bps.
+     */
+    public double availableOutgoingBitrate = NA;
+    /**
+     * Available incoming bitrate estimated for the selected candidate-pair, in bps.
+     */
+    public double availableIncomingBitrate = NA;
+
+    public StatsRecord(boolean forPub) {
+        this.forPub = forPub;
+    }
+
+    /**
+     * Set all values to {@link #NA} and clear the values kept to compute rates,
+     * for e.g. when a new Publisher/Subscriber is started.
+     */
+    public void reset() {
+        timestampUs = NA;
+        count = 0;
+        audio.reset();
+        video.reset();
+        clearPair();
+    }
+
+    /**
+     * Set candidate-pair values to {@link #NA}.
+     */
+    void clearPair() {
+        rttMs = NA;
+        availableOutgoingBitrate = NA;
+        availableIncomingBitrate = NA;
+    }
+
+    @Override
+    public String toString() {
+        String result = (forPub ? "Pub" : "Sub") + " #" + count + " rtt:" + rttMs +
+                "ms out:" + availableOutgoingBitrate + "bps in:" + availableIncomingBitrate + "bps";
+        result += " A:[" + audio + "] V:[" + video + "]";
+        return result;
+    }
+
+    /**
+     * RTP values of one media kind.
+     * If the stream has several RTP streams of this kind (e.g. simulcast),
+     * counters are summed and the largest frame size and rate are kept.
+     */
+    public static class Rtp {
+        /**
+         * True if an RTP stream of this kind was found in the latest report.
+         */
+        public boolean present = false;
+        /**
+         * Mime type of the codec, for e.g. "video/VP8".
+         */
+        public String codec = null;
+
+        // Counters.
+        public long bytes = NA;
+        public long packets = NA;
+        public long packetsLost = NA;
+        public long nackCount = NA;
+        public long framesEncoded = NA;
+        public long framesDecoded = NA;
+        public long framesReceived = NA;
+        public long framesDropped = NA;
+        public long jitterBufferEmittedCount = NA;
+
+        // Gauges.
+        /**
+         * Bitrate computed from bytes sent/received since the previous report, in bps.
+         */
+        public double bitrate = NA;
+        /**
+         * Encoder target bitrate (Publisher only), in bps.
+         */
+        public double targetBitrate = NA;
+        /**
+         * Jitter, in ms.
+         * For the Publisher, as reported by the remote-inbound-rtp.
+         */
+        public double jitterMs = NA;
+        /**
+         * Round trip time reported by the remote-inbound-rtp (Publisher only), in ms.
+         */
+        public double rttMs = NA;
+        /**
+         * Fraction of packets lost reported by the remote-inbound-rtp (Publisher only), 0 to 1.
+         */
+        public double fractionLost = NA;
+        public double fps = NA;
+        public int width = NA;
+        public int height = NA;
+        /**
+         * Total time spent encoding (Publisher) or decoding (Subscriber), in s.
+         */
+        public double totalCodecTime = NA;
+        /**
+         * Total jitter buffer delay (Subscriber only), in s.
+         */
+        public double jitterBufferDelay = NA;
+        /**
+         * Estimated playout time of the stream, in the NTP time of the sender, in ms
+         * (Subscriber only).
+         */
+        public double estimatedPlayoutTimestamp = NA;
+        /**
+         * Reason the encoder is limiting quality (Publisher video only), for e.g. "bandwidth".
+         */
+        public String qualityLimitationReason = null;
+
+        // Values kept from the previous report to compute rates.
+        long bytesPrev = NA;
+        double timestampUsPrev = NA;
+
+        /**
+         * Set all values to {@link #NA}, including those kept to compute rates.
+         */
+        public void reset() {
+            clear();
+            bytesPrev = NA;
+            timestampUsPrev = NA;
+        }
+
+        /**
+         * Set all values of the current report to {@link #NA}.
+         */
+        void clear() {
+            present = false;
+            codec = null;
+            bytes = NA;
+            packets = NA;
+            packetsLost = NA;
+            nackCount = NA;
+            framesEncoded = NA;
+            framesDecoded = NA;
+            framesReceived = NA;
+            framesDropped = NA;
+            jitterBufferEmittedCount = NA;
+            bitrate = NA;
+            targetBitrate = NA;
+            jitterMs = NA;
+            rttMs = NA;
+            fractionLost = NA;
+            fps = NA;
+            width = NA;
+            height = NA;
+            totalCodecTime = NA;
+            jitterBufferDelay = NA;
+            estimatedPlayoutTimestamp = NA;
+            qualityLimitationReason = null;
+        }
+
+        @Override
+        public String toString() {
+            if (!present) {
+                return "N.A.";
+            }
+            return codec + " " + (long) bitrate + "bps pkt:" + packets + " lost:" + packetsLost +
+                    " jit:" + jitterMs + "ms rtt:" + rttMs + "ms " + width + "x" + height +
+                    "@" + fps + " enc:" + framesEncoded + " dec:" + framesDecoded +
+                    " drop:" + framesDropped;
+        }
+    }
+}
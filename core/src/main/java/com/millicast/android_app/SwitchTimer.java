@@ -0,0 +1,137 @@
+package com.millicast.android_app;
+
+/**
+ * Measures the latency of camera switches while capturing:
+ * from the switch request, to the switch being done by the camera,
+ * and to the first frame of the new camera, which is the closest measure on the device
+ * of the gap seen by viewers.
+ * Only the latest switch is timed, so a switch requested before the previous one is done
+ * restarts the timing. Times are provided by the caller, in ns, and latencies are kept in ms.
+ * All methods are thread safe.
+ */
+public class SwitchTimer {
+
+    private static final long NONE = -1;
+
+    // Request time of the switch being timed, or NONE.
+    private long startNs = NONE;
+    private long switchCount = 0;
+    private long failedCount = 0;
+
+    private long lastSwitchMs = NONE;
+    private long lastFrameMs = NONE;
+    private long minFrameMs = NONE;
+    private long maxFrameMs = NONE;
+    private long sumFrameMs = 0;
+    private long frameCount = 0;
+
+    /**
+     * Start timing a switch that has just been requested.
+     *
+     * @param nowNs
+     */
+    public synchronized void start(long nowNs) {
+        startNs = nowNs;
+        ++switchCount;
+    }
+
+    /**
+     * Record that the camera is done switching.
+     *
+     * @param nowNs
+     * @param success If false, the switch failed and is no longer timed.
+     * @return The latency of the switch in ms, or -1 if no switch was being timed or it failed.
+     */
+    public synchronized long onSwitched(long nowNs, boolean success) {
+        if (startNs == NONE) {
+            return NONE;
+        }
+        if (!success) {
+            startNs = NONE;
+            ++failedCount;
+            return NONE;
+        }
+        lastSwitchMs = (nowNs - startNs) / 1_000_000;
+        return lastSwitchMs;
+    }
+
+    /**
+     * Record the first frame of a camera, which ends the timing of the current switch, if any.
+     *
+     * @param nowNs
+     * @return The latency from the switch request to this frame in ms,
+     * or -1 if no switch was being timed.
+     */
+    public synchronized long onFirstFrame(long nowNs) {
+        if (startNs == NONE) {
+            return NONE;
+        }
+        long ms = (nowNs - startNs) / 1_000_000;
+        startNs = NONE;
+        lastFrameMs = ms;
+        minFrameMs = minFrameMs == NONE ? ms : Math.min(minFrameMs, ms);
+        maxFrameMs = Math.max(maxFrameMs, ms);
+        sumFrameMs += ms;
+        ++frameCount;
+        return ms;
+    }
+
+    /**
+     * Check if a switch is being timed, i.e. its first frame has not been received yet.
+     *
+     * @return
+     */
+    public synchronized boolean isPending() {
+        return startNs != NONE;
+    }
+
+    public synchronized long getSwitchCount() {
+        return switchCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Get the latency from the request to the switch being done of the latest switch.
+     *
+     * @return The latency in ms, or -1 if none yet.
+     */
+    public synchronized long getLastSwitchMs() {
+        return lastSwitchMs;
+    }
+
+    /**
+     * Get the latency from the request to the first frame of the latest switch.
+     *
+     * @return The latency in ms, or -1 if none yet.
+     */
+    public synchronized long getLastFrameMs() {
+        return lastFrameMs;
+    }
+
+    public synchronized long getMinFrameMs() {
+        return minFrameMs;
+    }
+
+    public synchronized long getMaxFrameMs() {
+        return maxFrameMs;
+    }
+
+    /**
+     * Get the average latency from the request to the first frame of all switches timed.
+     *
+     * @return The latency in ms, or -1 if none yet.
+     */
+    public synchronized long getAvgFrameMs() {
+        return frameCount == 0 ? NONE : sumFrameMs / frameCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Switches:" + switchCount + " Failed:" + failedCount +
+                " Switch:" + lastSwitchMs + "ms FirstFrame:" + lastFrameMs + "ms (min:" +
+                minFrameMs + " avg:" + getAvgFrameMs() + " max:" + maxFrameMs + ")";
+    }
+}
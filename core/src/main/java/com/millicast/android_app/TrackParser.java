@@ -0,0 +1,183 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses the track descriptors of a source, as listed by Millicast when the source becomes active,
+ * for e.g. "audio/{trackId}" or "video/{trackId}".
+ * Each descriptor is parsed in a single pass with indexOf, without splitting it.
+ * TrackIds are interned in a bounded pool, so that the same trackIds, which are listed again
+ * each time a source becomes active, are not allocated again.
+ * Descriptors that cannot be parsed are reported as {@link Error}s.
+ * A parser is not thread safe, and is meant to be used by one listener.
+ */
+public class TrackParser {
+
+    public static final String KIND_AUDIO = "audio";
+    public static final String KIND_VIDEO = "video";
+    /**
+     * Number of slots of the pool of interned trackIds.
+     */
+    public static final int INTERN_SIZE = 256;
+    private static final int INTERN_PROBES = 4;
+
+    /**
+     * A descriptor that could not be parsed.
+     */
+    public static class Error {
+        public enum Reason {
+            NULL,
+            NO_SEPARATOR,
+            UNKNOWN_KIND,
+            EMPTY_ID
+        }
+
+        /**
+         * The index of the descriptor in the list of tracks.
+         */
+        public final int index;
+        public final String track;
+        public final Reason reason;
+
+        Error(int index, String track, Reason reason) {
+            this.index = index;
+            this.track = track;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + index + "]:" + track + " " + reason;
+        }
+    }
+
+    /**
+     * The trackIds of a source, by kind, and the descriptors that could not be parsed.
+     */
+    public static class Result {
+        public final String[] audioTrackIds;
+        public final String[] videoTrackIds;
+        public final List<Error> errors;
+
+        Result(String[] audioTrackIds, String[] videoTrackIds, List<Error> errors) {
+            this.audioTrackIds = audioTrackIds;
+            this.videoTrackIds = videoTrackIds;
+            this.errors = errors;
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    private static final String[] EMPTY = new String[0];
+
+    // Scratch arrays of the trackIds, grown as needed.
+    private String[] audio = new String[8];
+    private String[] video = new String[8];
+    private final String[] intern = new String[INTERN_SIZE];
+    private long internHits = 0;
+
+    /**
+     * Parse the track descriptors of a source.
+     *
+     * @param tracks
+     * @return
+     */
+    public Result parse(String[] tracks) {
+        if (audio.length < tracks.length) {
+            audio = new String[tracks.length];
+            video = new String[tracks.length];
+        }
+        int audioCount = 0;
+        int videoCount = 0;
+        List<Error> errors = null;
+
+        for (int i = 0; i < tracks.length; ++i) {
+            String track = tracks[i];
+            Error.Reason reason = null;
+            if (track == null) {
+                reason = Error.Reason.NULL;
+            } else {
+                int slash = track.indexOf('/');
+                if (slash < 0) {
+                    reason = Error.Reason.NO_SEPARATOR;
+                } else if (slash == track.length() - 1) {
+                    reason = Error.Reason.EMPTY_ID;
+                } else if (slash == KIND_AUDIO.length() &&
+                        track.regionMatches(0, KIND_AUDIO, 0, slash)) {
+                    audio[audioCount++] = intern(track, slash + 1);
+                } else if (slash == KIND_VIDEO.length() &&
+                        track.regionMatches(0, KIND_VIDEO, 0, slash)) {
+                    video[videoCount++] = intern(track, slash + 1);
+                } else {
+                    reason = Error.Reason.UNKNOWN_KIND;
+                }
+            }
+            if (reason != null) {
+                if (errors == null) {
+                    errors = new ArrayList<>();
+                }
+                errors.add(new Error(i, track, reason));
+            }
+        }
+
+        String[] audioTrackIds = audioCount == 0 ? EMPTY : Arrays.copyOf(audio, audioCount);
+        String[] videoTrackIds = videoCount == 0 ? EMPTY : Arrays.copyOf(video, videoCount);
+        Arrays.fill(audio, 0, audioCount, null);
+        Arrays.fill(video, 0, videoCount, null);
+        return new Result(audioTrackIds, videoTrackIds,
+                errors == null ? Collections.<Error>emptyList() : errors);
+    }
+
+    /**
+     * Get the number of trackIds found in the pool of interned trackIds so far.
+     *
+     * @return
+     */
+    public long getInternHits() {
+        return internHits;
+    }
+
+    /**
+     * Get the trackId at the end of a descriptor from the pool of interned trackIds,
+     * adding it if not found.
+     * The pool is bounded: a trackId not found within a few slots replaces the one in its slot.
+     *
+     * @param track
+     * @param start The start of the trackId in the descriptor.
+     * @return
+     */
+    private String intern(String track, int start) {
+        int length = track.length() - start;
+        int hash = 0;
+        for (int i = start; i < track.length(); ++i) {
+            hash = 31 * hash + track.charAt(i);
+        }
+        int mask = INTERN_SIZE - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (int probe = 0; probe < INTERN_PROBES; ++probe) {
+            String id = intern[(slot + probe) & mask];
+            if (id == null) {
+                break;
+            }
+            if (id.length() == length && id.regionMatches(0, track, start, length)) {
+                ++internHits;
+                return id;
+            }
+        }
+        String id = track.substring(start);
+        for (int probe = 0; probe < INTERN_PROBES; ++probe) {
+            int index = (slot + probe) & mask;
+            if (intern[index] == null) {
+                intern[index] = id;
+                return id;
+            }
+        }
+        intern[slot] = id;
+        return id;
+    }
+}
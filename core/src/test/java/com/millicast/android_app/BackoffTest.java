@@ -0,0 +1,55 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link Backoff} delays.
+ */
+public class BackoffTest {
+
+    @Test
+    public void delays_doubleWithJitterUpToMax() {
+        Backoff backoff = new Backoff(1000, 30000, new Random(7));
+        long[] caps = {1000, 2000, 4000, 8000, 16000, 30000, 30000, 30000};
+        for (long cap : caps) {
+            long delay = backoff.nextDelayMs();
+            assertTrue("Delay " + delay + " for cap " + cap, delay >= cap / 2 && delay <= cap);
+        }
+        assertEquals(caps.length, backoff.getAttempt());
+    }
+
+    @Test
+    public void delays_areBoundedForManyAttempts() {
+        Backoff backoff = new Backoff(1000, 30000, new Random(1));
+        for (int i = 0; i < 200; ++i) {
+            long delay = backoff.nextDelayMs();
+            assertTrue(delay > 0 && delay <= 30000);
+        }
+    }
+
+    @Test
+    public void reset_startsFromBase() {
+        Backoff backoff = new Backoff(500, 8000, new Random(3));
+        for (int i = 0; i < 5; ++i) {
+            backoff.nextDelayMs();
+        }
+        backoff.reset();
+        assertEquals(0, backoff.getAttempt());
+        assertTrue(backoff.nextDelayMs() <= 500);
+    }
+
+    @Test
+    public void jitter_spreadsDelays() {
+        Backoff backoff1 = new Backoff(1000, 30000, new Random(11));
+        Backoff backoff2 = new Backoff(1000, 30000, new Random(12));
+        boolean differ = false;
+        for (int i = 0; i < 5; ++i) {
+            differ |= backoff1.nextDelayMs() != backoff2.nextDelayMs();
+        }
+        assertTrue(differ);
+    }
+}
@@ -0,0 +1,118 @@
+package com.millicast.android_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.millicast.android_app.BitrateController.Action.DECREASE;
+import static com.millicast.android_app.BitrateController.Action.HOLD;
+import static com.millicast.android_app.BitrateController.Action.INCREASE;
+import static com.millicast.android_app.StatsRecord.NA;
+import static org.junit.Assert.*;
+
+/**
+ * Drives the {@link BitrateController} with synthetic stats traces.
+ */
+public class BitrateControllerTest {
+
+    private static final long INTERVAL_MS = 2000;
+
+    private BitrateController controller;
+    private long timeMs;
+
+    @Before
+    public void setUp() {
+        controller = new BitrateController();
+        controller.reset(0, 2500);
+        timeMs = 0;
+    }
+
+    /**
+     * Feed the same stats for the given number of intervals.
+     *
+     * @return The ceiling after the last interval.
+     */
+    private int run(int count, double rttMs, double fractionLost, double availableBps) {
+        int ceiling = controller.getCeilingKbps();
+        for (int i = 0; i < count; ++i) {
+            timeMs += INTERVAL_MS;
+            ceiling = controller.update(timeMs, rttMs, fractionLost, availableBps);
+        }
+        return ceiling;
+    }
+
+    @Test
+    public void reset_startsAtMaxAndAppliesFloor() {
+        assertEquals(2500, controller.getCeilingKbps());
+        assertEquals(BitrateController.MIN_FLOOR_KBPS, controller.getMinKbps());
+    }
+
+    @Test
+    public void stableNetwork_holdsAtMax() {
+        assertEquals(2500, run(30, 50, 0, 3000000));
+        assertEquals(HOLD, controller.getAction());
+    }
+
+    @Test
+    public void lowEstimateWithoutCongestion_doesNotLowerCeiling() {
+        // At the start of a publish, the estimate is low while it ramps up.
+        assertEquals(2500, run(5, 50, 0, 300000));
+    }
+
+    @Test
+    public void highLoss_decreasesDownToFloor() {
+        run(5, 50, 0, 3000000);
+        int ceiling = run(1, 60, 0.3, 3000000);
+        assertEquals(DECREASE, controller.getAction());
+        assertEquals(2125, ceiling);
+        assertEquals(BitrateController.MIN_FLOOR_KBPS, run(30, 60, 0.3, NA));
+    }
+
+    @Test
+    public void congestion_lowersToAvailableEstimate() {
+        run(5, 50, 0, 3000000);
+        assertEquals(800, run(1, 60, 0.15, 800000));
+    }
+
+    @Test
+    public void rttRise_decreases() {
+        run(5, 50, 0, NA);
+        int ceiling = run(1, 400, 0, NA);
+        assertEquals(DECREASE, controller.getAction());
+        assertEquals(2125, ceiling);
+    }
+
+    @Test
+    public void moderateLoss_holds() {
+        run(5, 50, 0, NA);
+        run(1, 60, 0.3, NA);
+        int ceiling = controller.getCeilingKbps();
+        assertEquals(ceiling, run(10, 60, 0.05, NA));
+        assertEquals(HOLD, controller.getAction());
+    }
+
+    @Test
+    public void recovery_waitsForHoldThenIncreasesToMax() {
+        run(5, 50, 0, NA);
+        int low = run(20, 60, 0.4, NA);
+        assertEquals(BitrateController.MIN_FLOOR_KBPS, low);
+
+        // No increase within the hold period after the last decrease.
+        int held = run((int) (BitrateController.HOLD_MS / INTERVAL_MS) - 1, 50, 0, NA);
+        assertEquals(low, held);
+        assertEquals(HOLD, controller.getAction());
+
+        int raised = run(1, 50, 0, NA);
+        assertEquals(INCREASE, controller.getAction());
+        assertTrue(raised > low);
+
+        assertEquals(2500, run(100, 50, 0, NA));
+    }
+
+    @Test
+    public void unavailableStats_hold() {
+        run(1, 60, 0.3, NA);
+        int ceiling = controller.getCeilingKbps();
+        assertEquals(ceiling, run(20, NA, NA, NA));
+        assertEquals(HOLD, controller.getAction());
+    }
+}
@@ -0,0 +1,90 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link CapabilityRanker} scoring and choices.
+ */
+public class CapabilityRankerTest {
+
+    private static final CapabilityRanker.Spec<MCVideoSource.Capability> SPEC =
+            new CapabilityRanker.Spec<MCVideoSource.Capability>() {
+                @Override
+                public int getWidth(MCVideoSource.Capability cap) {
+                    return cap.width;
+                }
+
+                @Override
+                public int getHeight(MCVideoSource.Capability cap) {
+                    return cap.height;
+                }
+
+                @Override
+                public int getFps(MCVideoSource.Capability cap) {
+                    return cap.fps;
+                }
+
+                @Override
+                public String getFormat(MCVideoSource.Capability cap) {
+                    return null;
+                }
+            };
+
+    private final List<MCVideoSource.Capability> caps = Arrays.asList(
+            new MCVideoSource.Capability(1920, 1080, 30),
+            new MCVideoSource.Capability(640, 480, 30),
+            new MCVideoSource.Capability(1280, 720, 15),
+            new MCVideoSource.Capability(1280, 720, 30));
+
+    @Test
+    public void target_isPicked() {
+        CapabilityRanker ranker = new CapabilityRanker(1280, 720, 30);
+        assertEquals(3, ranker.pick("cam0", caps, SPEC));
+        assertEquals(-1, ranker.pick("cam0", Arrays.<MCVideoSource.Capability>asList(), SPEC));
+    }
+
+    @Test
+    public void choice_isRememberedByDevice() {
+        CapabilityRanker ranker = new CapabilityRanker(1280, 720, 30);
+        ranker.setChoice("usb0", 1920, 1080, 30);
+        assertEquals(0, ranker.pick("usb0", caps, SPEC));
+        assertEquals(3, ranker.pick("cam0", caps, SPEC));
+    }
+
+    @Test
+    public void lowUplink_picksFittingCapability() {
+        CapabilityRanker ranker = new CapabilityRanker(1280, 720, 30);
+        // 1280x720@30 needs about 2765 kbps, 640x480@30 about 922 kbps.
+        assertTrue(ranker.setUplinkKbps(1200));
+        assertEquals(1, ranker.pick("cam0", caps, SPEC));
+        // Small changes do not rank again.
+        assertFalse(ranker.setUplinkKbps(1300));
+        assertTrue(ranker.setUplinkKbps(5000));
+        assertEquals(3, ranker.pick("cam0", caps, SPEC));
+        assertTrue(ranker.setUplinkKbps(1200));
+        ranker.clearUplink();
+        assertEquals(0, ranker.getUplinkKbps());
+        assertEquals(3, ranker.pick("cam0", caps, SPEC));
+    }
+
+    @Test
+    public void pick_isNeverAboveChoice() {
+        CapabilityRanker ranker = new CapabilityRanker(1280, 720, 30);
+        ranker.setChoice("cam0", 1280, 720, 15);
+        assertTrue(ranker.setUplinkKbps(10000));
+        assertEquals(2, ranker.pick("cam0", caps, SPEC));
+        // The network still lowers it.
+        ranker.setChoice("cam0", 1280, 720, 30);
+        assertEquals(3, ranker.pick("cam0", caps, SPEC));
+        assertTrue(ranker.setUplinkKbps(1200));
+        assertEquals(1, ranker.pick("cam0", caps, SPEC));
+        // Unless nothing is at or below the choice.
+        ranker.setChoice("cam0", 320, 240, 15);
+        assertEquals(1, ranker.pick("cam0", caps, SPEC));
+    }
+}
@@ -0,0 +1,74 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link CodecProbe} choice of codec.
+ */
+public class CodecProbeTest {
+
+    private static final List<String> CODECS = Arrays.asList("VP8", "VP9", "H264", "AV1");
+
+    private static CodecProbe.Encoder encoder(String codec, boolean hardware, int maxFps,
+                                              double costMs) {
+        return new CodecProbe.Encoder(codec, codec.toLowerCase() + (hardware ? ".hw" : ".sw"),
+                hardware, 1920, 1088, maxFps, costMs);
+    }
+
+    @Test
+    public void softwareEncoder_losesToCheaperHardware() {
+        CodecProbe probe = new CodecProbe(Arrays.asList(
+                encoder("VP8", false, 30, 8),
+                encoder("VP9", false, 30, 6),
+                encoder("H264", true, 60, 9)));
+        // VP9 costs 12 with the software factor, VP8 16, H264 9.
+        assertEquals(2, probe.pick(CODECS, 1280, 720, 30));
+        assertEquals("h264.hw", probe.getEncoder("H264", 1280, 720, 30).name);
+        assertNull(probe.getEncoder("AV1", 1280, 720, 30));
+    }
+
+    @Test
+    public void encoderMeetingTarget_isPicked() {
+        CodecProbe probe = new CodecProbe(Arrays.asList(
+                encoder("VP9", true, 15, 2),
+                encoder("VP8", false, 30, 10)));
+        // The cheaper hardware VP9 only does 15fps.
+        assertEquals(0, probe.pick(CODECS, 1280, 720, 30));
+        assertEquals(1, probe.pick(CODECS, 1280, 720, 15));
+        // Portrait targets also fit.
+        assertTrue(probe.getEncoders().get(1).meets(1080, 1920, 30));
+
+        // With none meeting the target, the highest ceiling wins.
+        assertEquals(0, probe.pick(CODECS, 3840, 2160, 30));
+    }
+
+    @Test
+    public void unmeasuredCost_isAssumed() {
+        CodecProbe probe = new CodecProbe(Arrays.asList(
+                encoder("H264", true, 30, -1),
+                encoder("VP8", false, 30, 4)));
+        assertEquals(CodecProbe.COST_UNKNOWN_HW_MS, probe.getEncoders().get(0).getCost(), 0);
+        assertEquals(2, probe.pick(CODECS, 1280, 720, 30));
+        assertEquals(-1, new CodecProbe(Arrays.asList()).pick(CODECS, 1280, 720, 30));
+    }
+
+    @Test
+    public void serialized_isParsedBack() {
+        CodecProbe probe = new CodecProbe(Arrays.asList(
+                encoder("VP9", false, 30, 6.5),
+                encoder("H264", true, 60, -1)));
+        CodecProbe parsed = CodecProbe.parse(probe.serialize());
+        assertNotNull(parsed);
+        assertEquals(probe.toString(), parsed.toString());
+        assertEquals(probe.serialize(), parsed.serialize());
+
+        assertNull(CodecProbe.parse(""));
+        assertNull(CodecProbe.parse("VP9|x|true|1|2"));
+        assertNull(CodecProbe.parse("VP9|x|true|a|2|3|4"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link ConfigStore} with a {@link ConfigStore.MemoryBackend}.
+ */
+public class ConfigStoreTest {
+
+    // Executor that only runs tasks when asked to.
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private void runTasks() {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : pending) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void get_returnsLoadedValuesOrDefault() {
+        ConfigStore.MemoryBackend backend = new ConfigStore.MemoryBackend();
+        ConfigStore first = new ConfigStore(backend, tasks::add);
+        first.putString("url", "wss://example");
+        first.putInt("index", 3);
+        runTasks();
+
+        ConfigStore store = new ConfigStore(backend, tasks::add);
+        assertEquals("wss://example", store.getString("url", "none"));
+        assertEquals(3, store.getInt("index", 0));
+        assertTrue(store.getBoolean("missing", true));
+        // A value of another type gives the default.
+        assertEquals(7, store.getInt("url", 7));
+    }
+
+    @Test
+    public void put_isVisibleAtOnceAndWrittenInOneBatch() {
+        ConfigStore.MemoryBackend backend = new ConfigStore.MemoryBackend();
+        ConfigStore store = new ConfigStore(backend, tasks::add);
+        store.putString("account", "abc");
+        store.putBoolean("ricoh", true);
+        store.putInt("codec", 2);
+
+        assertEquals("abc", store.getString("account", null));
+        assertTrue(store.isDirty());
+        assertEquals(0, backend.getSaveCount());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        assertFalse(store.isDirty());
+        assertEquals(1, backend.getSaveCount());
+        assertEquals(true, backend.loadAll().get("ricoh"));
+    }
+
+    @Test
+    public void put_sameValueIsNotDirty() {
+        ConfigStore.MemoryBackend backend = new ConfigStore.MemoryBackend();
+        ConfigStore store = new ConfigStore(backend, tasks::add);
+        store.putInt("codec", 2);
+        runTasks();
+        store.putInt("codec", 2);
+        assertFalse(store.isDirty());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void flush_failedKeepsValuesDirty() {
+        final boolean[] fail = {true};
+        ConfigStore.MemoryBackend memory = new ConfigStore.MemoryBackend();
+        ConfigStore.Backend backend = new ConfigStore.Backend() {
+            @Override
+            public Map<String, ?> loadAll() {
+                return memory.loadAll();
+            }
+
+            @Override
+            public boolean save(Map<String, Object> values) {
+                return !fail[0] && memory.save(values);
+            }
+        };
+        ConfigStore store = new ConfigStore(backend, tasks::add);
+        store.putString("token", "t1");
+        assertFalse(store.flush());
+        assertTrue(store.isDirty());
+
+        fail[0] = false;
+        assertTrue(store.flush());
+        assertEquals("t1", memory.loadAll().get("token"));
+    }
+
+    @Test
+    public void flush_failedIsRetried() {
+        final boolean[] fail = {true};
+        ConfigStore.MemoryBackend memory = new ConfigStore.MemoryBackend();
+        ConfigStore.Backend backend = new ConfigStore.Backend() {
+            @Override
+            public Map<String, ?> loadAll() {
+                return memory.loadAll();
+            }
+
+            @Override
+            public boolean save(Map<String, Object> values) {
+                return !fail[0] && memory.save(values);
+            }
+        };
+        ConfigStore store = new ConfigStore(backend, tasks::add);
+        store.putString("token", "t1");
+        runTasks();
+        // The failed flush scheduled another one.
+        assertEquals(1, tasks.size());
+        fail[0] = false;
+        runTasks();
+        assertFalse(store.isDirty());
+        assertEquals("t1", memory.loadAll().get("token"));
+
+        // Retries stop after FLUSH_RETRIES_MAX failures in a row.
+        fail[0] = true;
+        store.putString("token", "t2");
+        for (int i = 0; i <= ConfigStore.FLUSH_RETRIES_MAX; ++i) {
+            assertEquals(1, tasks.size());
+            runTasks();
+        }
+        assertTrue(tasks.isEmpty());
+        assertTrue(store.isDirty());
+    }
+}
@@ -0,0 +1,91 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link DeviceCatalog} caching and invalidation.
+ */
+public class DeviceCatalogTest {
+
+    private final FakeMedia media = new FakeMedia();
+    private int capabilityLoads = 0;
+
+    private DeviceCatalog<MCVideoSource, MCVideoSource.Capability> newCatalog(long maxAgeMs) {
+        return new DeviceCatalog<>(new DeviceCatalog.Loader<MCVideoSource, MCVideoSource.Capability>() {
+            @Override
+            public List<MCVideoSource> loadDevices() {
+                return media.getVideoSources();
+            }
+
+            @Override
+            public String getId(MCVideoSource device) {
+                return device.getId();
+            }
+
+            @Override
+            public List<MCVideoSource.Capability> loadCapabilities(MCVideoSource device) {
+                ++capabilityLoads;
+                return device.getCapabilities();
+            }
+        }, maxAgeMs);
+    }
+
+    @Test
+    public void devices_areEnumeratedOnce() {
+        media.addVideoSource(newSource("cam0", "Camera 0"));
+        DeviceCatalog<MCVideoSource, MCVideoSource.Capability> catalog = newCatalog(0);
+        ArrayList<MCVideoSource> devices = catalog.getDevices(0);
+        assertEquals(1, devices.size());
+        assertEquals(1, capabilityLoads);
+
+        catalog.getDevices(100_000);
+        catalog.getCapabilities(devices.get(0));
+        assertEquals(1, catalog.getLoadCount());
+        assertEquals(2, catalog.getHitCount());
+        assertEquals(1, capabilityLoads);
+    }
+
+    @Test
+    public void invalidate_enumeratesAgain() {
+        media.addVideoSource(newSource("cam0", "Camera 0"));
+        DeviceCatalog<MCVideoSource, MCVideoSource.Capability> catalog = newCatalog(0);
+        catalog.getDevices(0);
+
+        media.addVideoSource(newSource("usb0", "USB Camera"));
+        assertEquals(1, catalog.getDevices(0).size());
+        catalog.invalidate();
+        assertFalse(catalog.isValid(0));
+        assertEquals(Arrays.asList("cam0", "usb0"), ids(catalog.getDevices(0)));
+        assertEquals(2, catalog.getLoadCount());
+        assertEquals(1, catalog.getInvalidateCount());
+    }
+
+    @Test
+    public void maxAge_expiresCatalog() {
+        DeviceCatalog<MCVideoSource, MCVideoSource.Capability> catalog = newCatalog(1000);
+        catalog.getDevices(0);
+        assertTrue(catalog.isValid(999));
+        assertFalse(catalog.isValid(1000));
+        catalog.getDevices(1000);
+        assertEquals(2, catalog.getLoadCount());
+    }
+
+    private static MCVideoSource newSource(String id, String name) {
+        return new FakeVideoSource(id, name, "DEVICE",
+                Arrays.asList(new MCVideoSource.Capability(1280, 720, 30)));
+    }
+
+    private static List<String> ids(List<MCVideoSource> devices) {
+        List<String> ids = new ArrayList<>();
+        for (MCVideoSource device : devices) {
+            ids.add(device.getId());
+        }
+        return ids;
+    }
+}
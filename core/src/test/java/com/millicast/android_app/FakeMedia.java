@@ -0,0 +1,40 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process {@link MCMedia} with video sources that can be added and removed,
+ * for e.g. to simulate a camera being plugged in or unplugged.
+ */
+public class FakeMedia implements MCMedia {
+
+    private final List<MCVideoSource> videoSources = new CopyOnWriteArrayList<>();
+    private final List<String> audioCodecs = Arrays.asList("opus", "multiopus");
+    private final List<String> videoCodecs = Arrays.asList("VP8", "VP9", "H264", "AV1");
+
+    public void addVideoSource(MCVideoSource source) {
+        videoSources.add(source);
+    }
+
+    public void removeVideoSource(MCVideoSource source) {
+        videoSources.remove(source);
+    }
+
+    @Override
+    public List<MCVideoSource> getVideoSources() {
+        return new ArrayList<>(videoSources);
+    }
+
+    @Override
+    public List<String> getSupportedAudioCodecs() {
+        return audioCodecs;
+    }
+
+    @Override
+    public List<String> getSupportedVideoCodecs() {
+        return videoCodecs;
+    }
+}
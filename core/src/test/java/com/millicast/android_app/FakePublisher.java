@@ -0,0 +1,175 @@
+package com.millicast.android_app;
+
+/**
+ * In-process {@link MCPublisher} of a {@link FakeServer}.
+ * Sends no media, but publishes an audio and a video track to the Subscribers of its stream.
+ */
+public class FakePublisher implements MCPublisher {
+
+    private final FakeServer server;
+    private final MCPublisher.Listener listener;
+    private String streamName = null;
+    private Options options = new Options();
+    private boolean connected = false;
+    private boolean publishing = false;
+    private int statsIntervalMs = 0;
+    private int viewerCount = 0;
+
+    FakePublisher(FakeServer server, MCPublisher.Listener listener) {
+        this.server = server;
+        this.listener = listener;
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    @Override
+    public boolean connect() {
+        // The server is not called while holding the lock of this client,
+        // as the server calls its clients while holding its own lock.
+        synchronized (this) {
+            if (streamName == null || connected) {
+                return false;
+            }
+        }
+        if (!server.connect(this)) {
+            server.post(() -> listener.onConnectionError(
+                    FakeServer.STATUS_CONNECT_FAILED, "Connection failed."));
+            return true;
+        }
+        synchronized (this) {
+            connected = true;
+        }
+        server.post(listener::onConnected);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized void getStats(int intervalMs) {
+        statsIntervalMs = intervalMs;
+    }
+
+    @Override
+    public void release() {
+        unpublish();
+        synchronized (this) {
+            connected = false;
+        }
+        server.disconnect(this);
+    }
+
+    @Override
+    public synchronized void setCredentials(String streamName, String token, String apiUrl) {
+        this.streamName = streamName;
+    }
+
+    @Override
+    public synchronized void setOptions(Options options) {
+        this.options = options;
+    }
+
+    @Override
+    public boolean publish() {
+        String name;
+        synchronized (this) {
+            if (!connected || publishing) {
+                return false;
+            }
+            publishing = true;
+            name = streamName;
+            server.post(listener::onPublishing);
+        }
+        server.addPublisher(name, this);
+        return true;
+    }
+
+    @Override
+    public boolean unpublish() {
+        String name;
+        synchronized (this) {
+            if (!publishing) {
+                return false;
+            }
+            publishing = false;
+            name = streamName;
+        }
+        server.removePublisher(name, this);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isPublishing() {
+        return publishing;
+    }
+
+    /**
+     * Deliver the given stats to the listener, if stats were requested via {@link #getStats}.
+     *
+     * @param record
+     */
+    public synchronized void emitStats(StatsRecord record) {
+        if (statsIntervalMs > 0 && connected) {
+            server.post(() -> listener.onStats(record));
+        }
+    }
+
+    public synchronized Options getOptions() {
+        return options;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    synchronized String getSourceId() {
+        return options.sourceId;
+    }
+
+    /**
+     * The tracks as listed by Millicast in the active event of the Subscriber.
+     */
+    String[] getTracks() {
+        return new String[]{"audio/audio0", "video/video0"};
+    }
+
+    /**
+     * Notify a new viewer count, and if the stream became active or inactive.
+     */
+    synchronized void notifyViewerCount(int count, boolean notifyActivity) {
+        int previous = viewerCount;
+        viewerCount = count;
+        server.post(() -> listener.onViewerCount(count));
+        if (!notifyActivity) {
+            if (count > 0) {
+                server.post(listener::onActive);
+            }
+            return;
+        }
+        if (previous == 0 && count > 0) {
+            server.post(listener::onActive);
+        } else if (previous > 0 && count == 0) {
+            server.post(listener::onInactive);
+        }
+    }
+
+    /**
+     * Lose the connection, as if the network was lost.
+     */
+    void drop() {
+        unpublish();
+        synchronized (this) {
+            if (!connected) {
+                return;
+            }
+            connected = false;
+        }
+        server.disconnect(this);
+        server.post(listener::onDisconnected);
+    }
+}
@@ -0,0 +1,175 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * In-process stand-in for Millicast, that connects {@link FakePublisher}s to the
+ * {@link FakeSubscriber}s of the same stream name without any network or media.
+ * Events are delivered to the listeners of the clients via the {@link Executor} given,
+ * for e.g. directly on the calling thread (Runnable::run) for deterministic tests,
+ * or on a thread pool for load and soak tests.
+ * Failures can be injected with {@link #setConnectFailing} and {@link #dropConnections}.
+ */
+public class FakeServer {
+
+    public static final String TAG = "FakeServer";
+    public static final int STATUS_CONNECT_FAILED = 503;
+
+    /**
+     * The clients of one stream name.
+     */
+    private static class Stream {
+        final List<FakePublisher> publishers = new ArrayList<>();
+        final List<FakeSubscriber> subscribers = new ArrayList<>();
+    }
+
+    private final Executor executor;
+    private final Map<String, Stream> streams = new HashMap<>();
+    private final List<MCClient> connected = new ArrayList<>();
+    private boolean connectFailing = false;
+
+    public FakeServer(Executor executor) {
+        this.executor = executor;
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    public FakePublisher createPublisher(MCPublisher.Listener listener) {
+        return new FakePublisher(this, listener);
+    }
+
+    public FakeSubscriber createSubscriber(MCSubscriber.Listener listener) {
+        return new FakeSubscriber(this, listener);
+    }
+
+    /**
+     * Set whether new connections fail, with {@link #STATUS_CONNECT_FAILED}.
+     *
+     * @param failing
+     */
+    public synchronized void setConnectFailing(boolean failing) {
+        connectFailing = failing;
+    }
+
+    /**
+     * Disconnect all clients, as if the network was lost.
+     * Each client is notified via its onDisconnected.
+     */
+    public synchronized void dropConnections() {
+        for (MCClient client : new ArrayList<>(connected)) {
+            if (client instanceof FakePublisher) {
+                ((FakePublisher) client).drop();
+            } else {
+                ((FakeSubscriber) client).drop();
+            }
+        }
+    }
+
+    /**
+     * The number of Subscribers subscribed to the given stream.
+     *
+     * @param streamName
+     * @return
+     */
+    public synchronized int getViewerCount(String streamName) {
+        Stream stream = streams.get(streamName);
+        return stream == null ? 0 : stream.subscribers.size();
+    }
+
+    public synchronized int getConnectedCount() {
+        return connected.size();
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    void post(Runnable event) {
+        executor.execute(event);
+    }
+
+    /**
+     * @return True if connected, false if the connection failed.
+     */
+    synchronized boolean connect(MCClient client) {
+        if (connectFailing) {
+            return false;
+        }
+        connected.add(client);
+        return true;
+    }
+
+    synchronized void disconnect(MCClient client) {
+        connected.remove(client);
+    }
+
+    synchronized void addPublisher(String streamName, FakePublisher publisher) {
+        Stream stream = getStream(streamName);
+        stream.publishers.add(publisher);
+        for (FakeSubscriber subscriber : stream.subscribers) {
+            subscriber.notifyActive(streamName, publisher);
+        }
+        publisher.notifyViewerCount(stream.subscribers.size(), false);
+    }
+
+    synchronized void removePublisher(String streamName, FakePublisher publisher) {
+        Stream stream = getStream(streamName);
+        if (!stream.publishers.remove(publisher)) {
+            return;
+        }
+        for (FakeSubscriber subscriber : stream.subscribers) {
+            subscriber.notifyInactive(streamName, publisher);
+        }
+    }
+
+    synchronized void addSubscriber(String streamName, FakeSubscriber subscriber) {
+        Stream stream = getStream(streamName);
+        stream.subscribers.add(subscriber);
+        for (FakePublisher publisher : stream.publishers) {
+            subscriber.notifyActive(streamName, publisher);
+            publisher.notifyViewerCount(stream.subscribers.size(), true);
+        }
+    }
+
+    synchronized void removeSubscriber(String streamName, FakeSubscriber subscriber) {
+        Stream stream = getStream(streamName);
+        if (!stream.subscribers.remove(subscriber)) {
+            return;
+        }
+        for (FakePublisher publisher : stream.publishers) {
+            publisher.notifyViewerCount(stream.subscribers.size(), true);
+        }
+    }
+
+    /**
+     * Checks if a Publisher with the given sourceId is publishing to the stream.
+     */
+    synchronized boolean isSourceActive(String streamName, String sourceId) {
+        Stream stream = streams.get(streamName);
+        if (stream == null) {
+            return false;
+        }
+        for (FakePublisher publisher : stream.publishers) {
+            String id = publisher.getSourceId();
+            if ((id == null ? "" : id).equals(sourceId == null ? "" : sourceId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Stream getStream(String streamName) {
+        Stream stream = streams.get(streamName);
+        if (stream == null) {
+            stream = new Stream();
+            streams.put(streamName, stream);
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,201 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the in-process {@link FakeServer} and its clients.
+ */
+public class FakeServerTest {
+
+    /**
+     * Records the events of a Publisher or Subscriber.
+     */
+    private static class Events implements MCPublisher.Listener, MCSubscriber.Listener {
+        final List<String> list = new ArrayList<>();
+        final CountDownLatch activeLatch = new CountDownLatch(1);
+
+        synchronized void add(String event) {
+            list.add(event);
+        }
+
+        synchronized boolean has(String event) {
+            return list.contains(event);
+        }
+
+        @Override
+        public void onConnected() {
+            add("connected");
+        }
+
+        @Override
+        public void onConnectionError(int status, String reason) {
+            add("connectionError:" + status);
+        }
+
+        @Override
+        public void onDisconnected() {
+            add("disconnected");
+        }
+
+        @Override
+        public void onPublishing() {
+            add("publishing");
+        }
+
+        @Override
+        public void onPublishingError(String error) {
+            add("publishingError");
+        }
+
+        @Override
+        public void onSignalingError(String error) {
+            add("signalingError");
+        }
+
+        @Override
+        public void onActive() {
+            add("active");
+        }
+
+        @Override
+        public void onInactive() {
+            add("inactive");
+        }
+
+        @Override
+        public void onSubscribed() {
+            add("subscribed");
+        }
+
+        @Override
+        public void onSubscribedError(String error) {
+            add("subscribedError");
+        }
+
+        @Override
+        public void onTrack(boolean isAudio, String mid) {
+            add("track:" + mid);
+        }
+
+        @Override
+        public void onActive(String streamId, String[] tracks, String sourceId) {
+            add("active:" + sourceId);
+            activeLatch.countDown();
+        }
+
+        @Override
+        public void onInactive(String streamId, String sourceId) {
+            add("inactive:" + sourceId);
+        }
+
+        @Override
+        public void onLayers(String mid, MCLayer[] activeLayers, MCLayer[] inactiveLayers) {
+            add("layers:" + activeLayers.length);
+        }
+
+        @Override
+        public void onViewerCount(int count) {
+            add("viewers:" + count);
+        }
+
+        @Override
+        public void onStats(StatsRecord record) {
+            add("stats");
+        }
+    }
+
+    private static FakePublisher publish(FakeServer server, Events events, String sourceId) {
+        FakePublisher publisher = server.createPublisher(events);
+        publisher.setCredentials("stream", "token", "url");
+        MCPublisher.Options options = new MCPublisher.Options();
+        options.sourceId = sourceId;
+        publisher.setOptions(options);
+        assertTrue(publisher.connect());
+        assertTrue(publisher.publish());
+        return publisher;
+    }
+
+    private static FakeSubscriber subscribe(FakeServer server, Events events) {
+        FakeSubscriber subscriber = server.createSubscriber(events);
+        subscriber.setCredentials("stream", "account", null, "url");
+        assertTrue(subscriber.connect());
+        assertTrue(subscriber.subscribe());
+        return subscriber;
+    }
+
+    @Test
+    public void subscriber_isNotifiedOfSources() {
+        FakeServer server = new FakeServer(Runnable::run);
+        Events pubEvents = new Events();
+        Events subEvents = new Events();
+        FakePublisher publisher = publish(server, pubEvents, "cam1");
+        FakeSubscriber subscriber = subscribe(server, subEvents);
+
+        assertTrue(subEvents.has("active:cam1"));
+        assertTrue(pubEvents.has("viewers:1"));
+        assertTrue(pubEvents.has("active"));
+        assertEquals(1, server.getViewerCount("stream"));
+
+        ArrayList<MCSubscriber.Projection> projections = new ArrayList<>();
+        projections.add(new MCSubscriber.Projection("video0", "video", "1"));
+        assertTrue(subscriber.project("cam1", projections));
+        assertEquals("cam1", subscriber.getProjected("1"));
+        assertFalse(subscriber.project("cam2", projections));
+
+        publisher.unpublish();
+        assertTrue(subEvents.has("inactive:cam1"));
+        subscriber.unsubscribe();
+        assertEquals(0, server.getViewerCount("stream"));
+    }
+
+    @Test
+    public void dropConnections_disconnectsAll() {
+        FakeServer server = new FakeServer(Runnable::run);
+        Events pubEvents = new Events();
+        Events subEvents = new Events();
+        FakePublisher publisher = publish(server, pubEvents, null);
+        subscribe(server, subEvents);
+
+        server.dropConnections();
+        assertTrue(pubEvents.has("disconnected"));
+        assertTrue(subEvents.has("disconnected"));
+        assertFalse(publisher.isPublishing());
+        assertEquals(0, server.getConnectedCount());
+
+        server.setConnectFailing(true);
+        Events events = new Events();
+        FakeSubscriber subscriber = server.createSubscriber(events);
+        subscriber.setCredentials("stream", "account", null, "url");
+        assertTrue(subscriber.connect());
+        assertFalse(subscriber.isConnected());
+        assertTrue(events.has("connectionError:" + FakeServer.STATUS_CONNECT_FAILED));
+    }
+
+    @Test
+    public void manySubscribers_onThreadPool() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        FakeServer server = new FakeServer(executor);
+        int count = 200;
+        List<Events> eventsList = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            Events events = new Events();
+            eventsList.add(events);
+            subscribe(server, events);
+        }
+        publish(server, new Events(), "main");
+        for (Events events : eventsList) {
+            assertTrue(events.activeLatch.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(count, server.getViewerCount("stream"));
+        executor.shutdown();
+    }
+}
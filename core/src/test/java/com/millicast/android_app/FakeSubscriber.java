@@ -0,0 +1,239 @@
+package com.millicast.android_app;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process {@link MCSubscriber} of a {@link FakeServer}.
+ * Receives no media, but is notified of the sources published to its stream.
+ */
+public class FakeSubscriber implements MCSubscriber {
+
+    private final FakeServer server;
+    private final MCSubscriber.Listener listener;
+    private String streamName = null;
+    private boolean connected = false;
+    private boolean subscribed = false;
+    private int statsIntervalMs = 0;
+    // Mid of each local track, by trackId.
+    private final Map<String, String> mids = new HashMap<>();
+    // The sourceId projected onto each mid.
+    private final Map<String, String> projected = new HashMap<>();
+    private MCLayer layerSelected = null;
+
+    FakeSubscriber(FakeServer server, MCSubscriber.Listener listener) {
+        this.server = server;
+        this.listener = listener;
+    }
+
+    //**********************************************************************************************
+    // APIs
+    //**********************************************************************************************
+
+    @Override
+    public boolean connect() {
+        // The server is not called while holding the lock of this client,
+        // as the server calls its clients while holding its own lock.
+        synchronized (this) {
+            if (streamName == null || connected) {
+                return false;
+            }
+        }
+        if (!server.connect(this)) {
+            server.post(() -> listener.onConnectionError(
+                    FakeServer.STATUS_CONNECT_FAILED, "Connection failed."));
+            return true;
+        }
+        synchronized (this) {
+            connected = true;
+        }
+        server.post(listener::onConnected);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized void getStats(int intervalMs) {
+        statsIntervalMs = intervalMs;
+    }
+
+    @Override
+    public void release() {
+        unsubscribe();
+        synchronized (this) {
+            connected = false;
+        }
+        server.disconnect(this);
+    }
+
+    @Override
+    public synchronized void setCredentials(String streamName, String accountId, String token,
+                                            String apiUrl) {
+        this.streamName = streamName;
+    }
+
+    @Override
+    public boolean subscribe() {
+        String name;
+        synchronized (this) {
+            if (!connected || subscribed) {
+                return false;
+            }
+            subscribed = true;
+            name = streamName;
+            server.post(listener::onSubscribed);
+            // The main tracks, on which the main source is received.
+            addTrack("audio");
+            addTrack("video");
+        }
+        server.addSubscriber(name, this);
+        return true;
+    }
+
+    @Override
+    public boolean unsubscribe() {
+        String name;
+        synchronized (this) {
+            if (!subscribed) {
+                return false;
+            }
+            subscribed = false;
+            name = streamName;
+            mids.clear();
+            projected.clear();
+        }
+        server.removeSubscriber(name, this);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isSubscribed() {
+        return subscribed;
+    }
+
+    @Override
+    public boolean project(String sourceId, List<Projection> projections) {
+        String name;
+        synchronized (this) {
+            if (!subscribed) {
+                return false;
+            }
+            name = streamName;
+        }
+        if (!server.isSourceActive(name, sourceId)) {
+            return false;
+        }
+        synchronized (this) {
+            for (Projection projection : projections) {
+                projected.put(projection.mid, sourceId);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean select(MCLayer layer) {
+        if (!subscribed) {
+            return false;
+        }
+        layerSelected = layer;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addRemoteTrack(String kind) {
+        if (!subscribed) {
+            return false;
+        }
+        addTrack(kind);
+        return true;
+    }
+
+    @Override
+    public synchronized String getMid(String trackId) {
+        return mids.get(trackId);
+    }
+
+    /**
+     * Deliver the given stats to the listener, if stats were requested via {@link #getStats}.
+     *
+     * @param record
+     */
+    public synchronized void emitStats(StatsRecord record) {
+        if (statsIntervalMs > 0 && connected) {
+            server.post(() -> listener.onStats(record));
+        }
+    }
+
+    /**
+     * Deliver the given layers to the listener, as if received from Millicast.
+     *
+     * @param mid
+     * @param activeLayers
+     * @param inactiveLayers
+     */
+    public synchronized void emitLayers(String mid, MCLayer[] activeLayers,
+                                        MCLayer[] inactiveLayers) {
+        if (subscribed) {
+            server.post(() -> listener.onLayers(mid, activeLayers, inactiveLayers));
+        }
+    }
+
+    /**
+     * The sourceId projected onto the given mid.
+     *
+     * @param mid
+     * @return The sourceId, or null if none was projected.
+     */
+    public synchronized String getProjected(String mid) {
+        return projected.get(mid);
+    }
+
+    public synchronized MCLayer getLayerSelected() {
+        return layerSelected;
+    }
+
+    //**********************************************************************************************
+    // Internal methods
+    //**********************************************************************************************
+
+    /**
+     * Add a local track of the given kind, with the next mid.
+     */
+    private void addTrack(String kind) {
+        String mid = String.valueOf(mids.size());
+        mids.put(kind + mid, mid);
+        server.post(() -> listener.onTrack("audio".equals(kind), mid));
+    }
+
+    synchronized void notifyActive(String streamName, FakePublisher publisher) {
+        String[] tracks = publisher.getTracks();
+        String sourceId = publisher.getSourceId();
+        server.post(() -> listener.onActive(streamName, tracks, sourceId));
+    }
+
+    synchronized void notifyInactive(String streamName, FakePublisher publisher) {
+        String sourceId = publisher.getSourceId();
+        server.post(() -> listener.onInactive(streamName, sourceId));
+    }
+
+    /**
+     * Lose the connection, as if the network was lost.
+     */
+    void drop() {
+        unsubscribe();
+        synchronized (this) {
+            if (!connected) {
+                return;
+            }
+            connected = false;
+        }
+        server.disconnect(this);
+        server.post(listener::onDisconnected);
+    }
+}
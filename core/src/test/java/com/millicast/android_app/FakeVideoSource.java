@@ -0,0 +1,89 @@
+package com.millicast.android_app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process {@link MCVideoSource} that captures nothing, but keeps its capture state.
+ */
+public class FakeVideoSource implements MCVideoSource {
+
+    private final String id;
+    private final String name;
+    private final String type;
+    private final List<Capability> capabilities;
+    private Capability capability = null;
+    private boolean capturing = false;
+    private int captureCount = 0;
+
+    /**
+     * @param id
+     * @param name
+     * @param type         for e.g. "DEVICE" or "NDI".
+     * @param capabilities
+     */
+    public FakeVideoSource(String id, String name, String type, List<Capability> capabilities) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.capabilities = new ArrayList<>(capabilities);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public List<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public synchronized void setCapability(Capability capability) {
+        this.capability = capability;
+    }
+
+    @Override
+    public synchronized boolean startCapture() {
+        if (capturing) {
+            return false;
+        }
+        capturing = true;
+        ++captureCount;
+        return true;
+    }
+
+    @Override
+    public synchronized void stopCapture() {
+        capturing = false;
+    }
+
+    @Override
+    public synchronized boolean isCapturing() {
+        return capturing;
+    }
+
+    public synchronized Capability getCapability() {
+        return capability;
+    }
+
+    /**
+     * The number of times capture was started.
+     *
+     * @return
+     */
+    public synchronized int getCaptureCount() {
+        return captureCount;
+    }
+}
@@ -0,0 +1,106 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static com.millicast.android_app.StatsRecord.NA;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link LayerAbr}, including replays of the stats traces in abr/.
+ */
+public class LayerAbrTest {
+
+    private static final int LEVELS = 3;
+
+    @Test
+    public void sample_setFromRecordDeltas() {
+        LayerAbr.Sample sample = new LayerAbr.Sample();
+        StatsRecord.Rtp rtp = new StatsRecord.Rtp();
+        rtp.present = true;
+        rtp.framesDecoded = 100;
+        rtp.framesReceived = 100;
+        rtp.framesDropped = 0;
+        rtp.jitterBufferEmittedCount = 100;
+        rtp.jitterBufferDelay = 5;
+        rtp.totalCodecTime = 1;
+        rtp.bitrate = 1000000;
+        // The first record only provides the totals.
+        assertFalse(sample.set(rtp, 3000000));
+
+        rtp.framesDecoded = 150;
+        rtp.framesReceived = 160;
+        rtp.framesDropped = 3;
+        rtp.jitterBufferEmittedCount = 150;
+        rtp.jitterBufferDelay = 15;
+        rtp.totalCodecTime = 1.5;
+        assertTrue(sample.set(rtp, 3000000));
+        assertEquals(200, sample.jitterBufferMs, 1e-9);
+        assertEquals(0.05, sample.dropRatio, 1e-9);
+        assertEquals(10, sample.decodeMs, 1e-9);
+        assertFalse(sample.frozen);
+        assertEquals(3000000, sample.bandwidthBps, 0);
+
+        // Frames received but none decoded.
+        rtp.framesReceived = 190;
+        assertTrue(sample.set(rtp, NA));
+        assertTrue(sample.frozen);
+        assertTrue(sample.isBad());
+    }
+
+    @Test
+    public void singleLayer_neverSwitches() {
+        LayerAbr abr = new LayerAbr();
+        abr.reset(1);
+        LayerAbr.Sample sample = new LayerAbr.Sample();
+        sample.frozen = true;
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(0, abr.update(i * 2000L, sample));
+        }
+    }
+
+    @Test
+    public void weakWifi_switchesDownPromptlyAndRecovers() throws IOException {
+        LayerAbrTrace trace = LayerAbrTrace.replayResource("weak_wifi.csv", LEVELS);
+        assertEquals(LEVELS - 1, trace.getLevelAt(30000));
+        // Degradation starts after 30s: down after 2 bad samples.
+        assertEquals(LEVELS - 2, trace.getLevelAt(34000));
+        assertEquals(0, trace.getMinLevel());
+        // Back at the highest level once the link has been good for a while.
+        assertEquals(LEVELS - 1, trace.getLevelAt(246000));
+        assertEquals(4, trace.getSwitchCount());
+    }
+
+    @Test
+    public void oscillatingLink_backsOffInsteadOfFlapping() throws IOException {
+        LayerAbrTrace trace = LayerAbrTrace.replayResource("oscillating.csv", LEVELS);
+        // Fewer switches than the 17 bad periods.
+        assertTrue("Switches: " + trace.getSwitchCount(), trace.getSwitchCount() < 17);
+        assertEquals(0, trace.getMinLevel());
+        // Raising back to a level is held off longer each time it fails soon after.
+        long raisePrev = NA;
+        long gapPrev = 0;
+        int raiseCount = 0;
+        for (int i = 1; i < trace.decisions.size(); ++i) {
+            if (trace.decisions.get(i)[1] != 1 || trace.decisions.get(i - 1)[1] != 0) {
+                continue;
+            }
+            long raise = trace.decisions.get(i)[0];
+            if (raisePrev != NA) {
+                assertTrue("Gap " + (raise - raisePrev) + " after " + gapPrev,
+                        raise - raisePrev > gapPrev);
+                gapPrev = raise - raisePrev;
+            }
+            raisePrev = raise;
+            ++raiseCount;
+        }
+        assertTrue(raiseCount >= 3);
+    }
+
+    @Test
+    public void moderateLink_holdsLevel() throws IOException {
+        LayerAbrTrace trace = LayerAbrTrace.replayResource("moderate.csv", LEVELS);
+        assertEquals(0, trace.getSwitchCount());
+    }
+}
@@ -0,0 +1,131 @@
+package com.millicast.android_app;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Replays a stats trace through the {@link LayerAbr} to check its switching decisions offline.
+ * A trace is a CSV file with one {@link LayerAbr.Sample} per line:<br></br>
+ * timeMs,jitterBufferMs,dropRatio,decodeMs,frozen(0/1),bandwidthKbps,bitrateKbps<br></br>
+ * Empty lines and lines starting with # are ignored, and -1 indicates a value not available.
+ * Traces are kept in the test resources under abr/.
+ * Can also be run with: LayerAbrTrace tracePath levelCount,
+ * to print the level chosen after each sample.
+ */
+public class LayerAbrTrace {
+
+    /**
+     * The time and level chosen after each sample of a replayed trace.
+     */
+    public final ArrayList<long[]> decisions = new ArrayList<>();
+
+    /**
+     * Replay the trace from the given reader.
+     *
+     * @param reader
+     * @param levelCount The number of layers, with the ABR starting at the highest.
+     * @return The trace with its decisions.
+     * @throws IOException
+     */
+    public static LayerAbrTrace replay(Reader reader, int levelCount) throws IOException {
+        LayerAbrTrace trace = new LayerAbrTrace();
+        LayerAbr abr = new LayerAbr();
+        abr.reset(levelCount);
+        LayerAbr.Sample sample = new LayerAbr.Sample();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split(",");
+            long timeMs = Long.parseLong(values[0]);
+            sample.jitterBufferMs = Double.parseDouble(values[1]);
+            sample.dropRatio = Double.parseDouble(values[2]);
+            sample.decodeMs = Double.parseDouble(values[3]);
+            sample.frozen = "1".equals(values[4]);
+            sample.bandwidthBps = toBps(Double.parseDouble(values[5]));
+            sample.bitrateBps = toBps(Double.parseDouble(values[6]));
+            trace.decisions.add(new long[]{timeMs, abr.update(timeMs, sample)});
+        }
+        return trace;
+    }
+
+    /**
+     * Replay a trace from the test resources.
+     *
+     * @param name       The file name of the trace in abr/.
+     * @param levelCount
+     * @return
+     * @throws IOException
+     */
+    public static LayerAbrTrace replayResource(String name, int levelCount) throws IOException {
+        try (Reader reader = new InputStreamReader(
+                LayerAbrTrace.class.getClassLoader().getResourceAsStream("abr/" + name))) {
+            return replay(reader, levelCount);
+        }
+    }
+
+    /**
+     * The number of times the level changed.
+     *
+     * @return
+     */
+    public int getSwitchCount() {
+        int count = 0;
+        for (int i = 1; i < decisions.size(); ++i) {
+            if (decisions.get(i)[1] != decisions.get(i - 1)[1]) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The level chosen after the sample at the given time, or the last sample before it.
+     *
+     * @param timeMs
+     * @return
+     */
+    public int getLevelAt(long timeMs) {
+        long level = -1;
+        for (long[] decision : decisions) {
+            if (decision[0] > timeMs) {
+                break;
+            }
+            level = decision[1];
+        }
+        return (int) level;
+    }
+
+    public int getMinLevel() {
+        long min = Long.MAX_VALUE;
+        for (long[] decision : decisions) {
+            min = Math.min(min, decision[1]);
+        }
+        return (int) min;
+    }
+
+    private static double toBps(double kbps) {
+        return kbps < 0 ? StatsRecord.NA : kbps * 1000;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: LayerAbrTrace tracePath levelCount");
+            return;
+        }
+        try (Reader reader = new FileReader(args[0])) {
+            LayerAbrTrace trace = replay(reader, Integer.parseInt(args[1]));
+            for (long[] decision : trace.decisions) {
+                System.out.println(decision[0] + "," + decision[1]);
+            }
+            System.out.println("# Switches: " + trace.getSwitchCount());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.millicast.android_app;
+
+/**
+ * Abstraction of the connection functions common to a Millicast Publisher and Subscriber.
+ * Test-only: implemented by in-process fakes, so that logic using it can run on a plain JVM.
+ * The App does not use it, and uses the Millicast SDK directly.
+ */
+public interface MCClient {
+
+    /**
+     * Connect to Millicast, using the credentials set.
+     * The result is notified via the Listener of the Publisher/Subscriber.
+     *
+     * @return False if the connection could not be started, true otherwise.
+     */
+    boolean connect();
+
+    boolean isConnected();
+
+    /**
+     * Start or stop stats reports.
+     *
+     * @param intervalMs Interval between reports, in ms, or 0 to stop reports.
+     */
+    void getStats(int intervalMs);
+
+    /**
+     * Disconnect and release all resources.
+     * This client cannot be used after.
+     */
+    void release();
+}
@@ -0,0 +1,51 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the comparison of lists of {@link MCLayer}s.
+ */
+public class MCLayerTest {
+
+    private static MCLayer[] layers(Integer maxTemporalLayerId, String... encodingIds) {
+        MCLayer[] layers = new MCLayer[encodingIds.length];
+        for (int i = 0; i < encodingIds.length; ++i) {
+            layers[i] = new MCLayer(encodingIds[i], 0, i, null, maxTemporalLayerId);
+        }
+        return layers;
+    }
+
+    private static boolean isSame(MCLayer[] list1, MCLayer[] list2) {
+        return MCLayer.isSameLayerList(list1, MCLayer.getLayerListHash(list1, MCLayer.CONTENT),
+                list2, MCLayer.getLayerListHash(list2, MCLayer.CONTENT), MCLayer.CONTENT);
+    }
+
+    @Test
+    public void sameLayers_inAnyOrder_areSame() {
+        MCLayer[] list = layers(2, "h", "m", "l");
+        MCLayer[] reversed = {list[2], list[1], list[0]};
+        assertTrue(isSame(list, layers(2, "h", "m", "l")));
+        assertTrue(isSame(list, reversed));
+        assertTrue(isSame(new MCLayer[0], new MCLayer[0]));
+    }
+
+    @Test
+    public void differentLayers_areNotSame() {
+        MCLayer[] list = layers(2, "h", "m", "l");
+        assertFalse(isSame(list, layers(2, "h", "m")));
+        assertFalse(isSame(list, layers(2, "h", "m", "x")));
+        // Only the maximum layer id differs.
+        assertFalse(isSame(list, layers(1, "h", "m", "l")));
+        assertFalse(isSame(list, layers(null, "h", "m", "l")));
+    }
+
+    @Test
+    public void sameHash_isCheckedByContent() {
+        MCLayer[] list = layers(2, "h", "m");
+        MCLayer[] other = layers(2, "h", "x");
+        int hash = MCLayer.getLayerListHash(list, MCLayer.CONTENT);
+        assertFalse(MCLayer.isSameLayerList(list, hash, other, hash, MCLayer.CONTENT));
+    }
+}
@@ -0,0 +1,20 @@
+package com.millicast.android_app;
+
+import java.util.List;
+
+/**
+ * Abstraction of the Millicast Media manager, which lists the media sources and codecs.
+ */
+public interface MCMedia {
+
+    /**
+     * The video sources currently available.
+     *
+     * @return The list, which is empty if none are available.
+     */
+    List<MCVideoSource> getVideoSources();
+
+    List<String> getSupportedAudioCodecs();
+
+    List<String> getSupportedVideoCodecs();
+}
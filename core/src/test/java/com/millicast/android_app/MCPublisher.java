@@ -0,0 +1,87 @@
+package com.millicast.android_app;
+
+/**
+ * Abstraction of a Millicast Publisher.
+ */
+public interface MCPublisher extends MCClient {
+
+    /**
+     * Receives the events of an {@link MCPublisher}.
+     */
+    interface Listener {
+        void onConnected();
+
+        void onConnectionError(int status, String reason);
+
+        void onDisconnected();
+
+        void onPublishing();
+
+        void onPublishingError(String error);
+
+        /**
+         * An error was reported by the signaling, which is not a publishing error.
+         *
+         * @param error
+         */
+        void onSignalingError(String error);
+
+        /**
+         * The first viewer has started viewing the stream.
+         */
+        void onActive();
+
+        /**
+         * The last viewer has stopped viewing the stream.
+         */
+        void onInactive();
+
+        void onViewerCount(int count);
+
+        /**
+         * A stats report, as requested by {@link MCClient#getStats}.
+         * The record may be reused for the next report.
+         *
+         * @param record
+         */
+        void onStats(StatsRecord record);
+    }
+
+    /**
+     * Publish options.
+     * Values that are null, or {@link StatsRecord#NA} for bitrates, are not set.
+     */
+    class Options {
+        public String sourceId = null;
+        public String audioCodec = null;
+        public String videoCodec = null;
+        public int minBitrateKbps = StatsRecord.NA;
+        public int maxBitrateKbps = StatsRecord.NA;
+        public int startBitrateKbps = StatsRecord.NA;
+        public boolean simulcast = false;
+        public boolean stereo = false;
+    }
+
+    void setCredentials(String streamName, String token, String apiUrl);
+
+    /**
+     * Set the options, which apply to the next publish.
+     * The current publish, if any, is not changed, including its bitrates.
+     *
+     * @param options
+     */
+    void setOptions(Options options);
+
+    /**
+     * Publish the tracks added, once connected.
+     * The result is notified via {@link Listener#onPublishing} or
+     * {@link Listener#onPublishingError}.
+     *
+     * @return False if publishing could not be started, true otherwise.
+     */
+    boolean publish();
+
+    boolean unpublish();
+
+    boolean isPublishing();
+}
@@ -0,0 +1,128 @@
+package com.millicast.android_app;
+
+import java.util.List;
+
+/**
+ * Abstraction of a Millicast Subscriber.
+ */
+public interface MCSubscriber extends MCClient {
+
+    /**
+     * Receives the events of an {@link MCSubscriber}.
+     */
+    interface Listener {
+        void onConnected();
+
+        void onConnectionError(int status, String reason);
+
+        void onDisconnected();
+
+        void onSubscribed();
+
+        void onSubscribedError(String error);
+
+        /**
+         * An error was reported by the signaling, which is not a subscribing error.
+         *
+         * @param error
+         */
+        void onSignalingError(String error);
+
+        /**
+         * A track has been added to receive media, for e.g. via {@link #addRemoteTrack}.
+         *
+         * @param isAudio
+         * @param mid     The mid of the track, or null if not known.
+         */
+        void onTrack(boolean isAudio, String mid);
+
+        /**
+         * A source has started publishing.
+         *
+         * @param streamId
+         * @param tracks   The tracks of the source, for e.g. "video/{trackId}".
+         * @param sourceId The sourceId of the source, or null for the main source.
+         */
+        void onActive(String streamId, String[] tracks, String sourceId);
+
+        void onInactive(String streamId, String sourceId);
+
+        void onLayers(String mid, MCLayer[] activeLayers, MCLayer[] inactiveLayers);
+
+        void onViewerCount(int count);
+
+        /**
+         * A stats report, as requested by {@link MCClient#getStats}.
+         * The record may be reused for the next report.
+         *
+         * @param record
+         */
+        void onStats(StatsRecord record);
+    }
+
+    /**
+     * A track of a source to project onto a local track.
+     */
+    class Projection {
+        public final String trackId;
+        /**
+         * Either "audio" or "video".
+         */
+        public final String media;
+        public final String mid;
+
+        public Projection(String trackId, String media, String mid) {
+            this.trackId = trackId;
+            this.media = media;
+            this.mid = mid;
+        }
+    }
+
+    void setCredentials(String streamName, String accountId, String token, String apiUrl);
+
+    /**
+     * Subscribe to the stream, once connected.
+     * The result is notified via {@link Listener#onSubscribed} or
+     * {@link Listener#onSubscribedError}.
+     *
+     * @return False if subscribing could not be started, true otherwise.
+     */
+    boolean subscribe();
+
+    boolean unsubscribe();
+
+    boolean isSubscribed();
+
+    /**
+     * Project the tracks of a source onto local tracks.
+     *
+     * @param sourceId    The sourceId, or an empty String ("") for the main source.
+     * @param projections
+     * @return
+     */
+    boolean project(String sourceId, List<Projection> projections);
+
+    /**
+     * Select the layer to receive.
+     *
+     * @param layer The layer, or null to let Millicast select it automatically.
+     * @return
+     */
+    boolean select(MCLayer layer);
+
+    /**
+     * Add a local track on which another source can be projected.
+     *
+     * @param kind Either "audio" or "video".
+     * @return
+     */
+    boolean addRemoteTrack(String kind);
+
+    /**
+     * Get the mid of the local track with the given trackId.
+     *
+     * @param trackId
+     * @return The mid, or null if not available.
+     */
+    String getMid(String trackId);
+}
@@ -0,0 +1,66 @@
+package com.millicast.android_app;
+
+import java.util.List;
+
+/**
+ * Abstraction of a Millicast VideoSource, for e.g. a camera.
+ */
+public interface MCVideoSource {
+
+    /**
+     * A capture format supported by an {@link MCVideoSource}.
+     */
+    class Capability {
+        public final int width;
+        public final int height;
+        public final int fps;
+
+        public Capability(int width, int height, int fps) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + fps;
+        }
+    }
+
+    String getId();
+
+    String getName();
+
+    /**
+     * The type of the source, for e.g. "DEVICE" or "NDI".
+     *
+     * @return
+     */
+    String getType();
+
+    /**
+     * The capture formats supported.
+     *
+     * @return The list, which is empty if not available.
+     */
+    List<Capability> getCapabilities();
+
+    /**
+     * Set the capture format to use on the next capture,
+     * or change to it if capturing.
+     *
+     * @param capability One of the capabilities from {@link #getCapabilities}.
+     */
+    void setCapability(Capability capability);
+
+    /**
+     * Start capturing.
+     *
+     * @return True if a video track was created, false otherwise.
+     */
+    boolean startCapture();
+
+    void stopCapture();
+
+    boolean isCapturing();
+}
@@ -0,0 +1,45 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link NoticeBatcher} batching and rate limiting.
+ */
+public class NoticeBatcherTest {
+
+    @Test
+    public void burst_isMergedIntoOneNotice() {
+        NoticeBatcher batcher = new NoticeBatcher(1000, 8);
+        assertTrue(batcher.add("Source added"));
+        for (int i = 0; i < 4; ++i) {
+            assertFalse(batcher.add("Source added"));
+        }
+        assertFalse(batcher.add("Connected"));
+        assertEquals("Source added (x5)\nConnected", batcher.poll(0));
+        assertNull(batcher.poll(10));
+        assertEquals(6, batcher.getReceivedCount());
+        assertEquals(1, batcher.getShownCount());
+    }
+
+    @Test
+    public void distinctMessages_areBounded() {
+        NoticeBatcher batcher = new NoticeBatcher(1000, 2);
+        for (int i = 0; i < 10; ++i) {
+            batcher.add("Msg " + i);
+        }
+        assertEquals("Msg 0\nMsg 1\n+8 more", batcher.poll(0));
+    }
+
+    @Test
+    public void notices_areRateLimited() {
+        NoticeBatcher batcher = new NoticeBatcher(1000, 8);
+        assertEquals(0, batcher.getDelayMs(5000));
+        batcher.add("A");
+        batcher.poll(5000);
+        assertTrue(batcher.add("B"));
+        assertEquals(600, batcher.getDelayMs(5400));
+        assertEquals(0, batcher.getDelayMs(6000));
+    }
+}
@@ -0,0 +1,58 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link ParamApplier} retries, deadline and timing.
+ */
+public class ParamApplierTest {
+
+    private ParamApplier newApplier(long deadlineMs, int attemptsMax) {
+        return new ParamApplier(deadlineMs, attemptsMax, new Backoff(100, 1000, new Random(1)));
+    }
+
+    @Test
+    public void params_areAppliedOnReady() {
+        ParamApplier applier = newApplier(5000, 8);
+        applier.start(1000);
+        assertTrue(applier.isActive());
+        assertTrue(applier.onReady(1200));
+        assertFalse(applier.onReady(1210));
+
+        long delay = applier.onAttempt(1200, false);
+        assertTrue(delay >= 50 && delay <= 100);
+        assertEquals(-1, applier.onAttempt(1300, true));
+        assertEquals(ParamApplier.Phase.APPLIED, applier.getPhase());
+        assertEquals(300, applier.getAppliedMs());
+        assertEquals(2, applier.getAttempts());
+
+        // The first frame came after the params were set, so it is configured.
+        assertFalse(applier.onFirstFrame(1400));
+        assertEquals(400, applier.getConfiguredMs());
+    }
+
+    @Test
+    public void attempts_areBounded() {
+        ParamApplier applier = newApplier(5000, 2);
+        applier.start(0);
+        assertTrue(applier.onFirstFrame(100));
+        assertTrue(applier.onAttempt(100, false) >= 0);
+        assertEquals(-1, applier.onAttempt(200, false));
+        assertEquals(ParamApplier.Phase.FAILED, applier.getPhase());
+        assertEquals(-1, applier.getConfiguredMs());
+    }
+
+    @Test
+    public void deadline_failsWithoutEvent() {
+        ParamApplier applier = newApplier(500, 8);
+        applier.start(0);
+        assertFalse(applier.expire(499));
+        assertTrue(applier.expire(500));
+        assertFalse(applier.onReady(600));
+        assertFalse(applier.isActive());
+    }
+}
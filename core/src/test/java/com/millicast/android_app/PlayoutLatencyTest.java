@@ -0,0 +1,97 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static com.millicast.android_app.PlayoutLatency.Metric.*;
+import static com.millicast.android_app.StatsRecord.NA;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link PlayoutLatency} metrics and histogram.
+ */
+public class PlayoutLatencyTest {
+
+    private static final long MS = 1_000_000;
+
+    /**
+     * Set the video totals of a Subscriber record, with the delay and decode totals in s.
+     */
+    private static StatsRecord record(StatsRecord record, double timeMs, long frames,
+                                      double jitterBufferDelay, double decodeTime) {
+        record.timestampUs = timeMs * 1000;
+        record.video.present = true;
+        record.video.framesDecoded = frames;
+        record.video.jitterBufferEmittedCount = frames;
+        record.video.jitterBufferDelay = jitterBufferDelay;
+        record.video.totalCodecTime = decodeTime;
+        return record;
+    }
+
+    @Test
+    public void metrics_arePerFrameSincePreviousReport() {
+        PlayoutLatency latency = new PlayoutLatency(10);
+        StatsRecord record = new StatsRecord(false);
+        record.rttMs = 60;
+        assertTrue(latency.onStats(record(record, 0, 100, 5, 1)));
+        assertEquals(NA, latency.getLatest(JITTER_BUFFER), 0);
+        assertEquals(30, latency.getLatest(GLASS_TO_GLASS), 1e-9);
+
+        latency.onFrameRendered(10 * MS);
+        latency.onFrameRendered(-5 * MS);
+        latency.onFrameRendered(5000 * MS);
+        latency.onStats(record(record, 1000, 200, 13, 1.5));
+        assertEquals(80, latency.getLatest(JITTER_BUFFER), 1e-9);
+        assertEquals(5, latency.getLatest(DECODE), 1e-9);
+        assertEquals(5, latency.getLatest(RENDER), 1e-9);
+        assertEquals(30, latency.getLatest(NETWORK), 1e-9);
+        assertEquals(NA, latency.getLatest(END_TO_END), 0);
+        assertEquals(120, latency.getLatest(GLASS_TO_GLASS), 1e-9);
+        assertEquals(2, latency.getFramesRendered());
+
+        record.video.present = false;
+        assertFalse(latency.onStats(record));
+        assertEquals(2, latency.size());
+    }
+
+    @Test
+    public void endToEnd_isFromPlayoutTimestamp() {
+        PlayoutLatency latency = new PlayoutLatency(10);
+        StatsRecord record = record(new StatsRecord(false), 1_700_000_000_000.0, 1, 0, 0);
+        record.rttMs = 60;
+        record.video.estimatedPlayoutTimestamp =
+                1_700_000_000_000.0 - 420 + PlayoutLatency.NTP_UNIX_OFFSET_MS;
+        latency.onStats(record);
+        assertEquals(420, latency.getLatest(END_TO_END), 1e-3);
+        assertEquals(420, latency.getLatest(GLASS_TO_GLASS), 1e-3);
+
+        // Clocks too far apart.
+        record.video.estimatedPlayoutTimestamp += 60_000;
+        latency.onStats(record);
+        assertEquals(NA, latency.getLatest(END_TO_END), 0);
+        assertEquals(30, latency.getLatest(GLASS_TO_GLASS), 1e-9);
+    }
+
+    @Test
+    public void histogram_isRolling() {
+        PlayoutLatency latency = new PlayoutLatency(3);
+        StatsRecord record = new StatsRecord(false);
+        double[] rtts = {20, 100, 300, 500, 3400};
+        for (int i = 0; i < rtts.length; ++i) {
+            record.rttMs = rtts[i];
+            latency.onStats(record(record, i * 1000, 0, NA, NA));
+        }
+        int[] counts = new int[PlayoutLatency.BUCKETS_MS.length + 1];
+        assertEquals(3, latency.getHistogram(NETWORK, counts));
+        assertArrayEquals(new int[]{0, 0, 0, 1, 1, 0, 0, 1}, counts);
+        assertEquals(1700, latency.getPercentile(NETWORK, 95), 0);
+        assertEquals(250, latency.getPercentile(NETWORK, 50), 0);
+        assertEquals(NA, latency.getMean(END_TO_END), 0);
+
+        String csv = latency.export();
+        assertTrue(csv.startsWith("metric,count,mean,p50,p95,max,0-25,"));
+        assertTrue(csv.contains("\nNETWORK,3,"));
+
+        latency.reset();
+        assertEquals(0, latency.getHistogram(NETWORK, counts));
+    }
+}
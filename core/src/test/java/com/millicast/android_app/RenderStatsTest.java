@@ -0,0 +1,52 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link RenderStats} counters.
+ */
+public class RenderStatsTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void frames_areCounted() {
+        RenderStats stats = new RenderStats();
+        stats.onDelivered(0);
+        stats.onHandedOff(0, 2 * MS);
+        stats.onDelivered(33 * MS);
+        stats.onDropped();
+        stats.onDelivered(66 * MS);
+        stats.onHandedOff(66 * MS, 70 * MS);
+
+        assertEquals(3, stats.getDelivered());
+        assertEquals(2, stats.getHandedOff());
+        assertEquals(1, stats.getDropped());
+        assertEquals(3, stats.getHandoffAvgMs(), 1e-9);
+        assertEquals(4, stats.getHandoffMaxMs(), 1e-9);
+    }
+
+    @Test
+    public void steadyFrames_haveNoJitterNorStall() {
+        RenderStats stats = new RenderStats();
+        for (int i = 0; i < 30; ++i) {
+            stats.onDelivered(i * 33 * MS);
+        }
+        assertEquals(33, stats.getIntervalAvgMs(), 1e-9);
+        assertEquals(0, stats.getJitterMs(), 1e-9);
+        assertEquals(0, stats.getStalls());
+
+        // A frame 200ms late is a stall, and adds jitter.
+        stats.onDelivered(29 * 33 * MS + 233 * MS);
+        assertEquals(1, stats.getStalls());
+        assertEquals(233, stats.getIntervalMaxMs(), 1e-9);
+        assertEquals(200.0 / 16, stats.getJitterMs(), 1e-9);
+
+        stats.reset();
+        assertEquals(0, stats.getDelivered());
+        assertEquals(0, stats.getIntervalMaxMs(), 0);
+        assertEquals(0, stats.getHandoffAvgMs(), 0);
+    }
+}
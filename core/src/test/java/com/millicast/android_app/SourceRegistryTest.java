@@ -0,0 +1,61 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link SourceRegistry} deltas and versions.
+ */
+public class SourceRegistryTest {
+
+    @Test
+    public void changes_areRecordedAsDeltas() {
+        SourceRegistry<String> registry = new SourceRegistry<>(16);
+        registry.put("", "main");
+        registry.put("cam1", "a");
+        registry.put("cam1", "b");
+        registry.remove("");
+        assertNull(registry.remove("unknown"));
+        assertEquals(4, registry.getVersion());
+
+        ArrayList<SourceRegistry.Delta> deltas = new ArrayList<>();
+        assertTrue(registry.getDeltasSince(1, deltas));
+        assertEquals("[ADDED:cam1@2, CHANGED:cam1@3, REMOVED:@4]", deltas.toString());
+
+        deltas.clear();
+        assertTrue(registry.getDeltasSince(4, deltas));
+        assertTrue(deltas.isEmpty());
+    }
+
+    @Test
+    public void deltasTooOld_requireReload() {
+        SourceRegistry<String> registry = new SourceRegistry<>(4);
+        for (int i = 0; i < 10; ++i) {
+            registry.put("src" + i, "v");
+        }
+        ArrayList<SourceRegistry.Delta> deltas = new ArrayList<>();
+        assertFalse(registry.getDeltasSince(0, deltas));
+        assertTrue(registry.getDeltasSince(6, deltas));
+        assertEquals(4, deltas.size());
+    }
+
+    @Test
+    public void ids_areCachedUntilChanged() {
+        SourceRegistry<String> registry = new SourceRegistry<>(16);
+        registry.put("b", "1");
+        registry.put("a", "1");
+        List<String> ids = registry.getIds();
+        assertEquals("[b, a]", ids.toString());
+        assertSame(ids, registry.getIds());
+        registry.put("a", "2");
+        assertSame(ids, registry.getIds());
+        registry.remove("b");
+        assertEquals("[a]", registry.getIds().toString());
+        assertEquals("[b, a]", ids.toString());
+        assertEquals("a", registry.getFirstId());
+    }
+}
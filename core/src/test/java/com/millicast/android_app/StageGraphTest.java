@@ -0,0 +1,105 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link StageGraph} ordering, tracing and failures.
+ */
+public class StageGraphTest {
+
+    @Test
+    public void stages_runAfterDependencies() {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<String> sections = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor1 = Executors.newSingleThreadExecutor();
+        ExecutorService executor2 = Executors.newSingleThreadExecutor();
+        StageGraph graph = new StageGraph("Init", new StageGraph.Tracer() {
+            @Override
+            public void begin(String name) {
+                sections.add(name);
+            }
+
+            @Override
+            public void end() {
+            }
+        });
+        graph.add("sdk", executor1, () -> order.add("sdk"))
+                .add("media", executor2, () -> order.add("media"), "sdk")
+                .add("codecs", executor1, () -> order.add("codecs"), "media")
+                .add("sources", executor2, () -> order.add("sources"), "media");
+        graph.start();
+
+        assertTrue(graph.await("codecs", 1000));
+        assertTrue(graph.await("sources", 1000));
+        assertTrue(graph.isDone());
+        assertEquals("sdk", order.get(0));
+        assertEquals("media", order.get(1));
+        assertEquals(4, order.size());
+        assertTrue(sections.contains("Init:codecs"));
+        assertTrue(graph.getDurationMs("sdk") >= 0);
+        assertTrue(graph.getTotalMs() >= 0);
+        executor1.shutdown();
+        executor2.shutdown();
+    }
+
+    @Test
+    public void failedStage_doesNotBlockDependents() {
+        Runnable noop = () -> {
+        };
+        StageGraph graph = new StageGraph("Init", new StageGraph.Tracer() {
+            @Override
+            public void begin(String name) {
+            }
+
+            @Override
+            public void end() {
+            }
+        });
+        graph.add("sdk", Runnable::run, () -> {
+            throw new IllegalStateException("No SDK");
+        }).add("media", Runnable::run, noop, "sdk");
+        graph.start();
+        assertTrue(graph.isDone("media"));
+        assertNotNull(graph.getError("sdk"));
+        assertNull(graph.getError("media"));
+    }
+
+    @Test
+    public void asyncStage_isDoneWhenReported() {
+        Runnable[] done = new Runnable[1];
+        List<String> order = new ArrayList<>();
+        StageGraph graph = new StageGraph("Init", new StageGraph.Tracer() {
+            @Override
+            public void begin(String name) {
+            }
+
+            @Override
+            public void end() {
+            }
+        });
+        graph.addAsync("sources", Runnable::run, d -> done[0] = d)
+                .add("view", Runnable::run, () -> order.add("view"), "sources");
+        graph.start();
+        assertTrue(graph.whenDone("sources", Runnable::run, () -> order.add("callback")));
+        assertFalse(graph.isDone("sources"));
+        assertTrue(order.isEmpty());
+
+        done[0].run();
+        done[0].run();
+        assertTrue(graph.isDone());
+        assertEquals(Arrays.asList("callback", "view"), order);
+        // Once done, callbacks run right away.
+        graph.whenDone("view", Runnable::run, () -> order.add("late"));
+        assertEquals("late", order.get(2));
+        assertFalse(graph.whenDone("unknown", Runnable::run, () -> order.add("unknown")));
+    }
+}
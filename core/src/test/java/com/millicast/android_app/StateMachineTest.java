@@ -0,0 +1,95 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link StateMachine} transitions.
+ */
+public class StateMachineTest {
+
+    private enum State {
+        IDLE,
+        STARTING,
+        STARTED,
+        REFRESHING
+    }
+
+    private static StateMachine<State> create() {
+        return new StateMachine<>("Test", State.class, State.IDLE)
+                .allow(State.IDLE, State.STARTING, State.REFRESHING)
+                .allow(State.STARTING, State.STARTED, State.IDLE)
+                .allow(State.STARTED, State.IDLE)
+                .allow(State.REFRESHING, State.IDLE);
+    }
+
+    @Test
+    public void compareAndSet_onlyFromExpectedState() {
+        StateMachine<State> machine = create();
+        assertTrue(machine.compareAndSet(State.IDLE, State.STARTING));
+        assertFalse(machine.compareAndSet(State.IDLE, State.REFRESHING));
+        assertEquals(State.STARTING, machine.get());
+        // Not the current state, so not reported as rejected.
+        assertEquals(0, machine.getRejectedCount());
+    }
+
+    @Test
+    public void moveTo_rejectsAndReportsInvalidTransition() {
+        StateMachine<State> machine = create();
+        ArrayList<String> events = new ArrayList<>();
+        machine.addListener(new StateMachine.Listener<State>() {
+            @Override
+            public void onTransition(StateMachine<State> m, State from, State to) {
+                events.add(from + ">" + to);
+            }
+
+            @Override
+            public void onRejected(StateMachine<State> m, State from, State to) {
+                events.add(from + "!" + to);
+            }
+        });
+        assertFalse(machine.moveTo(State.STARTED));
+        assertTrue(machine.moveTo(State.STARTING));
+        assertTrue(machine.moveTo(State.STARTING));
+        assertTrue(machine.moveTo(State.STARTED));
+        assertEquals(State.STARTED, machine.get());
+        assertEquals(1, machine.getRejectedCount());
+        assertEquals("[IDLE!STARTED, IDLE>STARTING, STARTING>STARTED]", events.toString());
+    }
+
+    @Test
+    public void concurrentRequests_onlyOneWins() throws InterruptedException {
+        for (int round = 0; round < 50; ++round) {
+            StateMachine<State> machine = create();
+            AtomicInteger wins = new AtomicInteger();
+            CountDownLatch go = new CountDownLatch(1);
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                State to = i % 2 == 0 ? State.STARTING : State.REFRESHING;
+                Thread thread = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (machine.compareAndSet(State.IDLE, to)) {
+                        wins.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, wins.get());
+            assertTrue(machine.get() != State.IDLE);
+        }
+    }
+}
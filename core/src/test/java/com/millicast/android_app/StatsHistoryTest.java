@@ -0,0 +1,88 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static com.millicast.android_app.StatsHistory.Metric.AVAILABLE_BITRATE;
+import static com.millicast.android_app.StatsHistory.Metric.BITRATE;
+import static com.millicast.android_app.StatsHistory.Metric.PACKETS_LOST;
+import static com.millicast.android_app.StatsHistory.Metric.RTT;
+import static com.millicast.android_app.StatsRecord.NA;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link StatsHistory} ring buffers and queries.
+ */
+public class StatsHistoryTest {
+
+    @Test
+    public void queries_useOnlySamplesInWindow() {
+        StatsHistory history = new StatsHistory(10);
+        for (int i = 1; i <= 5; ++i) {
+            history.add(i * 1000L, BITRATE, i * 100);
+        }
+        assertEquals(5, history.size());
+        assertEquals(500, history.getLatest(BITRATE), 0);
+        // Window of 2s before the latest sample at 5s includes samples at 3, 4 and 5s.
+        assertEquals(300, history.getMin(BITRATE, 2000), 0);
+        assertEquals(500, history.getMax(BITRATE, 2000), 0);
+        assertEquals(400, history.getMean(BITRATE, 2000), 0);
+        assertEquals(100, history.getMin(BITRATE, Long.MAX_VALUE / 2), 0);
+    }
+
+    @Test
+    public void add_overwritesOldestWhenFull() {
+        StatsHistory history = new StatsHistory(3);
+        for (int i = 1; i <= 7; ++i) {
+            history.add(i * 1000L, BITRATE, i);
+        }
+        assertEquals(3, history.size());
+        assertEquals(7000, history.getLatestTime());
+        assertEquals(5, history.getMin(BITRATE, 60000), 0);
+        assertEquals(7, history.getMax(BITRATE, 60000), 0);
+    }
+
+    @Test
+    public void percentile_isNearestRank() {
+        StatsHistory history = new StatsHistory(100);
+        // Add values 1 to 100 out of order.
+        for (int i = 0; i < 100; ++i) {
+            history.add(i, RTT, (i * 37) % 100 + 1);
+        }
+        assertEquals(95, history.getPercentile(RTT, 1000, 95), 0);
+        assertEquals(50, history.getPercentile(RTT, 1000, 50), 0);
+        assertEquals(100, history.getPercentile(RTT, 1000, 100), 0);
+        assertEquals(1, history.getPercentile(RTT, 1000, 0), 0);
+    }
+
+    @Test
+    public void queries_skipUnavailableValues() {
+        StatsHistory history = new StatsHistory(5);
+        assertEquals(NA, history.getLatest(BITRATE), 0);
+        history.add(1000, PACKETS_LOST, 10);
+        history.add(2000, BITRATE, 200);
+        history.add(3000, PACKETS_LOST, 25);
+        assertEquals(200, history.getLatest(BITRATE), 0);
+        assertEquals(200, history.getPercentile(BITRATE, 5000, 95), 0);
+        assertEquals(15, history.getDelta(PACKETS_LOST, 5000), 0);
+        assertEquals(NA, history.getDelta(BITRATE, 5000), 0);
+    }
+
+    @Test
+    public void add_fromRecord() {
+        StatsHistory history = new StatsHistory(5);
+        StatsRecord record = new StatsRecord(false);
+        record.timestampUs = 2000000;
+        record.rttMs = 80;
+        record.video.present = true;
+        record.video.bitrate = 1200000;
+        record.availableIncomingBitrate = 3000000;
+        history.add(record, record.video);
+        // Audio is not present, so nothing is added.
+        history.add(record, record.audio);
+        assertEquals(1, history.size());
+        assertEquals(2000, history.getLatestTime());
+        assertEquals(80, history.getLatest(RTT), 0);
+        assertEquals(1200000, history.getLatest(BITRATE), 0);
+        assertEquals(3000000, history.getLatest(AVAILABLE_BITRATE), 0);
+    }
+}
@@ -0,0 +1,42 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link SwitchTimer} latencies.
+ */
+public class SwitchTimerTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void switch_isTimedToFirstFrame() {
+        SwitchTimer timer = new SwitchTimer();
+        assertEquals(-1, timer.onFirstFrame(0));
+
+        timer.start(100 * MS);
+        assertTrue(timer.isPending());
+        assertEquals(40, timer.onSwitched(140 * MS, true));
+        assertEquals(90, timer.onFirstFrame(190 * MS));
+        assertFalse(timer.isPending());
+
+        timer.start(1000 * MS);
+        assertEquals(30, timer.onFirstFrame(1030 * MS));
+        assertEquals(30, timer.getMinFrameMs());
+        assertEquals(90, timer.getMaxFrameMs());
+        assertEquals(60, timer.getAvgFrameMs());
+        assertEquals(2, timer.getSwitchCount());
+    }
+
+    @Test
+    public void failedSwitch_isNotTimed() {
+        SwitchTimer timer = new SwitchTimer();
+        timer.start(0);
+        assertEquals(-1, timer.onSwitched(10 * MS, false));
+        assertEquals(-1, timer.onFirstFrame(20 * MS));
+        assertEquals(1, timer.getFailedCount());
+        assertEquals(-1, timer.getAvgFrameMs());
+    }
+}
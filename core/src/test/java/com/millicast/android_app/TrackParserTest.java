@@ -0,0 +1,41 @@
+package com.millicast.android_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the {@link TrackParser} descriptors parsing.
+ */
+public class TrackParserTest {
+
+    @Test
+    public void tracks_areSplitByKind() {
+        TrackParser parser = new TrackParser();
+        TrackParser.Result result = parser.parse(
+                new String[]{"audio/a0", "video/v0", "video/v1", "audio/a1"});
+        assertArrayEquals(new String[]{"a0", "a1"}, result.audioTrackIds);
+        assertArrayEquals(new String[]{"v0", "v1"}, result.videoTrackIds);
+        assertFalse(result.hasErrors());
+    }
+
+    @Test
+    public void malformedTracks_areReported() {
+        TrackParser parser = new TrackParser();
+        TrackParser.Result result = parser.parse(
+                new String[]{"audio", "data/d0", null, "video/", "audios/x", "video/v0"});
+        assertArrayEquals(new String[]{"v0"}, result.videoTrackIds);
+        assertEquals(0, result.audioTrackIds.length);
+        assertEquals("[[0]:audio NO_SEPARATOR, [1]:data/d0 UNKNOWN_KIND, [2]:null NULL, " +
+                "[3]:video/ EMPTY_ID, [4]:audios/x UNKNOWN_KIND]", result.errors.toString());
+    }
+
+    @Test
+    public void trackIds_areInterned() {
+        TrackParser parser = new TrackParser();
+        String first = parser.parse(new String[]{"video/" + "cam"}).videoTrackIds[0];
+        String again = parser.parse(new String[]{new String("video/cam")}).videoTrackIds[0];
+        assertSame(first, again);
+        assertEquals(1, parser.getInternHits());
+    }
+}